@@ -199,7 +199,6 @@ public class LaunchProofFromAEFDFormat {
       model_checker =
           new ModelChecker<>();
     }
-    // model_checker.setDiskBackUpMemory();
 
     /* The all CTL true initial state */
     HashMap<String, Boolean> initialization_variables =
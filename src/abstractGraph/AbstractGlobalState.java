@@ -5,6 +5,7 @@ import java.util.LinkedHashSet;
 import java.util.Map.Entry;
 
 import utils.Pair;
+import utils.Zobrist;
 import utils.javaAgent.ObjectSizeFetcher;
 import abstractGraph.conditions.BooleanVariable;
 import abstractGraph.conditions.EnumeratedVariable;
@@ -16,6 +17,14 @@ public abstract class AbstractGlobalState<M extends AbstractStateMachine<S, T>,
 
   protected V variables_values;
   protected Object[] state_machines_current_state;
+  /**
+   * Zobrist hash of the current states of the machines (see {@link Zobrist}).
+   * It is updated by {@link #setState(AbstractStateMachine, AbstractState)}.
+   * The key of a state is the hash of its id: it is consistent with the
+   * equality of the states, it is cached by String and it does not change when
+   * transitions are added to the state.
+   */
+  protected int states_zobrist_hash = 0;
 
   protected boolean is_legal_state = true, is_safe_state = true;
   protected boolean isNotP7 = true;
@@ -42,7 +51,22 @@ public abstract class AbstractGlobalState<M extends AbstractStateMachine<S, T>,
    *          The state to set.
    */
   public void setState(M machine, S state) {
-    state_machines_current_state[machine.getUniqueIdentifier()] = state;
+    int identifier = machine.getUniqueIdentifier();
+    Object old_state = state_machines_current_state[identifier];
+    if (old_state == state) {
+      return;
+    }
+    if (old_state != null) {
+      states_zobrist_hash ^= Zobrist.key(identifier, stateKey(old_state));
+    }
+    if (state != null) {
+      states_zobrist_hash ^= Zobrist.key(identifier, stateKey(state));
+    }
+    state_machines_current_state[identifier] = state;
+  }
+
+  private static int stateKey(Object state) {
+    return ((AbstractState<?>) state).getId().hashCode();
   }
 
   /**
@@ -191,6 +215,7 @@ public abstract class AbstractGlobalState<M extends AbstractStateMachine<S, T>,
     B.state_machines_current_state =
         Arrays.copyOf(state_machines_current_state,
             state_machines_current_state.length);
+    B.states_zobrist_hash = this.states_zobrist_hash;
     B.variables_values = (V) this.variables_values.clone();
     B.is_legal_state = this.is_legal_state;
     B.is_safe_state = this.is_safe_state;
@@ -268,7 +293,10 @@ public abstract class AbstractGlobalState<M extends AbstractStateMachine<S, T>,
     System.out.println("** End of the comparison");
   }
 
-  /* Automatically generated by Eclipse */
+  /**
+   * Computed in O(1) from the Zobrist hashes of the states of the machines and
+   * of the valuation, which are maintained when they are modified.
+   */
   @Override
   public int hashCode() {
     final int prime = 31;
@@ -276,7 +304,7 @@ public abstract class AbstractGlobalState<M extends AbstractStateMachine<S, T>,
     result = prime * result + (isNotP7 ? 1231 : 1237);
     result = prime * result + (is_legal_state ? 1231 : 1237);
     result = prime * result + (is_safe_state ? 1231 : 1237);
-    result = prime * result + Arrays.hashCode(state_machines_current_state);
+    result = prime * result + states_zobrist_hash;
     result = prime * result
         + ((variables_values == null) ? 0 : variables_values.hashCode());
     return result;
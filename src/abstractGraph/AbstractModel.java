@@ -54,6 +54,11 @@ public abstract class AbstractModel<M extends AbstractStateMachine<S, T>, S exte
    */
   public void build() {
     FCI_generate_ACT.clear();
+    for (M state_machine : this) {
+      for (S state : state_machine) {
+        state.buildTransitionIndex();
+      }
+    }
   }
 
   /**
@@ -102,6 +107,14 @@ public abstract class AbstractModel<M extends AbstractStateMachine<S, T>, S exte
     return result;
   }
 
+  /**
+   * Add the external events generated by the commands of another model. It
+   * must be called after {@link #build()}, which removes them.
+   */
+  public void addAllACTFCI(AbstractModel<?, ?, ?> model) {
+    FCI_generate_ACT.putAll(model.FCI_generate_ACT);
+  }
+
   public abstract AbstractModel<M, S, T> newInstance();
 
 }
@@ -1,13 +1,45 @@
 package abstractGraph;
 
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.Map.Entry;
 
+import abstractGraph.events.Events;
 import abstractGraph.events.SingleEvent;
 
 public abstract class AbstractState<T extends AbstractTransition<? extends AbstractState<T>>>
     implements Iterable<T> {
   protected String id;
 
+  /**
+   * The transitions of the state by event: transitions_by_event[i] contains,
+   * in the order of {@link #iterator()}, the transitions on the event whose
+   * id (see {@link SingleEvent#getId()}) is event_ids[i]. event_ids is
+   * sorted. The index is replaced when it is rebuilt, never modified, so that
+   * it can be read concurrently. It is stale when an event has been added to
+   * a transition since it was built (see {@link Events#getModificationCount()}).
+   */
+  private static class TransitionIndex<T> {
+    private final int[] event_ids;
+    private final T[][] transitions_by_event;
+    private final T[] no_transition;
+    private final int events_modification_count;
+
+    private TransitionIndex(int[] event_ids, T[][] transitions_by_event,
+        T[] no_transition, int events_modification_count) {
+      this.event_ids = event_ids;
+      this.transitions_by_event = transitions_by_event;
+      this.no_transition = no_transition;
+      this.events_modification_count = events_modification_count;
+    }
+  }
+
+  private volatile TransitionIndex<T> transition_index = null;
+
   public AbstractState(String id) {
     this.id = id;
   }
@@ -28,7 +60,120 @@ public abstract class AbstractState<T extends AbstractTransition<? extends Abstr
    */
   public abstract T[] toArray();
 
-  public abstract Iterator<T> iteratorTransitions(SingleEvent E);
+  /**
+   * @return An iterator over the transitions of the state on the event `E`.
+   *         The simulators use {@link #getTransitions(SingleEvent)}, which
+   *         does not allocate the iterator.
+   */
+  public Iterator<T> iteratorTransitions(SingleEvent E) {
+    final T[] transitions = getTransitions(E);
+    if (transitions.length == 0) {
+      return Collections.emptyIterator();
+    }
+    return new Iterator<T>() {
+      private int i = 0;
+
+      @Override
+      public boolean hasNext() {
+        return i < transitions.length;
+      }
+
+      @Override
+      public T next() {
+        if (i >= transitions.length) {
+          throw new NoSuchElementException();
+        }
+        return transitions[i++];
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * Search the transitions on an event in the index of the state, without
+   * allocation. The index is built by {@link #buildTransitionIndex()} if
+   * needed, or if it is stale.
+   * 
+   * @return The transitions of the state on the event `event`, in the order
+   *         of {@link #iterator()}. The array is shared and must not be
+   *         modified.
+   */
+  public T[] getTransitions(SingleEvent event) {
+    TransitionIndex<T> index = transition_index;
+    if (index == null
+        || index.events_modification_count != Events.getModificationCount()) {
+      index = createTransitionIndex();
+    }
+    if (event == null) {
+      return index.no_transition;
+    }
+    int position = Arrays.binarySearch(index.event_ids, event.getId());
+    if (position < 0) {
+      return index.no_transition;
+    }
+    return index.transitions_by_event[position];
+  }
+
+  /**
+   * Build the index of the transitions by event used by
+   * {@link #getTransitions(SingleEvent)}. It is called by
+   * {@link AbstractModel#build()}, and again when the index has been
+   * invalidated by the addition of a transition or of an event to a
+   * transition.
+   */
+  public void buildTransitionIndex() {
+    createTransitionIndex();
+  }
+
+  @SuppressWarnings("unchecked")
+  private TransitionIndex<T> createTransitionIndex() {
+    /* Read first, so that an event added meanwhile makes the index stale */
+    int events_modification_count = Events.getModificationCount();
+    T[] all_transitions = toArray();
+    TreeMap<Integer, Integer> number_transitions =
+        new TreeMap<Integer, Integer>();
+    for (T transition : all_transitions) {
+      for (SingleEvent event : transition.getEvents()) {
+        Integer number = number_transitions.get(event.getId());
+        number_transitions.put(event.getId(), number == null ? 1 : number + 1);
+      }
+    }
+
+    int[] event_ids = new int[number_transitions.size()];
+    T[][] transitions_by_event = (T[][]) Array.newInstance(
+        all_transitions.getClass(), number_transitions.size());
+    int i = 0;
+    for (Entry<Integer, Integer> entry : number_transitions.entrySet()) {
+      event_ids[i] = entry.getKey();
+      transitions_by_event[i] = Arrays.copyOf(all_transitions, entry
+          .getValue());
+      i++;
+    }
+    int[] filled = new int[event_ids.length];
+    for (T transition : all_transitions) {
+      for (SingleEvent event : transition.getEvents()) {
+        int position = Arrays.binarySearch(event_ids, event.getId());
+        transitions_by_event[position][filled[position]++] = transition;
+      }
+    }
+
+    TransitionIndex<T> index = new TransitionIndex<T>(event_ids,
+        transitions_by_event, Arrays.copyOf(all_transitions, 0),
+        events_modification_count);
+    transition_index = index;
+    return index;
+  }
+
+  /**
+   * Must be called when the transitions of the state are modified.
+   */
+  protected void invalidateTransitionIndex() {
+    transition_index = null;
+  }
 
   public abstract void addTransition(T t);
 
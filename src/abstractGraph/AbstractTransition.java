@@ -1,5 +1,6 @@
 package abstractGraph;
 
+import abstractGraph.conditions.CompiledFormula;
 import abstractGraph.conditions.Formula;
 import abstractGraph.events.Actions;
 import abstractGraph.events.Events;
@@ -9,6 +10,11 @@ public abstract class AbstractTransition<S extends AbstractState<? extends Abstr
   protected Events events;
   protected Formula condition;
   protected Actions actions;
+  /**
+   * The compiled form of the condition, built at its first use. It is built
+   * again if the condition has been replaced.
+   */
+  private CompiledFormula compiled_condition = null;
 
   /**
    * Construct a new formula. Only from and to MUST be not null.
@@ -75,6 +81,19 @@ public abstract class AbstractTransition<S extends AbstractState<? extends Abstr
     }
   }
 
+  /**
+   * @return The condition compiled into a flat program (see
+   *         {@link CompiledFormula}), used by {@link #evalCondition}.
+   */
+  public CompiledFormula getCompiledCondition() {
+    CompiledFormula result = compiled_condition;
+    if (result == null || result.getFormula() != getCondition()) {
+      result = CompiledFormula.compile(getCondition());
+      compiled_condition = result;
+    }
+    return result;
+  }
+
   /**
    * @return The actions field if not null. Actions.NONE otherwise.
    */
@@ -0,0 +1,220 @@
+package abstractGraph.conditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import abstractGraph.conditions.valuation.AbstractValuation;
+import domainSpecificLanguage.DSLGlobalState.CompactValuation;
+
+/**
+ * @brief
+ *        A formula flattened into a program evaluated in a loop, without the
+ *        recursive calls of {@link Formula#eval(AbstractValuation)}.
+ *
+ * @details
+ *          Every instruction has {@value #WIDTH} integers: the operation and
+ *          its operands. The program has a single boolean register: a leaf
+ *          writes it, NEGATE inverts it, and the AND and OR are conditional
+ *          jumps over their second operand, so the evaluation is
+ *          short-circuited exactly as in the formula.
+ *
+ *          The leaves read the bytes of a {@link CompactValuation} by the
+ *          unique identifier of their variable. With another valuation, or for
+ *          the formulas that cannot be compiled (e.g. the CNF literals), the
+ *          leaf formula is evaluated with
+ *          {@link Formula#eval(AbstractValuation)}: the result and the
+ *          exceptions raised are always the ones of the formula.
+ */
+public class CompiledFormula {
+
+  private static final int WIDTH = 4;
+
+  /* The operations, and their operands */
+  /** register = value */
+  private static final int CONSTANT = 0;
+  /** register = variable (unique identifier, -, leaf) */
+  private static final int VARIABLE = 1;
+  /** register = (variable == value) (unique identifier, value, leaf) */
+  private static final int EQUAL = 2;
+  /** register = (variable != value) (unique identifier, value, leaf) */
+  private static final int NOT_EQUAL = 3;
+  /** register = leaf.eval() (-, -, leaf) */
+  private static final int FORMULA = 4;
+  /** register = !register */
+  private static final int NEGATE = 5;
+  /** Go to the instruction `target` if the register is false (target) */
+  private static final int JUMP_IF_FALSE = 6;
+  /** Go to the instruction `target` if the register is true (target) */
+  private static final int JUMP_IF_TRUE = 7;
+
+  private final Formula formula;
+  private final int[] program;
+  private final Formula[] leaves;
+
+  private CompiledFormula(Formula formula, int[] program, Formula[] leaves) {
+    this.formula = formula;
+    this.program = program;
+    this.leaves = leaves;
+  }
+
+  /**
+   * @return The compiled form of `formula`. A null formula is true.
+   */
+  public static CompiledFormula compile(Formula formula) {
+    if (formula == null) {
+      formula = Formula.TRUE;
+    }
+    Compiler compiler = new Compiler();
+    compiler.compile(formula);
+    return new CompiledFormula(formula, Arrays.copyOf(compiler.program,
+        compiler.size), compiler.leaves.toArray(new Formula[0]));
+  }
+
+  /**
+   * @return The formula that was compiled.
+   */
+  public Formula getFormula() {
+    return formula;
+  }
+
+  /**
+   * Evaluate the formula within an environment.
+   *
+   * @param valuation
+   *          The valuation for the variables.
+   * @return The evaluation of the formula, identical to
+   *         {@link Formula#eval(AbstractValuation)}.
+   */
+  public boolean eval(AbstractValuation valuation) {
+    CompactValuation compact_valuation = null;
+    if (valuation instanceof CompactValuation) {
+      compact_valuation = (CompactValuation) valuation;
+    }
+    final int[] program = this.program;
+    boolean register = false;
+    int i = 0;
+    while (i < program.length) {
+      switch (program[i]) {
+      case CONSTANT:
+        register = program[i + 1] != 0;
+        break;
+      case VARIABLE:
+        if (compact_valuation != null) {
+          register = BooleanVariable.getBooleanFromByte(compact_valuation
+              .getByte(program[i + 1]));
+        } else {
+          register = leaves[program[i + 3]].eval(valuation);
+        }
+        break;
+      case EQUAL:
+        if (compact_valuation != null) {
+          register = compact_valuation.getByte(program[i + 1]) == program[i + 2];
+        } else {
+          register = leaves[program[i + 3]].eval(valuation);
+        }
+        break;
+      case NOT_EQUAL:
+        if (compact_valuation != null) {
+          register = compact_valuation.getByte(program[i + 1]) != program[i + 2];
+        } else {
+          register = leaves[program[i + 3]].eval(valuation);
+        }
+        break;
+      case FORMULA:
+        register = leaves[program[i + 3]].eval(valuation);
+        break;
+      case NEGATE:
+        register = !register;
+        break;
+      case JUMP_IF_FALSE:
+        if (!register) {
+          i = program[i + 1];
+          continue;
+        }
+        break;
+      case JUMP_IF_TRUE:
+        if (register) {
+          i = program[i + 1];
+          continue;
+        }
+        break;
+      default:
+        throw new Error("Impossible case: unknown operation " + program[i]);
+      }
+      i += WIDTH;
+    }
+    return register;
+  }
+
+  /**
+   * @return The number of instructions of the program.
+   */
+  public int size() {
+    return program.length / WIDTH;
+  }
+
+  @Override
+  public String toString() {
+    return formula.toString();
+  }
+
+  /**
+   * Write the program of a formula.
+   */
+  private static class Compiler {
+    private int[] program = new int[4 * WIDTH];
+    private int size = 0;
+    private ArrayList<Formula> leaves = new ArrayList<Formula>();
+
+    /**
+     * Append the instruction and return its position.
+     */
+    private int emit(int operation, int operand_1, int operand_2, Formula leaf) {
+      if (size + WIDTH > program.length) {
+        program = Arrays.copyOf(program, program.length * 2);
+      }
+      int position = size;
+      program[size++] = operation;
+      program[size++] = operand_1;
+      program[size++] = operand_2;
+      if (leaf == null) {
+        program[size++] = -1;
+      } else {
+        program[size++] = leaves.size();
+        leaves.add(leaf);
+      }
+      return position;
+    }
+
+    private void compile(Formula formula) {
+      if (formula instanceof True) {
+        emit(CONSTANT, 1, 0, null);
+      } else if (formula instanceof False) {
+        emit(CONSTANT, 0, 0, null);
+      } else if (formula instanceof BooleanVariable) {
+        emit(VARIABLE, ((BooleanVariable) formula).getUniqueIdentifier(), 0,
+            formula);
+      } else if (formula instanceof EnumerationEqualityFormula) {
+        EnumerationEqualityFormula equality =
+            (EnumerationEqualityFormula) formula;
+        emit(equality.isNot() ? NOT_EQUAL : EQUAL, equality.getVariable()
+            .getUniqueIdentifier(), equality.getValue(), formula);
+      } else if (formula instanceof NotFormula) {
+        compile(((NotFormula) formula).getF());
+        emit(NEGATE, 0, 0, null);
+      } else if (formula instanceof AndFormula) {
+        compile(((AndFormula) formula).getFirst());
+        int jump = emit(JUMP_IF_FALSE, 0, 0, null);
+        compile(((AndFormula) formula).getSecond());
+        program[jump + 1] = size;
+      } else if (formula instanceof OrFormula) {
+        compile(((OrFormula) formula).getFirst());
+        int jump = emit(JUMP_IF_TRUE, 0, 0, null);
+        compile(((OrFormula) formula).getSecond());
+        program[jump + 1] = size;
+      } else {
+        emit(FORMULA, 0, 0, formula);
+      }
+    }
+  }
+}
@@ -56,6 +56,14 @@ public class Enumeration {
     return enumeration_name;
   }
 
+  /**
+   * @return The number of values of the enumeration. The byte values used are
+   *         the `size()` first ones starting at -128.
+   */
+  public int size() {
+    return names.size();
+  }
+
   @Override
   public String toString() {
     StringBuffer buffer = new StringBuffer("enumeration " + enumeration_name
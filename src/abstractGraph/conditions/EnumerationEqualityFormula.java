@@ -24,6 +24,21 @@ public class EnumerationEqualityFormula extends Formula {
     this.is_not = is_not;
   }
 
+  public EnumeratedVariable getVariable() {
+    return variable;
+  }
+
+  public byte getValue() {
+    return value;
+  }
+
+  /**
+   * @return True for (x != v), false for (x = v).
+   */
+  public boolean isNot() {
+    return is_not;
+  }
+
   @Override
   public HashSet<EnumeratedVariable> allVariables(
       HashSet<EnumeratedVariable> vars) {
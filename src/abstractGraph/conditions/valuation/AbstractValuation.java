@@ -5,6 +5,13 @@ import abstractGraph.conditions.EnumeratedVariable;
 
 public abstract class AbstractValuation {
 
+  /**
+   * Zobrist hash of the valuation (see {@link utils.Zobrist}), updated by the
+   * implementations every time a variable changes. It is returned by
+   * {@link #hashCode()}.
+   */
+  protected int zobrist_hash = 0;
+
   /**
    * 
    * @return The number of internal variables that are managed.
@@ -45,7 +52,13 @@ public abstract class AbstractValuation {
 
   public abstract Object clone();
 
-  public abstract int hashCode();
+  /**
+   * @return The Zobrist hash of the valuation, computed in O(1).
+   */
+  @Override
+  public int hashCode() {
+    return zobrist_hash;
+  }
 
   public abstract boolean equals(Object obj);
 
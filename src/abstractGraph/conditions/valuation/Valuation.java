@@ -7,6 +7,7 @@ import java.util.Set;
 
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 import utils.Monitoring;
+import utils.Zobrist;
 import abstractGraph.conditions.BooleanVariable;
 import abstractGraph.conditions.EnumeratedVariable;
 
@@ -43,10 +44,21 @@ public class Valuation extends AbstractValuation {
     return res.booleanValue();
   }
 
+  /**
+   * The key of a defined variable in the Zobrist hash. The undefined
+   * variables are not in the hash.
+   */
+  private static int zobristKey(BooleanVariable var, boolean value) {
+    return Zobrist.key(var.hashCode(), value ? 2 : 1);
+  }
+
   @Override
   public boolean setValue(BooleanVariable var, boolean value) {
-    Boolean old_value = valuation.get(var);
-    valuation.put(var, value);
+    Boolean old_value = valuation.put(var, value);
+    if (old_value != null) {
+      zobrist_hash ^= zobristKey(var, old_value);
+    }
+    zobrist_hash ^= zobristKey(var, value);
 
     return old_value != null && !old_value.equals(value);
   }
@@ -68,7 +80,10 @@ public class Valuation extends AbstractValuation {
    * Remove the given variable from the valuation.
    */
   public void remove(BooleanVariable var) {
-    valuation.remove(var);
+    Boolean old_value = valuation.remove(var);
+    if (old_value != null) {
+      zobrist_hash ^= zobristKey(var, old_value);
+    }
   }
 
   private static final boolean DEBUG = false;
@@ -99,14 +114,7 @@ public class Valuation extends AbstractValuation {
   public Valuation clone() {
     Valuation result = new Valuation(valuation.size());
     result.valuation = (HashMap<BooleanVariable, Boolean>) valuation.clone();
-    return result;
-  }
-
-  @Override
-  public int hashCode() {
-    final int prime = 31;
-    int result = 1;
-    result = prime * result + ((valuation == null) ? 0 : valuation.hashCode());
+    result.zobrist_hash = zobrist_hash;
     return result;
   }
 
@@ -132,6 +140,7 @@ public class Valuation extends AbstractValuation {
 
   public void clear() {
     valuation.clear();
+    zobrist_hash = 0;
   }
 
   @Override
@@ -152,7 +161,8 @@ public class Valuation extends AbstractValuation {
   }
 
   /**
-   * @return A set of the Pair of defined variables.
+   * @return A set of the Pair of defined variables. It must not be modified,
+   *         otherwise the hash of the valuation is not updated.
    */
   public Set<Entry<BooleanVariable, Boolean>> getSetVariables() {
     return valuation.entrySet();
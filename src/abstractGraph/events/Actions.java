@@ -75,12 +75,28 @@ public class Actions implements Iterable<SingleEvent> {
       return false;
     }
 
-    for (int i = 0; i < events.size(); i++) {
-      if (!events.get(i).toString().equals(other.events.get(i).toString())) {
+    Iterator<SingleEvent> other_iterator = other.events.iterator();
+    for (SingleEvent event : events) {
+      if (!sameAction(event, other_iterator.next())) {
         return false;
       }
     }
     return true;
   }
 
+  /**
+   * @return True if the two actions have the same textual representation,
+   *         which is their name, except for the assignments which also print
+   *         their value.
+   */
+  private static boolean sameAction(SingleEvent e1, SingleEvent e2) {
+    if (e1 == e2) {
+      return true;
+    }
+    if (e1 instanceof Assignment || e2 instanceof Assignment) {
+      return e1.toString().equals(e2.toString());
+    }
+    return e1.getId() == e2.getId();
+  }
+
 }
\ No newline at end of file
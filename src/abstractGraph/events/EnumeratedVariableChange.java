@@ -39,11 +39,11 @@ public class EnumeratedVariableChange extends InternalEvent {
     if (getClass() != obj.getClass())
       return false;
     EnumeratedVariableChange other = (EnumeratedVariableChange) obj;
-    if (variable == null) {
-      if (other.variable != null)
-        return false;
-    } else if (!variable.equals(other.variable))
-      return false;
-    return true;
+    /*
+     * The variables are compared by identity, as in hashCode. Formula.equals
+     * compares boolean formulas semantically and does not support the
+     * enumerated variables.
+     */
+    return variable == other.variable;
   }
 }
@@ -0,0 +1,84 @@
+package abstractGraph.events;
+
+import java.util.NoSuchElementException;
+
+/**
+ * @brief
+ *        A FIFO queue of event ids (see {@link SingleEvent#getId()}) in a
+ *        circular array that is reused: adding and polling ids does not
+ *        allocate anything once the array is large enough.
+ *
+ * @details
+ *          The capacity is a power of 2 and is doubled when the queue is full.
+ *          The simulators give back the events from their ids with an
+ *          {@link EventTable}.
+ *          This class is NOT thread safe.
+ */
+public class EventQueue {
+  private int[] elements = new int[16];
+  private int head = 0;
+  private int size = 0;
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void add(int event) {
+    if (size == elements.length) {
+      int[] new_elements = new int[elements.length * 2];
+      for (int i = 0; i < size; i++) {
+        new_elements[i] = elements[(head + i) & (elements.length - 1)];
+      }
+      elements = new_elements;
+      head = 0;
+    }
+    elements[(head + size) & (elements.length - 1)] = event;
+    size++;
+  }
+
+  /**
+   * Add the ids of `queue`, from its head, at the end of this queue.
+   */
+  public void addAll(EventQueue queue) {
+    for (int i = 0; i < queue.size; i++) {
+      add(queue.elements[(queue.head + i) & (queue.elements.length - 1)]);
+    }
+  }
+
+  /**
+   * @return The `index`-th id from the head of the queue, which is not
+   *         removed.
+   */
+  public int get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " in a queue of "
+          + size + " events.");
+    }
+    return elements[(head + index) & (elements.length - 1)];
+  }
+
+  /**
+   * Remove and return the head of the queue.
+   *
+   * @throws NoSuchElementException
+   *           if the queue is empty.
+   */
+  public int poll() {
+    if (size == 0) {
+      throw new NoSuchElementException("The event queue is empty.");
+    }
+    int event = elements[head];
+    head = (head + 1) & (elements.length - 1);
+    size--;
+    return event;
+  }
+
+  public void clear() {
+    head = 0;
+    size = 0;
+  }
+}
@@ -0,0 +1,58 @@
+package abstractGraph.events;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
+/**
+ * The events put in the {@link EventQueue}s of a simulator, indexed by their
+ * id, to give back the events from the ids of the queues.
+ *
+ * @details
+ *          The ids are interned per name, and the events sharing a name are
+ *          equal (see {@link SingleEvent#equals(Object)}): the table keeps the
+ *          last one put.
+ *          This class is NOT thread safe.
+ */
+public class EventTable {
+  private SingleEvent[] events = new SingleEvent[16];
+
+  /**
+   * Record `event` in the table.
+   *
+   * @return The id of `event`, to add in an {@link EventQueue}.
+   */
+  public int put(SingleEvent event) {
+    int id = event.getId();
+    if (id < 0) {
+      throw new IllegalArgumentException("The event " + event
+          + " has no name and cannot be queued.");
+    }
+    if (id >= events.length) {
+      int length = events.length;
+      while (length <= id) {
+        length *= 2;
+      }
+      events = Arrays.copyOf(events, length);
+    }
+    events[id] = event;
+    return id;
+  }
+
+  /**
+   * @return The last event put in the table with the id `id`.
+   */
+  public SingleEvent get(int id) {
+    return events[id];
+  }
+
+  /**
+   * @return A new list of the events of `queue`, from its head.
+   */
+  public LinkedList<SingleEvent> toList(EventQueue queue) {
+    LinkedList<SingleEvent> result = new LinkedList<SingleEvent>();
+    for (int i = 0; i < queue.size(); i++) {
+      result.add(events[queue.get(i)]);
+    }
+    return result;
+  }
+}
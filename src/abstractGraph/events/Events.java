@@ -1,8 +1,11 @@
 package abstractGraph.events;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.management.openmbean.KeyAlreadyExistsException;
 
@@ -14,13 +17,29 @@ public class Events implements Iterable<SingleEvent> {
   public static final Events NONE = new Events();
 
   protected Set<SingleEvent> events;
+  /** A read-only view of `events`, which must stay in sync with event_ids */
+  private final Set<SingleEvent> read_only_events;
+  /**
+   * The ids of the events (see {@link SingleEvent#getId()}), sorted. The
+   * membership tests are done on it: a transition has very few events, so it
+   * is faster than hashing their names.
+   */
+  private int[] event_ids = new int[0];
+  /**
+   * Incremented by every addition of an event to any Events, so that the
+   * indexes built on the events (see
+   * {@link abstractGraph.AbstractState#getTransitions(SingleEvent)}) know
+   * they are stale. The events are only added while the models are built.
+   */
+  private static final AtomicInteger modification_count = new AtomicInteger();
 
   public Events() {
     events = new LinkedHashSet<>();
+    read_only_events = Collections.unmodifiableSet(events);
   }
 
   public boolean containsEvent(SingleEvent event) {
-    return event != null && events.contains(event);
+    return event != null && Arrays.binarySearch(event_ids, event.getId()) >= 0;
   }
 
   /**
@@ -31,9 +50,17 @@ public class Events implements Iterable<SingleEvent> {
    * @return True if events_2 has a common element with `this`.
    */
   public boolean notEmptyIntersection(Events events_2) {
-    for (SingleEvent event : events) {
-      if (events_2.events.contains(event)) {
+    int[] ids_1 = event_ids;
+    int[] ids_2 = events_2.event_ids;
+    int i = 0;
+    int j = 0;
+    while (i < ids_1.length && j < ids_2.length) {
+      if (ids_1[i] == ids_2[j]) {
         return true;
+      } else if (ids_1[i] < ids_2[j]) {
+        i++;
+      } else {
+        j++;
       }
     }
     return false;
@@ -56,9 +83,24 @@ public class Events implements Iterable<SingleEvent> {
           + " already exist in " + events);
     } else {
       events.add(event);
+      int position = -Arrays.binarySearch(event_ids, event.getId()) - 1;
+      int[] new_event_ids = new int[event_ids.length + 1];
+      System.arraycopy(event_ids, 0, new_event_ids, 0, position);
+      new_event_ids[position] = event.getId();
+      System.arraycopy(event_ids, position, new_event_ids, position + 1,
+          event_ids.length - position);
+      event_ids = new_event_ids;
+      modification_count.incrementAndGet();
     }
   }
 
+  /**
+   * @return The number of events added to all the Events so far.
+   */
+  public static int getModificationCount() {
+    return modification_count.get();
+  }
+
   @Override
   public String toString() {
     return toString(null);
@@ -78,12 +120,19 @@ public class Events implements Iterable<SingleEvent> {
     return sb.toString();
   }
 
+  /**
+   * @return A read-only iterator: the events cannot be removed.
+   */
   @Override
   public Iterator<SingleEvent> iterator() {
-    return events.iterator();
+    return read_only_events.iterator();
   }
 
+  /**
+   * @return A read-only view of the events. They must be added with
+   *         {@link #addEvent(SingleEvent)}.
+   */
   public Set<SingleEvent> getCollection() {
-    return events;
+    return read_only_events;
   }
 }
@@ -1,11 +1,23 @@
 package abstractGraph.events;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import abstractGraph.conditions.CustomToString;
 
 public abstract class SingleEvent {
 
   /* SingleEvents are immutable */
   protected final String name;
+  /**
+   * The identifier of the name of the event: two events are equal if and only
+   * if they have the same id.
+   */
+  private final int id;
+
+  private static final ConcurrentHashMap<String, Integer> ids =
+      new ConcurrentHashMap<String, Integer>();
+  private static final AtomicInteger next_id = new AtomicInteger(0);
 
   /**
    * Creates a new event using the name `name`.
@@ -15,24 +27,54 @@ public abstract class SingleEvent {
    */
   public SingleEvent(String name) {
     this.name = name;
+    this.id = internName(name);
+  }
+
+  /**
+   * @return The unique id of `name`, allocated at its first use. -1 for null.
+   */
+  private static int internName(String name) {
+    if (name == null) {
+      return -1;
+    }
+    Integer id = ids.get(name);
+    if (id == null) {
+      Integer new_id = next_id.getAndIncrement();
+      id = ids.putIfAbsent(name, new_id);
+      if (id == null) {
+        id = new_id;
+      }
+    }
+    return id;
   }
 
   public String getName() {
     return name;
   }
 
+  /**
+   * @return A small non-negative integer identifying the name of the event,
+   *         shared by all the equal events.
+   */
+  public int getId() {
+    return id;
+  }
+
   @Override
   public int hashCode() {
-    final int prime = 31;
-    int result = 1;
-    result = prime * result + ((name == null) ? 0 : name.hashCode());
-    return result;
+    return id;
   }
 
   @Override
   public boolean equals(Object obj) {
-    SingleEvent e2 = (SingleEvent) obj;
-    return this.name.equals(e2.name);
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof SingleEvent)) {
+      return false;
+    }
+    /* The ids are interned from the names */
+    return this.id == ((SingleEvent) obj).id;
   }
 
   @Override
@@ -4,6 +4,7 @@ import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
+import utils.Zobrist;
 import abstractGraph.conditions.BooleanVariable;
 import abstractGraph.conditions.EnumeratedVariable;
 import abstractGraph.conditions.valuation.AbstractValuation;
@@ -26,6 +27,7 @@ public class CompactValuation extends AbstractValuation {
 
   private CompactValuation(CompactValuation dsl_valuation) {
     this.valuation = dsl_valuation.valuation.clone();
+    this.zobrist_hash = dsl_valuation.zobrist_hash;
   }
 
   public CompactValuation clone() {
@@ -42,11 +44,38 @@ public class CompactValuation extends AbstractValuation {
     return res.byteValue();
   }
 
+  /**
+   * @return The value of the variable of unique identifier `index`, without
+   *         checks. Used by the compiled formulas.
+   */
+  public byte getByte(int index) {
+    return valuation[index];
+  }
+
   public boolean setValue(EnumeratedVariable var, byte value) {
-    byte old_value = valuation[var.getUniqueIdentifier()];
-    valuation[var.getUniqueIdentifier()] = value;
+    return setByte(var.getUniqueIdentifier(), value);
+  }
 
-    return old_value != value;
+  /**
+   * Set the value of the variable of index `index` and update the Zobrist
+   * hash. The variables whose value is 0 are not in the hash, so that the
+   * hash of a new valuation is 0.
+   *
+   * @return true if the value changed.
+   */
+  private boolean setByte(int index, byte value) {
+    byte old_value = valuation[index];
+    if (old_value == value) {
+      return false;
+    }
+    if (old_value != 0) {
+      zobrist_hash ^= Zobrist.key(index, old_value);
+    }
+    if (value != 0) {
+      zobrist_hash ^= Zobrist.key(index, value);
+    }
+    valuation[index] = value;
+    return true;
   }
 
   @Override
@@ -69,15 +98,6 @@ public class CompactValuation extends AbstractValuation {
     return string_buffer.toString();
   }
 
-  /* Generated using Eclipse */
-  @Override
-  public int hashCode() {
-    final int prime = 31;
-    int result = 1;
-    result = prime * result + Arrays.hashCode(valuation);
-    return result;
-  }
-
   /* Generated using Eclipse */
   @Override
   public boolean equals(Object obj) {
@@ -106,10 +126,8 @@ public class CompactValuation extends AbstractValuation {
 
   @Override
   public boolean setValue(BooleanVariable var, boolean value) {
-    byte old_value = valuation[var.getUniqueIdentifier()];
-    byte new_value = BooleanVariable.getByteFromBool(value);
-    valuation[var.getUniqueIdentifier()] = new_value;
-    return new_value != old_value;
+    return setByte(var.getUniqueIdentifier(),
+        BooleanVariable.getByteFromBool(value));
   }
 
   @Override
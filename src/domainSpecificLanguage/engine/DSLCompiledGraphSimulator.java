@@ -0,0 +1,306 @@
+package domainSpecificLanguage.engine;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+
+import abstractGraph.conditions.EnumeratedVariable;
+import abstractGraph.conditions.Formula;
+import abstractGraph.events.EventQueue;
+import abstractGraph.events.ExternalEvent;
+import abstractGraph.events.SingleEvent;
+import domainSpecificLanguage.DSLGlobalState.CompactValuation;
+import domainSpecificLanguage.DSLGlobalState.DSLGlobalState;
+import domainSpecificLanguage.graph.DSLModel;
+import domainSpecificLanguage.graph.DSLState;
+import domainSpecificLanguage.graph.DSLStateMachine;
+import domainSpecificLanguage.graph.DSLTransition;
+import engine.GraphSimulatorInterface;
+
+/**
+ * The base of the simulators generated by {@link DSLSimulatorGenerator} for a
+ * couple (functional model, proof model). The proof model can be null.
+ *
+ * @details
+ *          It executes the events exactly as the
+ *          {@link DSLSequentialGraphSimulator}, and gives the same global
+ *          states: the same queues are used in the same order, but they
+ *          contain the ids of the events (see {@link SingleEvent#getId()}).
+ *          The generated subclass implements
+ *          {@link #processFunctional(DSLGlobalState, CompactValuation, int, EventQueue)}
+ *          and
+ *          {@link #processProof(DSLGlobalState, CompactValuation, int, EventQueue)}
+ *          , with the transitions, conditions and actions of the state
+ *          machines written in the code.
+ *
+ *          The list of the commands and the lists of the transitions pull of
+ *          the interpreted simulator are not built, and the verbose mode does
+ *          not exist.
+ *
+ *          This class is NOT thread safe.
+ */
+public abstract class DSLCompiledGraphSimulator
+    implements
+    GraphSimulatorInterface<DSLGlobalState, DSLStateMachine, DSLState, DSLTransition> {
+
+  /**
+   * The objects of the models used by the generated code, by index. They are
+   * shared by the clones of the simulator.
+   */
+  public static class Tables {
+    protected DSLModel model;
+    protected DSLModel proof;
+    /** The union of the variables of both models */
+    protected LinkedHashSet<EnumeratedVariable> all_variables;
+    /** The union of the state machines of both models */
+    protected LinkedList<DSLStateMachine> all_state_machines;
+
+    protected DSLStateMachine[] machines;
+    protected DSLState[] states;
+    protected EnumeratedVariable[] variables;
+    protected SingleEvent[] events;
+    protected Formula[] formulas;
+  }
+
+  protected final Tables tables;
+  protected final DSLStateMachine[] machines;
+  protected final DSLState[] states;
+  protected final EnumeratedVariable[] variables;
+  protected final SingleEvent[] events;
+  protected final Formula[] formulas;
+
+  /* The queues of the interpreted simulator */
+  protected final EventQueue internal_functional_event_queue = new EventQueue();
+  protected final EventQueue internal_proof_event_queue = new EventQueue();
+  protected final EventQueue external_proof_event_queue = new EventQueue();
+  protected final EventQueue temporary_commands_queue = new EventQueue();
+  protected final EventQueue ACT_FCI_queue = new EventQueue();
+  /** The variable changes generated during a step, added at its end */
+  protected final EventQueue temporary_queue = new EventQueue();
+  private final EventQueue transfert_list = new EventQueue();
+
+  /**
+   * The assignments of a step, applied at its end: the value of the k-th
+   * variable of the tables is temporary_values[k] if temporary_assigned[k].
+   */
+  private final byte[] temporary_values;
+  private final boolean[] temporary_assigned;
+  private final int[] temporary_variables;
+  private int number_temporary_variables = 0;
+
+  protected LinkedList<ExternalEvent> restrained_external_event_list = null;
+
+  protected DSLCompiledGraphSimulator(Tables tables) {
+    this.tables = tables;
+    this.machines = tables.machines;
+    this.states = tables.states;
+    this.variables = tables.variables;
+    this.events = tables.events;
+    this.formulas = tables.formulas;
+    temporary_values = new byte[variables.length];
+    temporary_assigned = new boolean[variables.length];
+    temporary_variables = new int[variables.length];
+  }
+
+  /**
+   * Execute a single event in the functional model, as
+   * {@link DSLSequentialGraphSimulator#processSingleEvent}. It must end by
+   * {@link #endStep(DSLGlobalState, EventQueue)}.
+   *
+   * @param event
+   *          The id of the event to process. -1 to execute no event.
+   */
+  protected abstract void processFunctional(DSLGlobalState global_state,
+      CompactValuation valuation, int event, EventQueue event_list);
+
+  /**
+   * Same as
+   * {@link #processFunctional(DSLGlobalState, CompactValuation, int, EventQueue)}
+   * in the proof model.
+   */
+  protected abstract void processProof(DSLGlobalState global_state,
+      CompactValuation valuation, int event, EventQueue event_list);
+
+  /**
+   * Add the possible external events of the current states of the machines
+   * in `result`, in the order of
+   * {@link DSLSequentialGraphSimulator#getPossibleEvent}, using
+   * {@link #addPossibleEvent(LinkedHashSet, int)}.
+   */
+  protected abstract void addPossibleEvents(DSLGlobalState global_state,
+      LinkedHashSet<ExternalEvent> result);
+
+  /**
+   * Record the assignment of the k-th variable of the tables. The last
+   * assignment of the step is kept.
+   */
+  protected final void assign(int variable, byte value, int event) {
+    if (!temporary_assigned[variable]) {
+      temporary_assigned[variable] = true;
+      temporary_variables[number_temporary_variables++] = variable;
+    }
+    temporary_values[variable] = value;
+    temporary_queue.add(event);
+  }
+
+  /**
+   * Apply the assignments of the step and add the variable changes at the end
+   * of `event_list`.
+   */
+  protected final void endStep(DSLGlobalState global_state,
+      EventQueue event_list) {
+    CompactValuation valuation = global_state.getValuation();
+    for (int i = 0; i < number_temporary_variables; i++) {
+      int variable = temporary_variables[i];
+      valuation.setValue(variables[variable], temporary_values[variable]);
+      temporary_assigned[variable] = false;
+    }
+    number_temporary_variables = 0;
+    event_list.addAll(temporary_queue);
+    temporary_queue.clear();
+  }
+
+  /**
+   * @return The value of the k-th formula of the tables. Used for the
+   *         formulas that are not written in the code.
+   */
+  protected final boolean evalFormula(int formula, CompactValuation valuation) {
+    return formulas[formula].eval(valuation);
+  }
+
+  protected final Error unknownState(int machine, DSLState state) {
+    return new Error("The state " + state + " is not a state of "
+        + machines[machine].getName());
+  }
+
+  @Override
+  public DSLGlobalState execute(DSLGlobalState starting_state,
+      ExternalEvent event) {
+    DSLGlobalState result = starting_state.clone();
+    executeSimulator(result, event == null ? -1 : event.getId(), event != null);
+    /* The ACT generated by the commands, as the nested executions do */
+    while (!ACT_FCI_queue.isEmpty()) {
+      executeSimulator(result, ACT_FCI_queue.poll(), true);
+    }
+    return result;
+  }
+
+  /**
+   * Execute an external event in the functional model then in the proof
+   * model, as {@link DSLSequentialGraphSimulator#executeSimulator}, on
+   * `global_state` modified in place.
+   */
+  private void executeSimulator(DSLGlobalState global_state, int event,
+      boolean has_event) {
+    CompactValuation valuation = global_state.getValuation();
+    external_proof_event_queue.clear();
+    if (has_event) {
+      external_proof_event_queue.add(event);
+    }
+
+    int current_event = event;
+    while (true) {
+      transfert_list.clear();
+      processFunctional(global_state, valuation, current_event, transfert_list);
+      internal_functional_event_queue.addAll(transfert_list);
+      external_proof_event_queue.addAll(transfert_list);
+      external_proof_event_queue.addAll(temporary_commands_queue);
+      temporary_commands_queue.clear();
+
+      if (internal_functional_event_queue.isEmpty()) {
+        break;
+      }
+      current_event = internal_functional_event_queue.poll();
+    }
+
+    if (tables.proof != null) {
+      while (!external_proof_event_queue.isEmpty()) {
+        processProof(global_state, valuation,
+            external_proof_event_queue.poll(), internal_proof_event_queue);
+        while (!internal_proof_event_queue.isEmpty()) {
+          processProof(global_state, valuation,
+              internal_proof_event_queue.poll(), internal_proof_event_queue);
+        }
+      }
+    }
+  }
+
+  /**
+   * Add the k-th event of the tables to `result` if it is not restrained.
+   */
+  protected final void addPossibleEvent(LinkedHashSet<ExternalEvent> result,
+      int event) {
+    ExternalEvent external_event = (ExternalEvent) events[event];
+    if (restrained_external_event_list == null
+        || restrained_external_event_list.contains(external_event)) {
+      result.add(external_event);
+    }
+  }
+
+  @Override
+  public LinkedHashSet<ExternalEvent> getPossibleEvent(
+      DSLGlobalState global_state) {
+    LinkedHashSet<ExternalEvent> result = new LinkedHashSet<ExternalEvent>();
+    addPossibleEvents(global_state, result);
+    return result;
+  }
+
+  public void setRestrainedExternalEventList(
+      LinkedList<ExternalEvent> external_event_list) {
+    restrained_external_event_list = external_event_list;
+  }
+
+  @Override
+  public DSLModel getModel() {
+    return tables.model;
+  }
+
+  @Override
+  public DSLModel getProof() {
+    return tables.proof;
+  }
+
+  @Override
+  public String globalStateToString(DSLGlobalState global_state) {
+    return global_state.toString(tables.all_state_machines,
+        tables.all_variables);
+  }
+
+  /**
+   * @return The initial global state, as
+   *         {@link DSLSequentialGraphSimulator#getInitialGlobalState()}.
+   */
+  public DSLGlobalState getInitialGlobalState() {
+    int number_variables = tables.model.variables.size()
+        + (tables.proof == null ? 0 : tables.proof.variables.size());
+    DSLGlobalState global_state = new DSLGlobalState(
+        tables.all_state_machines.size(), number_variables);
+    for (DSLStateMachine machine : tables.all_state_machines) {
+      global_state.setState(machine, machine.getInitial_state());
+    }
+    for (DSLModel model : Arrays.asList(tables.model, tables.proof)) {
+      if (model != null) {
+        for (EnumeratedVariable variable : model.initial_values.keySet()) {
+          global_state.setVariableValue(variable, model.initial_values
+              .get(variable));
+        }
+      }
+    }
+    return global_state;
+  }
+
+  @Override
+  public DSLCompiledGraphSimulator clone() {
+    try {
+      DSLCompiledGraphSimulator result = getClass()
+          .getConstructor(Tables.class).newInstance(tables);
+      if (restrained_external_event_list != null) {
+        result.restrained_external_event_list = new LinkedList<ExternalEvent>(
+            restrained_external_event_list);
+      }
+      return result;
+    } catch (ReflectiveOperationException e) {
+      throw new Error(e);
+    }
+  }
+}
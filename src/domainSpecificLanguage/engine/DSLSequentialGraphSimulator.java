@@ -1,12 +1,13 @@
 package domainSpecificLanguage.engine;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.Queue;
 
 import utils.Pair;
 import abstractGraph.AbstractGlobalState;
@@ -17,9 +18,10 @@ import abstractGraph.events.Assignment;
 import abstractGraph.events.CommandEvent;
 import abstractGraph.events.ComputerCommandFunction;
 import abstractGraph.events.EnumeratedVariableChange;
+import abstractGraph.events.EventQueue;
+import abstractGraph.events.EventTable;
 import abstractGraph.events.Events;
 import abstractGraph.events.ExternalEvent;
-import abstractGraph.events.InternalEvent;
 import abstractGraph.events.ModelCheckerEvent;
 import abstractGraph.events.SingleEvent;
 import abstractGraph.events.SynchronisationEvent;
@@ -30,6 +32,7 @@ import domainSpecificLanguage.graph.DSLState;
 import domainSpecificLanguage.graph.DSLStateMachine;
 import domainSpecificLanguage.graph.DSLTransition;
 import engine.GraphSimulatorInterface;
+import engine.TransitionsPullList;
 
 /**
  * A simulator for a couple (functional model, proof model).
@@ -41,28 +44,42 @@ public class DSLSequentialGraphSimulator<GS extends AbstractGlobalState<DSLState
     implements
     GraphSimulatorInterface<GS, DSLStateMachine, DSLState, DSLTransition> {
 
-  /** This is the list of the different queues used in the simulator. */
-  protected LinkedList<SingleEvent> internal_functional_event_queue =
-      new LinkedList<>();
-  protected LinkedList<SingleEvent> internal_proof_event_queue =
-      new LinkedList<>();
-  protected LinkedList<SingleEvent> commands_queue =
-      new LinkedList<>();
-  protected LinkedList<SingleEvent> temporary_commands_queue =
-      new LinkedList<>();
+  /**
+   * This is the list of the different queues used in the simulator. The queues
+   * of events contain their ids, and are reused from one execution to another.
+   */
+  protected EventQueue internal_functional_event_queue = new EventQueue();
+  protected EventQueue internal_proof_event_queue = new EventQueue();
+  protected EventQueue commands_queue = new EventQueue();
+  protected EventQueue temporary_commands_queue = new EventQueue();
   protected LinkedList<ExternalEvent> ACT_FCI_queue =
       new LinkedList<>();
-  protected LinkedHashMap<DSLStateMachine, DSLState> functionnal_transitions_pull_list =
-      new LinkedHashMap<>();
-  protected LinkedHashMap<DSLStateMachine, DSLState> proof_transitions_pull_list =
-      new LinkedHashMap<>();
+  protected TransitionsPullList<DSLStateMachine, DSLState> functionnal_transitions_pull_list =
+      new TransitionsPullList<>();
+  protected TransitionsPullList<DSLStateMachine, DSLState> proof_transitions_pull_list =
+      new TransitionsPullList<>();
   protected LinkedList<ExternalEvent> restrained_external_event_list = null;
-  protected HashMap<EnumeratedVariable, Byte> temporary_variable_change =
-      new HashMap<>();
 
   /* Only used when executing the micro-steps */
-  protected LinkedList<SingleEvent> external_proof_event_queue =
-      new LinkedList<SingleEvent>();
+  protected EventQueue external_proof_event_queue = new EventQueue();
+  /* The events transfered from the functional model to the proof model */
+  protected EventQueue transfert_list = new EventQueue();
+  /* The events of the queues, by id */
+  protected EventTable event_table = new EventTable();
+
+  /**
+   * The assignments of the current step, applied at its end and indexed by the
+   * unique identifier of the variables: the k-th variable is set to
+   * temporary_values[k] if temporary_variables[k] is not null.
+   */
+  private EnumeratedVariable[] temporary_variables = new EnumeratedVariable[16];
+  private byte[] temporary_values = new byte[16];
+  /* The identifiers of the variables assigned during the step */
+  private int[] temporary_identifiers = new int[16];
+  private int number_temporary_variables = 0;
+  /* The event generated by the assignment of a variable, by identifier */
+  private EnumeratedVariableChange[] variable_changes =
+      new EnumeratedVariableChange[16];
 
   /** This is the model to execute */
   protected DSLModel functional_model;
@@ -117,31 +134,57 @@ public class DSLSequentialGraphSimulator<GS extends AbstractGlobalState<DSLState
     DSLSequentialGraphSimulator<GS> result =
         new DSLSequentialGraphSimulator<>(this.functional_model, this.proof);
     result.setVerbose(this.verbose);
+    /* The clone must explore the same states */
+    if (restrained_external_event_list != null) {
+      result.setRestrainedExternalEventList(new LinkedList<ExternalEvent>(
+          restrained_external_event_list));
+    }
     return result;
   }
 
+  /**
+   * @return A copy of the transitions pull of the last step in the functional
+   *         model.
+   */
   public LinkedHashMap<DSLStateMachine, DSLState> getFunctionnalTransitionsPullList() {
-    return functionnal_transitions_pull_list;
+    return functionnal_transitions_pull_list.toLinkedHashMap();
   }
 
+  /**
+   * @return A copy of the transitions pull of the last step in the proof
+   *         model.
+   */
   public LinkedHashMap<DSLStateMachine, DSLState> getProofTransitionsPullList() {
-    return proof_transitions_pull_list;
+    return proof_transitions_pull_list.toLinkedHashMap();
   }
 
+  /**
+   * @return A copy of the queue of the internal events of the functional
+   *         model.
+   */
   public LinkedList<SingleEvent> getInternalFunctionalEventQueue() {
-    return internal_functional_event_queue;
+    return event_table.toList(internal_functional_event_queue);
   }
 
+  /**
+   * @return A copy of the queue of the internal events of the proof model.
+   */
   public LinkedList<SingleEvent> getInternalProofEventQueue() {
-    return internal_proof_event_queue;
+    return event_table.toList(internal_proof_event_queue);
   }
 
+  /**
+   * @return A copy of the queue of the events sent to the proof model.
+   */
   public LinkedList<SingleEvent> getExternalProofEventQueue() {
-    return external_proof_event_queue;
+    return event_table.toList(external_proof_event_queue);
   }
 
+  /**
+   * @return A copy of the commands generated during the last step.
+   */
   public LinkedList<SingleEvent> getCommandsQueue() {
-    return commands_queue;
+    return event_table.toList(commands_queue);
   }
 
   public void setVerbose(boolean value) {
@@ -177,10 +220,7 @@ public class DSLSequentialGraphSimulator<GS extends AbstractGlobalState<DSLState
   }
 
   /* Used for the next function */
-  private LinkedHashMap<DSLStateMachine, DSLState> temporary_tag =
-      new LinkedHashMap<>();
-  private LinkedList<InternalEvent> temporary_queue =
-      new LinkedList<>();
+  private EventQueue temporary_queue = new EventQueue();
 
   /**
    * Execute a single event (that can be either external or internal).
@@ -208,18 +248,13 @@ public class DSLSequentialGraphSimulator<GS extends AbstractGlobalState<DSLState
   protected void processSingleEvent(
       DSLModel model,
       AbstractGlobalState<DSLStateMachine, DSLState, DSLTransition, ?> global_state,
-      SingleEvent event, LinkedList<SingleEvent> event_list) {
-
-    temporary_tag.clear();
+      SingleEvent event, EventQueue event_list) {
 
     for (DSLStateMachine state_machine : model) {
       DSLState current_state = global_state.getState(state_machine);
       assert current_state != null : "No state selected for the state machine "
           + state_machine.getName();
-      Iterator<DSLTransition> transition_iterator =
-          current_state.iteratorTransitions(event);
-      while (transition_iterator.hasNext()) {
-        DSLTransition transition = transition_iterator.next();
+      for (DSLTransition transition : current_state.getTransitions(event)) {
 
         boolean evaluation;
 
@@ -228,35 +263,36 @@ public class DSLSequentialGraphSimulator<GS extends AbstractGlobalState<DSLState
         } catch (NoSuchElementException e) {
           throw new Error("When evaluation the transition " + transition
               + ", it was impossible to retrieve a value. The error was:\n "
-              + e.toString());
+              + e.toString(), e);
         }
 
         if (evaluation) {
-          temporary_tag.put(state_machine, transition.getDestination());
           processAction(transition.getActions().iterator(),
               global_state, event_list);
+          // Update the states machines tags in the global state after saving
+          // the list of transitions pull.
+          if (model == this.functional_model) {
+            functionnal_transitions_pull_list.put(state_machine,
+                transition.getDestination());
+          } else {
+            proof_transitions_pull_list.put(state_machine,
+                transition.getDestination());
+          }
+          global_state.setState(state_machine, transition.getDestination());
 
           /* ONLY one transition should be true per automaton */
           break;
         }
       }
-      // Update the states machines tags in the global state after saving the
-      // list of transitions pull.
-      if (model == this.functional_model) {
-        functionnal_transitions_pull_list.putAll(temporary_tag);
-      } else {
-        proof_transitions_pull_list.putAll(temporary_tag);
-      }
-      for (Entry<DSLStateMachine, DSLState> entry : temporary_tag.entrySet()) {
-        global_state.setState(entry.getKey(), entry.getValue());
-      }
     }
     // Put the variables change event at the end of the event queue.
-    for (Entry<EnumeratedVariable, Byte> entry : temporary_variable_change
-        .entrySet()) {
-      global_state.setVariableValue(entry.getKey(), entry.getValue());
+    for (int i = 0; i < number_temporary_variables; i++) {
+      int identifier = temporary_identifiers[i];
+      global_state.setVariableValue(temporary_variables[identifier],
+          temporary_values[identifier]);
+      temporary_variables[identifier] = null;
     }
-    temporary_variable_change.clear();
+    number_temporary_variables = 0;
     event_list.addAll(temporary_queue);
     temporary_queue.clear();
 
@@ -266,7 +302,7 @@ public class DSLSequentialGraphSimulator<GS extends AbstractGlobalState<DSLState
           + ((model == this.proof) ? " in proof model"
               : " in functionnal model")
           + " -->\n"
-          + "Internal FIFO " + event_list.toString() + "\n"
+          + "Internal FIFO " + event_table.toList(event_list) + "\n"
           + global_state);
     }
   }
@@ -299,7 +335,7 @@ public class DSLSequentialGraphSimulator<GS extends AbstractGlobalState<DSLState
   private void processAction(
       Iterator<SingleEvent> single_event_iterator,
       AbstractGlobalState<DSLStateMachine, DSLState, DSLTransition, ?> global_state,
-      LinkedList<SingleEvent> event_list) {
+      EventQueue event_list) {
 
     while (single_event_iterator.hasNext()) {
       SingleEvent single_event = single_event_iterator.next();
@@ -310,16 +346,14 @@ public class DSLSequentialGraphSimulator<GS extends AbstractGlobalState<DSLState
             "VariableChange events are not allowed in the DSLGraphSimulator:"
                 + variable_change);
       } else if (single_event instanceof SynchronisationEvent) {
-        event_list.add(single_event);
+        event_list.add(event_table.put(single_event));
       } else if (single_event instanceof Assignment) {
-        EnumeratedVariable variable = ((Assignment) single_event).getVariable();
-        Byte value = ((Assignment) single_event).getValue();
-
-        temporary_variable_change.put(variable, value);
-        temporary_queue.add(new EnumeratedVariableChange(variable));
+        Assignment assignment = (Assignment) single_event;
+        assign(assignment.getVariable(), assignment.getValue());
       } else if (single_event instanceof ComputerCommandFunction) {
 
-        commands_queue.add(single_event);
+        int command = event_table.put(single_event);
+        commands_queue.add(command);
         if (!(functional_model
             .getACTFCI((ComputerCommandFunction) single_event) == null)) {
 
@@ -334,15 +368,16 @@ public class DSLSequentialGraphSimulator<GS extends AbstractGlobalState<DSLState
           }
         }
         if (proof != null) {
-          temporary_commands_queue.add(single_event);
+          temporary_commands_queue.add(command);
         }
       } else if (single_event instanceof CommandEvent) {
-        commands_queue.add(single_event);
+        int command = event_table.put(single_event);
+        commands_queue.add(command);
         if (proof != null) {
-          temporary_commands_queue.add(single_event);
+          temporary_commands_queue.add(command);
         }
       } else if (single_event instanceof ModelCheckerEvent) {
-        commands_queue.add(single_event);
+        commands_queue.add(event_table.put(single_event));
 
         switch (single_event.getName()) {
         case "P_5":
@@ -365,6 +400,37 @@ public class DSLSequentialGraphSimulator<GS extends AbstractGlobalState<DSLState
     }
   }
 
+  /**
+   * Record the assignment of a variable, applied at the end of the step, and
+   * add the event of its change in the temporary queue. The last value given
+   * during the step is kept.
+   */
+  private void assign(EnumeratedVariable variable, byte value) {
+    int identifier = variable.getUniqueIdentifier();
+    if (identifier >= temporary_variables.length) {
+      int length = temporary_variables.length;
+      while (length <= identifier) {
+        length *= 2;
+      }
+      temporary_variables = Arrays.copyOf(temporary_variables, length);
+      temporary_values = Arrays.copyOf(temporary_values, length);
+      temporary_identifiers = Arrays.copyOf(temporary_identifiers, length);
+      variable_changes = Arrays.copyOf(variable_changes, length);
+    }
+    if (temporary_variables[identifier] == null) {
+      temporary_identifiers[number_temporary_variables++] = identifier;
+    }
+    temporary_variables[identifier] = variable;
+    temporary_values[identifier] = value;
+
+    EnumeratedVariableChange variable_change = variable_changes[identifier];
+    if (variable_change == null || variable_change.getVariable() != variable) {
+      variable_change = new EnumeratedVariableChange(variable);
+      variable_changes[identifier] = variable_change;
+    }
+    temporary_queue.add(event_table.put(variable_change));
+  }
+
   /**
    * Execute the model m, starting from the given CompactGlobalState, on the
    * event e and using the internal event queue `single_event_queue`.
@@ -380,11 +446,11 @@ public class DSLSequentialGraphSimulator<GS extends AbstractGlobalState<DSLState
    */
   protected void execute(DSLModel m, GS starting_state,
       SingleEvent e,
-      LinkedList<SingleEvent> single_event_queue) {
+      EventQueue single_event_queue) {
 
     processSingleEvent(m, starting_state, e, single_event_queue);
     while (!single_event_queue.isEmpty()) {
-      SingleEvent head = single_event_queue.remove();
+      SingleEvent head = event_table.get(single_event_queue.poll());
       processSingleEvent(m, starting_state, head, single_event_queue);
     }
   }
@@ -401,7 +467,7 @@ public class DSLSequentialGraphSimulator<GS extends AbstractGlobalState<DSLState
    *          place and will be the result value.
    */
   protected void executeProofCompletely(GS global_state,
-      LinkedList<SingleEvent> external_events_list) {
+      EventQueue external_events_list) {
 
     if (proof == null) {
       throw new NullPointerException(
@@ -409,12 +475,14 @@ public class DSLSequentialGraphSimulator<GS extends AbstractGlobalState<DSLState
     }
     if (verbose) {
       System.out.print(
-          "Initial external proof FIFO " + external_events_list + "\n");
+          "Initial external proof FIFO "
+              + event_table.toList(external_events_list) + "\n");
     }
     while (!external_events_list.isEmpty()) {
-      SingleEvent head = external_events_list.removeFirst();
+      SingleEvent head = event_table.get(external_events_list.poll());
       if (verbose) {
-        System.out.print("External Proof FIFO " + external_events_list + "\n");
+        System.out.print("External Proof FIFO "
+            + event_table.toList(external_events_list) + "\n");
       }
       execute(proof, global_state, head, internal_proof_event_queue);
     }
@@ -466,10 +534,9 @@ public class DSLSequentialGraphSimulator<GS extends AbstractGlobalState<DSLState
     @SuppressWarnings("unchecked")
     GS copied_starting_state = (GS) starting_state.clone();
 
-    LinkedList<SingleEvent> transfert_list = new LinkedList<SingleEvent>();
     SingleEvent curr_event = event;
     if (curr_event != null) {
-      external_proof_event_queue.add(curr_event);
+      external_proof_event_queue.add(event_table.put(curr_event));
     }
 
     do {
@@ -483,7 +550,11 @@ public class DSLSequentialGraphSimulator<GS extends AbstractGlobalState<DSLState
       external_proof_event_queue.addAll(temporary_commands_queue);
       temporary_commands_queue.clear();
 
-      curr_event = internal_functional_event_queue.poll();
+      if (internal_functional_event_queue.isEmpty()) {
+        curr_event = null;
+      } else {
+        curr_event = event_table.get(internal_functional_event_queue.poll());
+      }
     } while (curr_event != null);
 
     if (proof != null) {
@@ -505,11 +576,11 @@ public class DSLSequentialGraphSimulator<GS extends AbstractGlobalState<DSLState
 
   /**
    * Same as {@link #execute(CompactGlobalState, ExternalEvent)} but uses a
-   * LinkedList
+   * queue
    * of events
    */
   public GS executeAll(GS starting_state,
-      LinkedList<ExternalEvent> list) {
+      Queue<ExternalEvent> list) {
     GS result = starting_state;
     while (!list.isEmpty()) {
       ExternalEvent event = list.poll();
@@ -0,0 +1,670 @@
+package domainSpecificLanguage.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import utils.Pair;
+import abstractGraph.conditions.AndFormula;
+import abstractGraph.conditions.BooleanVariable;
+import abstractGraph.conditions.EnumeratedVariable;
+import abstractGraph.conditions.EnumerationEqualityFormula;
+import abstractGraph.conditions.False;
+import abstractGraph.conditions.Formula;
+import abstractGraph.conditions.NotFormula;
+import abstractGraph.conditions.OrFormula;
+import abstractGraph.conditions.True;
+import abstractGraph.events.Assignment;
+import abstractGraph.events.CommandEvent;
+import abstractGraph.events.ComputerCommandFunction;
+import abstractGraph.events.EnumeratedVariableChange;
+import abstractGraph.events.ExternalEvent;
+import abstractGraph.events.ModelCheckerEvent;
+import abstractGraph.events.SingleEvent;
+import abstractGraph.events.SynchronisationEvent;
+import abstractGraph.events.VariableChange;
+import domainSpecificLanguage.DSLGlobalState.DSLGlobalState;
+import domainSpecificLanguage.graph.DSLModel;
+import domainSpecificLanguage.graph.DSLState;
+import domainSpecificLanguage.graph.DSLStateMachine;
+import domainSpecificLanguage.graph.DSLTransition;
+import engine.GraphSimulatorInterface;
+
+/**
+ * Generate the Java code of a simulator specialized for a couple (functional
+ * model, proof model), and compile it in memory with javax.tools.
+ *
+ * @details
+ *          The generated class extends {@link DSLCompiledGraphSimulator}. Every
+ *          state machine has a method that selects the current state with a
+ *          switch on its index (see {@link DSLState#getIndex()}), and every
+ *          state has a method that selects the event with a switch on its id.
+ *          The methods stay small, so that they are compiled by the JIT even
+ *          for the largest models. The transitions are tried in the order of
+ *          the interpreted simulator, with their conditions written as Java
+ *          expressions on the bytes of the
+ *          {@link domainSpecificLanguage.DSLGlobalState.CompactValuation} and
+ *          their actions written as operations on the queues of event ids.
+ *
+ *          The models must be built and must not be modified afterwards: the
+ *          generated code is a copy of them. The actions that the interpreted
+ *          simulator cannot execute are rejected when the code is generated.
+ *          The compilation requires a JDK (see {@link #isAvailable()}); the
+ *          classes of the project are found from the location they have been
+ *          loaded from.
+ *
+ *          Example:
+ *
+ *          <pre>
+ * {@code
+ * GraphSimulatorInterface<DSLGlobalState, ...> simulator;
+ * if (DSLSimulatorGenerator.isAvailable()) {
+ *   simulator = new DSLSimulatorGenerator(model, proof).newSimulator();
+ * } else {
+ *   simulator = new DSLSequentialGraphSimulator<DSLGlobalState>(model, proof);
+ * }
+ * }
+ * </pre>
+ */
+public class DSLSimulatorGenerator {
+
+  private static final String PACKAGE = "domainSpecificLanguage.engine.generated";
+  private static final AtomicInteger number_classes = new AtomicInteger(0);
+
+  private final DSLModel model;
+  private final DSLModel proof;
+  private final String class_name;
+  private final DSLCompiledGraphSimulator.Tables tables =
+      new DSLCompiledGraphSimulator.Tables();
+
+  /* The objects of the tables, and their index */
+  private final ArrayList<DSLStateMachine> machines =
+      new ArrayList<DSLStateMachine>();
+  private final ArrayList<DSLState> states = new ArrayList<DSLState>();
+  private final IdentityHashMap<DSLState, Integer> state_indexes =
+      new IdentityHashMap<DSLState, Integer>();
+  private final ArrayList<EnumeratedVariable> variables =
+      new ArrayList<EnumeratedVariable>();
+  private final IdentityHashMap<EnumeratedVariable, Integer> variable_indexes =
+      new IdentityHashMap<EnumeratedVariable, Integer>();
+  private final ArrayList<SingleEvent> events = new ArrayList<SingleEvent>();
+  private final IdentityHashMap<SingleEvent, Integer> event_indexes =
+      new IdentityHashMap<SingleEvent, Integer>();
+  private final ArrayList<Formula> formulas = new ArrayList<Formula>();
+
+  private final String source;
+  private Class<? extends DSLCompiledGraphSimulator> compiled_class = null;
+
+  /**
+   * Generate the code of the simulator of `model` and `proof`.
+   *
+   * @param proof
+   *          The proof model. Can be null.
+   * @throws IllegalArgumentException
+   *           If a transition has an action that the interpreted simulator
+   *           cannot execute, or if an initial state is not a state of its
+   *           machine.
+   */
+  public DSLSimulatorGenerator(DSLModel model, DSLModel proof) {
+    this.model = model;
+    this.proof = proof;
+    this.class_name = "Simulator" + number_classes.incrementAndGet();
+
+    tables.model = model;
+    tables.proof = proof;
+    tables.all_variables = new LinkedHashSet<EnumeratedVariable>();
+    tables.all_state_machines = new LinkedList<DSLStateMachine>();
+    for (DSLModel current_model : Arrays.asList(model, proof)) {
+      if (current_model != null) {
+        tables.all_variables.addAll(current_model.variables);
+        for (DSLStateMachine machine : current_model) {
+          tables.all_state_machines.add(machine);
+        }
+      }
+    }
+
+    source = generate();
+
+    tables.machines = machines.toArray(new DSLStateMachine[0]);
+    tables.states = states.toArray(new DSLState[0]);
+    tables.variables = variables.toArray(new EnumeratedVariable[0]);
+    tables.events = events.toArray(new SingleEvent[0]);
+    tables.formulas = formulas.toArray(new Formula[0]);
+  }
+
+  /**
+   * @return True if a Java compiler is available in this JVM.
+   */
+  public static boolean isAvailable() {
+    return ToolProvider.getSystemJavaCompiler() != null;
+  }
+
+  /**
+   * @return The Java code of the simulator.
+   */
+  public String getSource() {
+    return source;
+  }
+
+  /**
+   * Compile the code, at the first call, and create a simulator.
+   *
+   * @throws IllegalStateException
+   *           If no Java compiler is available.
+   */
+  public DSLCompiledGraphSimulator newSimulator() {
+    if (compiled_class == null) {
+      compiled_class = compile();
+    }
+    try {
+      return compiled_class.getConstructor(
+          DSLCompiledGraphSimulator.Tables.class).newInstance(tables);
+    } catch (ReflectiveOperationException e) {
+      throw new Error(e);
+    }
+  }
+
+  private int getIndex(DSLStateMachine machine) {
+    machines.add(machine);
+    return machines.size() - 1;
+  }
+
+  private int getIndex(DSLState state) {
+    Integer index = state_indexes.get(state);
+    if (index == null) {
+      index = states.size();
+      states.add(state);
+      state_indexes.put(state, index);
+    }
+    return index;
+  }
+
+  private int getIndex(EnumeratedVariable variable) {
+    Integer index = variable_indexes.get(variable);
+    if (index == null) {
+      index = variables.size();
+      variables.add(variable);
+      variable_indexes.put(variable, index);
+    }
+    return index;
+  }
+
+  private int getIndex(SingleEvent event) {
+    Integer index = event_indexes.get(event);
+    if (index == null) {
+      index = events.size();
+      events.add(event);
+      event_indexes.put(event, index);
+    }
+    return index;
+  }
+
+  /**
+   * @return The states of `machine`, in the order of their index.
+   */
+  private ArrayList<DSLState> getStates(DSLStateMachine machine) {
+    DSLState initial_state = machine.getInitial_state();
+    if (initial_state != null
+        && machine.getState(initial_state.getId()) != initial_state) {
+      throw new IllegalArgumentException("The initial state "
+          + initial_state + " is not a state of " + machine.getName());
+    }
+    ArrayList<DSLState> result = new ArrayList<DSLState>();
+    for (DSLState state : machine) {
+      result.add(state);
+    }
+    Collections.sort(result, new Comparator<DSLState>() {
+      @Override
+      public int compare(DSLState s1, DSLState s2) {
+        return Integer.compare(s1.getIndex(), s2.getIndex());
+      }
+    });
+    return result;
+  }
+
+  private String generate() {
+    StringBuilder code = new StringBuilder();
+    code.append("package " + PACKAGE + ";\n\n");
+    code.append("import java.util.LinkedHashSet;\n\n");
+    code.append("import abstractGraph.conditions.BooleanVariable;\n");
+    code.append("import abstractGraph.events.EventQueue;\n");
+    code.append("import abstractGraph.events.ExternalEvent;\n");
+    code.append("import domainSpecificLanguage.DSLGlobalState.CompactValuation;\n");
+    code.append("import domainSpecificLanguage.DSLGlobalState.DSLGlobalState;\n");
+    code.append("import domainSpecificLanguage.engine.DSLCompiledGraphSimulator;\n");
+    code.append("import domainSpecificLanguage.graph.DSLState;\n\n");
+    code.append("/** Generated for the model " + comment(model.getModelName())
+        + " */\n");
+    code.append("public final class " + class_name
+        + " extends DSLCompiledGraphSimulator {\n\n");
+    code.append("  public " + class_name + "(Tables tables) {\n");
+    code.append("    super(tables);\n");
+    code.append("  }\n");
+
+    StringBuilder machines_code = new StringBuilder();
+    for (DSLModel current_model : Arrays.asList(model, proof)) {
+      String method = current_model == model ? "processFunctional"
+          : "processProof";
+      code.append("\n  @Override\n");
+      code.append("  protected void " + method
+          + "(DSLGlobalState global_state,\n"
+          + "      CompactValuation valuation, int event, EventQueue event_list) {\n");
+      if (current_model != null) {
+        for (DSLStateMachine machine : current_model) {
+          int machine_index = getIndex(machine);
+          code.append("    machine" + machine_index
+              + "(global_state, valuation, event, event_list);\n");
+          generateMachine(machines_code, machine, machine_index);
+        }
+      }
+      code.append("    endStep(global_state, event_list);\n");
+      code.append("  }\n");
+    }
+    code.append(machines_code);
+    generatePossibleEvents(code);
+    code.append("}\n");
+    return code.toString();
+  }
+
+  /**
+   * Generate the method executing an event in `machine`, and the methods of
+   * its states.
+   */
+  private void generateMachine(StringBuilder code, DSLStateMachine machine,
+      int machine_index) {
+    StringBuilder states_code = new StringBuilder();
+    code.append("\n  /** " + comment(machine.getName()) + " */\n");
+    code.append("  private void machine" + machine_index
+        + "(DSLGlobalState global_state,\n"
+        + "      CompactValuation valuation, int event, EventQueue event_list) {\n");
+    code.append("    DSLState state = global_state.getState(machines["
+        + machine_index + "]);\n");
+    code.append("    switch (state.getIndex()) {\n");
+    for (DSLState state : getStates(machine)) {
+      code.append("    case " + state.getIndex() + ": // "
+          + comment(state.getId()) + "\n");
+      if (state.iterator().hasNext()) {
+        String method = "machine" + machine_index + "State" + state.getIndex();
+        code.append("      " + method
+            + "(global_state, valuation, event, event_list);\n");
+        generateState(states_code, machine, machine_index, state, method);
+      }
+      code.append("      break;\n");
+    }
+    code.append("    default:\n");
+    code.append("      throw unknownState(" + machine_index + ", state);\n");
+    code.append("    }\n");
+    code.append("  }\n");
+    code.append(states_code);
+  }
+
+  /**
+   * Generate the method `method` executing an event in `state`.
+   */
+  private void generateState(StringBuilder code, DSLStateMachine machine,
+      int machine_index, DSLState state, String method) {
+    /* The transitions by event, in the order of the transition index */
+    LinkedHashMap<Integer, SingleEvent> state_events =
+        new LinkedHashMap<Integer, SingleEvent>();
+    for (DSLTransition transition : state) {
+      for (SingleEvent event : transition.getEvents()) {
+        if (event.getId() >= 0 && !state_events.containsKey(event.getId())) {
+          state_events.put(event.getId(), event);
+        }
+      }
+    }
+
+    code.append("\n  /** " + comment(machine.getName()) + " in "
+        + comment(state.getId()) + " */\n");
+    code.append("  private void " + method + "(DSLGlobalState global_state,\n"
+        + "      CompactValuation valuation, int event, EventQueue event_list) {\n");
+    code.append("    switch (event) {\n");
+    for (SingleEvent event : state_events.values()) {
+      code.append("    case " + event.getId() + ": // "
+          + comment(event.getName()) + "\n");
+      code.append("      ");
+      boolean first = true;
+      for (DSLTransition transition : state.getTransitions(event)) {
+        if (!first) {
+          code.append(" else ");
+        }
+        first = false;
+        code.append("if (" + generateCondition(transition.getCondition())
+            + ") {\n");
+        generateActions(code, transition, machine_index);
+        code.append("      }");
+      }
+      code.append("\n      break;\n");
+    }
+    code.append("    }\n");
+    code.append("  }\n");
+  }
+
+  /**
+   * Generate the actions of `transition` and the change of state, in the
+   * order of the interpreted simulator.
+   *
+   * @throws IllegalArgumentException
+   *           If an action cannot be executed by the interpreted simulator.
+   */
+  private void generateActions(StringBuilder code, DSLTransition transition,
+      int machine_index) {
+    String indentation = "        ";
+    for (SingleEvent action : transition.getActions()) {
+      if (action instanceof VariableChange) {
+        throw new IllegalArgumentException(
+            "VariableChange events are not allowed in the DSLGraphSimulator:"
+                + action);
+      } else if (action instanceof SynchronisationEvent) {
+        code.append(indentation + "event_list.add(" + action.getId() + ");\n");
+      } else if (action instanceof Assignment) {
+        Assignment assignment = (Assignment) action;
+        EnumeratedVariableChange change =
+            new EnumeratedVariableChange(assignment.getVariable());
+        code.append(indentation + "assign("
+            + getIndex(assignment.getVariable()) + ", (byte) "
+            + assignment.getValue() + ", " + change.getId() + "); // "
+            + comment(assignment.toString()) + "\n");
+      } else if (action instanceof ComputerCommandFunction) {
+        LinkedList<Pair<Formula, LinkedList<ExternalEvent>>> list = model
+            .getACTFCI((ComputerCommandFunction) action);
+        if (list != null) {
+          for (Pair<Formula, LinkedList<ExternalEvent>> condition_with_act : list) {
+            code.append(indentation + "if ("
+                + generateCondition(condition_with_act.getFirst()) + ") {\n");
+            for (ExternalEvent act : condition_with_act.getSecond()) {
+              code.append(indentation + "  ACT_FCI_queue.add(" + act.getId()
+                  + ");\n");
+            }
+            code.append(indentation + "}\n");
+          }
+        }
+        if (proof != null) {
+          code.append(indentation + "temporary_commands_queue.add("
+              + action.getId() + ");\n");
+        }
+      } else if (action instanceof CommandEvent) {
+        if (proof != null) {
+          code.append(indentation + "temporary_commands_queue.add("
+              + action.getId() + ");\n");
+        }
+      } else if (action instanceof ModelCheckerEvent) {
+        switch (action.getName()) {
+        case "P_5":
+          code.append(indentation + "global_state.setIsSafe(false);\n");
+          break;
+        case "P_6":
+          code.append(indentation + "global_state.setIsLegal(false);\n");
+          break;
+        case "P_7":
+          code.append(indentation + "global_state.setNotP7(false);\n");
+          break;
+        default:
+          throw new IllegalArgumentException("The argument "
+              + action.getName() + " isn't defined in the model.\n");
+        }
+      } else {
+        throw new IllegalArgumentException("Unknown action Event "
+            + action.getClass() + " : " + action);
+      }
+    }
+    code.append(indentation + "global_state.setState(machines["
+        + machine_index + "], states[" + getIndex(transition.getDestination())
+        + "]);\n");
+  }
+
+  /**
+   * @return A Java expression evaluating `formula` on `valuation`, in the
+   *         order of {@link Formula#eval}.
+   */
+  private String generateCondition(Formula formula) {
+    if (formula instanceof True) {
+      return "true";
+    } else if (formula instanceof False) {
+      return "false";
+    } else if (formula instanceof BooleanVariable) {
+      return "BooleanVariable.getBooleanFromByte(valuation.getByte("
+          + ((BooleanVariable) formula).getUniqueIdentifier() + "))";
+    } else if (formula instanceof EnumerationEqualityFormula) {
+      EnumerationEqualityFormula equality = (EnumerationEqualityFormula) formula;
+      return "valuation.getByte("
+          + equality.getVariable().getUniqueIdentifier() + ")"
+          + (equality.isNot() ? " != " : " == ") + equality.getValue();
+    } else if (formula instanceof NotFormula) {
+      return "!(" + generateCondition(((NotFormula) formula).getF()) + ")";
+    } else if (formula instanceof AndFormula) {
+      return "(" + generateCondition(((AndFormula) formula).getFirst())
+          + " && " + generateCondition(((AndFormula) formula).getSecond())
+          + ")";
+    } else if (formula instanceof OrFormula) {
+      return "(" + generateCondition(((OrFormula) formula).getFirst())
+          + " || " + generateCondition(((OrFormula) formula).getSecond())
+          + ")";
+    } else {
+      formulas.add(formula);
+      return "evalFormula(" + (formulas.size() - 1) + ", valuation)";
+    }
+  }
+
+  /**
+   * Generate the method adding the possible external events of the current
+   * states, as {@link DSLSequentialGraphSimulator#getPossibleEvent}, and one
+   * method per state machine.
+   */
+  private void generatePossibleEvents(StringBuilder code) {
+    StringBuilder machines_code = new StringBuilder();
+    code.append("\n  @Override\n");
+    code.append("  protected void addPossibleEvents(DSLGlobalState global_state,\n"
+        + "      LinkedHashSet<ExternalEvent> result) {\n");
+    int machine_index = 0;
+    for (DSLModel current_model : Arrays.asList(model, proof)) {
+      if (current_model == null) {
+        continue;
+      }
+      for (DSLStateMachine machine : current_model) {
+        if (generatePossibleEvents(machines_code, current_model, machine,
+            machine_index)) {
+          code.append("    possibleEvents" + machine_index
+              + "(global_state, result);\n");
+        }
+        machine_index++;
+      }
+    }
+    code.append("  }\n");
+    code.append(machines_code);
+  }
+
+  /**
+   * Generate the method adding the possible external events of the current
+   * state of `machine`.
+   *
+   * @return False if `machine` has no possible external event, and no method
+   *         has been generated.
+   */
+  private boolean generatePossibleEvents(StringBuilder code,
+      DSLModel current_model, DSLStateMachine machine, int machine_index) {
+    StringBuilder cases = new StringBuilder();
+    for (DSLState state : getStates(machine)) {
+      LinkedHashSet<ExternalEvent> possible_events =
+          new LinkedHashSet<ExternalEvent>();
+      for (DSLTransition transition : state) {
+        for (SingleEvent event : transition.getEvents()) {
+          if (event instanceof ExternalEvent
+              && !event.getName().startsWith("ACT_")
+              && (current_model == model || model
+                  .containsExternalEvent((ExternalEvent) event))) {
+            possible_events.add((ExternalEvent) event);
+          }
+        }
+      }
+      if (possible_events.isEmpty()) {
+        continue;
+      }
+      cases.append("    case " + state.getIndex() + ": // "
+          + comment(state.getId()) + "\n");
+      for (ExternalEvent event : possible_events) {
+        cases.append("      addPossibleEvent(result, " + getIndex(event)
+            + "); // " + comment(event.getName()) + "\n");
+      }
+      cases.append("      break;\n");
+    }
+    if (cases.length() == 0) {
+      return false;
+    }
+    code.append("\n  /** " + comment(machine.getName()) + " */\n");
+    code.append("  private void possibleEvents" + machine_index
+        + "(DSLGlobalState global_state,\n"
+        + "      LinkedHashSet<ExternalEvent> result) {\n");
+    code.append("    switch (global_state.getState(machines[" + machine_index
+        + "]).getIndex()) {\n");
+    code.append(cases);
+    code.append("    }\n");
+    code.append("  }\n");
+    return true;
+  }
+
+  /**
+   * @return `text` without the characters that could end a comment or a
+   *         line.
+   */
+  private static String comment(String text) {
+    return String.valueOf(text).replace("*/", "* /").replace('\n', ' ')
+        .replace('\r', ' ').replace("\\u", "\\ u");
+  }
+
+  /**
+   * @return The class path of the compilation: the locations the classes used
+   *         by the generated code have been loaded from, which can differ from
+   *         "java.class.path" (application servers, test runners...).
+   */
+  private static String classPath() {
+    LinkedHashSet<String> locations = new LinkedHashSet<String>();
+    for (Class<?> used_class : Arrays.asList(DSLCompiledGraphSimulator.class,
+        DSLGlobalState.class, DSLState.class, BooleanVariable.class,
+        ExternalEvent.class, GraphSimulatorInterface.class)) {
+      CodeSource code_source = used_class.getProtectionDomain()
+          .getCodeSource();
+      if (code_source == null || code_source.getLocation() == null) {
+        continue;
+      }
+      try {
+        locations.add(new File(code_source.getLocation().toURI()).getPath());
+      } catch (URISyntaxException | IllegalArgumentException e) {
+        throw new Error("The location of " + used_class
+            + " is not a file: " + code_source.getLocation(), e);
+      }
+    }
+    StringBuilder result = new StringBuilder();
+    for (String location : locations) {
+      if (result.length() != 0) {
+        result.append(File.pathSeparator);
+      }
+      result.append(location);
+    }
+    return result.toString();
+  }
+
+  /**
+   * Compile the generated code in memory and load the class.
+   */
+  @SuppressWarnings("unchecked")
+  private Class<? extends DSLCompiledGraphSimulator> compile() {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    if (compiler == null) {
+      throw new IllegalStateException(
+          "No Java compiler is available: the JVM must be a JDK.");
+    }
+    final String full_name = PACKAGE + "." + class_name;
+    final Map<String, ByteArrayOutputStream> class_files =
+        new HashMap<String, ByteArrayOutputStream>();
+
+    JavaFileObject source_file = new SimpleJavaFileObject(URI.create("string:///"
+        + full_name.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE) {
+      @Override
+      public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+        return source;
+      }
+    };
+    StandardJavaFileManager standard_manager =
+        compiler.getStandardFileManager(null, null, null);
+    JavaFileManager manager =
+        new ForwardingJavaFileManager<StandardJavaFileManager>(standard_manager) {
+          @Override
+          public JavaFileObject getJavaFileForOutput(Location location,
+              final String name, Kind kind, FileObject sibling) {
+            return new SimpleJavaFileObject(URI.create("bytes:///"
+                + name.replace('.', '/') + kind.extension), kind) {
+              @Override
+              public OutputStream openOutputStream() {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                class_files.put(name, output);
+                return output;
+              }
+            };
+          }
+        };
+
+    DiagnosticCollector<JavaFileObject> diagnostics =
+        new DiagnosticCollector<JavaFileObject>();
+    List<String> options = Arrays.asList("-classpath", classPath(),
+        "-nowarn", "-g:none");
+    boolean success = compiler.getTask(null, manager, diagnostics, options,
+        null, Arrays.asList(source_file)).call();
+    if (!success) {
+      StringBuilder errors = new StringBuilder();
+      for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics
+          .getDiagnostics()) {
+        errors.append(diagnostic.toString()).append("\n");
+      }
+      throw new Error("The compilation of the generated simulator failed:\n"
+          + errors);
+    }
+
+    ClassLoader loader =
+        new ClassLoader(DSLCompiledGraphSimulator.class.getClassLoader()) {
+          @Override
+          protected Class<?> findClass(String name)
+              throws ClassNotFoundException {
+            ByteArrayOutputStream class_file = class_files.get(name);
+            if (class_file == null) {
+              throw new ClassNotFoundException(name);
+            }
+            byte[] bytes = class_file.toByteArray();
+            return defineClass(name, bytes, 0, bytes.length);
+          }
+        };
+    try {
+      return (Class<? extends DSLCompiledGraphSimulator>) loader
+          .loadClass(full_name);
+    } catch (ClassNotFoundException e) {
+      throw new Error(e);
+    }
+  }
+}
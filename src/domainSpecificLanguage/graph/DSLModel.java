@@ -201,8 +201,7 @@ public class DSLModel extends
 
   @Override
   public void build() {
-    // TODO Auto-generated method stub
-    // throw new NotImplementedException();
+    super.build();
   }
 
   @Override
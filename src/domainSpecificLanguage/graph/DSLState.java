@@ -4,36 +4,34 @@ import java.util.Iterator;
 import java.util.LinkedList;
 
 import abstractGraph.AbstractState;
-import abstractGraph.events.SingleEvent;
 
 public class DSLState extends AbstractState<DSLTransition> {
 
   LinkedList<DSLTransition> transitions = new LinkedList<>();
+  /** The position of the state in its machine, see {@link #getIndex()} */
+  int index = -1;
 
   public DSLState(String id) {
     super(id);
   }
 
-  @Override
-  public Iterator<DSLTransition> iterator() {
-    return transitions.iterator();
+  /**
+   * @return The position of the state in its state machine, from 0 in the
+   *         order of addition. -1 if it has not been added to a machine.
+   */
+  public int getIndex() {
+    return index;
   }
 
   @Override
-  public Iterator<DSLTransition> iteratorTransitions(SingleEvent event) {
-    // TODO Improve the memory efficiency of the method
-    LinkedList<DSLTransition> list = new LinkedList<>();
-    for (DSLTransition transition : transitions) {
-      if (transition.getEvents().containsEvent(event)) {
-        list.add(transition);
-      }
-    }
-    return list.iterator();
+  public Iterator<DSLTransition> iterator() {
+    return transitions.iterator();
   }
 
   @Override
   public void addTransition(DSLTransition t) {
     transitions.add(t);
+    invalidateTransitionIndex();
   }
 
   @Override
@@ -57,10 +57,8 @@ public class DSLStateMachine extends
     LinkedList<DSLTransition> transitions = new LinkedList<>();
 
     for (DSLState state : states.values()) {
-      Iterator<DSLTransition> transition_iterator = state
-          .iteratorTransitions(E);
-      while (transition_iterator.hasNext()) {
-        transitions.add(transition_iterator.next());
+      for (DSLTransition transition : state.getTransitions(E)) {
+        transitions.add(transition);
       }
     }
     return transitions;
@@ -78,6 +76,7 @@ public class DSLStateMachine extends
       throw new KeyAlreadyExistsException();
     }
     DSLState state = new DSLState(state_name);
+    state.index = states.size();
     states.put(state_name, state);
     return state;
   }
@@ -87,6 +86,7 @@ public class DSLStateMachine extends
     if (states.get(state.getId()) != null) {
       throw new KeyAlreadyExistsException();
     }
+    state.index = states.size();
     states.put(state.getId(), state);
   }
 
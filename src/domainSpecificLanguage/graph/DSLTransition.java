@@ -41,7 +41,7 @@ public class DSLTransition extends AbstractTransition<DSLState> {
     if (condition == null) {
       return true;
     }
-    return condition.eval(valuation);
+    return getCompiledCondition().eval(valuation);
   }
 
   @Override
@@ -63,6 +63,6 @@ public class DSLTransition extends AbstractTransition<DSLState> {
 
   @Override
   public boolean evalCondition(AbstractGlobalState<?, DSLState, ?, ?> env) {
-    return getCondition().eval(env.getValuation());
+    return getCompiledCondition().eval(env.getValuation());
   }
 }
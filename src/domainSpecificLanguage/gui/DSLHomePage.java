@@ -32,6 +32,7 @@ import utils.Monitoring;
 import utils.Pair;
 import domainSpecificLanguage.DSLGlobalState.DSLGlobalState;
 import domainSpecificLanguage.engine.DSLSequentialGraphSimulator;
+import domainSpecificLanguage.engine.DSLSimulatorGenerator;
 import domainSpecificLanguage.graph.DSLModel;
 import domainSpecificLanguage.graph.DSLState;
 import domainSpecificLanguage.graph.DSLStateMachine;
@@ -48,6 +49,7 @@ public class DSLHomePage extends JFrame {
   private JFileChooser FCI_file_chooser;
   private JFileChooser functional_file_chooser;
   private JCheckBox chckbxVerboseExploration;
+  private JCheckBox chckbxCompiledExploration;
 
   public DSLHomePage() throws HeadlessException {
     ToolTipManager.sharedInstance().setInitialDelay(100);
@@ -284,6 +286,11 @@ public class DSLHomePage extends JFrame {
     chckbxVerboseExploration
         .setToolTipText("If checked, the tool  will write the details of the execution of the exploration.");
 
+    chckbxCompiledExploration = new JCheckBox("Compiled exploration");
+    chckbxCompiledExploration
+        .setToolTipText("If checked, the exploration uses a simulator compiled for the models. It is faster, but cannot be verbose and needs a JDK.");
+    chckbxCompiledExploration.setEnabled(DSLSimulatorGenerator.isAvailable());
+
     JTextArea txtrFciFile = new JTextArea();
     txtrFciFile.setWrapStyleWord(true);
     txtrFciFile.setText("FCI file");
@@ -309,6 +316,8 @@ public class DSLHomePage extends JFrame {
                                 GroupLayout.DEFAULT_SIZE, 184, Short.MAX_VALUE)
                             .addComponent(chckbxVerboseExploration,
                                 GroupLayout.DEFAULT_SIZE, 184, Short.MAX_VALUE)
+                            .addComponent(chckbxCompiledExploration,
+                                GroupLayout.DEFAULT_SIZE, 184, Short.MAX_VALUE)
                             .addComponent(txtrFciFile,
                                 GroupLayout.PREFERRED_SIZE, 184,
                                 GroupLayout.PREFERRED_SIZE)
@@ -339,6 +348,8 @@ public class DSLHomePage extends JFrame {
                         GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                     .addComponent(chckbxVerboseExploration)
                     .addPreferredGap(ComponentPlacement.RELATED)
+                    .addComponent(chckbxCompiledExploration)
+                    .addPreferredGap(ComponentPlacement.RELATED)
                     .addComponent(btnExploration)
                     .addPreferredGap(ComponentPlacement.RELATED)
                     .addComponent(btnSimulation)
@@ -515,7 +526,23 @@ public class DSLHomePage extends JFrame {
         System.out.println(global_state);
         model_checker.addInitialState(global_state);
 
-        DSLGlobalState result = model_checker.verify(simulator);
+        /* The generated simulator is faster but has no verbose mode */
+        GraphSimulatorInterface<DSLGlobalState, DSLStateMachine, DSLState, DSLTransition> verified_simulator =
+            simulator;
+        if (chckbxCompiledExploration.isSelected()) {
+          try {
+            verified_simulator = new DSLSimulatorGenerator(pair.first,
+                pair.second).newSimulator();
+          } catch (IllegalArgumentException generation_error) {
+            JOptionPane.showMessageDialog(dsl_home_page,
+                generation_error.getMessage(),
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+            return;
+          }
+        }
+
+        DSLGlobalState result = model_checker.verify(verified_simulator);
 
         System.out.println("Result : " + result);
 
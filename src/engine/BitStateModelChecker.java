@@ -0,0 +1,86 @@
+package engine;
+
+import abstractGraph.AbstractGlobalState;
+import abstractGraph.AbstractState;
+import abstractGraph.AbstractStateMachine;
+import abstractGraph.AbstractTransition;
+import engine.stateStorage.BitStateSet;
+import engine.stateStorage.PackedStateSetInterface;
+
+/**
+ * A {@link PackedModelChecker} using bitstate hashing (see {@link BitStateSet})
+ * for the visited states.
+ *
+ * @details
+ *          The memory used by the visited states is fixed, so it can sweep
+ *          state spaces too large for an exhaustive verification. Because of
+ *          the hash collisions, some states may not be explored: finding no
+ *          unsafe state does NOT prove the model. An estimation of the
+ *          coverage is printed at the end of the verification.
+ *
+ *          An unsafe state found is always a real unsafe state.
+ */
+public class BitStateModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>>
+    extends PackedModelChecker<GS, M, S, T> {
+
+  /** 2^30 bits, i.e. 128 MB */
+  public static final long DEFAULT_NUMBER_BITS = 1L << 30;
+  public static final int DEFAULT_NUMBER_HASHES = 3;
+
+  private long number_bits;
+  private int number_hashes;
+
+  /**
+   * @param number_bits
+   *          The size of the bit array. It is rounded up to a power of 2.
+   * @param number_hashes
+   *          The number of hash functions (i.e. of bits set per state).
+   */
+  public BitStateModelChecker(long number_bits, int number_hashes) {
+    this.number_bits = number_bits;
+    this.number_hashes = number_hashes;
+  }
+
+  public BitStateModelChecker() {
+    this(DEFAULT_NUMBER_BITS, DEFAULT_NUMBER_HASHES);
+  }
+
+  @Override
+  protected PackedStateSetInterface createVisitedSet(int number_words) {
+    return new BitStateSet(number_words, number_bits, number_hashes);
+  }
+
+  @Override
+  public GS verify(GraphSimulatorInterface<GS, M, S, T> simulator) {
+    GS result = super.verify(simulator);
+    if (packed_visited_states != null) {
+      System.err.println("Bitstate hashing: about "
+          + String.format("%.1f", getExpectedOmissions())
+          + " states may not have been explored (estimated coverage "
+          + String.format("%.6f", getEstimatedCoverage()) + ")");
+    }
+    return result;
+  }
+
+  /**
+   * @return An estimation of the number of states wrongly considered as
+   *         visited during the last verification.
+   */
+  public double getExpectedOmissions() {
+    if (packed_visited_states == null) {
+      return 0;
+    }
+    return ((BitStateSet) packed_visited_states).getExpectedOmissions();
+  }
+
+  /**
+   * @return An estimation of the proportion of the reachable states explored
+   *         by the last verification.
+   */
+  public double getEstimatedCoverage() {
+    if (packed_visited_states == null) {
+      return 1;
+    }
+    return ((BitStateSet) packed_visited_states).getEstimatedCoverage();
+  }
+}
@@ -0,0 +1,1019 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+
+import org.sat4j.core.VecInt;
+import org.sat4j.minisat.SolverFactory;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.TimeoutException;
+
+import abstractGraph.AbstractGlobalState;
+import abstractGraph.AbstractModel;
+import abstractGraph.AbstractState;
+import abstractGraph.AbstractStateMachine;
+import abstractGraph.AbstractTransition;
+import abstractGraph.conditions.EnumeratedVariable;
+import abstractGraph.events.ExternalEvent;
+import abstractGraph.events.SingleEvent;
+import engine.bdd.BDD;
+import engine.stateStorage.StateVectorCodec;
+
+/**
+ * A bounded model checker looking for the shortest traces leading to an
+ * unsafe (P5) or illegal (P6) state with the SAT solver SAT4J.
+ *
+ * @details
+ *          The global states are encoded with the layout of a
+ *          {@link StateVectorCodec}: every bit of the vector of the state
+ *          reached after `i` external events is a propositional variable. At
+ *          every step, one propositional variable per external event chooses
+ *          the event executed, and exactly one of them is true.
+ *
+ *          As in the {@link SymbolicModelChecker}, the relation of an event
+ *          is built by executing it with the simulator on all the values of
+ *          its footprint (see {@link EventIndependence}), restricted to the
+ *          states where the event is possible. It is stored as a BDD and
+ *          translated into clauses at every step (one variable and two
+ *          clauses per node). The bits written by none of the chosen events
+ *          keep their value.
+ *
+ *          The bound `k` grows one step at a time: the unrolling of the
+ *          previous bounds is kept in the solver, and the k-th state is
+ *          required to be illegal or unsafe through an assumption. As in the
+ *          {@link ModelChecker}, the illegal, unsafe and functional warning
+ *          (P7) states are not explored, so only the last state of the trace
+ *          can be one of them.
+ *
+ *          With the k-induction (see {@link #setInduction(boolean)}), the
+ *          functional warnings are searched too, and a second unrolling
+ *          starting from any state tries to prove that all the reachable
+ *          states are legal, safe and not P7: if no path of k + 1 distinct
+ *          legal, safe and not P7 states leads to another state, and if no
+ *          such state is reachable with at most k external events, then none
+ *          is reachable at all.
+ *
+ *          The events whose footprint is larger than a given number of bits
+ *          are not encoded: the trace found is still correct, but it may not
+ *          be the shortest one, and a state reachable only with these events
+ *          will not be found. The executions on which the simulator fails
+ *          are not encoded either. In both cases, the verification is
+ *          incomplete (see {@link #isComplete()}) and the k-induction cannot
+ *          conclude. The restriction of the external events of the
+ *          simulators (see
+ *          {@link GraphSimulator#setRestrainedExternalEventList}) is not
+ *          taken into account.
+ */
+public class BoundedModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>>
+    implements ModelCheckerInterface<GS, M, S, T> {
+
+  /** 2^16 executions to build the relation of an event at most */
+  public static final int DEFAULT_MAX_LOCAL_BITS = 16;
+
+  /**
+   * When finding an unsafe or illegal state, prints the initial state, the
+   * state and the trace leading to it
+   */
+  protected final static boolean PRINT_TRACE_UNSAFE = true;
+
+  private int max_depth;
+  private int max_local_bits;
+  private boolean induction = false;
+  private LinkedHashSet<GS> initial_states = new LinkedHashSet<GS>();
+
+  private GraphSimulatorInterface<GS, M, S, T> simulator;
+  private StateVectorCodec<GS, M, S, T> codec;
+  private int number_bits;
+
+  /** The relations of the encoded events */
+  private ArrayList<EventRelation> relations = new ArrayList<EventRelation>();
+  /** For every bit of the vectors, the index of the relations writing it */
+  private int[][] bit_writers;
+  private int number_ignored_events;
+  private int number_failed_executions;
+
+  /** The paths starting from the initial states */
+  private Unrolling base;
+  /** The paths starting from any state, for the k-induction */
+  private Unrolling step;
+
+  private int depth;
+  private boolean proven;
+  private GS unsafe_state = null;
+  private LinkedList<ExternalEvent> trace = new LinkedList<ExternalEvent>();
+
+  /**
+   * The relation of an external event, as a BDD on the bits of its
+   * footprint. The local bit `j` is the BDD variable 2j in the current state
+   * and 2j+1 in the next state.
+   */
+  private static class EventRelation {
+    ExternalEvent event;
+    /** The bit of the vectors of every local bit */
+    int[] bits;
+    /** The bits of the vectors that the event can modify */
+    int[] written_bits;
+    /**
+     * The nodes of the BDD, children first. A reference `r` is FALSE if r =
+     * 0, TRUE if r = 1 and the node r - 2 otherwise.
+     */
+    int[] node_variables;
+    int[] node_lows;
+    int[] node_highs;
+    int root;
+  }
+
+  /**
+   * @param max_depth
+   *          The maximal number of external events of the traces.
+   * @param max_local_bits
+   *          The events whose footprint is encoded on more bits are ignored.
+   */
+  public BoundedModelChecker(int max_depth, int max_local_bits) {
+    this.max_depth = max_depth;
+    this.max_local_bits = max_local_bits;
+  }
+
+  public BoundedModelChecker(int max_depth) {
+    this(max_depth, DEFAULT_MAX_LOCAL_BITS);
+  }
+
+  @Override
+  public void addInitialState(GS init) {
+    if (init.isLegal()) {
+      initial_states.add(init);
+    }
+  }
+
+  @Override
+  public void addAllInitialStates(Collection<GS> init) {
+    initial_states.clear();
+    for (GS state : init) {
+      addInitialState(state);
+    }
+  }
+
+  /**
+   * Activate the k-induction: the verification looks for the unsafe, illegal
+   * and functional warning (P7) states, and stops as soon as it proves that
+   * none of them is reachable (see {@link #isProven()}).
+   */
+  public void setInduction(boolean induction) {
+    this.induction = induction;
+  }
+
+  public boolean isInduction() {
+    return induction;
+  }
+
+  /**
+   * @return An unsafe or illegal state (or P7 state with the k-induction)
+   *         reachable with the smallest number of external events (at most
+   *         the maximal depth), with its trace. null if there is none.
+   */
+  @Override
+  public GS verify(GraphSimulatorInterface<GS, M, S, T> simulator) {
+    this.simulator = simulator;
+    unsafe_state = null;
+    trace.clear();
+    depth = -1;
+    proven = false;
+    if (initial_states.isEmpty()) {
+      return null;
+    }
+
+    codec = new StateVectorCodec<GS, M, S, T>(simulator, initial_states
+        .iterator().next());
+    number_bits = codec.getNumberBits();
+    buildRelations();
+
+    base = new Unrolling();
+    base.encodeInitialStates();
+    step = null;
+    if (induction) {
+      if (number_ignored_events > 0 || number_failed_executions > 0) {
+        System.err.println("The k-induction is not sound without the "
+            + "ignored events and the failed executions: only the "
+            + "bounded model checking is done.");
+      } else {
+        step = new Unrolling();
+        step.encodeValidStates(0);
+      }
+    }
+
+    if (!isComplete()) {
+      System.err.println("The verification is incomplete: "
+          + number_ignored_events + " external events ignored and "
+          + number_failed_executions + " failed executions. A state "
+          + "reachable only with them will not be found.");
+    }
+    for (int k = 0; k <= max_depth && base.contradiction == null; k++) {
+      if (k > 0) {
+        base.encodeStep(k - 1);
+      }
+      if (base.solve(base.encodeTarget(k))) {
+        unsafe_state = decodeTrace(k);
+        printTrace(unsafe_state);
+        break;
+      }
+      depth = k;
+      System.err.println("No unsafe state within " + k
+          + " external events (" + base.number_variables + " variables, "
+          + base.number_clauses + " clauses)");
+
+      if (step != null) {
+        step.encodeStep(k);
+        if (!step.solveSimplePath(step.encodeTarget(k + 1), k)) {
+          proven = true;
+          System.err.println("The property is " + (k + 1) + "-inductive: "
+              + "no unsafe state is reachable");
+          break;
+        }
+      }
+    }
+    if (base.contradiction != null) {
+      System.err.println("No path of " + depth + " external events: "
+          + base.contradiction.getMessage());
+    }
+    return unsafe_state;
+  }
+
+  /**
+   * Compute the possible external events and their relations.
+   */
+  private void buildRelations() {
+    AbstractModel<M, S, T> model = simulator.getModel();
+    AbstractModel<M, S, T> proof = simulator.getProof();
+    relations.clear();
+    number_ignored_events = 0;
+    number_failed_executions = 0;
+
+    LinkedHashSet<ExternalEvent> possible_events =
+        new LinkedHashSet<ExternalEvent>();
+    addPossibleEvents(model, null, possible_events);
+    if (proof != null) {
+      addPossibleEvents(proof, model, possible_events);
+    }
+
+    EventIndependence<M, S, T> independence = new EventIndependence<M, S, T>(
+        simulator);
+    for (ExternalEvent event : possible_events) {
+      EventRelation relation = computeRelation(event, model, proof,
+          independence);
+      if (relation == null) {
+        number_ignored_events++;
+      } else {
+        relations.add(relation);
+      }
+    }
+
+    ArrayList<ArrayList<Integer>> writers =
+        new ArrayList<ArrayList<Integer>>(number_bits);
+    for (int b = 0; b < number_bits; b++) {
+      writers.add(new ArrayList<Integer>());
+    }
+    for (int i = 0; i < relations.size(); i++) {
+      for (int b : relations.get(i).written_bits) {
+        writers.get(b).add(i);
+      }
+    }
+    bit_writers = new int[number_bits][];
+    for (int b = 0; b < number_bits; b++) {
+      bit_writers[b] = toArray(writers.get(b));
+    }
+    System.err.println("Bounded model checking: " + relations.size()
+        + " external events encoded, " + number_ignored_events + " ignored.");
+  }
+
+  /**
+   * Add the external events on which a state machine of `current_model` has
+   * a transition, as {@link GraphSimulatorInterface#getPossibleEvent} does.
+   *
+   * @param functional_model
+   *          The functional model if `current_model` is the proof model: only
+   *          its external events are possible. null otherwise.
+   */
+  private void addPossibleEvents(AbstractModel<M, S, T> current_model,
+      AbstractModel<M, S, T> functional_model,
+      LinkedHashSet<ExternalEvent> possible_events) {
+    for (M state_machine : current_model) {
+      for (S state : state_machine) {
+        for (T transition : state) {
+          for (SingleEvent event : transition.getEvents()) {
+            if (isPossibleEvent(event, functional_model)) {
+              possible_events.add((ExternalEvent) event);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private boolean isPossibleEvent(SingleEvent event,
+      AbstractModel<M, S, T> functional_model) {
+    return event instanceof ExternalEvent
+        && !event.getName().startsWith("ACT_")
+        && (functional_model == null || functional_model
+            .containsExternalEvent((ExternalEvent) event));
+  }
+
+  /**
+   * @return For every state machine slot, the codes of the states having a
+   *         transition on `event`.
+   */
+  private HashMap<Integer, LinkedHashSet<Integer>> computeEnablingStates(
+      ExternalEvent event, AbstractModel<M, S, T> model,
+      AbstractModel<M, S, T> proof) {
+    HashMap<Integer, LinkedHashSet<Integer>> result =
+        new HashMap<Integer, LinkedHashSet<Integer>>();
+    for (int n = 0; n < 2; n++) {
+      AbstractModel<M, S, T> current_model = n == 0 ? model : proof;
+      if (current_model == null) {
+        continue;
+      }
+      for (M state_machine : current_model) {
+        int slot = codec.getSlot(state_machine);
+        for (S state : state_machine) {
+          for (T transition : state) {
+            if (transition.getEvents().containsEvent(event)
+                && isPossibleEvent(event, n == 0 ? null : model)) {
+              LinkedHashSet<Integer> codes = result.get(slot);
+              if (codes == null) {
+                codes = new LinkedHashSet<Integer>();
+                result.put(slot, codes);
+              }
+              codes.add(codec.getStateCode(slot, state));
+              break;
+            }
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Build the relation of an event by executing it on all the values of its
+   * footprint where it is possible.
+   *
+   * @return The relation, or null if the event cannot be encoded.
+   */
+  private EventRelation computeRelation(ExternalEvent event,
+      AbstractModel<M, S, T> model, AbstractModel<M, S, T> proof,
+      EventIndependence<M, S, T> independence) {
+    HashMap<Integer, LinkedHashSet<Integer>> enabling_states =
+        computeEnablingStates(event, model, proof);
+    LinkedHashSet<Integer> input_slots = new LinkedHashSet<Integer>();
+    LinkedHashSet<Integer> output_slots = new LinkedHashSet<Integer>();
+    for (M machine : independence.getActivatedMachines(event)) {
+      input_slots.add(codec.getSlot(machine));
+      output_slots.add(codec.getSlot(machine));
+    }
+    for (EnumeratedVariable variable : independence.getReadVariables(event)) {
+      if (!codec.hasSlot(variable)) {
+        /* A variable is not in the state vectors */
+        return null;
+      }
+      input_slots.add(codec.getSlot(variable));
+    }
+    for (EnumeratedVariable variable : independence
+        .getWrittenVariables(event)) {
+      if (!codec.hasSlot(variable)) {
+        return null;
+      }
+      input_slots.add(codec.getSlot(variable));
+      output_slots.add(codec.getSlot(variable));
+    }
+    if (!input_slots.containsAll(enabling_states.keySet())) {
+      return null;
+    }
+    int flags = codec.getFlagsSlot();
+    for (int i = 0; i < 3; i++) {
+      output_slots.add(flags + i);
+    }
+
+    int local_bits = 0;
+    for (int slot : input_slots) {
+      local_bits += codec.getSlotWidth(slot);
+    }
+    if (local_bits > max_local_bits) {
+      return null;
+    }
+
+    /* The local bits: the inputs, then the flags */
+    LinkedHashSet<Integer> local_slots = new LinkedHashSet<Integer>(
+        input_slots);
+    local_slots.addAll(output_slots);
+    HashMap<Integer, Integer> local_offsets = new HashMap<Integer, Integer>();
+    ArrayList<Integer> bits = new ArrayList<Integer>();
+    for (int slot : local_slots) {
+      local_offsets.put(slot, bits.size());
+      for (int k = 0; k < codec.getSlotWidth(slot); k++) {
+        bits.add(codec.getSlotOffset(slot) + k);
+      }
+    }
+    BDD bdd = new BDD(2 * bits.size());
+
+    int[] inputs = toArray(input_slots);
+    int[] values = new int[inputs.length];
+    long[] base = codec.encode(initial_states.iterator().next());
+    for (int i = 0; i < 3; i++) {
+      codec.writeSlot(base, flags + i, 1);
+    }
+    for (int i = 0; i < inputs.length; i++) {
+      values[i] = firstValue(inputs[i]);
+    }
+
+    int relation = BDD.FALSE;
+    do {
+      long[] vector = base.clone();
+      for (int i = 0; i < inputs.length; i++) {
+        codec.writeSlot(vector, inputs[i], values[i]);
+      }
+      if (!isEnabled(vector, enabling_states)) {
+        continue;
+      }
+
+      long[] result;
+      try {
+        result = codec.encode(simulator.execute(codec.decode(vector), event));
+      } catch (Error e) {
+        /* Only the conditions reading an undefined variable may fail */
+        if (!(e.getCause() instanceof NoSuchElementException)) {
+          throw e;
+        }
+        number_failed_executions++;
+        continue;
+      }
+      for (int slot = 0; slot < codec.getNumberSlots(); slot++) {
+        if (!output_slots.contains(slot)
+            && codec.readSlot(result, slot) != codec.readSlot(vector, slot)) {
+          /* The execution is not limited to the footprint */
+          return null;
+        }
+      }
+      int transition = BDD.TRUE;
+      for (int i = 0; i < inputs.length; i++) {
+        transition = bdd.and(transition, slotEquals(bdd,
+            local_offsets.get(inputs[i]), codec.getSlotWidth(inputs[i]),
+            values[i], false));
+      }
+      for (int slot : output_slots) {
+        transition = bdd.and(transition, slotEquals(bdd,
+            local_offsets.get(slot), codec.getSlotWidth(slot),
+            (int) codec.readSlot(result, slot), true));
+      }
+      relation = bdd.or(relation, transition);
+    } while (nextValues(inputs, values));
+
+    EventRelation result = new EventRelation();
+    result.event = event;
+    result.bits = toArray(bits);
+    ArrayList<Integer> written_bits = new ArrayList<Integer>();
+    for (int slot : output_slots) {
+      for (int k = 0; k < codec.getSlotWidth(slot); k++) {
+        written_bits.add(codec.getSlotOffset(slot) + k);
+      }
+    }
+    result.written_bits = toArray(written_bits);
+
+    ArrayList<Integer> nodes = new ArrayList<Integer>();
+    HashMap<Integer, Integer> references = new HashMap<Integer, Integer>();
+    result.root = listNodes(bdd, relation, nodes, references);
+    result.node_variables = new int[nodes.size()];
+    result.node_lows = new int[nodes.size()];
+    result.node_highs = new int[nodes.size()];
+    for (int n = 0; n < nodes.size(); n++) {
+      int node = nodes.get(n);
+      result.node_variables[n] = bdd.getVariable(node);
+      result.node_lows[n] = references.get(bdd.getLow(node));
+      result.node_highs[n] = references.get(bdd.getHigh(node));
+    }
+    return result;
+  }
+
+  private boolean isEnabled(long[] vector,
+      HashMap<Integer, LinkedHashSet<Integer>> enabling_states) {
+    for (Integer slot : enabling_states.keySet()) {
+      if (enabling_states.get(slot).contains(
+          (int) codec.readSlot(vector, slot))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * List the nodes of a BDD, children first.
+   *
+   * @return The reference of `node` in the list (see {@link EventRelation}).
+   */
+  private static int listNodes(BDD bdd, int node, ArrayList<Integer> nodes,
+      HashMap<Integer, Integer> references) {
+    if (node == BDD.FALSE || node == BDD.TRUE) {
+      references.put(node, node);
+      return node;
+    }
+    Integer reference = references.get(node);
+    if (reference != null) {
+      return reference;
+    }
+    listNodes(bdd, bdd.getLow(node), nodes, references);
+    listNodes(bdd, bdd.getHigh(node), nodes, references);
+    reference = nodes.size() + 2;
+    nodes.add(node);
+    references.put(node, reference);
+    return reference;
+  }
+
+  /**
+   * @return The states in which the local bits from `offset` contain `value`,
+   *         on the current or the next state variables.
+   */
+  private static int slotEquals(BDD bdd, int offset, int width, int value,
+      boolean next) {
+    int result = BDD.TRUE;
+    for (int k = width - 1; k >= 0; k--) {
+      int var = 2 * (offset + k) + (next ? 1 : 0);
+      result = bdd.and(result, ((value >>> k) & 1) == 1 ? bdd.ithVar(var)
+          : bdd.nithVar(var));
+    }
+    return result;
+  }
+
+  private static int[] toArray(Collection<Integer> collection) {
+    int[] result = new int[collection.size()];
+    int i = 0;
+    for (int value : collection) {
+      result[i++] = value;
+    }
+    return result;
+  }
+
+  /**
+   * @return The smallest value of a slot. A state machine always has a
+   *         current state, so 0 is not used for the machines.
+   */
+  private int firstValue(int slot) {
+    return slot < codec.getStateMachines().size() ? 1 : 0;
+  }
+
+  /**
+   * Go to the next combination of the values of the slots.
+   *
+   * @return false if all the combinations have been given.
+   */
+  private boolean nextValues(int[] slots, int[] values) {
+    for (int i = 0; i < slots.length; i++) {
+      values[i]++;
+      if (values[i] < codec.getSlotDomain(slots[i])) {
+        return true;
+      }
+      values[i] = firstValue(slots[i]);
+    }
+    return false;
+  }
+
+  /**
+   * An unrolling of the transition relation in a SAT solver.
+   */
+  private class Unrolling {
+    ISolver solver = SolverFactory.newDefault();
+    int number_variables = 0;
+    long number_clauses = 0;
+    /**
+     * Not null if the clauses given to the solver are contradictory: no path
+     * of the current length exists.
+     */
+    ContradictionException contradiction = null;
+    /** The propositional variables of the bits of the states, by step */
+    ArrayList<int[]> state_variables = new ArrayList<int[]>();
+    /** The propositional variables choosing the event executed, by step */
+    ArrayList<int[]> event_variables = new ArrayList<int[]>();
+
+    Unrolling() {
+      state_variables.add(newVariables(number_bits));
+    }
+
+    /**
+     * @return `number` new propositional variables.
+     */
+    int[] newVariables(int number) {
+      int[] result = new int[number];
+      for (int i = 0; i < number; i++) {
+        result[i] = ++number_variables;
+      }
+      return result;
+    }
+
+    void addClause(int... literals) {
+      number_clauses++;
+      try {
+        solver.addClause(new VecInt(literals));
+      } catch (ContradictionException e) {
+        if (contradiction == null) {
+          contradiction = e;
+        }
+      }
+    }
+
+    /**
+     * The first state is one of the initial states.
+     */
+    void encodeInitialStates() {
+      int[] state = state_variables.get(0);
+      int[] choices = newVariables(initial_states.size());
+      int i = 0;
+      for (GS initial_state : initial_states) {
+        long[] vector = codec.encode(initial_state);
+        for (int b = 0; b < number_bits; b++) {
+          addClause(-choices[i], bit(vector, b) ? state[b] : -state[b]);
+        }
+        i++;
+      }
+      addClause(choices);
+    }
+
+    /**
+     * The slots of the state `index` contain values of their domain.
+     */
+    void encodeValidStates(int index) {
+      int[] state = state_variables.get(index);
+      for (int slot = 0; slot < codec.getNumberSlots(); slot++) {
+        int offset = codec.getSlotOffset(slot);
+        int width = codec.getSlotWidth(slot);
+        for (int value = 0; value < 1 << width; value++) {
+          if (value >= firstValue(slot)
+              && value < codec.getSlotDomain(slot)) {
+            continue;
+          }
+          int[] clause = new int[width];
+          for (int k = 0; k < width; k++) {
+            clause[k] = ((value >>> k) & 1) == 1 ? -state[offset + k]
+                : state[offset + k];
+          }
+          addClause(clause);
+        }
+      }
+    }
+
+    /**
+     * @return A variable implying that the state `index` is illegal or unsafe
+     *         (or P7 with the k-induction).
+     */
+    int encodeTarget(int index) {
+      int[] state = state_variables.get(index);
+      int flags = codec.getFlagsSlot();
+      int target = newVariables(1)[0];
+      int[] clause = new int[induction ? 4 : 3];
+      clause[0] = -target;
+      for (int i = 0; i < clause.length - 1; i++) {
+        clause[i + 1] = -state[codec.getSlotOffset(flags + i)];
+      }
+      addClause(clause);
+      return target;
+    }
+
+    /**
+     * The states `i` and `j` are different.
+     */
+    void encodeDistinctStates(int i, int j) {
+      int[] state = state_variables.get(i);
+      int[] other = state_variables.get(j);
+      int[] differences = newVariables(number_bits);
+      for (int b = 0; b < number_bits; b++) {
+        addClause(-differences[b], state[b], other[b]);
+        addClause(-differences[b], -state[b], -other[b]);
+      }
+      addClause(differences);
+    }
+
+    /**
+     * Look for a path whose states from 0 to `last` are distinct, and whose
+     * assumption `target` is true. The distinct states constraints are only
+     * added for the states found equal in the models of the solver.
+     */
+    boolean solveSimplePath(int target, int last) {
+      while (solve(target)) {
+        ArrayList<long[]> states = new ArrayList<long[]>(last + 1);
+        boolean simple = true;
+        for (int i = 0; i <= last; i++) {
+          long[] vector = decodeState(i);
+          for (int j = 0; j < i; j++) {
+            if (Arrays.equals(states.get(j), vector)) {
+              encodeDistinctStates(i, j);
+              simple = false;
+            }
+          }
+          states.add(vector);
+        }
+        if (simple) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Encode the execution of one external event from the state `index`.
+     */
+    void encodeStep(int index) {
+      int[] current = state_variables.get(index);
+      int[] next = newVariables(number_bits);
+      int[] choices = newVariables(relations.size());
+      state_variables.add(next);
+      event_variables.add(choices);
+
+      /* The state explored is legal, safe and not P7 */
+      int flags = codec.getFlagsSlot();
+      for (int i = 0; i < 3; i++) {
+        addClause(current[codec.getSlotOffset(flags + i)]);
+      }
+
+      /* Exactly one event, with a sequential counter for at most one */
+      addClause(choices);
+      if (choices.length > 1) {
+        int[] counter = newVariables(choices.length - 1);
+        addClause(-choices[0], counter[0]);
+        for (int i = 1; i < choices.length - 1; i++) {
+          addClause(-choices[i], counter[i]);
+          addClause(-counter[i - 1], counter[i]);
+          addClause(-choices[i], -counter[i - 1]);
+        }
+        addClause(-choices[choices.length - 1],
+            -counter[choices.length - 2]);
+      }
+
+      for (int i = 0; i < relations.size(); i++) {
+        encodeRelation(relations.get(i), choices[i], current, next);
+      }
+
+      /* The bits written by none of the chosen events are unchanged */
+      for (int b = 0; b < number_bits; b++) {
+        int[] writers = bit_writers[b];
+        int[] unchanged = new int[writers.length + 2];
+        int[] unchanged_negated = new int[writers.length + 2];
+        for (int i = 0; i < writers.length; i++) {
+          unchanged[i] = choices[writers[i]];
+          unchanged_negated[i] = choices[writers[i]];
+        }
+        unchanged[writers.length] = -current[b];
+        unchanged[writers.length + 1] = next[b];
+        unchanged_negated[writers.length] = current[b];
+        unchanged_negated[writers.length + 1] = -next[b];
+        addClause(unchanged);
+        addClause(unchanged_negated);
+      }
+    }
+
+    /**
+     * The relation holds between `current` and `next` if `choice` is true.
+     */
+    void encodeRelation(EventRelation relation, int choice, int[] current,
+        int[] next) {
+      int number_nodes = relation.node_variables.length;
+      int[] nodes = newVariables(number_nodes);
+      for (int n = 0; n < number_nodes; n++) {
+        int variable = relation.node_variables[n];
+        int bit = relation.bits[variable / 2];
+        int literal = variable % 2 == 0 ? current[bit] : next[bit];
+        implies(nodes[n], -literal, relation.node_highs[n], nodes);
+        implies(nodes[n], literal, relation.node_lows[n], nodes);
+      }
+      implies(choice, 0, relation.root, nodes);
+    }
+
+    /**
+     * Add the clause `literal` and `condition` implies the node `reference`.
+     *
+     * @param condition
+     *          A literal, or 0 if there is no condition.
+     */
+    void implies(int literal, int condition, int reference, int[] nodes) {
+      if (reference == BDD.TRUE) {
+        return;
+      }
+      ArrayList<Integer> clause = new ArrayList<Integer>(3);
+      clause.add(-literal);
+      if (condition != 0) {
+        clause.add(condition);
+      }
+      if (reference != BDD.FALSE) {
+        clause.add(nodes[reference - 2]);
+      }
+      addClause(toArray(clause));
+    }
+
+    boolean solve(int assumption) {
+      if (contradiction != null) {
+        return false;
+      }
+      solver.newVar(number_variables);
+      try {
+        return solver.isSatisfiable(new VecInt(new int[] { assumption }));
+      } catch (TimeoutException e) {
+        throw new Error("SAT4J timeout at the depth " + (depth + 1), e);
+      }
+    }
+
+    /**
+     * @return The vector of the state `index` in the model found by the
+     *         solver.
+     */
+    long[] decodeState(int index) {
+      int[] state = state_variables.get(index);
+      long[] vector = new long[codec.getNumberWords()];
+      for (int b = 0; b < number_bits; b++) {
+        if (solver.model(state[b])) {
+          vector[b >>> 6] |= 1L << (b & 63);
+        }
+      }
+      return vector;
+    }
+
+    /**
+     * @return The event executed from the state `index` in the model found
+     *         by the solver.
+     */
+    ExternalEvent decodeEvent(int index) {
+      int[] choices = event_variables.get(index);
+      for (int i = 0; i < choices.length; i++) {
+        if (solver.model(choices[i])) {
+          return relations.get(i).event;
+        }
+      }
+      throw new Error("No event chosen at the step " + index);
+    }
+  }
+
+  private static boolean bit(long[] vector, int b) {
+    return ((vector[b >>> 6] >>> (b & 63)) & 1) == 1;
+  }
+
+  /**
+   * Read the events of the model found by the solver, and execute them again
+   * with the simulator.
+   *
+   * @param length
+   *          The number of events of the trace.
+   * @return The state computed by the simulator, with its
+   *         previous_global_state and last_processed_external_event set along
+   *         the trace.
+   */
+  private GS decodeTrace(int length) {
+    trace.clear();
+    for (int index = 0; index < length; index++) {
+      trace.add(base.decodeEvent(index));
+    }
+
+    long[] initial_vector = base.decodeState(0);
+    GS state = null;
+    for (GS initial_state : initial_states) {
+      if (Arrays.equals(codec.encode(initial_state), initial_vector)) {
+        state = initial_state;
+        break;
+      }
+    }
+    if (state == null) {
+      throw new Error("The trace does not start from an initial state");
+    }
+    for (ExternalEvent e : trace) {
+      GS next_state = simulator.execute(state, e);
+      next_state.last_processed_external_event = e;
+      next_state.previous_global_state = state;
+      state = next_state;
+    }
+    if (!Arrays.equals(codec.encode(state), base.decodeState(length))) {
+      throw new Error("The trace found does not lead to the expected state");
+    }
+    return state;
+  }
+
+  private void printTrace(GS state) {
+    if (!PRINT_TRACE_UNSAFE) {
+      return;
+    }
+    System.out.println("The bounded model checker detected "
+        + (state.isLegal() ? "a dangerous state" : "an illegal state (P6)")
+        + " !");
+    System.out.println("***********************************");
+    System.out.println("A FULL trace of external event is: ");
+    System.out.println("***********************************");
+    System.out.println(printFullTrace(state));
+  }
+
+  @SuppressWarnings("unchecked")
+  public String printFullTrace(GS state) {
+    StringBuilder string_builder = new StringBuilder();
+    GS current = state;
+    string_builder.insert(0, "\nTo the final state:\n\n"
+        + simulator.globalStateToString(current) + "\n");
+    do {
+      if (current.last_processed_external_event != null) {
+        string_builder.insert(0, current.last_processed_external_event + "\n");
+      } else {
+        string_builder.insert(0, "\nFrom the initial state:\n"
+            + simulator.globalStateToString(current) + "\n");
+      }
+      current = (GS) current.previous_global_state;
+    } while (current != null);
+    return string_builder.toString();
+  }
+
+  /**
+   * @return The unsafe or illegal state found by the last verification, with
+   *         its trace. null if there is none.
+   */
+  public GS getUnsafeState() {
+    return unsafe_state;
+  }
+
+  /**
+   * @return The external events leading to the state found by the last
+   *         verification. Empty if there is none.
+   */
+  public LinkedList<ExternalEvent> getTrace() {
+    return new LinkedList<ExternalEvent>(trace);
+  }
+
+  /**
+   * @return The largest number of external events for which the last
+   *         verification proved that no unsafe nor illegal state is
+   *         reachable (-1 if none). If the verification is not complete (see
+   *         {@link #isComplete()}), it only holds for the encoded events.
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * @return The number of external events that the last verification could
+   *         not encode.
+   */
+  public int getNumberIgnoredEvents() {
+    return number_ignored_events;
+  }
+
+  /**
+   * @return true if the last verification encoded all the external events
+   *         and all their executions. Otherwise, the absence of an unsafe or
+   *         illegal state within {@link #getDepth()} external events only
+   *         holds for the encoded events.
+   */
+  public boolean isComplete() {
+    return number_ignored_events == 0 && number_failed_executions == 0;
+  }
+
+  /**
+   * @return The number of executions of encoded events on which the
+   *         simulator failed during the last verification.
+   */
+  public int getNumberFailedExecutions() {
+    return number_failed_executions;
+  }
+
+  /**
+   * @return true if the last verification proved with the k-induction that
+   *         no unsafe, illegal nor P7 state is reachable.
+   */
+  public boolean isProven() {
+    return proven;
+  }
+
+  /**
+   * @return The number of propositional variables of the last bounded model
+   *         checking.
+   */
+  public int getNumberVariables() {
+    return base == null ? 0 : base.number_variables;
+  }
+
+  public long getNumberClauses() {
+    return base == null ? 0 : base.number_clauses;
+  }
+
+  /**
+   * Prepare the model checker for a new verification.
+   */
+  public void reset() {
+    initial_states.clear();
+    relations.clear();
+    trace.clear();
+    base = null;
+    step = null;
+    codec = null;
+    unsafe_state = null;
+    depth = -1;
+    proven = false;
+  }
+
+  public StateVectorCodec<GS, M, S, T> getCodec() {
+    return codec;
+  }
+}
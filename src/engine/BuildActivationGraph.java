@@ -10,14 +10,19 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 
+import utils.Pair;
 import abstractGraph.AbstractModel;
 import abstractGraph.AbstractState;
 import abstractGraph.AbstractStateMachine;
 import abstractGraph.AbstractTransition;
 import abstractGraph.conditions.EnumeratedVariable;
+import abstractGraph.conditions.Formula;
 import abstractGraph.events.Assignment;
+import abstractGraph.events.ComputerCommandFunction;
 import abstractGraph.events.EnumeratedVariableChange;
+import abstractGraph.events.ExternalEvent;
 import abstractGraph.events.ModelCheckerEvent;
 import abstractGraph.events.SingleEvent;
 import abstractGraph.events.VariableChange;
@@ -73,8 +78,6 @@ public class BuildActivationGraph<M extends AbstractStateMachine<S, T>, S extend
     searchForEventWriting(syn_event_in_graphs, this.model);
     searchForEventWriting(syn_event_in_graphs, this.proof);
 
-    // TODO: we also need to add the commands generated by the functional model
-
     /* We then build the Activation Graph */
     buildOutgoingLinksFromModel(writing_state_machine, syn_event_in_graphs,
         model);
@@ -121,6 +124,16 @@ public class BuildActivationGraph<M extends AbstractStateMachine<S, T>, S extend
           }
           HashSet<EnumeratedVariable> list_variable = new HashSet<>();
           transition.getCondition().allVariables(list_variable);
+          /* The ACT generated by a command depend on conditions */
+          for (SingleEvent action : transition.getActions()) {
+            if (action instanceof ComputerCommandFunction
+                && model.getACTFCI((ComputerCommandFunction) action) != null) {
+              for (Pair<Formula, LinkedList<ExternalEvent>> condition_with_act : model
+                  .getACTFCI((ComputerCommandFunction) action)) {
+                condition_with_act.getFirst().allVariables(list_variable);
+              }
+            }
+          }
           for (EnumeratedVariable variable : list_variable) {
             addWritingStateMachineInGraph(writing_state_machine, state_machine,
                 variable);
@@ -185,15 +198,22 @@ public class BuildActivationGraph<M extends AbstractStateMachine<S, T>, S extend
                 P6_graphs.add(state_machine);
               }
             } else {
-              LinkedHashSet<M> liste_state_machine =
-                  syn_event_in_graphs.get(action.getName());
-
-              if (liste_state_machine == null) {
-                liste_state_machine = new LinkedHashSet<M>();
-                syn_event_in_graphs
-                    .put(action.getName(), liste_state_machine);
+              addEventWriting(syn_event_in_graphs, action.getName(),
+                  state_machine);
+              if (action instanceof ComputerCommandFunction) {
+                LinkedList<Pair<Formula, LinkedList<ExternalEvent>>> generated =
+                    model.getACTFCI((ComputerCommandFunction) action);
+                if (generated == null) {
+                  continue;
+                }
+                /* The ACT generated by the command are written by its graph */
+                for (Pair<Formula, LinkedList<ExternalEvent>> condition_with_act : generated) {
+                  for (ExternalEvent act : condition_with_act.getSecond()) {
+                    addEventWriting(syn_event_in_graphs, act.getName(),
+                        state_machine);
+                  }
+                }
               }
-              liste_state_machine.add(state_machine);
             }
           }
         }
@@ -201,6 +221,19 @@ public class BuildActivationGraph<M extends AbstractStateMachine<S, T>, S extend
     }
   }
 
+  private void addEventWriting(
+      LinkedHashMap<String, LinkedHashSet<M>> syn_event_in_graphs,
+      String event_name, M state_machine) {
+    LinkedHashSet<M> liste_state_machine =
+        syn_event_in_graphs.get(event_name);
+
+    if (liste_state_machine == null) {
+      liste_state_machine = new LinkedHashSet<M>();
+      syn_event_in_graphs.put(event_name, liste_state_machine);
+    }
+    liste_state_machine.add(state_machine);
+  }
+
   private void addInActivationGraph(M source_state_machine,
       M destination_state_machine, SingleEvent label) {
 
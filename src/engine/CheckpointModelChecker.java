@@ -0,0 +1,294 @@
+package engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashSet;
+
+import abstractGraph.AbstractGlobalState;
+import abstractGraph.AbstractState;
+import abstractGraph.AbstractStateMachine;
+import abstractGraph.AbstractTransition;
+import engine.stateStorage.PackedStateFifo;
+import engine.stateStorage.PackedStateHashSet;
+import engine.stateStorage.StateHashing;
+
+/**
+ * A {@link PackedModelChecker} saving periodically its progress in a file, so
+ * that an interrupted verification can be continued with
+ * {@link #resume(GraphSimulatorInterface)}.
+ *
+ * @details
+ *          A checkpoint is written before exploring a state when the last one
+ *          is older than the given interval. At this moment, all the
+ *          successors of the explored states have been processed, so the
+ *          checkpoint is consistent. It contains, in binary:
+ *          - a header with the size of the state vectors, the fingerprint
+ *          of the models (see
+ *          {@link engine.stateStorage.StateVectorCodec#getModelFingerprint()})
+ *          and a fingerprint of the initial states, once canonicalized and
+ *          deduplicated,
+ *          - the counters of the illegal states, of the functional warnings
+ *          and of the explored nodes,
+ *          - the initial states and the unsafe states found,
+ *          - the visited states and the states to explore, as packed vectors,
+ *          - the exploration tree (see {@link engine.stateStorage.TraceStore}).
+ *
+ *          The checkpoint is written in a temporary file which then replaces
+ *          the previous checkpoint, so a crash while writing it does not lose
+ *          the previous one. The checkpoint is not deleted at the end of the
+ *          verification.
+ */
+public class CheckpointModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>>
+    extends PackedModelChecker<GS, M, S, T> {
+
+  /** "SMCK" */
+  private static final int MAGIC = 0x534d434b;
+  private static final int VERSION = 2;
+
+  /** 10 minutes */
+  public static final long DEFAULT_INTERVAL = 10 * 60 * 1000;
+
+  private final File checkpoint_file;
+  private final long interval;
+  private long last_checkpoint_time;
+  private int number_checkpoints = 0;
+  /** The fingerprint of the initial states of the current verification */
+  private long initial_states_fingerprint;
+
+  /**
+   * @param checkpoint_file
+   *          The file where to write the checkpoints.
+   * @param interval
+   *          The minimal time between two checkpoints, in milliseconds.
+   */
+  public CheckpointModelChecker(File checkpoint_file, long interval) {
+    this.checkpoint_file = checkpoint_file;
+    this.interval = interval;
+  }
+
+  public CheckpointModelChecker(File checkpoint_file) {
+    this(checkpoint_file, DEFAULT_INTERVAL);
+  }
+
+  /**
+   * The set is written in the checkpoints: it must be a
+   * {@link PackedStateHashSet}.
+   */
+  @Override
+  protected PackedStateHashSet createVisitedSet(int number_words) {
+    return new PackedStateHashSet(number_words);
+  }
+
+  /**
+   * The queue is written in the checkpoints: it must be a
+   * {@link PackedStateFifo}.
+   */
+  @Override
+  protected PackedStateFifo createUnvisitedQueue(int number_words) {
+    return new PackedStateFifo(number_words);
+  }
+
+  @Override
+  protected void initializeStorage(
+      GraphSimulatorInterface<GS, M, S, T> simulator) {
+    super.initializeStorage(simulator);
+    last_checkpoint_time = System.currentTimeMillis();
+    number_checkpoints = 0;
+    if (codec != null) {
+      initial_states_fingerprint = initialStatesFingerprint(unvisited_states);
+    }
+  }
+
+  @Override
+  protected GS pollUnvisitedState() {
+    if (System.currentTimeMillis() - last_checkpoint_time >= interval) {
+      writeCheckpoint();
+    }
+    return super.pollUnvisitedState();
+  }
+
+  /**
+   * Write the current state of the verification in the checkpoint file. It
+   * must be called between the explorations of two states.
+   */
+  protected void writeCheckpoint() {
+    File temporary_file = new File(checkpoint_file.getPath() + ".tmp");
+    try {
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+          new FileOutputStream(temporary_file), 1 << 16));
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeInt(codec.getNumberWords());
+      output.writeInt(codec.getNumberBits());
+      output.writeLong(codec.getModelFingerprint());
+      output.writeLong(initial_states_fingerprint);
+
+      output.writeInt(number_illegal_states);
+      output.writeInt(number_of_functional_warning);
+      output.writeInt(number_explored_nodes);
+
+      writeStates(output, initial_states_by_id);
+      writeStates(output, unsafe_states);
+      ((PackedStateHashSet) packed_visited_states).write(output);
+      ((PackedStateFifo) packed_unvisited_states).write(output);
+      traces.write(output);
+      output.close();
+
+      Files.move(temporary_file.toPath(), checkpoint_file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      /* The verification goes on: the previous checkpoint is still valid */
+      System.err.println("Impossible to write the checkpoint "
+          + checkpoint_file + ": " + e);
+      temporary_file.delete();
+    }
+    number_checkpoints++;
+    last_checkpoint_time = System.currentTimeMillis();
+    if (VERY_VERBOSE) {
+      System.err.println("Checkpoint " + number_checkpoints + " written: "
+          + getNumberVisitedStates() + " visited states, "
+          + getNumberUnvisitedStates() + " states to explore");
+    }
+  }
+
+  private void writeStates(DataOutputStream output, Collection<GS> states)
+      throws IOException {
+    output.writeInt(states.size());
+    for (GS state : states) {
+      codec.encode(state, vector, 0);
+      for (int i = 0; i < vector.length; i++) {
+        output.writeLong(vector[i]);
+      }
+    }
+  }
+
+  /**
+   * @return A hash of the set of the encoded `states`, independent from their
+   *         order. The states are canonicalized (see
+   *         {@link #canonicalize(AbstractGlobalState)}) and deduplicated first,
+   *         as they are when they are explored.
+   */
+  private long initialStatesFingerprint(Collection<GS> states) {
+    HashSet<GS> canonical_states = new HashSet<>();
+    for (GS state : states) {
+      canonical_states.add(canonicalize(state));
+    }
+    long fingerprint = 0;
+    for (GS state : canonical_states) {
+      codec.encode(state, vector, 0);
+      fingerprint += StateHashing.hash(vector);
+    }
+    return fingerprint;
+  }
+
+  private void readStates(DataInputStream input, Collection<GS> states)
+      throws IOException {
+    int number_states = input.readInt();
+    for (int n = 0; n < number_states; n++) {
+      for (int i = 0; i < vector.length; i++) {
+        vector[i] = input.readLong();
+      }
+      states.add(codec.decode(vector));
+    }
+  }
+
+  /**
+   * Continue the verification saved in the checkpoint file.
+   *
+   * @details
+   *          The initial states of the interrupted verification must have been
+   *          given again (e.g. with {@link #addAllInitialStates(Collection)}):
+   *          they are used with the models to check that the checkpoint has
+   *          been written for the same verification. They are not explored
+   *          again.
+   *
+   * @param simulator
+   *          A simulator of the model of the interrupted verification.
+   * @return A GlobalState in which the safety properties are not verified,
+   *         found before or after the checkpoint. null if no such state
+   *         exists.
+   */
+  public GS resume(GraphSimulatorInterface<GS, M, S, T> simulator) {
+    simulator = sliceModels(simulator);
+    this.simulator = simulator;
+
+    initializeReduction(simulator);
+    initializeStorage(simulator);
+    if (codec == null) {
+      throw new IllegalStateException("The initial states must be given "
+          + "before resuming a verification");
+    }
+    unvisited_states.clear();
+    unsafe_states.clear();
+
+    try {
+      DataInputStream input = new DataInputStream(new BufferedInputStream(
+          new FileInputStream(checkpoint_file), 1 << 16));
+      try {
+        if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+          throw new IllegalArgumentException(checkpoint_file
+              + " is not a checkpoint of this version of the model checker");
+        }
+        if (input.readInt() != codec.getNumberWords()
+            || input.readInt() != codec.getNumberBits()
+            || input.readLong() != codec.getModelFingerprint()) {
+          throw new IllegalArgumentException("The checkpoint "
+              + checkpoint_file + " has not been written for this model");
+        }
+        if (input.readLong() != initial_states_fingerprint) {
+          throw new IllegalArgumentException("The checkpoint "
+              + checkpoint_file
+              + " has not been written for these initial states");
+        }
+
+        number_illegal_states = input.readInt();
+        number_of_functional_warning = input.readInt();
+        number_explored_nodes = input.readInt();
+
+        readStates(input, initial_states_by_id);
+        readStates(input, unsafe_states);
+        ((PackedStateHashSet) packed_visited_states).read(input);
+        ((PackedStateFifo) packed_unvisited_states).read(input);
+        traces.read(input);
+      } finally {
+        input.close();
+      }
+    } catch (IOException e) {
+      throw new Error("Impossible to read the checkpoint " + checkpoint_file,
+          e);
+    }
+
+    System.err.println("Resuming from " + checkpoint_file + ": "
+        + getNumberVisitedStates() + " visited states, "
+        + getNumberUnvisitedStates() + " states to explore");
+
+    GS result = exploreUnvisitedStates();
+    System.err.println("Visited states storage: "
+        + packed_visited_states.getStatistics());
+    if (result == null && !unsafe_states.isEmpty()) {
+      result = unsafe_states.iterator().next();
+    }
+    return result;
+  }
+
+  /**
+   * @return The number of checkpoints written by the last verification.
+   */
+  public int getNumberCheckpoints() {
+    return number_checkpoints;
+  }
+
+  public File getCheckpointFile() {
+    return checkpoint_file;
+  }
+}
@@ -0,0 +1,386 @@
+package engine;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map.Entry;
+
+import abstractGraph.AbstractGlobalState;
+import abstractGraph.AbstractModel;
+import abstractGraph.AbstractState;
+import abstractGraph.AbstractStateMachine;
+import abstractGraph.AbstractTransition;
+import abstractGraph.conditions.BooleanVariable;
+import abstractGraph.conditions.EnumeratedVariable;
+import abstractGraph.conditions.valuation.Valuation;
+import abstractGraph.events.ExternalEvent;
+import abstractGraph.events.ModelCheckerEvent;
+import abstractGraph.events.SingleEvent;
+import domainSpecificLanguage.engine.DSLSequentialGraphSimulator;
+import domainSpecificLanguage.graph.DSLModel;
+import graph.Model;
+
+/**
+ * The state machines and the variables that can influence the safety
+ * properties, used to slice the models before the model checking.
+ *
+ * @details
+ *          The cone of influence starts from the state machines of the proof
+ *          model and from the machines writing a ModelCheckerEvent (P_5, P_6
+ *          or P_7). It contains, transitively, the machines writing a
+ *          variable or an event used by a machine of the cone (see the
+ *          fathers in the {@link BuildActivationGraph}). The proof can only
+ *          receive the external events of the functional model, so a
+ *          functional machine listening to each external event of the
+ *          machines of the cone is also kept.
+ *
+ *          The other machines can neither modify the machines of the cone nor
+ *          the flags of the global states: the sliced models give the same
+ *          verdict, on the projection of the global states. The machines
+ *          removed keep their state in the global states, and the variables
+ *          only used by them keep their value.
+ */
+public class ConeOfInfluence<GS extends AbstractGlobalState<M, S, T, ?>, M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>> {
+
+  private AbstractModel<M, S, T> model;
+  private AbstractModel<M, S, T> proof;
+  private LinkedHashSet<M> machines = new LinkedHashSet<M>();
+  private LinkedHashSet<EnumeratedVariable> variables =
+      new LinkedHashSet<EnumeratedVariable>();
+  private AbstractModel<M, S, T> sliced_model;
+  private AbstractModel<M, S, T> sliced_proof;
+  private GraphSimulatorInterface<GS, M, S, T> sliced_simulator;
+
+  private int number_machines = 0;
+  private int number_variables = 0;
+  /** The number of combinations of the states of the removed machines */
+  private double removed_states = 1;
+
+  public ConeOfInfluence(GraphSimulatorInterface<GS, M, S, T> simulator) {
+    this.model = simulator.getModel();
+    this.proof = simulator.getProof();
+    computeCone();
+    buildSlicedModels();
+  }
+
+  /**
+   * Compute the machines and the variables of the cone of influence.
+   */
+  private void computeCone() {
+    AbstractModel<M, S, T> activation_proof = proof;
+    if (activation_proof == null) {
+      activation_proof = model.newInstance();
+      activation_proof.build();
+    }
+    BuildActivationGraph<M, S, T> activation_graph =
+        new BuildActivationGraph<M, S, T>(model, activation_proof);
+
+    LinkedList<M> to_process = new LinkedList<M>();
+    for (int n = 0; n < 2; n++) {
+      AbstractModel<M, S, T> current_model = n == 0 ? model : proof;
+      if (current_model == null) {
+        continue;
+      }
+      for (M state_machine : current_model) {
+        number_machines++;
+        if (n == 1 || writesModelCheckerEvent(state_machine)) {
+          to_process.add(state_machine);
+        }
+      }
+    }
+
+    while (!to_process.isEmpty()) {
+      while (!to_process.isEmpty()) {
+        M state_machine = to_process.poll();
+        if (!machines.add(state_machine)) {
+          continue;
+        }
+        for (BuildActivationGraph<M, S, T>.MyNode father : activation_graph.nodes
+            .get(state_machine).getFathers()) {
+          if (!machines.contains(father.data)) {
+            to_process.add(father.data);
+          }
+        }
+      }
+
+      /* Every external event of the cone must stay in the functional model */
+      for (ExternalEvent event : getExternalEvents(machines)) {
+        if (!isListened(event, machines)) {
+          M listener = getListener(event);
+          if (listener != null) {
+            to_process.add(listener);
+          }
+        }
+      }
+    }
+
+    HashSet<EnumeratedVariable> all_variables =
+        new HashSet<EnumeratedVariable>();
+    for (int n = 0; n < 2; n++) {
+      AbstractModel<M, S, T> current_model = n == 0 ? model : proof;
+      if (current_model == null) {
+        continue;
+      }
+      all_variables.addAll(current_model.getExistingVariables());
+      for (Entry<EnumeratedVariable, ? extends Iterable<M>> entry : current_model
+          .getWritingStateMachines().entrySet()) {
+        for (M writer : entry.getValue()) {
+          if (machines.contains(writer)) {
+            variables.add(entry.getKey());
+          }
+        }
+      }
+    }
+    for (M state_machine : machines) {
+      for (S state : state_machine) {
+        for (T transition : state) {
+          transition.getCondition().allVariables(variables);
+        }
+      }
+    }
+    number_variables = all_variables.size();
+
+    for (int n = 0; n < 2; n++) {
+      AbstractModel<M, S, T> current_model = n == 0 ? model : proof;
+      if (current_model == null) {
+        continue;
+      }
+      for (M state_machine : current_model) {
+        if (!machines.contains(state_machine)) {
+          int number_states = 0;
+          for (@SuppressWarnings("unused")
+          S state : state_machine) {
+            number_states++;
+          }
+          removed_states *= Math.max(1, number_states);
+        }
+      }
+    }
+  }
+
+  private boolean writesModelCheckerEvent(M state_machine) {
+    for (S state : state_machine) {
+      for (T transition : state) {
+        for (SingleEvent action : transition.getActions()) {
+          if (action instanceof ModelCheckerEvent) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return The external events (except the ACT) on which the given machines
+   *         have a transition.
+   */
+  private LinkedHashSet<ExternalEvent> getExternalEvents(
+      Iterable<M> state_machines) {
+    LinkedHashSet<ExternalEvent> result = new LinkedHashSet<ExternalEvent>();
+    for (M state_machine : state_machines) {
+      for (S state : state_machine) {
+        for (T transition : state) {
+          for (SingleEvent event : transition.getEvents()) {
+            if (event instanceof ExternalEvent
+                && !event.getName().startsWith("ACT_")) {
+              result.add((ExternalEvent) event);
+            }
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return true if a functional machine of `state_machines` has a transition
+   *         on `event`.
+   */
+  private boolean isListened(ExternalEvent event, Iterable<M> state_machines) {
+    for (M state_machine : state_machines) {
+      if (model.containsStateMachine(state_machine)
+          && listens(state_machine, event)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return A functional machine having a transition on `event`. null if
+   *         there is none.
+   */
+  private M getListener(ExternalEvent event) {
+    for (M state_machine : model) {
+      if (listens(state_machine, event)) {
+        return state_machine;
+      }
+    }
+    return null;
+  }
+
+  private boolean listens(M state_machine, ExternalEvent event) {
+    for (S state : state_machine) {
+      for (T transition : state) {
+        if (transition.getEvents().containsEvent(event)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Build the models restricted to the cone of influence, and their
+   * simulator.
+   */
+  @SuppressWarnings("unchecked")
+  private void buildSlicedModels() {
+    sliced_model = model.newInstance();
+    sliced_model.setModelName(model.getModelName());
+    sliced_proof = null;
+    if (proof != null) {
+      sliced_proof = proof.newInstance();
+      sliced_proof.setModelName(proof.getModelName());
+    }
+    for (M state_machine : machines) {
+      if (model.containsStateMachine(state_machine)) {
+        sliced_model.addStateMachine(state_machine);
+      } else {
+        sliced_proof.addStateMachine(state_machine);
+      }
+    }
+    sliced_model.build();
+    sliced_model.addAllACTFCI(model);
+    if (sliced_proof != null) {
+      sliced_proof.build();
+      sliced_proof.addAllACTFCI(proof);
+    }
+
+    if (model instanceof Model) {
+      SequentialGraphSimulator simulator = new SequentialGraphSimulator(
+          (Model) sliced_model, (Model) sliced_proof);
+      simulator.setVerbose(false);
+      sliced_simulator = (GraphSimulatorInterface<GS, M, S, T>) simulator;
+    } else if (model instanceof DSLModel) {
+      copyDeclarations((DSLModel) model, (DSLModel) sliced_model);
+      if (proof != null) {
+        copyDeclarations((DSLModel) proof, (DSLModel) sliced_proof);
+      }
+      sliced_simulator =
+          (GraphSimulatorInterface<GS, M, S, T>) new DSLSequentialGraphSimulator<>(
+              (DSLModel) sliced_model, (DSLModel) sliced_proof);
+    } else {
+      throw new Error("Unknown model " + model.getClass());
+    }
+  }
+
+  /**
+   * Copy the declarations of a DSL model: all its events and enumerations,
+   * and its variables of the cone with their initial value.
+   */
+  private void copyDeclarations(DSLModel original, DSLModel sliced) {
+    sliced.enumerations.addAll(original.enumerations);
+    sliced.templates.addAll(original.templates);
+    sliced.external_events.addAll(original.external_events);
+    sliced.internal_events.addAll(original.internal_events);
+    sliced.command_events.addAll(original.command_events);
+    for (EnumeratedVariable variable : original.variables) {
+      if (variables.contains(variable)) {
+        sliced.variables.add(variable);
+        Byte initial_value = original.initial_values.get(variable);
+        if (initial_value != null) {
+          sliced.initial_values.put(variable, initial_value);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return A copy of `state` where the machines and the variables outside of
+   *         the cone have their value in `reference`. Two states with the
+   *         same projection have the same behavior on the cone.
+   */
+  @SuppressWarnings("unchecked")
+  public GS project(GS state, GS reference) {
+    GS result = (GS) state.clone();
+    for (int n = 0; n < 2; n++) {
+      AbstractModel<M, S, T> current_model = n == 0 ? model : proof;
+      if (current_model == null) {
+        continue;
+      }
+      for (M state_machine : current_model) {
+        if (!machines.contains(state_machine)) {
+          result.setState(state_machine, reference.getState(state_machine));
+        }
+      }
+      for (EnumeratedVariable variable : current_model
+          .getExistingVariables()) {
+        if (variables.contains(variable)) {
+          continue;
+        }
+        if (variable instanceof BooleanVariable) {
+          BooleanVariable boolean_variable = (BooleanVariable) variable;
+          if (result.getValuation() instanceof Valuation
+              && !reference.variableIsInitialized(boolean_variable)) {
+            ((Valuation) result.getValuation()).remove(boolean_variable);
+          } else {
+            result.setVariableValue(boolean_variable,
+                reference.getVariableValue(boolean_variable));
+          }
+        } else {
+          result.setVariableValue(variable,
+              reference.getVariableValue(variable));
+        }
+      }
+    }
+    result.setIsLegal(state.isLegal());
+    result.setIsSafe(state.isSafe());
+    result.setNotP7(state.isNotP7());
+    return result;
+  }
+
+  /**
+   * @return The simulator of the sliced models.
+   */
+  public GraphSimulatorInterface<GS, M, S, T> getSimulator() {
+    return sliced_simulator;
+  }
+
+  public AbstractModel<M, S, T> getModel() {
+    return sliced_model;
+  }
+
+  public AbstractModel<M, S, T> getProof() {
+    return sliced_proof;
+  }
+
+  /**
+   * @return The state machines of the cone, functional and proof.
+   */
+  public LinkedHashSet<M> getStateMachines() {
+    return machines;
+  }
+
+  public LinkedHashSet<EnumeratedVariable> getVariables() {
+    return variables;
+  }
+
+  /**
+   * @return An upper bound of the factor by which the number of global states
+   *         is divided: the number of combinations of the states of the
+   *         removed machines.
+   */
+  public double getRemovedStatesFactor() {
+    return removed_states;
+  }
+
+  @Override
+  public String toString() {
+    return machines.size() + " state machines kept out of " + number_machines
+        + ", " + variables.size() + " variables kept out of "
+        + number_variables + " (at most " + String.format("%.3g",
+            removed_states) + " times fewer global states)";
+  }
+}
@@ -0,0 +1,409 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map.Entry;
+
+import utils.Pair;
+import abstractGraph.AbstractModel;
+import abstractGraph.AbstractState;
+import abstractGraph.AbstractStateMachine;
+import abstractGraph.AbstractTransition;
+import abstractGraph.conditions.EnumeratedVariable;
+import abstractGraph.conditions.Formula;
+import abstractGraph.events.ComputerCommandFunction;
+import abstractGraph.events.ExternalEvent;
+import abstractGraph.events.ModelCheckerEvent;
+import abstractGraph.events.SingleEvent;
+
+/**
+ * A static analysis of the external events that can be executed in any order,
+ * used for the partial order reduction of the {@link ModelChecker}.
+ *
+ * @details
+ *          The execution of an external event `e` can only take transitions
+ *          of the state machines activated by `e`: the machines listening to
+ *          `e` and, transitively, the machines listening to an event written
+ *          in the actions of an activated machine (synchronisation events,
+ *          variable changes, commands and the ACT generated by the commands).
+ *          The events are compared by name, so that the commands of the
+ *          functional model activate the proof model.
+ *
+ *          As in {@link BuildActivationGraph}, an activated machine reads the
+ *          variables of its conditions, and it writes the variables given by
+ *          {@link AbstractModel#getWritingStateMachines()}.
+ *
+ *          Two events are independent if they activate disjoint sets of state
+ *          machines and if none of them writes a variable used by the other:
+ *          executing one of them can neither enable, disable nor modify the
+ *          execution of the other. The events are grouped in the connected
+ *          components of the dependency relation. No event of a component
+ *          depends on an event of another component, so the enabled events of
+ *          a component are a persistent set.
+ *
+ *          An event is visible if it activates a state machine writing a
+ *          ModelCheckerEvent (P_5, P_6 or P_7).
+ */
+public class EventIndependence<M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>> {
+
+  private AbstractModel<M, S, T> model;
+
+  /** The state machines having a transition on a given event name */
+  private HashMap<String, LinkedHashSet<M>> listeners =
+      new HashMap<String, LinkedHashSet<M>>();
+  /** The event names written by the actions of a state machine */
+  private HashMap<M, HashSet<String>> written_events =
+      new HashMap<M, HashSet<String>>();
+  private HashMap<M, HashSet<EnumeratedVariable>> read_variables =
+      new HashMap<M, HashSet<EnumeratedVariable>>();
+  private HashMap<M, HashSet<EnumeratedVariable>> written_variables =
+      new HashMap<M, HashSet<EnumeratedVariable>>();
+  private HashSet<M> visible_machines = new HashSet<M>();
+
+  /** The footprint of every external event, by name */
+  private LinkedHashMap<String, Footprint> footprints =
+      new LinkedHashMap<String, Footprint>();
+  /** The component of every external event, by name */
+  private HashMap<String, Integer> components = new HashMap<String, Integer>();
+  private int number_components = 0;
+
+  public EventIndependence(GraphSimulatorInterface<?, M, S, T> simulator) {
+    this(simulator.getModel(), simulator.getProof());
+  }
+
+  /**
+   * The models must have been built.
+   *
+   * @param proof
+   *          The proof model. It can be null.
+   */
+  public EventIndependence(AbstractModel<M, S, T> model,
+      AbstractModel<M, S, T> proof) {
+    this.model = model;
+
+    LinkedHashSet<String> external_events = new LinkedHashSet<String>();
+    analyseModel(model, external_events);
+    if (proof != null) {
+      analyseModel(proof, external_events);
+    }
+
+    for (String event : external_events) {
+      footprints.put(event, computeFootprint(event));
+    }
+    computeComponents();
+  }
+
+  /**
+   * Fill the read and write sets of the state machines of a model.
+   *
+   * @param external_events
+   *          The names of the external events found are added in it.
+   */
+  private void analyseModel(AbstractModel<M, S, T> current_model,
+      LinkedHashSet<String> external_events) {
+    for (M state_machine : current_model) {
+      HashSet<String> writes = new HashSet<String>();
+      HashSet<EnumeratedVariable> reads = new HashSet<EnumeratedVariable>();
+      written_events.put(state_machine, writes);
+      read_variables.put(state_machine, reads);
+      written_variables.put(state_machine, new HashSet<EnumeratedVariable>());
+
+      for (S state : state_machine) {
+        for (T transition : state) {
+          for (SingleEvent event : transition.getEvents()) {
+            LinkedHashSet<M> machines = listeners.get(event.getName());
+            if (machines == null) {
+              machines = new LinkedHashSet<M>();
+              listeners.put(event.getName(), machines);
+            }
+            machines.add(state_machine);
+            /* The ACT are only executed when generated by a command */
+            if (event instanceof ExternalEvent
+                && !event.getName().startsWith("ACT_")) {
+              external_events.add(event.getName());
+            }
+          }
+
+          transition.getCondition().allVariables(reads);
+
+          for (SingleEvent action : transition.getActions()) {
+            if (action instanceof ModelCheckerEvent) {
+              visible_machines.add(state_machine);
+              continue;
+            }
+            writes.add(action.getName());
+            if (action instanceof ComputerCommandFunction) {
+              addGeneratedACT((ComputerCommandFunction) action, writes, reads);
+            }
+          }
+        }
+      }
+    }
+
+    HashMap<EnumeratedVariable, ? extends Collection<M>> writing_state_machines =
+        current_model.getWritingStateMachines();
+    if (writing_state_machines == null) {
+      throw new IllegalStateException("The model "
+          + current_model.getModelName() + " must be built");
+    }
+    for (Entry<EnumeratedVariable, ? extends Collection<M>> entry : writing_state_machines
+        .entrySet()) {
+      for (M writer : entry.getValue()) {
+        written_variables.get(writer).add(entry.getKey());
+      }
+    }
+  }
+
+  /**
+   * A command can generate ACT events, executed after the current external
+   * event, depending on a condition.
+   */
+  private void addGeneratedACT(ComputerCommandFunction command,
+      HashSet<String> writes, HashSet<EnumeratedVariable> reads) {
+    LinkedList<Pair<Formula, LinkedList<ExternalEvent>>> generated =
+        model.getACTFCI(command);
+    if (generated == null) {
+      return;
+    }
+    for (Pair<Formula, LinkedList<ExternalEvent>> condition_with_act : generated) {
+      condition_with_act.getFirst().allVariables(reads);
+      for (ExternalEvent act : condition_with_act.getSecond()) {
+        writes.add(act.getName());
+      }
+    }
+  }
+
+  /**
+   * @return The machines activated by the external event `event_name`, and
+   *         the variables they use.
+   */
+  private Footprint computeFootprint(String event_name) {
+    Footprint footprint = new Footprint();
+    LinkedList<M> to_process = new LinkedList<M>();
+    HashSet<String> processed_events = new HashSet<String>();
+    LinkedList<String> events_to_process = new LinkedList<String>();
+    events_to_process.add(event_name);
+    processed_events.add(event_name);
+
+    while (!events_to_process.isEmpty()) {
+      LinkedHashSet<M> machines = listeners.get(events_to_process.poll());
+      if (machines != null) {
+        for (M machine : machines) {
+          if (footprint.machines.add(machine)) {
+            to_process.add(machine);
+          }
+        }
+      }
+      while (!to_process.isEmpty()) {
+        M machine = to_process.poll();
+        footprint.reads.addAll(read_variables.get(machine));
+        footprint.writes.addAll(written_variables.get(machine));
+        footprint.is_visible |= visible_machines.contains(machine);
+        for (String written_event : written_events.get(machine)) {
+          if (processed_events.add(written_event)) {
+            events_to_process.add(written_event);
+          }
+        }
+      }
+    }
+    return footprint;
+  }
+
+  private boolean isIndependent(Footprint f1, Footprint f2) {
+    return Collections.disjoint(f1.machines, f2.machines)
+        && Collections.disjoint(f1.writes, f2.writes)
+        && Collections.disjoint(f1.writes, f2.reads)
+        && Collections.disjoint(f2.writes, f1.reads);
+  }
+
+  /**
+   * Group the external events in the connected components of the dependency
+   * relation.
+   */
+  private void computeComponents() {
+    String[] events = footprints.keySet().toArray(new String[0]);
+    int[] parents = new int[events.length];
+    for (int i = 0; i < events.length; i++) {
+      parents[i] = i;
+    }
+    for (int i = 0; i < events.length; i++) {
+      Footprint f1 = footprints.get(events[i]);
+      for (int j = i + 1; j < events.length; j++) {
+        if (!isIndependent(f1, footprints.get(events[j]))) {
+          parents[find(parents, i)] = find(parents, j);
+        }
+      }
+    }
+
+    HashMap<Integer, Integer> component_ids = new HashMap<Integer, Integer>();
+    for (int i = 0; i < events.length; i++) {
+      int root = find(parents, i);
+      Integer id = component_ids.get(root);
+      if (id == null) {
+        id = number_components++;
+        component_ids.put(root, id);
+      }
+      components.put(events[i], id);
+    }
+  }
+
+  private static int find(int[] parents, int i) {
+    while (parents[i] != i) {
+      parents[i] = parents[parents[i]];
+      i = parents[i];
+    }
+    return i;
+  }
+
+  /**
+   * @return true if the two external events can be executed in any order.
+   *         Unknown events are dependent on any event.
+   */
+  public boolean isIndependent(ExternalEvent e1, ExternalEvent e2) {
+    Footprint f1 = footprints.get(e1.getName());
+    Footprint f2 = footprints.get(e2.getName());
+    if (f1 == null || f2 == null) {
+      return false;
+    }
+    return isIndependent(f1, f2);
+  }
+
+  /**
+   * @return true if the event can set a P5, P6 or P7 flag. Unknown events are
+   *         visible.
+   */
+  public boolean isVisible(ExternalEvent event) {
+    Footprint footprint = footprints.get(event.getName());
+    return footprint == null || footprint.is_visible;
+  }
+
+  /**
+   * @return The component of the event, or -1 if it is not an external event
+   *         of the models.
+   */
+  public int getComponent(ExternalEvent event) {
+    Integer component = components.get(event.getName());
+    return component == null ? -1 : component;
+  }
+
+  public int getNumberComponents() {
+    return number_components;
+  }
+
+  /**
+   * Compute the candidate ample sets of a state: the enabled events of a
+   * component, if they are all invisible.
+   *
+   * @param enabled
+   *          The events returned by
+   *          {@link GraphSimulatorInterface#getPossibleEvent}.
+   * @return The candidate ample sets, strict subsets of `enabled`, from the
+   *         smallest to the largest. Empty if `enabled` cannot be reduced.
+   */
+  public ArrayList<LinkedHashSet<ExternalEvent>> getAmpleSets(
+      LinkedHashSet<ExternalEvent> enabled) {
+    ArrayList<LinkedHashSet<ExternalEvent>> result =
+        new ArrayList<LinkedHashSet<ExternalEvent>>();
+    if (enabled.size() <= 1) {
+      return result;
+    }
+
+    LinkedHashMap<Integer, LinkedHashSet<ExternalEvent>> enabled_by_component =
+        new LinkedHashMap<Integer, LinkedHashSet<ExternalEvent>>();
+    HashSet<Integer> visible_components = new HashSet<Integer>();
+    for (ExternalEvent event : enabled) {
+      int component = getComponent(event);
+      if (component < 0) {
+        return result;
+      }
+      if (isVisible(event)) {
+        visible_components.add(component);
+      }
+      LinkedHashSet<ExternalEvent> events = enabled_by_component.get(component);
+      if (events == null) {
+        events = new LinkedHashSet<ExternalEvent>();
+        enabled_by_component.put(component, events);
+      }
+      events.add(event);
+    }
+    if (enabled_by_component.size() == 1) {
+      return result;
+    }
+
+    for (Entry<Integer, LinkedHashSet<ExternalEvent>> entry : enabled_by_component
+        .entrySet()) {
+      if (!visible_components.contains(entry.getKey())) {
+        result.add(entry.getValue());
+      }
+    }
+    Collections.sort(result, new Comparator<LinkedHashSet<ExternalEvent>>() {
+      @Override
+      public int compare(LinkedHashSet<ExternalEvent> s1,
+          LinkedHashSet<ExternalEvent> s2) {
+        return Integer.compare(s1.size(), s2.size());
+      }
+    });
+    return result;
+  }
+
+  /**
+   * @return The state machines that the event can activate. Empty for an
+   *         unknown event.
+   */
+  public Collection<M> getActivatedMachines(ExternalEvent event) {
+    Footprint footprint = footprints.get(event.getName());
+    if (footprint == null) {
+      return Collections.emptySet();
+    }
+    return Collections.unmodifiableSet(footprint.machines);
+  }
+
+  /**
+   * @return The variables that the state machines activated by the event can
+   *         read. Empty for an unknown event.
+   */
+  public Collection<EnumeratedVariable> getReadVariables(ExternalEvent event) {
+    Footprint footprint = footprints.get(event.getName());
+    if (footprint == null) {
+      return Collections.emptySet();
+    }
+    return Collections.unmodifiableSet(footprint.reads);
+  }
+
+  /**
+   * @return The variables that the state machines activated by the event can
+   *         write. Empty for an unknown event.
+   */
+  public Collection<EnumeratedVariable> getWrittenVariables(
+      ExternalEvent event) {
+    Footprint footprint = footprints.get(event.getName());
+    if (footprint == null) {
+      return Collections.emptySet();
+    }
+    return Collections.unmodifiableSet(footprint.writes);
+  }
+
+  @Override
+  public String toString() {
+    return footprints.size() + " external events in " + number_components
+        + " independent components";
+  }
+
+  /**
+   * The state machines activated by an external event and the variables they
+   * read and write.
+   */
+  private class Footprint {
+    HashSet<M> machines = new HashSet<M>();
+    HashSet<EnumeratedVariable> reads = new HashSet<EnumeratedVariable>();
+    HashSet<EnumeratedVariable> writes = new HashSet<EnumeratedVariable>();
+    boolean is_visible = false;
+  }
+}
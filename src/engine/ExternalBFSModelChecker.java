@@ -0,0 +1,352 @@
+package engine;
+
+import java.io.File;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Set;
+
+import abstractGraph.AbstractGlobalState;
+import abstractGraph.AbstractState;
+import abstractGraph.AbstractStateMachine;
+import abstractGraph.AbstractTransition;
+import abstractGraph.events.ExternalEvent;
+import engine.stateStorage.ExternalLayerStore;
+import engine.stateStorage.StateVectorCodec;
+import engine.stateStorage.TraceStore;
+
+/**
+ * A breadth first model checker storing the layers of the search and the
+ * visited states in files (see {@link ExternalLayerStore}).
+ *
+ * @details
+ *          The duplicate detection is delayed: the states found while
+ *          exploring a layer are written in sorted batches, and they are
+ *          compared to the visited states all at once when the layer is
+ *          finished. Neither the frontier nor the visited states are limited
+ *          by the memory.
+ *
+ *          Every candidate carries the identifier of its parent and the event
+ *          leading to it, and the exploration tree is recorded in a
+ *          {@link TraceStore} (6 bytes per state in memory). Since the search
+ *          is breadth first, the returned unsafe state is one of the closest
+ *          to the initial states, and its trace, computed again by replaying
+ *          the events from its initial state (see
+ *          {@link #printFullTrace(AbstractGlobalState)}), is a shortest
+ *          counterexample.
+ */
+public class ExternalBFSModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>>
+    extends ModelChecker<GS, M, S, T> {
+
+  /** 2^20 vectors per sorted batch */
+  public static final int DEFAULT_BATCH_SIZE = 1 << 20;
+
+  private File scratch_directory;
+  private int batch_size;
+
+  protected StateVectorCodec<GS, M, S, T> codec;
+  protected ExternalLayerStore layers;
+  /*
+   * Buffer used to encode and decode the states: a state followed by the
+   * identifier of its parent and of its event (see payload())
+   */
+  protected long[] vector;
+
+  protected TraceStore traces = new TraceStore();
+  /** The identifier of the state being explored. -1 for the initial states */
+  protected int current_state_id = -1;
+  /** The initial states, by identifier */
+  protected ArrayList<GS> initial_states_by_id = new ArrayList<GS>();
+  /** The parent of the states returned by processGS (unsafe or P7) */
+  private IdentityHashMap<GS, Integer> reported_states_parents =
+      new IdentityHashMap<GS, Integer>();
+
+  private GS first_unsafe_state;
+  private int first_unsafe_depth;
+
+  /**
+   * @param scratch_directory
+   *          The directory where to write the layers.
+   * @param batch_size
+   *          The number of states sorted in memory at once.
+   */
+  public ExternalBFSModelChecker(File scratch_directory, int batch_size) {
+    if (!scratch_directory.isDirectory()) {
+      throw new IllegalArgumentException(scratch_directory
+          + " is not a directory");
+    }
+    this.scratch_directory = scratch_directory;
+    this.batch_size = batch_size;
+  }
+
+  public ExternalBFSModelChecker(File scratch_directory) {
+    this(scratch_directory, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Use the directory of the temporary files as scratch directory.
+   */
+  public ExternalBFSModelChecker() {
+    this(new File(System.getProperty("java.io.tmpdir")));
+  }
+
+  @Override
+  protected void initializeStorage(
+      GraphSimulatorInterface<GS, M, S, T> simulator) {
+    super.initializeStorage(simulator);
+    close();
+    codec = null;
+    layers = null;
+    first_unsafe_state = null;
+    traces.clear();
+    current_state_id = -1;
+    initial_states_by_id.clear();
+    reported_states_parents.clear();
+    if (unvisited_states.size() == 0) {
+      return;
+    }
+    codec = new StateVectorCodec<GS, M, S, T>(simulator,
+        unvisited_states.iterator().next());
+    vector = new long[codec.getNumberWords() + 1];
+    layers = new ExternalLayerStore(codec.getNumberWords(), 1,
+        scratch_directory, batch_size);
+    System.err.println("Packed state vector: " + codec);
+  }
+
+  /**
+   * The duplicates are detected when a layer is finished.
+   */
+  @Override
+  protected boolean isVisited(GS state) {
+    return false;
+  }
+
+  @Override
+  protected void addVisited(GS state) {
+  }
+
+  /**
+   * @return The payload of a candidate discovered from `parent_id` by
+   *         `event_id`: the parent in the high bits and the event in the 16
+   *         low bits. -1 for an initial state.
+   */
+  private static long payload(int parent_id, short event_id) {
+    return ((long) parent_id << 16) | (event_id & 0xFFFF);
+  }
+
+  @Override
+  protected void addUnvisited(GS state) {
+    codec.encode(state, vector, 0);
+    if (current_state_id < 0) {
+      vector[codec.getNumberWords()] = payload(-1, (short) -1);
+    } else {
+      vector[codec.getNumberWords()] = payload(current_state_id,
+          traces.getEventId(state.last_processed_external_event));
+    }
+    layers.addCandidate(vector);
+  }
+
+  @Override
+  protected GS processGS(GS state) {
+    GS result = super.processGS(state);
+    if (result != null) {
+      reported_states_parents.put(result, current_state_id);
+    }
+    if (result != null && !result.isSafe() && first_unsafe_state == null) {
+      first_unsafe_state = result;
+      first_unsafe_depth = layers == null ? 0 : layers.getNumberLayers();
+    }
+    return result;
+  }
+
+  @Override
+  protected boolean hasUnvisitedStates() {
+    if (layers == null) {
+      return false;
+    }
+    if (layers.getLayerRemaining() == 0) {
+      if (layers.getNumberCandidates() == 0) {
+        return false;
+      }
+      long layer_size = layers.finishLayer();
+      if (VERY_VERBOSE) {
+        System.err.println("Layer " + layers.getNumberLayers() + ": "
+            + layer_size + " new states");
+      }
+    }
+    return layers.getLayerRemaining() != 0;
+  }
+
+  /**
+   * The states receive their identifier in the exploration tree when they are
+   * read from their layer, since the duplicates are only removed when the
+   * layer is finished.
+   */
+  @Override
+  protected GS pollUnvisitedState() {
+    layers.poll(vector);
+    long payload = vector[codec.getNumberWords()];
+    int parent_id = (int) (payload >> 16);
+    current_state_id = traces.add(parent_id, (short) payload);
+    GS state = codec.decode(vector);
+    if (parent_id < 0) {
+      assert current_state_id == initial_states_by_id.size();
+      initial_states_by_id.add(state);
+    }
+    return state;
+  }
+
+  @Override
+  public long getNumberVisitedStates() {
+    if (layers == null) {
+      return 0;
+    }
+    return layers.getNumberVisited();
+  }
+
+  @Override
+  public long getNumberUnvisitedStates() {
+    if (layers == null) {
+      return unvisited_states.size();
+    }
+    return layers.getLayerRemaining() + layers.getNumberCandidates();
+  }
+
+  @Override
+  public GS verify(GraphSimulatorInterface<GS, M, S, T> simulator) {
+    GS result = super.verify(simulator);
+    if (layers != null) {
+      System.err.println("Visited states storage: " + layers.getStatistics());
+    }
+    if (first_unsafe_state != null) {
+      System.err.println("The first unsafe state has been found at depth "
+          + first_unsafe_depth);
+      return first_unsafe_state;
+    }
+    return result;
+  }
+
+  /**
+   * The partial order reduction needs to know the visited states during the
+   * exploration.
+   */
+  @Override
+  public void setPartialOrderReduction(boolean partial_order_reduction) {
+    if (partial_order_reduction) {
+      throw new UnsupportedOperationException("The external BFS model "
+          + "checker does not support the partial order reduction");
+    }
+  }
+
+  /**
+   * Print the trace of a state returned by the last verification. The states
+   * of the trace are computed again by executing its events from its initial
+   * state.
+   */
+  @Override
+  public String printFullTrace(GS state) {
+    Integer parent = reported_states_parents.get(state);
+    if (parent != null && parent >= 0) {
+      state.previous_global_state = replay(parent);
+    }
+    return super.printFullTrace(state);
+  }
+
+  /**
+   * @return The state `id` computed again from its initial state, with its
+   *         previous_global_state and last_processed_external_event set along
+   *         the trace.
+   */
+  protected GS replay(int id) {
+    GS current = initial_states_by_id.get(traces.getRoot(id));
+    LinkedList<ExternalEvent> events = traces.getTrace(id);
+    for (ExternalEvent e : events) {
+      GS next_state = canonicalize(simulator.execute(current, e));
+      next_state.last_processed_external_event = e;
+      next_state.previous_global_state = current;
+      current = next_state;
+    }
+    return current;
+  }
+
+  @Override
+  public void reset() {
+    super.reset();
+    close();
+    traces.clear();
+    initial_states_by_id.clear();
+    reported_states_parents.clear();
+  }
+
+  /**
+   * Delete the files of the last verification. They are also deleted by the
+   * next verification and by {@link #reset()}.
+   */
+  public void close() {
+    if (layers != null) {
+      layers.close();
+    }
+  }
+
+  /**
+   * @return The depth of the first unsafe state found by the last
+   *         verification, or -1.
+   */
+  public int getFirstUnsafeDepth() {
+    return first_unsafe_state == null ? -1 : first_unsafe_depth;
+  }
+
+  /**
+   * The visited states are stored in a file until {@link #close()}.
+   *
+   * @return A view decoding the visited states of the last verification. Its
+   *         iterator reads the file sequentially.
+   */
+  @Override
+  public Set<GS> getVisited_states() {
+    if (layers == null) {
+      return Collections.emptySet();
+    }
+    return new AbstractSet<GS>() {
+      @Override
+      public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, layers.getNumberVisited());
+      }
+
+      @Override
+      public Iterator<GS> iterator() {
+        final Iterator<long[]> vectors = layers.visitedIterator();
+        return new Iterator<GS>() {
+          @Override
+          public boolean hasNext() {
+            return vectors.hasNext();
+          }
+
+          @Override
+          public GS next() {
+            return codec.decode(vectors.next());
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * @return The exploration tree of the last verification.
+   */
+  public TraceStore getTraces() {
+    return traces;
+  }
+
+  public StateVectorCodec<GS, M, S, T> getCodec() {
+    return codec;
+  }
+}
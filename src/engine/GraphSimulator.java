@@ -1,12 +1,12 @@
 package engine;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
-import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.Queue;
 
 import utils.Pair;
 import abstractGraph.AbstractGlobalState;
@@ -19,6 +19,8 @@ import abstractGraph.conditions.EnumeratedVariable;
 import abstractGraph.conditions.Formula;
 import abstractGraph.events.CommandEvent;
 import abstractGraph.events.ComputerCommandFunction;
+import abstractGraph.events.EventQueue;
+import abstractGraph.events.EventTable;
 import abstractGraph.events.Events;
 import abstractGraph.events.ExternalEvent;
 import abstractGraph.events.ModelCheckerEvent;
@@ -36,28 +38,40 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
     implements
     GraphSimulatorInterface<GS, M, S, T> {
 
-  /** This is the list of the different queues used in the simulator. */
-  protected LinkedList<SingleEvent> internal_functional_event_queue =
-      new LinkedList<SingleEvent>();
-  protected LinkedList<SingleEvent> internal_proof_event_queue =
-      new LinkedList<SingleEvent>();
-  protected LinkedList<SingleEvent> commands_queue =
-      new LinkedList<SingleEvent>();
-  protected LinkedList<SingleEvent> temporary_commands_queue =
-      new LinkedList<SingleEvent>();
+  /**
+   * This is the list of the different queues used in the simulator. The queues
+   * of events contain their ids, and are reused from one execution to another.
+   */
+  protected EventQueue internal_functional_event_queue = new EventQueue();
+  protected EventQueue internal_proof_event_queue = new EventQueue();
+  protected EventQueue commands_queue = new EventQueue();
+  protected EventQueue temporary_commands_queue = new EventQueue();
   protected LinkedList<ExternalEvent> ACT_FCI_queue =
       new LinkedList<ExternalEvent>();
   protected LinkedList<ExternalEvent> XTECH_commands =
       new LinkedList<ExternalEvent>();
-  protected LinkedHashMap<M, S> functionnal_transitions_pull_list =
-      new LinkedHashMap<M, S>();
-  protected LinkedHashMap<M, S> proof_transitions_pull_list =
-      new LinkedHashMap<M, S>();
+  protected TransitionsPullList<M, S> functionnal_transitions_pull_list =
+      new TransitionsPullList<M, S>();
+  protected TransitionsPullList<M, S> proof_transitions_pull_list =
+      new TransitionsPullList<M, S>();
   protected LinkedList<ExternalEvent> restrained_external_event_list = null;
-  protected HashMap<BooleanVariable, Boolean> temporary_variable_change = new HashMap<BooleanVariable, Boolean>();
   /* Only used when executing the micro-steps */
-  protected LinkedList<SingleEvent> external_proof_event_queue =
-      new LinkedList<SingleEvent>();
+  protected EventQueue external_proof_event_queue = new EventQueue();
+  /* The events transfered from the functional model to the proof model */
+  protected EventQueue transfert_list = new EventQueue();
+  /* The events of the queues, by id */
+  protected EventTable event_table = new EventTable();
+
+  /**
+   * The variable changes of the current step, applied at its end and indexed
+   * by the unique identifier of the variables: the k-th variable is set to
+   * temporary_values[k] if temporary_variables[k] is not null.
+   */
+  private BooleanVariable[] temporary_variables = new BooleanVariable[16];
+  private boolean[] temporary_values = new boolean[16];
+  /* The identifiers of the variables modified during the step */
+  private int[] temporary_identifiers = new int[16];
+  private int number_temporary_variables = 0;
 
   /** This is the model to execute */
   protected AbstractModel<M, S, T> model;
@@ -111,37 +125,71 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
   public GraphSimulator<GS, M, S, T> clone() {
     GraphSimulator<GS, M, S, T> result =
         new GraphSimulator<GS, M, S, T>(this.model, this.proof);
-    result.setVerbose(this.verbose);
+    copySettings(result);
     return result;
   }
 
+  /**
+   * Copy the settings changing the execution (verbosity and restrained
+   * external events) into `result`, so that a clone explores the same
+   * states.
+   */
+  protected void copySettings(GraphSimulator<GS, M, S, T> result) {
+    result.setVerbose(this.verbose);
+    if (restrained_external_event_list != null) {
+      result.setRestrainedExternalEventList(new LinkedList<ExternalEvent>(
+          restrained_external_event_list));
+    }
+  }
+
   @Override
   public String globalStateToString(GS global_state) {
     return global_state.toString(state_machines, variables);
   }
 
+  /**
+   * @return A copy of the transitions pull of the last step in the functional
+   *         model.
+   */
   public LinkedHashMap<M, S> getFunctionnalTransitionsPullList() {
-    return functionnal_transitions_pull_list;
+    return functionnal_transitions_pull_list.toLinkedHashMap();
   }
 
+  /**
+   * @return A copy of the transitions pull of the last step in the proof
+   *         model.
+   */
   public LinkedHashMap<M, S> getProofTransitionsPullList() {
-    return proof_transitions_pull_list;
+    return proof_transitions_pull_list.toLinkedHashMap();
   }
 
+  /**
+   * @return A copy of the queue of the internal events of the functional
+   *         model.
+   */
   public LinkedList<SingleEvent> getInternalFunctionalEventQueue() {
-    return internal_functional_event_queue;
+    return event_table.toList(internal_functional_event_queue);
   }
 
+  /**
+   * @return A copy of the queue of the internal events of the proof model.
+   */
   public LinkedList<SingleEvent> getInternalProofEventQueue() {
-    return internal_proof_event_queue;
+    return event_table.toList(internal_proof_event_queue);
   }
 
+  /**
+   * @return A copy of the queue of the events sent to the proof model.
+   */
   public LinkedList<SingleEvent> getExternalProofEventQueue() {
-    return external_proof_event_queue;
+    return event_table.toList(external_proof_event_queue);
   }
 
+  /**
+   * @return A copy of the commands generated during the last step.
+   */
   public LinkedList<SingleEvent> getCommandsQueue() {
-    return commands_queue;
+    return event_table.toList(commands_queue);
   }
 
   public void setVerbose(boolean value) {
@@ -213,14 +261,16 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
     if (proof != null && internal_proof_event_queue.size() != 0) {
       proof_transitions_pull_list.clear();
       processSingleEvent(proof, internal_global_state,
-          internal_proof_event_queue.remove(), internal_proof_event_queue);
+          event_table.get(internal_proof_event_queue.poll()),
+          internal_proof_event_queue);
       return;
     }
 
     if (proof != null && external_proof_event_queue.size() != 0) {
       proof_transitions_pull_list.clear();
       processSingleEvent(proof, internal_global_state,
-          external_proof_event_queue.remove(), internal_proof_event_queue);
+          event_table.get(external_proof_event_queue.poll()),
+          internal_proof_event_queue);
       return;
     }
 
@@ -228,14 +278,12 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
       functionnal_transitions_pull_list.clear();
 
       processSingleEvent(model, internal_global_state,
-          internal_functional_event_queue.remove(), external_proof_event_queue);
+          event_table.get(internal_functional_event_queue.poll()),
+          external_proof_event_queue);
 
       internal_functional_event_queue.addAll(external_proof_event_queue);
 
       if (proof != null) {
-        for (SingleEvent single_event : temporary_commands_queue) {
-          assert (single_event != null);
-        }
         external_proof_event_queue.addAll(temporary_commands_queue);
         temporary_commands_queue.clear();
       } else {
@@ -257,9 +305,6 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
       has_executed_external_event_in_proof = false;
       internal_functional_event_queue.addAll(external_proof_event_queue);
       if (proof != null) {
-        for (SingleEvent single_event : temporary_commands_queue) {
-          assert (single_event != null);
-        }
         external_proof_event_queue.addAll(temporary_commands_queue);
         temporary_commands_queue.clear();
       }
@@ -274,10 +319,7 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
   }
 
   /* Used for the next function */
-  private LinkedHashMap<M, S> temporary_tag =
-      new LinkedHashMap<M, S>();
-  private LinkedList<SingleEvent> temporary_queue =
-      new LinkedList<SingleEvent>();
+  private EventQueue temporary_queue = new EventQueue();
 
   /**
    * Execute a single event (that can be either external or internal).
@@ -304,18 +346,13 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
    */
   protected void processSingleEvent(AbstractModel<M, S, T> model,
       GS global_state,
-      SingleEvent event, LinkedList<SingleEvent> event_list) {
-
-    temporary_tag.clear();
+      SingleEvent event, EventQueue event_list) {
 
     for (M state_machine : model) {
       S current_state = global_state.getState(state_machine);
       assert current_state != null : "No state selected for the state machine "
           + state_machine.getName();
-      Iterator<T> transition_iterator =
-          current_state.iteratorTransitions(event);
-      while (transition_iterator.hasNext()) {
-        T transition = transition_iterator.next();
+      for (T transition : current_state.getTransitions(event)) {
 
         boolean evaluation;
 
@@ -324,36 +361,34 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
         } catch (NoSuchElementException e) {
           throw new Error("When evaluation the transition " + transition
               + ", it was impossible to retrieve a value. The error was:\n "
-              + e.toString());
+              + e.toString(), e);
         }
 
         if (evaluation) {
-          temporary_tag.put(state_machine, transition.getDestination());
           processAction(transition.getActions().iterator(),
               global_state, event_list);
+          // Update the states machines tags in the global state after saving
+          // the list of transitions pull.
+          if (model == this.model) {
+            functionnal_transitions_pull_list.put(state_machine,
+                transition.getDestination());
+          } else {
+            proof_transitions_pull_list.put(state_machine,
+                transition.getDestination());
+          }
+          global_state.setState(state_machine, transition.getDestination());
           break;
         }
       }
-      // Update the states machines tags in the global state after saving the
-      // list of transitions pull.
-      if (model == this.model) {
-        functionnal_transitions_pull_list.putAll(temporary_tag);
-      } else {
-        proof_transitions_pull_list.putAll(temporary_tag);
-      }
-      for (Entry<M, S> entry : temporary_tag.entrySet()) {
-        global_state.setState(entry.getKey(), entry.getValue());
-      }
     }
     // Put the variables change event at the end of the event queue.
-    for (Entry<BooleanVariable, Boolean> entry : temporary_variable_change
-        .entrySet()) {
-      global_state.setVariableValue(entry.getKey(), entry.getValue());
-    }
-    temporary_variable_change.clear();
-    for (SingleEvent e : temporary_commands_queue) {
-      assert (e != null);
+    for (int i = 0; i < number_temporary_variables; i++) {
+      int identifier = temporary_identifiers[i];
+      global_state.setVariableValue(temporary_variables[identifier],
+          temporary_values[identifier]);
+      temporary_variables[identifier] = null;
     }
+    number_temporary_variables = 0;
     event_list.addAll(temporary_queue);
     temporary_queue.clear();
     if (this.verbose) {
@@ -362,7 +397,7 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
           + ((model == this.proof) ? " in proof model"
               : " in functionnal model")
           + " -->\n"
-          + "Internal FIFO " + event_list.toString() + "\n"
+          + "Internal FIFO " + event_table.toList(event_list) + "\n"
           + globalStateToString(global_state));
     }
   }
@@ -394,7 +429,7 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
    */
   private void processAction(Iterator<SingleEvent> single_event_iterator,
       AbstractGlobalState<M, S, T, ?> global_state,
-      LinkedList<SingleEvent> event_list) {
+      EventQueue event_list) {
 
     while (single_event_iterator.hasNext()) {
       SingleEvent single_event = single_event_iterator.next();
@@ -408,7 +443,7 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
          */
         if (!global_state.variableIsInitialized(variable_change
             .getModifiedVariable())) {
-          temporary_variable_change.put(variable_change.getModifiedVariable(),
+          assign(variable_change.getModifiedVariable(),
               !variable_change.isNegated());
           assert (variable_change != null);
 
@@ -416,7 +451,7 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
            * Remove the next line to remove the propagation of the variable in
            * the initialization.
            */
-          temporary_queue.add(variable_change);
+          temporary_queue.add(event_table.put(variable_change));
         } else if (global_state
             .variableValueWillChanged(
                 variable_change.getModifiedVariable(),
@@ -424,10 +459,10 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
           /*
            * The variable will generate an event only if its value changed.
            */
-          temporary_variable_change.put(variable_change.getModifiedVariable(),
+          assign(variable_change.getModifiedVariable(),
               !variable_change.isNegated());
           assert (variable_change != null);
-          temporary_queue.add(variable_change);
+          temporary_queue.add(event_table.put(variable_change));
         }
 
         /*
@@ -435,14 +470,15 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
          */
       } else if (single_event instanceof SynchronisationEvent) {
         assert (single_event != null);
-        event_list.add(single_event);
+        event_list.add(event_table.put(single_event));
 
         /*
          * Case the single event is a FCI. It will generate external event
          */
       } else if (single_event instanceof ComputerCommandFunction) {
 
-        commands_queue.add(single_event);
+        int command = event_table.put(single_event);
+        commands_queue.add(command);
         if (!(model.getACTFCI((ComputerCommandFunction) single_event) == null)) {
 
           LinkedList<Pair<Formula, LinkedList<ExternalEvent>>> list = model
@@ -458,15 +494,16 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
           }
         }
         if (proof != null) {
-          temporary_commands_queue.add(single_event);
+          temporary_commands_queue.add(command);
         }
       } else if (single_event instanceof CommandEvent) {
-        commands_queue.add(single_event);
+        int command = event_table.put(single_event);
+        commands_queue.add(command);
         if (proof != null) {
-          temporary_commands_queue.add(single_event);
+          temporary_commands_queue.add(command);
         }
       } else if (single_event instanceof ModelCheckerEvent) {
-        commands_queue.add(single_event);
+        commands_queue.add(event_table.put(single_event));
 
         switch (single_event.getName()) {
         case "P_5":
@@ -493,6 +530,28 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
     }
   }
 
+  /**
+   * Record the new value of a variable, set at the end of the step. The last
+   * value given during the step is kept.
+   */
+  private void assign(BooleanVariable variable, boolean value) {
+    int identifier = variable.getUniqueIdentifier();
+    if (identifier >= temporary_variables.length) {
+      int length = temporary_variables.length;
+      while (length <= identifier) {
+        length *= 2;
+      }
+      temporary_variables = Arrays.copyOf(temporary_variables, length);
+      temporary_values = Arrays.copyOf(temporary_values, length);
+      temporary_identifiers = Arrays.copyOf(temporary_identifiers, length);
+    }
+    if (temporary_variables[identifier] == null) {
+      temporary_identifiers[number_temporary_variables++] = identifier;
+    }
+    temporary_variables[identifier] = variable;
+    temporary_values[identifier] = value;
+  }
+
   /**
    * Execute the model m, starting from the given CompactGlobalState, on the
    * event e
@@ -509,11 +568,11 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
    */
   protected void execute(AbstractModel<M, S, T> m, GS starting_state,
       SingleEvent e,
-      LinkedList<SingleEvent> single_event_queue) {
+      EventQueue single_event_queue) {
 
     processSingleEvent(m, starting_state, e, single_event_queue);
     while (!single_event_queue.isEmpty()) {
-      SingleEvent head = single_event_queue.remove();
+      SingleEvent head = event_table.get(single_event_queue.poll());
       processSingleEvent(m, starting_state, head, single_event_queue);
     }
   }
@@ -530,7 +589,7 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
    *          place and will be the result value.
    */
   protected void executeProofCompletely(GS global_state,
-      LinkedList<SingleEvent> external_events_list) {
+      EventQueue external_events_list) {
 
     if (proof == null) {
       throw new NullPointerException(
@@ -538,12 +597,14 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
     }
     if (verbose) {
       System.out.print(
-          "Initial external proof FIFO " + external_events_list + "\n");
+          "Initial external proof FIFO "
+              + event_table.toList(external_events_list) + "\n");
     }
     while (!external_events_list.isEmpty()) {
-      SingleEvent head = external_events_list.removeFirst();
+      SingleEvent head = event_table.get(external_events_list.poll());
       if (verbose) {
-        System.out.print("External Proof FIFO " + external_events_list + "\n");
+        System.out.print("External Proof FIFO "
+            + event_table.toList(external_events_list) + "\n");
       }
       execute(proof, global_state, head, internal_proof_event_queue);
     }
@@ -596,7 +657,6 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
       execute(proof, copied_starting_state, event, internal_proof_event_queue);
     }
 
-    LinkedList<SingleEvent> transfert_list = new LinkedList<SingleEvent>();
     SingleEvent curr_event = event;
 
     do {
@@ -611,11 +671,22 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
         executeProofCompletely(copied_starting_state, transfert_list);
       }
 
-      curr_event = internal_functional_event_queue.poll();
+      curr_event = pollEvent(internal_functional_event_queue);
     } while (curr_event != null);
     return copied_starting_state;
   }
 
+  /**
+   * @return The event at the head of `queue`, removed from it, or null if
+   *         `queue` is empty.
+   */
+  protected SingleEvent pollEvent(EventQueue queue) {
+    if (queue.isEmpty()) {
+      return null;
+    }
+    return event_table.get(queue.poll());
+  }
+
   /**
    * Execute all the ACT FCI that are in ACT_FCI_queue.
    * 
@@ -629,11 +700,11 @@ class GraphSimulator<GS extends AbstractGlobalState<M, S, T, ?>, M extends Abstr
 
   /**
    * Same as {@link #execute(CompactGlobalState, ExternalEvent)} but uses a
-   * LinkedList
+   * queue
    * of events
    */
   public GS executeAll(GS starting_state,
-      LinkedList<ExternalEvent> list) {
+      Queue<ExternalEvent> list) {
     GS result = starting_state;
     while (!list.isEmpty()) {
       ExternalEvent event = list.poll();
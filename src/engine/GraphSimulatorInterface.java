@@ -46,4 +46,12 @@ public interface GraphSimulatorInterface<GS extends AbstractGlobalState<M, S, T,
    */
   public String globalStateToString(GS global_state);
 
+  /**
+   * The simulators are not thread safe: the parallel model checkers give a
+   * clone to each of their threads.
+   *
+   * @return A new simulator executing the same models with the same
+   *         settings, sharing no execution data with the current one.
+   */
+  public GraphSimulatorInterface<GS, M, S, T> clone();
 }
@@ -0,0 +1,72 @@
+package engine;
+
+import abstractGraph.AbstractGlobalState;
+import abstractGraph.AbstractState;
+import abstractGraph.AbstractStateMachine;
+import abstractGraph.AbstractTransition;
+import engine.stateStorage.FingerprintStateSet;
+import engine.stateStorage.PackedStateSetInterface;
+
+/**
+ * A {@link PackedModelChecker} storing only a 64 or 96 bits fingerprint of the
+ * visited states (see {@link FingerprintStateSet}).
+ *
+ * @details
+ *          It sits between the exact storage and the bitstate hashing (see
+ *          {@link BitStateModelChecker}): a visited state costs 8 or 16 bytes,
+ *          and a state is missed only if its fingerprint collides with the one
+ *          of another state. The probability of such an omission is printed
+ *          at the end of the verification.
+ */
+public class HashCompactionModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>>
+    extends PackedModelChecker<GS, M, S, T> {
+
+  private int fingerprint_bits;
+
+  /**
+   * @param fingerprint_bits
+   *          64 or 96.
+   */
+  public HashCompactionModelChecker(int fingerprint_bits) {
+    if (fingerprint_bits != 64 && fingerprint_bits != 96) {
+      throw new IllegalArgumentException("The fingerprints have 64 or 96 "
+          + "bits, not " + fingerprint_bits);
+    }
+    this.fingerprint_bits = fingerprint_bits;
+  }
+
+  /**
+   * Use 64 bits fingerprints.
+   */
+  public HashCompactionModelChecker() {
+    this(64);
+  }
+
+  @Override
+  protected PackedStateSetInterface createVisitedSet(int number_words) {
+    return new FingerprintStateSet(number_words, fingerprint_bits);
+  }
+
+  @Override
+  public GS verify(GraphSimulatorInterface<GS, M, S, T> simulator) {
+    GS result = super.verify(simulator);
+    if (packed_visited_states != null) {
+      System.err.println("Hash compaction: the probability that a state has "
+          + "not been explored is "
+          + String.format("%.3g", getOmissionProbability()));
+    }
+    return result;
+  }
+
+  /**
+   * @return The probability that at least one state has not been explored
+   *         during the last verification because of a fingerprint collision.
+   */
+  public double getOmissionProbability() {
+    if (packed_visited_states == null) {
+      return 0;
+    }
+    return ((FingerprintStateSet) packed_visited_states)
+        .getOmissionProbability();
+  }
+}
@@ -0,0 +1,490 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+
+import utils.Pair;
+import abstractGraph.AbstractGlobalState;
+import abstractGraph.AbstractModel;
+import abstractGraph.AbstractState;
+import abstractGraph.AbstractStateMachine;
+import abstractGraph.AbstractTransition;
+import abstractGraph.conditions.BooleanVariable;
+import abstractGraph.conditions.CustomToString;
+import abstractGraph.conditions.EnumeratedVariable;
+import abstractGraph.conditions.Formula;
+import abstractGraph.conditions.valuation.AbstractValuation;
+import abstractGraph.conditions.valuation.Valuation;
+import abstractGraph.events.Assignment;
+import abstractGraph.events.ComputerCommandFunction;
+import abstractGraph.events.EnumeratedVariableChange;
+import abstractGraph.events.ExternalEvent;
+import abstractGraph.events.ModelCheckerEvent;
+import abstractGraph.events.SingleEvent;
+import abstractGraph.events.VariableChange;
+
+/**
+ * A static detection of the interchangeable state machines, used for the
+ * symmetry reduction of the {@link ModelChecker}.
+ *
+ * @details
+ *          The models do not keep the templates used to generate them, so the
+ *          symmetric state machines are found from their structure. An event
+ *          or a variable is private to a state machine if no other machine of
+ *          the models uses it. Two state machines of the same model are
+ *          symmetric if they are identical once their private events and
+ *          variables are renamed in the order they appear: same states (by
+ *          identifier), same transitions in the same order, and the same
+ *          shared events and variables. For example, the state machines
+ *          generated by a template for several inputs are symmetric if each
+ *          input is private to its state machine.
+ *
+ *          Only the state machines that cannot influence the other ones are
+ *          permuted: they only write private variables, and no machine listens
+ *          to the events they write (except the P_5, P_6 and P_7 flags).
+ *          Their evolution is then a function of the shared events and
+ *          variables only, so exchanging the current states and the private
+ *          variables of two symmetric machines gives a state with the same
+ *          future, up to the same exchange.
+ *
+ *          Permuting machines that are read by others would require to rename
+ *          their outputs in all their readers, and the permutation would be a
+ *          symmetry only if every reader, including the proof, treats them
+ *          alike. This is not checked, so such machines are never permuted.
+ *          It does not lose anything on the models of examples/DSL: the
+ *          GRAPH_IND machines of "PN à SAL.txt" are identical, but each proof
+ *          machine reads a different subset of their variables, so no
+ *          permutation of them is a symmetry of the models and 0 groups are
+ *          found. The reduction pays off on the models generated by a
+ *          template per input, as Eight_ctl.yaml (one group of 8 machines).
+ *
+ *          A global state is replaced by the representative of its orbit
+ *          (see {@link #canonicalize(AbstractGlobalState)}), in which the
+ *          machines of a group are sorted by current state and private
+ *          variables.
+ */
+public class MachineSymmetry<GS extends AbstractGlobalState<M, S, T, ?>, M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>> {
+
+  /* Value used for a boolean variable without value in a Valuation */
+  private static final int UNDEFINED = Integer.MIN_VALUE;
+
+  private AbstractModel<M, S, T> model;
+
+  /** The state machines using a given event ("e:") or variable ("v:") */
+  private HashMap<String, HashSet<M>> references =
+      new HashMap<String, HashSet<M>>();
+  /** The state machines having a transition on a given event name */
+  private HashMap<String, HashSet<M>> listeners =
+      new HashMap<String, HashSet<M>>();
+  private HashMap<String, EnumeratedVariable> variables =
+      new HashMap<String, EnumeratedVariable>();
+
+  /** The groups of symmetric state machines, with at least 2 machines */
+  private ArrayList<ArrayList<M>> groups = new ArrayList<ArrayList<M>>();
+  /** The states of the grouped machines, in the order of their signature */
+  private HashMap<M, ArrayList<S>> states = new HashMap<M, ArrayList<S>>();
+  private HashMap<M, HashMap<S, Integer>> state_indexes =
+      new HashMap<M, HashMap<S, Integer>>();
+  /**
+   * The private variables of the grouped machines, in the order of their
+   * signature: the i-th variables of two symmetric machines correspond.
+   */
+  private HashMap<M, ArrayList<EnumeratedVariable>> private_variables =
+      new HashMap<M, ArrayList<EnumeratedVariable>>();
+
+  public MachineSymmetry(GraphSimulatorInterface<GS, M, S, T> simulator) {
+    this(simulator.getModel(), simulator.getProof());
+  }
+
+  /**
+   * @param proof
+   *          The proof model. It can be null.
+   */
+  public MachineSymmetry(AbstractModel<M, S, T> model,
+      AbstractModel<M, S, T> proof) {
+    this.model = model;
+
+    collectReferences(model);
+    if (proof != null) {
+      collectReferences(proof);
+    }
+
+    findGroups(model);
+    if (proof != null) {
+      findGroups(proof);
+    }
+  }
+
+  private void addReference(HashMap<String, HashSet<M>> map, String key,
+      M state_machine) {
+    HashSet<M> machines = map.get(key);
+    if (machines == null) {
+      machines = new HashSet<M>();
+      map.put(key, machines);
+    }
+    machines.add(state_machine);
+  }
+
+  private void addVariable(EnumeratedVariable variable, M state_machine) {
+    String key = "v:" + variable.getVarname();
+    variables.put(key, variable);
+    addReference(references, key, state_machine);
+  }
+
+  /**
+   * Fill the maps of the events and variables used by every state machine
+   * of a model.
+   */
+  private void collectReferences(AbstractModel<M, S, T> current_model) {
+    for (M state_machine : current_model) {
+      for (S state : state_machine) {
+        for (T transition : state) {
+          for (SingleEvent event : transition.getEvents()) {
+            addReference(listeners, event.getName(), state_machine);
+            addReference(references, "e:" + event.getName(), state_machine);
+            EnumeratedVariable variable = getVariable(event);
+            if (variable != null) {
+              addVariable(variable, state_machine);
+            }
+          }
+
+          for (EnumeratedVariable variable : transition.getCondition()
+              .allVariables(new HashSet<EnumeratedVariable>())) {
+            addVariable(variable, state_machine);
+          }
+
+          for (SingleEvent action : transition.getActions()) {
+            if (action instanceof ModelCheckerEvent) {
+              continue;
+            }
+            addReference(references, "e:" + action.getName(), state_machine);
+            EnumeratedVariable variable = getVariable(action);
+            if (variable != null) {
+              addVariable(variable, state_machine);
+            }
+            for (Pair<Formula, LinkedList<ExternalEvent>> condition_with_act : getGeneratedACT(action)) {
+              for (EnumeratedVariable condition_variable : condition_with_act
+                  .getFirst().allVariables(new HashSet<EnumeratedVariable>())) {
+                addVariable(condition_variable, state_machine);
+              }
+              for (ExternalEvent act : condition_with_act.getSecond()) {
+                addReference(references, "e:" + act.getName(), state_machine);
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * @return The variable read or written by a variable change or an
+   *         assignment. null for the other events.
+   */
+  private static EnumeratedVariable getVariable(SingleEvent event) {
+    if (event instanceof VariableChange) {
+      return ((VariableChange) event).getModifiedVariable();
+    } else if (event instanceof EnumeratedVariableChange) {
+      return ((EnumeratedVariableChange) event).getVariable();
+    } else if (event instanceof Assignment) {
+      return ((Assignment) event).getVariable();
+    }
+    return null;
+  }
+
+  /**
+   * @return The ACT that a command can generate. Empty for the other events.
+   */
+  private LinkedList<Pair<Formula, LinkedList<ExternalEvent>>> getGeneratedACT(
+      SingleEvent action) {
+    LinkedList<Pair<Formula, LinkedList<ExternalEvent>>> generated = null;
+    if (action instanceof ComputerCommandFunction) {
+      generated = model.getACTFCI((ComputerCommandFunction) action);
+    }
+    if (generated == null) {
+      return new LinkedList<Pair<Formula, LinkedList<ExternalEvent>>>();
+    }
+    return generated;
+  }
+
+  private boolean isPrivate(String key) {
+    return references.get(key).size() == 1;
+  }
+
+  private boolean isListened(String event_name) {
+    return listeners.containsKey(event_name);
+  }
+
+  /**
+   * @return true if the state machine only writes private variables and
+   *         events that no state machine listens to.
+   */
+  private boolean cannotInfluenceOthers(M state_machine) {
+    for (S state : state_machine) {
+      for (T transition : state) {
+        for (SingleEvent action : transition.getActions()) {
+          if (action instanceof ModelCheckerEvent) {
+            continue;
+          }
+          if (isListened(action.getName())) {
+            return false;
+          }
+          EnumeratedVariable variable = getVariable(action);
+          if (variable != null
+              && !isPrivate("v:" + variable.getVarname())) {
+            return false;
+          }
+          for (Pair<Formula, LinkedList<ExternalEvent>> condition_with_act : getGeneratedACT(action)) {
+            for (ExternalEvent act : condition_with_act.getSecond()) {
+              if (isListened(act.getName())) {
+                return false;
+              }
+            }
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Group the state machines of a model having the same signature.
+   */
+  private void findGroups(AbstractModel<M, S, T> current_model) {
+    LinkedHashMap<String, ArrayList<M>> machines_by_signature =
+        new LinkedHashMap<String, ArrayList<M>>();
+    for (M state_machine : current_model) {
+      if (!cannotInfluenceOthers(state_machine)) {
+        continue;
+      }
+      ArrayList<EnumeratedVariable> machine_variables =
+          new ArrayList<EnumeratedVariable>();
+      String signature = computeSignature(state_machine, machine_variables);
+      ArrayList<M> machines = machines_by_signature.get(signature);
+      if (machines == null) {
+        machines = new ArrayList<M>();
+        machines_by_signature.put(signature, machines);
+      }
+      machines.add(state_machine);
+      private_variables.put(state_machine, machine_variables);
+    }
+
+    for (ArrayList<M> machines : machines_by_signature.values()) {
+      if (machines.size() < 2) {
+        private_variables.remove(machines.get(0));
+        continue;
+      }
+      groups.add(machines);
+      for (M state_machine : machines) {
+        ArrayList<S> machine_states = new ArrayList<S>();
+        HashMap<S, Integer> indexes = new HashMap<S, Integer>();
+        for (S state : state_machine) {
+          indexes.put(state, machine_states.size());
+          machine_states.add(state);
+        }
+        states.put(state_machine, machine_states);
+        state_indexes.put(state_machine, indexes);
+      }
+    }
+  }
+
+  /**
+   * @param machine_variables
+   *          The private variables of the state machine are added in it, in
+   *          the order of their first use.
+   * @return A description of the state machine in which the private events
+   *         and variables are numbered in the order of their first use.
+   */
+  private String computeSignature(M state_machine,
+      final ArrayList<EnumeratedVariable> machine_variables) {
+    final HashMap<String, String> renaming = new HashMap<String, String>();
+    CustomToString customizer = new CustomToString() {
+      @Override
+      public String toString(EnumeratedVariable variable) {
+        return rename("v:" + variable.getVarname(), renaming,
+            machine_variables);
+      }
+    };
+
+    StringBuilder signature = new StringBuilder();
+    for (S state : state_machine) {
+      signature.append("state " + state.getId() + "\n");
+      for (T transition : state) {
+        signature.append(" -> " + transition.getDestination().getId() + " on");
+        for (SingleEvent event : transition.getEvents()) {
+          signature.append(" " + describe(event, renaming, machine_variables));
+        }
+        signature.append(" if " + customizer.toString(transition
+            .getCondition()));
+        signature.append(" do");
+        for (SingleEvent action : transition.getActions()) {
+          signature.append(" " + describe(action, renaming, machine_variables));
+          for (Pair<Formula, LinkedList<ExternalEvent>> condition_with_act : getGeneratedACT(action)) {
+            signature.append(" [" + customizer.toString(condition_with_act
+                .getFirst()) + " ->");
+            for (ExternalEvent act : condition_with_act.getSecond()) {
+              signature.append(" "
+                  + rename("e:" + act.getName(), renaming, machine_variables));
+            }
+            signature.append("]");
+          }
+        }
+        signature.append("\n");
+      }
+    }
+    return signature.toString();
+  }
+
+  private String describe(SingleEvent event, HashMap<String, String> renaming,
+      ArrayList<EnumeratedVariable> machine_variables) {
+    if (event instanceof ModelCheckerEvent) {
+      return event.getName();
+    }
+    String description = event.getClass().getSimpleName() + "("
+        + rename("e:" + event.getName(), renaming, machine_variables);
+    EnumeratedVariable variable = getVariable(event);
+    if (variable != null) {
+      description += ", "
+          + rename("v:" + variable.getVarname(), renaming, machine_variables);
+    }
+    if (event instanceof VariableChange) {
+      description += ", " + !((VariableChange) event).isNegated();
+    } else if (event instanceof Assignment) {
+      description += ", " + ((Assignment) event).getValue();
+    }
+    return description + ")";
+  }
+
+  /**
+   * @return The name of a shared event or variable, or the number of a
+   *         private one.
+   */
+  private String rename(String key, HashMap<String, String> renaming,
+      ArrayList<EnumeratedVariable> machine_variables) {
+    if (!isPrivate(key)) {
+      return key;
+    }
+    String name = renaming.get(key);
+    if (name == null) {
+      name = "#" + renaming.size();
+      EnumeratedVariable variable = variables.get(key);
+      if (key.startsWith("v:")) {
+        if (!variable.isBool()) {
+          name += " " + variable.getEnumeration();
+        }
+        machine_variables.add(variable);
+      }
+      renaming.put(key, name);
+    }
+    return name;
+  }
+
+  /**
+   * @return The representative of the orbit of `state`: the state machines of
+   *         every group are sorted by current state and private variables.
+   *         It is `state` itself if it is already sorted, and a new global
+   *         state otherwise.
+   */
+  @SuppressWarnings("unchecked")
+  public GS canonicalize(GS state) {
+    GS result = state;
+    for (ArrayList<M> group : groups) {
+      final int[][] keys = new int[group.size()][];
+      Integer[] order = new Integer[group.size()];
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = getKey(state, group.get(i));
+        order[i] = i;
+      }
+      Arrays.sort(order, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer i1, Integer i2) {
+          int[] k1 = keys[i1];
+          int[] k2 = keys[i2];
+          for (int i = 0; i < k1.length; i++) {
+            if (k1[i] != k2[i]) {
+              return Integer.compare(k1[i], k2[i]);
+            }
+          }
+          return 0;
+        }
+      });
+
+      for (int i = 0; i < keys.length; i++) {
+        if (!Arrays.equals(keys[order[i]], keys[i])) {
+          if (result == state) {
+            result = (GS) state.clone();
+          }
+          setKey(result, group.get(i), keys[order[i]]);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return The index of the current state of the machine, followed by the
+   *         values of its private variables.
+   */
+  private int[] getKey(GS state, M state_machine) {
+    ArrayList<EnumeratedVariable> machine_variables =
+        private_variables.get(state_machine);
+    int[] key = new int[1 + machine_variables.size()];
+    S current = state.getState(state_machine);
+    key[0] = current == null ? -1 : state_indexes.get(state_machine).get(
+        current);
+
+    AbstractValuation valuation = state.getValuation();
+    for (int i = 0; i < machine_variables.size(); i++) {
+      EnumeratedVariable variable = machine_variables.get(i);
+      if (valuation instanceof Valuation
+          && !valuation.variableInitialized((BooleanVariable) variable)) {
+        key[i + 1] = UNDEFINED;
+      } else {
+        key[i + 1] = valuation.getValue(variable);
+      }
+    }
+    return key;
+  }
+
+  private void setKey(GS state, M state_machine, int[] key) {
+    state.setState(state_machine,
+        key[0] == -1 ? null : states.get(state_machine).get(key[0]));
+
+    ArrayList<EnumeratedVariable> machine_variables =
+        private_variables.get(state_machine);
+    for (int i = 0; i < machine_variables.size(); i++) {
+      EnumeratedVariable variable = machine_variables.get(i);
+      int value = key[i + 1];
+      if (value == UNDEFINED) {
+        ((Valuation) state.getValuation()).remove((BooleanVariable) variable);
+      } else if (variable instanceof BooleanVariable) {
+        state.setVariableValue((BooleanVariable) variable,
+            value == BooleanVariable.TRUE);
+      } else {
+        state.setVariableValue(variable, (byte) value);
+      }
+    }
+  }
+
+  /**
+   * @return The groups of symmetric state machines.
+   */
+  public ArrayList<ArrayList<M>> getGroups() {
+    return groups;
+  }
+
+  @Override
+  public String toString() {
+    int number_machines = 0;
+    for (ArrayList<M> group : groups) {
+      number_machines += group.size();
+    }
+    return number_machines + " interchangeable state machines in "
+        + groups.size() + " groups";
+  }
+}
@@ -5,13 +5,12 @@ import genericLabeledGraph.Edge;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.Map.Entry;
 import java.util.Set;
 
-import org.mapdb.DB;
-import org.mapdb.DBMaker;
-
 import abstractGraph.AbstractGlobalState;
 import abstractGraph.AbstractModel;
 import abstractGraph.AbstractState;
@@ -22,6 +21,9 @@ import abstractGraph.conditions.EnumeratedVariable;
 import abstractGraph.conditions.valuation.Valuation;
 import abstractGraph.events.ExternalEvent;
 import abstractGraph.events.SingleEvent;
+import engine.stateStorage.LockFreeStateHashSet;
+import engine.stateStorage.PackedGlobalStateSet;
+import engine.stateStorage.StateVectorCodec;
 
 /**
  * 
@@ -82,23 +84,93 @@ public class ModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M extends
   protected int number_of_functional_warning = 0;
   protected int number_explored_nodes = 0;
 
+  /**
+   * The static analysis used by the partial order reduction. null if the
+   * reduction is disabled.
+   */
+  protected EventIndependence<M, S, T> independence = null;
+  private boolean partial_order_reduction = false;
+
+  /**
+   * The symmetric state machines used by the symmetry reduction. null if the
+   * reduction is disabled.
+   */
+  protected MachineSymmetry<GS, M, S, T> symmetry = null;
+  private boolean symmetry_reduction = false;
+
+  /**
+   * The slicing of the models to the cone of influence of the proof. null if
+   * the slicing is disabled.
+   */
+  protected ConeOfInfluence<GS, M, S, T> cone_of_influence = null;
+  private boolean cone_of_influence_slicing = false;
+
+  /**
+   * True if the visited states are stored as packed vectors in a
+   * {@link LockFreeStateHashSet}.
+   */
+  private boolean packed_visited_states = false;
+
   public ModelChecker() {
-    /**
-     * Not used. To be able to use a database, the GlobalState class must be
-     * serializable.
-     */
-    /*
-     * DB db = DBMaker
-     * .newMemoryDirectDB()
-     * .transactionDisable()
-     * .asyncWriteEnable()
-     * .asyncWriteFlushDelay(100)
-     * // .compressionEnable()
-     * .make();
-     * 
-     * visited_states = db.getHashSet("Visited states");
-     * unvisited_states = db.getHashSet("Unvisited states");
-     */
+  }
+
+  /**
+   * When enabled, only an ample subset of the possible events is executed on
+   * the states where it is sufficient (see
+   * {@link #computeSuccessors(GraphSimulatorInterface, AbstractGlobalState)}).
+   * Fewer states are visited, but an unsafe (P5) or illegal (P6) state is
+   * found if and only if one is found without the reduction.
+   */
+  public void setPartialOrderReduction(boolean partial_order_reduction) {
+    this.partial_order_reduction = partial_order_reduction;
+  }
+
+  public boolean isPartialOrderReduction() {
+    return partial_order_reduction;
+  }
+
+  /**
+   * When enabled, the global states are replaced by a representative of their
+   * orbit under the permutations of the symmetric state machines (see
+   * {@link MachineSymmetry}) before being looked up in the visited states.
+   * Only one state per orbit is explored. The traces printed are made of
+   * representatives.
+   */
+  public void setSymmetryReduction(boolean symmetry_reduction) {
+    this.symmetry_reduction = symmetry_reduction;
+  }
+
+  public boolean isSymmetryReduction() {
+    return symmetry_reduction;
+  }
+
+  /**
+   * When enabled, the models are restricted to the state machines and the
+   * variables that can influence the proof (see {@link ConeOfInfluence})
+   * before the exploration. The same unsafe and illegal states are found, up
+   * to the values of the removed machines and variables.
+   */
+  public void setConeOfInfluenceSlicing(boolean cone_of_influence_slicing) {
+    this.cone_of_influence_slicing = cone_of_influence_slicing;
+  }
+
+  public boolean isConeOfInfluenceSlicing() {
+    return cone_of_influence_slicing;
+  }
+
+  /**
+   * When enabled, the visited states are stored as packed vectors (see
+   * {@link StateVectorCodec}) in a {@link LockFreeStateHashSet} instead of a
+   * HashSet of global states. A visited state then costs only its vector, and
+   * the set can be shared by several threads (see
+   * {@link ParallelModelChecker}).
+   */
+  public void setPackedVisitedStates(boolean packed_visited_states) {
+    this.packed_visited_states = packed_visited_states;
+  }
+
+  public boolean isPackedVisitedStates() {
+    return packed_visited_states;
   }
 
   /**
@@ -133,32 +205,6 @@ public class ModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M extends
     }
   }
 
-  /**
-   * Not used. To be able to use a database, the GlobalState class must be
-   * serializable.
-   */
-  protected void setDiskBackUpMemory() {
-    visited_states = null;
-    unvisited_states = null;
-
-    DB db = DBMaker.newMemoryDirectDB() // newMemoryDB(). // newMemoryDirectDB
-        /*
-         * Disable transactions make writes but you may lose data if store
-         * crashes
-         */
-        .transactionDisable()
-        // .mmapFileEnable()
-        .cacheLRUEnable()
-        .cacheSoftRefEnable()
-        .cacheSize(100000)
-        .make();
-
-    visited_states = db.getHashSet("visited_states");
-    unvisited_states = db.getHashSet("unvisited_states");
-    // DBMaker.newTempHashSet();
-
-  }
-
   protected boolean isVisited(GS state) {
     return visited_states.contains(state);
   }
@@ -193,11 +239,6 @@ public class ModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M extends
       return null;
     }
 
-    /* The state is already known. */
-    if (visited_states.contains(state)) { // || illegal_states.contains(state)){
-      return null;
-    }
-
     /* The state is unsafe ! We return it (i.e. mark it as an error) */
     if (!state.isSafe()) {
       unsafe_states.add(state);
@@ -210,11 +251,233 @@ public class ModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M extends
     }
 
     /* If everything went fine, it is a new state to visit */
-    unvisited_states.add(state);
+    addUnvisited(state);
 
     return null;
   }
 
+  /**
+   * Add a legal, safe and not P7 state to the states to explore.
+   * 
+   * @param state
+   */
+  protected void addUnvisited(GS state) {
+    unvisited_states.add(state);
+  }
+
+  /**
+   * @return true if there are still states to explore.
+   */
+  protected boolean hasUnvisitedStates() {
+    return unvisited_states.size() != 0;
+  }
+
+  /**
+   * Remove a state from the states to explore and return it.
+   * The order in which the states are returned is not specified.
+   * 
+   * @return The next state to explore.
+   */
+  protected GS pollUnvisitedState() {
+    Iterator<GS> it = unvisited_states.iterator();
+    GS state = it.next();
+    it.remove();
+    return state;
+  }
+
+  /**
+   * Called at the beginning of {@link #verify(GraphSimulatorInterface)},
+   * before the initial states are processed. It must empty the visited states.
+   * 
+   * @param simulator
+   *          The simulator that will be used for the verification.
+   */
+  protected void initializeStorage(
+      GraphSimulatorInterface<GS, M, S, T> simulator) {
+    if (packed_visited_states && unvisited_states.size() != 0) {
+      visited_states = createPackedVisitedSet(simulator);
+    } else if (visited_states instanceof PackedGlobalStateSet) {
+      visited_states = new HashSet<GS>();
+    } else {
+      visited_states.clear();
+    }
+  }
+
+  /**
+   * @return An empty set of global states stored as packed vectors in a
+   *         {@link LockFreeStateHashSet}. The codec is built from the first
+   *         initial state.
+   */
+  protected Set<GS> createPackedVisitedSet(
+      GraphSimulatorInterface<GS, M, S, T> simulator) {
+    StateVectorCodec<GS, M, S, T> codec = new StateVectorCodec<GS, M, S, T>(
+        simulator, unvisited_states.iterator().next());
+    System.err.println("Packed state vector: " + codec);
+    return new PackedGlobalStateSet<GS, M, S, T>(codec,
+        new LockFreeStateHashSet(codec.getNumberWords()));
+  }
+
+  /**
+   * Compute the independence of the external events if the partial order
+   * reduction is enabled, and the symmetric state machines if the symmetry
+   * reduction is enabled.
+   */
+  protected void initializeReduction(
+      GraphSimulatorInterface<GS, M, S, T> simulator) {
+    independence = null;
+    if (partial_order_reduction) {
+      independence = new EventIndependence<M, S, T>(simulator);
+      System.err.println("Partial order reduction: " + independence);
+    }
+    symmetry = null;
+    if (symmetry_reduction) {
+      symmetry = new MachineSymmetry<GS, M, S, T>(simulator);
+      System.err.println("Symmetry reduction: " + symmetry);
+    }
+  }
+
+  /**
+   * Slice the models to the cone of influence of the proof if the slicing is
+   * enabled, and project the initial states on it.
+   * 
+   * @return The simulator to use for the exploration: the one of the sliced
+   *         models if the slicing is enabled, `simulator` otherwise.
+   */
+  protected GraphSimulatorInterface<GS, M, S, T> sliceModels(
+      GraphSimulatorInterface<GS, M, S, T> simulator) {
+    cone_of_influence = null;
+    if (!cone_of_influence_slicing) {
+      return simulator;
+    }
+    cone_of_influence = new ConeOfInfluence<GS, M, S, T>(simulator);
+    System.err.println("Cone of influence: " + cone_of_influence);
+    if (!unvisited_states.isEmpty()) {
+      GS reference = unvisited_states.iterator().next();
+      LinkedList<GS> initial_states = new LinkedList<GS>();
+      for (GS state : unvisited_states) {
+        initial_states.add(cone_of_influence.project(state, reference));
+      }
+      unvisited_states.clear();
+      unvisited_states.addAll(initial_states);
+    }
+    return cone_of_influence.getSimulator();
+  }
+
+  /**
+   * @return The representative of the orbit of `state` if the symmetry
+   *         reduction is enabled, `state` otherwise.
+   */
+  protected GS canonicalize(GS state) {
+    if (symmetry == null) {
+      return state;
+    }
+    return symmetry.canonicalize(state);
+  }
+
+  /**
+   * Execute the events to explore on a state.
+   * 
+   * @details
+   *          Without partial order reduction, all the possible events are
+   *          executed. Otherwise, the candidate ample sets (see
+   *          {@link EventIndependence#getAmpleSets(LinkedHashSet)}) are tried
+   *          in turn, and the first one whose resulting states have not been
+   *          visited is kept. If there is none, all the possible events are
+   *          executed, so that no event is postponed forever along a cycle.
+   * 
+   * @param simulator
+   *          The simulator to execute the events with.
+   * @param state
+   *          The state to explore.
+   * @return The resulting states, by executed event. They are canonicalized
+   *         (see {@link #canonicalize(AbstractGlobalState)}).
+   */
+  protected LinkedHashMap<ExternalEvent, GS> computeSuccessors(
+      GraphSimulatorInterface<GS, M, S, T> simulator, GS state) {
+    LinkedHashSet<ExternalEvent> possible_external_events =
+        simulator.getPossibleEvent(state);
+
+    /* The states already computed, for the full expansion */
+    LinkedHashMap<ExternalEvent, GS> computed_states =
+        new LinkedHashMap<ExternalEvent, GS>();
+    if (independence != null) {
+      for (LinkedHashSet<ExternalEvent> ample_set : independence
+          .getAmpleSets(possible_external_events)) {
+        LinkedHashMap<ExternalEvent, GS> successors =
+            new LinkedHashMap<ExternalEvent, GS>();
+        boolean all_new = true;
+        for (ExternalEvent e : ample_set) {
+          GS next_state = canonicalize(simulator.execute(state, e));
+          successors.put(e, next_state);
+          computed_states.put(e, next_state);
+          if (isVisited(next_state)) {
+            all_new = false;
+            break;
+          }
+        }
+        if (all_new) {
+          return successors;
+        }
+      }
+    }
+
+    LinkedHashMap<ExternalEvent, GS> successors =
+        new LinkedHashMap<ExternalEvent, GS>();
+    for (ExternalEvent e : possible_external_events) {
+      GS next_state = computed_states.get(e);
+      if (next_state == null) {
+        next_state = canonicalize(simulator.execute(state, e));
+      }
+      successors.put(e, next_state);
+    }
+    return successors;
+  }
+
+  /**
+   * @return The number of distinct states that have been visited or are
+   *         scheduled to be visited.
+   */
+  public long getNumberVisitedStates() {
+    return visited_states.size();
+  }
+
+  /**
+   * @return The number of states that are still to explore.
+   */
+  public long getNumberUnvisitedStates() {
+    return unvisited_states.size();
+  }
+
+  /**
+   * @return The number of illegal states reached by the last verification.
+   */
+  public int getNumberIllegalStates() {
+    return number_illegal_states;
+  }
+
+  /**
+   * @return The number of distinct unsafe states found by the last
+   *         verification.
+   */
+  public int getNumberUnsafeStates() {
+    return unsafe_states.size();
+  }
+
+  /**
+   * @return The number of functional warnings (P7) reached by the last
+   *         verification.
+   */
+  public int getNumberFunctionalWarnings() {
+    return number_of_functional_warning;
+  }
+
+  /**
+   * @return The number of transitions executed by the last verification.
+   */
+  public int getNumberExploredNodes() {
+    return number_explored_nodes;
+  }
+
   /**
    * Prepare the model checker for a new verification (i.e. receive new initial
    * states and a new call to verify).
@@ -252,9 +515,11 @@ public class ModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M extends
   public GS verify(GraphSimulatorInterface<GS, M, S, T> simulator) {
     assert (unvisited_states != null);
 
+    simulator = sliceModels(simulator);
     this.simulator = simulator;
 
-    visited_states.clear();
+    initializeReduction(simulator);
+    initializeStorage(simulator);
     unsafe_states.clear();
     number_illegal_states = 0;
     number_of_functional_warning = 0;
@@ -264,8 +529,10 @@ public class ModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M extends
      * We need to check that all the initial states are legal before adding
      * them.
      */
-    for (GS global_state : unvisited_states) {
-      GS result = processGS(global_state);
+    LinkedList<GS> initial_states = new LinkedList<GS>(unvisited_states);
+    unvisited_states.clear();
+    for (GS global_state : initial_states) {
+      GS result = processGS(canonicalize(global_state));
       if (result != null) {
         return result;
       }
@@ -273,29 +540,36 @@ public class ModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M extends
 
     System.err.flush();
     System.out.flush();
-    System.err.println("Initial states size : " + unvisited_states.size());
-    System.err.println("We are visiting at least " + unvisited_states.size()
-        + " states");
+    System.err.println("Initial states size : " + getNumberUnvisitedStates());
+    System.err.println("We are visiting at least "
+        + getNumberUnvisitedStates() + " states");
 
+    return exploreUnvisitedStates();
+  }
+
+  /**
+   * Explore the states to explore until there are no more, using the simulator
+   * of the current verification, and print the counters.
+   * 
+   * @return The last unsafe state found. null if no such state exists.
+   */
+  protected GS exploreUnvisitedStates() {
     long startTime = System.nanoTime();
     GS error_state = null;
     int c = 0;
-    while (unvisited_states.size() != 0) {
+    while (hasUnvisitedStates()) {
       c++;
 
-      Iterator<GS> it = unvisited_states.iterator();
-      GS state = it.next();
+      GS state = pollUnvisitedState();
       assert (state.isLegal());
 
-      it.remove();
-
       addVisited(state);
 
       if (VERY_VERBOSE /* || c % 100 == 0 */) {
         System.err.println("Number of visited states: "
-            + visited_states.size());
+            + getNumberVisitedStates());
         System.err.println("Number of unvisited states "
-            + unvisited_states.size());
+            + getNumberUnvisitedStates());
         System.err.println("Total number of illegal nodes found:" +
             number_illegal_states);
         System.err.println("Total number of unsafe nodes found:" +
@@ -307,11 +581,10 @@ public class ModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M extends
         startTime = System.nanoTime();
       }
 
-      LinkedHashSet<ExternalEvent> possible_external_events =
-          simulator.getPossibleEvent(state);
-
-      for (ExternalEvent e : possible_external_events) {
-        GS next_state = simulator.execute(state, e);
+      for (Entry<ExternalEvent, GS> successor : computeSuccessors(simulator,
+          state).entrySet()) {
+        ExternalEvent e = successor.getKey();
+        GS next_state = successor.getValue();
 
         next_state.last_processed_external_event = e;
         next_state.previous_global_state = state;
@@ -338,7 +611,7 @@ public class ModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M extends
       }
     }
     System.err.println("Total number of distinct visited states: "
-        + visited_states.size());
+        + getNumberVisitedStates());
     System.err.println("Total number of illegal nodes found:" +
         number_illegal_states);
     System.err.println("Total number of explored node: "
@@ -0,0 +1,88 @@
+package engine;
+
+import java.io.File;
+
+import abstractGraph.AbstractGlobalState;
+import abstractGraph.AbstractState;
+import abstractGraph.AbstractStateMachine;
+import abstractGraph.AbstractTransition;
+import engine.stateStorage.OffHeapStateFifo;
+import engine.stateStorage.OffHeapStateHashSet;
+import engine.stateStorage.PackedStateQueueInterface;
+import engine.stateStorage.PackedStateSetInterface;
+
+/**
+ * A {@link PackedModelChecker} storing the visited and the unvisited states
+ * outside of the Java heap.
+ *
+ * @details
+ *          With a scratch directory, the stores are memory-mapped files: the
+ *          verification is then bounded by the disk and not by -Xmx. Without
+ *          it, the stores are in direct memory, which avoids the garbage
+ *          collector pauses on huge sets.
+ *
+ *          The off-heap memory is released and the scratch files are deleted
+ *          by {@link #close()}, {@link #reset()} and when a new verification
+ *          starts.
+ */
+public class OffHeapModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>>
+    extends PackedModelChecker<GS, M, S, T> {
+
+  private File scratch_directory;
+
+  /**
+   * @param scratch_directory
+   *          The directory where to create the scratch files. If null, the
+   *          states are stored in direct memory.
+   */
+  public OffHeapModelChecker(File scratch_directory) {
+    if (scratch_directory != null && !scratch_directory.isDirectory()) {
+      throw new IllegalArgumentException(scratch_directory
+          + " is not a directory");
+    }
+    this.scratch_directory = scratch_directory;
+  }
+
+  /**
+   * Use the directory of the temporary files as scratch directory.
+   */
+  public OffHeapModelChecker() {
+    this(new File(System.getProperty("java.io.tmpdir")));
+  }
+
+  @Override
+  protected void initializeStorage(
+      GraphSimulatorInterface<GS, M, S, T> simulator) {
+    close();
+    super.initializeStorage(simulator);
+  }
+
+  @Override
+  protected PackedStateSetInterface createVisitedSet(int number_words) {
+    return new OffHeapStateHashSet(number_words, scratch_directory);
+  }
+
+  @Override
+  protected PackedStateQueueInterface createUnvisitedQueue(int number_words) {
+    return new OffHeapStateFifo(number_words, scratch_directory);
+  }
+
+  @Override
+  public void reset() {
+    close();
+    super.reset();
+  }
+
+  /**
+   * Release the off-heap memory and delete the scratch files of the last
+   * verification.
+   */
+  public void close() {
+    if (packed_visited_states != null) {
+      ((OffHeapStateHashSet) packed_visited_states).close();
+      ((OffHeapStateFifo) packed_unvisited_states).close();
+      packed_visited_states = null;
+      packed_unvisited_states = null;
+    }
+  }
+}
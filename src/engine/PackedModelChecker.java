@@ -0,0 +1,261 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.Set;
+
+import abstractGraph.AbstractGlobalState;
+import abstractGraph.AbstractState;
+import abstractGraph.AbstractStateMachine;
+import abstractGraph.AbstractTransition;
+import abstractGraph.events.ExternalEvent;
+import engine.stateStorage.PackedGlobalStateSet;
+import engine.stateStorage.PackedStateFifo;
+import engine.stateStorage.PackedStateHashSet;
+import engine.stateStorage.PackedStateQueueInterface;
+import engine.stateStorage.PackedStateSetInterface;
+import engine.stateStorage.StateVectorCodec;
+import engine.stateStorage.TraceStore;
+
+/**
+ * A model checker storing the visited and the unvisited states as packed
+ * vectors of longs (see {@link StateVectorCodec}) instead of global state
+ * objects.
+ *
+ * @details
+ *          The codec is derived from the simulator and from the first initial
+ *          state when {@link #verify(GraphSimulatorInterface)} is called.
+ *          Global states are only decoded when they are given to the
+ *          simulator.
+ *
+ *          The visited set contains the states that have been explored or are
+ *          in the queue of the states to explore: a state is added in it as
+ *          soon as it is discovered. The exploration is breadth first.
+ *
+ *          Since the states are not kept, the exploration tree is recorded in
+ *          a {@link TraceStore}: the states of the queue carry their
+ *          identifier in an additional word. The trace leading to an unsafe
+ *          state is computed again by replaying the events from its initial
+ *          state (see {@link #printFullTrace(AbstractGlobalState)}).
+ */
+public class PackedModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>>
+    extends ModelChecker<GS, M, S, T> {
+
+  protected StateVectorCodec<GS, M, S, T> codec;
+  protected PackedStateSetInterface packed_visited_states;
+  protected PackedStateQueueInterface packed_unvisited_states;
+  /* Buffer used to encode and decode the states */
+  protected long[] vector;
+  /* The vectors of the queue: a state followed by its identifier */
+  protected long[] queue_vector;
+
+  protected TraceStore traces = new TraceStore();
+  /** The identifier of the state being explored. -1 for the initial states */
+  protected int current_state_id = -1;
+  /** The initial states, by identifier */
+  protected ArrayList<GS> initial_states_by_id = new ArrayList<GS>();
+  /** The parent of the states returned by processGS (unsafe or P7) */
+  private IdentityHashMap<GS, Integer> reported_states_parents =
+      new IdentityHashMap<GS, Integer>();
+
+  @Override
+  protected void initializeStorage(
+      GraphSimulatorInterface<GS, M, S, T> simulator) {
+    super.initializeStorage(simulator);
+    codec = null;
+    packed_visited_states = null;
+    packed_unvisited_states = null;
+    traces.clear();
+    current_state_id = -1;
+    initial_states_by_id.clear();
+    reported_states_parents.clear();
+    if (unvisited_states.size() == 0) {
+      return;
+    }
+    codec = new StateVectorCodec<GS, M, S, T>(simulator,
+        unvisited_states.iterator().next());
+    vector = new long[codec.getNumberWords()];
+    queue_vector = new long[codec.getNumberWords() + 1];
+    packed_visited_states = createVisitedSet(codec.getNumberWords());
+    packed_unvisited_states =
+        createUnvisitedQueue(codec.getNumberWords() + 1);
+    System.err.println("Packed state vector: " + codec);
+  }
+
+  /**
+   * Create the set storing the visited states. Subclasses can override it to
+   * use another storage.
+   *
+   * @param number_words
+   *          The number of longs of the vectors to store.
+   */
+  protected PackedStateSetInterface createVisitedSet(int number_words) {
+    return new PackedStateHashSet(number_words);
+  }
+
+  /**
+   * Create the queue storing the states to explore. Subclasses can override
+   * it to use another storage.
+   *
+   * @param number_words
+   *          The number of longs of the vectors to store, including the word
+   *          of the identifier of the state.
+   */
+  protected PackedStateQueueInterface createUnvisitedQueue(int number_words) {
+    return new PackedStateFifo(number_words);
+  }
+
+  @Override
+  protected boolean isVisited(GS state) {
+    codec.encode(state, vector, 0);
+    return packed_visited_states.contains(vector);
+  }
+
+  /**
+   * The states are marked as visited when they are discovered (see
+   * {@link #addUnvisited(AbstractGlobalState)}).
+   */
+  @Override
+  protected void addVisited(GS state) {
+  }
+
+  @Override
+  protected void addUnvisited(GS state) {
+    codec.encode(state, queue_vector, 0);
+    if (packed_visited_states.add(queue_vector)) {
+      int id;
+      if (current_state_id < 0) {
+        id = traces.add(-1, null);
+        assert id == initial_states_by_id.size();
+        initial_states_by_id.add(state);
+      } else {
+        id = traces.add(current_state_id, state.last_processed_external_event);
+      }
+      queue_vector[codec.getNumberWords()] = id;
+      packed_unvisited_states.add(queue_vector);
+    }
+  }
+
+  @Override
+  protected GS processGS(GS state) {
+    GS result = super.processGS(state);
+    if (result != null) {
+      reported_states_parents.put(result, current_state_id);
+    }
+    return result;
+  }
+
+  @Override
+  protected boolean hasUnvisitedStates() {
+    return packed_unvisited_states != null
+        && !packed_unvisited_states.isEmpty();
+  }
+
+  @Override
+  protected GS pollUnvisitedState() {
+    packed_unvisited_states.poll(queue_vector);
+    current_state_id = (int) queue_vector[codec.getNumberWords()];
+    return codec.decode(queue_vector);
+  }
+
+  @Override
+  public long getNumberVisitedStates() {
+    if (packed_visited_states == null) {
+      return 0;
+    }
+    return packed_visited_states.size();
+  }
+
+  @Override
+  public long getNumberUnvisitedStates() {
+    if (packed_unvisited_states == null) {
+      return unvisited_states.size();
+    }
+    return packed_unvisited_states.size();
+  }
+
+  @Override
+  public GS verify(GraphSimulatorInterface<GS, M, S, T> simulator) {
+    GS result = super.verify(simulator);
+    if (packed_visited_states != null) {
+      System.err.println("Visited states storage: "
+          + packed_visited_states.getStatistics());
+    }
+    return result;
+  }
+
+  /**
+   * Print the trace of a state returned by the last verification. The states
+   * of the trace are computed again by executing its events from its initial
+   * state.
+   */
+  @Override
+  public String printFullTrace(GS state) {
+    Integer parent = reported_states_parents.get(state);
+    if (parent != null && parent >= 0) {
+      state.previous_global_state = replay(parent);
+    }
+    return super.printFullTrace(state);
+  }
+
+  /**
+   * @return The state `id` computed again from its initial state, with its
+   *         previous_global_state and last_processed_external_event set along
+   *         the trace.
+   */
+  protected GS replay(int id) {
+    GS current = initial_states_by_id.get(traces.getRoot(id));
+    LinkedList<ExternalEvent> events = traces.getTrace(id);
+    for (ExternalEvent e : events) {
+      GS next_state = canonicalize(simulator.execute(current, e));
+      next_state.last_processed_external_event = e;
+      next_state.previous_global_state = current;
+      current = next_state;
+    }
+    return current;
+  }
+
+  @Override
+  public void reset() {
+    super.reset();
+    traces.clear();
+    initial_states_by_id.clear();
+    reported_states_parents.clear();
+    if (packed_visited_states != null) {
+      packed_visited_states.clear();
+      packed_unvisited_states.clear();
+    }
+  }
+
+  /**
+   * The visited states are not stored as global states.
+   *
+   * @return A view decoding the visited vectors of the last verification (see
+   *         {@link PackedGlobalStateSet}). It can only be iterated if the
+   *         visited set keeps the vectors.
+   */
+  @Override
+  public Set<GS> getVisited_states() {
+    if (packed_visited_states == null) {
+      return Collections.emptySet();
+    }
+    return Collections.unmodifiableSet(new PackedGlobalStateSet<GS, M, S, T>(
+        codec, packed_visited_states));
+  }
+
+  /**
+   * @return The exploration tree of the last verification.
+   */
+  public TraceStore getTraces() {
+    return traces;
+  }
+
+  /**
+   * @return The codec used for the last verification.
+   */
+  public StateVectorCodec<GS, M, S, T> getCodec() {
+    return codec;
+  }
+}
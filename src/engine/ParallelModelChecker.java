@@ -0,0 +1,334 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import abstractGraph.AbstractGlobalState;
+import abstractGraph.AbstractState;
+import abstractGraph.AbstractStateMachine;
+import abstractGraph.AbstractTransition;
+import abstractGraph.events.ExternalEvent;
+
+/**
+ * A model checker exploring the states with several threads.
+ *
+ * @details
+ *          The exploration is a breadth first search synchronized on the
+ *          levels: all the states of a level are explored in parallel in a
+ *          ForkJoinPool, and the new states are gathered into the next level.
+ *          The levels are split recursively into tasks, so that the idle
+ *          threads steal the work of the busy ones.
+ *
+ *          Since the simulators are not thread safe, every thread uses its own
+ *          clone of the simulator given to
+ *          {@link #verify(GraphSimulatorInterface)}. The visited states are
+ *          stored in a concurrent set, and a state is marked as visited as
+ *          soon as it is discovered, so that it is explored only once.
+ *
+ *          The numbers of visited, illegal, unsafe and P7 states are the same
+ *          as the ones of {@link ModelChecker}.
+ */
+public class ParallelModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>>
+    extends ModelChecker<GS, M, S, T> {
+
+  /** Number of states under which a task is not split anymore */
+  private static final int SEQUENTIAL_THRESHOLD = 32;
+
+  private final int number_threads;
+
+  /** The states discovered during the exploration of the current level */
+  private ConcurrentLinkedQueue<GS> next_level =
+      new ConcurrentLinkedQueue<GS>();
+  /** The simulator of every thread */
+  private ThreadLocal<GraphSimulatorInterface<GS, M, S, T>> local_simulators;
+
+  private AtomicInteger atomic_number_illegal_states = new AtomicInteger();
+  private AtomicInteger atomic_number_of_functional_warning =
+      new AtomicInteger();
+  private AtomicInteger atomic_number_explored_nodes = new AtomicInteger();
+  private volatile GS error_state;
+
+  /**
+   * @param number_threads
+   *          The number of threads exploring the states.
+   */
+  public ParallelModelChecker(int number_threads) {
+    if (number_threads <= 0) {
+      throw new IllegalArgumentException("The number of threads must be "
+          + "positive");
+    }
+    this.number_threads = number_threads;
+  }
+
+  /**
+   * Use as many threads as available processors.
+   */
+  public ParallelModelChecker() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  public int getNumberThreads() {
+    return number_threads;
+  }
+
+  @Override
+  protected void initializeStorage(
+      GraphSimulatorInterface<GS, M, S, T> simulator) {
+    visited_states = createConcurrentVisitedSet();
+    next_level.clear();
+  }
+
+  /**
+   * Create the set storing the visited states. It must be thread safe.
+   * Subclasses can override it to use another storage. The simulator of the
+   * verification is set and the initial states are in unvisited_states.
+   */
+  protected Set<GS> createConcurrentVisitedSet() {
+    if (isPackedVisitedStates() && unvisited_states.size() != 0) {
+      return createPackedVisitedSet(simulator);
+    }
+    return Collections.newSetFromMap(new ConcurrentHashMap<GS, Boolean>());
+  }
+
+  /**
+   * Thread safe version of {@link ModelChecker#processGS(AbstractGlobalState)}
+   * .
+   */
+  @Override
+  protected GS processGS(GS state) {
+    assert state != null;
+
+    if (!state.isLegal()) {
+      atomic_number_illegal_states.incrementAndGet();
+      return null;
+    }
+
+    if (isVisited(state)) {
+      return null;
+    }
+
+    if (!state.isSafe()) {
+      synchronized (unsafe_states) {
+        unsafe_states.add(state);
+      }
+      return state;
+    }
+
+    if (!state.isNotP7()) {
+      atomic_number_of_functional_warning.incrementAndGet();
+      return state;
+    }
+
+    addUnvisited(state);
+    return null;
+  }
+
+  /**
+   * The states are marked as visited when they are discovered (see
+   * {@link #addUnvisited(AbstractGlobalState)}).
+   */
+  @Override
+  protected void addVisited(GS state) {
+  }
+
+  @Override
+  protected void addUnvisited(GS state) {
+    if (visited_states.add(state)) {
+      next_level.add(state);
+    }
+  }
+
+  @Override
+  protected boolean hasUnvisitedStates() {
+    return !next_level.isEmpty();
+  }
+
+  @Override
+  protected GS pollUnvisitedState() {
+    return next_level.poll();
+  }
+
+  @Override
+  public long getNumberUnvisitedStates() {
+    if (next_level.isEmpty()) {
+      return unvisited_states.size();
+    }
+    return next_level.size();
+  }
+
+  @Override
+  public void reset() {
+    super.reset();
+    next_level.clear();
+    atomic_number_illegal_states.set(0);
+    atomic_number_of_functional_warning.set(0);
+    atomic_number_explored_nodes.set(0);
+  }
+
+  /**
+   * Copy the atomic counters into the fields of {@link ModelChecker}.
+   */
+  private void updateCounters() {
+    number_illegal_states = atomic_number_illegal_states.get();
+    number_of_functional_warning = atomic_number_of_functional_warning.get();
+    number_explored_nodes = atomic_number_explored_nodes.get();
+  }
+
+  @Override
+  public GS verify(GraphSimulatorInterface<GS, M, S, T> full_simulator) {
+    final GraphSimulatorInterface<GS, M, S, T> simulator =
+        sliceModels(full_simulator);
+    this.simulator = simulator;
+
+    initializeReduction(simulator);
+    initializeStorage(simulator);
+    unsafe_states.clear();
+    atomic_number_illegal_states.set(0);
+    atomic_number_of_functional_warning.set(0);
+    atomic_number_explored_nodes.set(0);
+    error_state = null;
+
+    LinkedList<GS> initial_states = new LinkedList<GS>(unvisited_states);
+    unvisited_states.clear();
+    for (GS global_state : initial_states) {
+      GS result = processGS(canonicalize(global_state));
+      if (result != null) {
+        updateCounters();
+        return result;
+      }
+    }
+
+    System.err.println("Initial states size : " + next_level.size());
+    System.err.println("Exploring with " + number_threads + " threads");
+
+    local_simulators = new ThreadLocal<GraphSimulatorInterface<GS, M, S, T>>() {
+      @Override
+      protected GraphSimulatorInterface<GS, M, S, T> initialValue() {
+        synchronized (simulator) {
+          return simulator.clone();
+        }
+      }
+    };
+
+    ForkJoinPool pool = new ForkJoinPool(number_threads);
+    long start_time = System.nanoTime();
+    int depth = 0;
+    try {
+      while (!next_level.isEmpty()) {
+        ArrayList<GS> current_level = new ArrayList<GS>(next_level);
+        next_level = new ConcurrentLinkedQueue<GS>();
+
+        pool.invoke(new ExploreTask(current_level, 0, current_level.size()));
+        depth++;
+
+        if (VERY_VERBOSE) {
+          System.err.println("Level " + depth + ": " + current_level.size()
+              + " states explored, " + next_level.size() + " new states, "
+              + visited_states.size() + " visited states in "
+              + (System.nanoTime() - start_time) / 1000000000.0 + "s");
+        }
+      }
+    } finally {
+      pool.shutdown();
+      local_simulators = null;
+    }
+    updateCounters();
+
+    System.err.println("Total number of distinct visited states: "
+        + getNumberVisitedStates());
+    System.err.println("Total number of illegal nodes found:" +
+        number_illegal_states);
+    System.err.println("Total number of explored node: "
+        + number_explored_nodes);
+    System.err.println("Total number of unsafe node: " + unsafe_states.size());
+    System.err.println("Total number of functional warnings (P7) nodes: "
+        + number_of_functional_warning);
+    System.err.println("Depth of the exploration: " + depth + " ("
+        + (System.nanoTime() - start_time) / 1000000000.0 + "s)");
+
+    return error_state;
+  }
+
+  /**
+   * Execute all the possible external events on the given state and process
+   * the resulting states.
+   *
+   * @return The number of executed events.
+   */
+  private int explore(GraphSimulatorInterface<GS, M, S, T> local_simulator,
+      GS state) {
+    int number_executed_events = 0;
+    for (Entry<ExternalEvent, GS> successor : computeSuccessors(
+        local_simulator, state).entrySet()) {
+      ExternalEvent e = successor.getKey();
+      GS next_state = successor.getValue();
+
+      next_state.last_processed_external_event = e;
+      next_state.previous_global_state = state;
+      number_executed_events++;
+
+      if (processGS(next_state) != null) {
+        if (PRINT_TRACE_UNSAFE) {
+          /* The traces of different threads must not be mixed */
+          synchronized (this) {
+            System.out
+                .println("The model checker detected a dangerous state !");
+            System.out.println("***********************************");
+            System.out.println("A FULL trace of external event is: ");
+            System.out.println("***********************************");
+            System.out.println(printFullTrace(next_state));
+          }
+        }
+
+        if (!next_state.isSafe()) {
+          error_state = next_state;
+        }
+      }
+    }
+    return number_executed_events;
+  }
+
+  /**
+   * Explore the states of a level between two indexes. It is split in two
+   * subtasks while it contains more than {@link #SEQUENTIAL_THRESHOLD} states.
+   */
+  @SuppressWarnings("serial")
+  private class ExploreTask extends RecursiveAction {
+    private final List<GS> states;
+    private final int from;
+    private final int to;
+
+    ExploreTask(List<GS> states, int from, int to) {
+      this.states = states;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > SEQUENTIAL_THRESHOLD) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new ExploreTask(states, from, middle),
+            new ExploreTask(states, middle, to));
+        return;
+      }
+
+      GraphSimulatorInterface<GS, M, S, T> local_simulator =
+          local_simulators.get();
+      int number_executed_events = 0;
+      for (int i = from; i < to; i++) {
+        number_executed_events += explore(local_simulator, states.get(i));
+      }
+      atomic_number_explored_nodes.addAndGet(number_executed_events);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package engine;
+
+import java.util.Set;
+
+import abstractGraph.AbstractGlobalState;
+import abstractGraph.AbstractState;
+import abstractGraph.AbstractStateMachine;
+import abstractGraph.AbstractTransition;
+import engine.stateStorage.LockFreeStateHashSet;
+import engine.stateStorage.PackedGlobalStateSet;
+import engine.stateStorage.StateVectorCodec;
+
+/**
+ * A {@link ParallelModelChecker} storing the visited states as packed vectors
+ * (see {@link StateVectorCodec}) in a {@link LockFreeStateHashSet}.
+ *
+ * @details
+ *          The threads insert the states in the visited set without lock, and
+ *          a visited state costs only its vector instead of a global state
+ *          object and a map entry.
+ *
+ *          It is a {@link ParallelModelChecker} with
+ *          {@link #setPackedVisitedStates(boolean)} enabled, giving access to
+ *          the codec and to the packed set of the last verification.
+ */
+public class ParallelPackedModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>>
+    extends ParallelModelChecker<GS, M, S, T> {
+
+  protected StateVectorCodec<GS, M, S, T> codec;
+  protected LockFreeStateHashSet packed_visited_states;
+
+  /**
+   * @param number_threads
+   *          The number of threads exploring the states.
+   */
+  public ParallelPackedModelChecker(int number_threads) {
+    super(number_threads);
+    setPackedVisitedStates(true);
+  }
+
+  public ParallelPackedModelChecker() {
+    super();
+    setPackedVisitedStates(true);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  protected Set<GS> createConcurrentVisitedSet() {
+    codec = null;
+    packed_visited_states = null;
+    Set<GS> result = super.createConcurrentVisitedSet();
+    if (result instanceof PackedGlobalStateSet) {
+      PackedGlobalStateSet<GS, M, S, T> packed_set =
+          (PackedGlobalStateSet<GS, M, S, T>) result;
+      codec = packed_set.getCodec();
+      packed_visited_states =
+          (LockFreeStateHashSet) packed_set.getPackedStates();
+    }
+    return result;
+  }
+
+  @Override
+  public GS verify(GraphSimulatorInterface<GS, M, S, T> simulator) {
+    GS result = super.verify(simulator);
+    if (packed_visited_states != null) {
+      System.err.println("Visited states storage: "
+          + packed_visited_states.getStatistics());
+    }
+    return result;
+  }
+
+  /**
+   * @return The codec used for the last verification.
+   */
+  public StateVectorCodec<GS, M, S, T> getCodec() {
+    return codec;
+  }
+}
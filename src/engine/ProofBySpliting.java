@@ -2,7 +2,6 @@ package engine;
 
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 
 import abstractGraph.AbstractGlobalState;
@@ -17,11 +16,23 @@ import graph.Model;
 
 public class ProofBySpliting<GS extends AbstractGlobalState<M, S, T, ?>, M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>> {
 
-  HashSet<GraphSimulatorInterface<GS, M, S, T>> simulators = new HashSet<GraphSimulatorInterface<GS, M, S, T>>();
+  /** The simulators of the sub-proofs, in the order of the split */
+  LinkedHashSet<GraphSimulatorInterface<GS, M, S, T>> simulators = new LinkedHashSet<GraphSimulatorInterface<GS, M, S, T>>();
 
   public ProofBySpliting(AbstractModel<M, S, T> model,
       AbstractModel<M, S, T> proof)
       throws IOException, InstantiationException, IllegalAccessException {
+    this(model, proof, Runtime.getRuntime().maxMemory());
+  }
+
+  /**
+   * @param memory_budget
+   *          The maximal estimated memory of a sub-proof, in bytes (see
+   *          {@link SplitProof#setMemoryBudget(long)}).
+   */
+  public ProofBySpliting(AbstractModel<M, S, T> model,
+      AbstractModel<M, S, T> proof, long memory_budget)
+      throws InstantiationException, IllegalAccessException {
 
     BuildActivationGraph<M, S, T> activation_graph_builder = new BuildActivationGraph<M, S, T>(
         model, proof);
@@ -30,6 +41,7 @@ public class ProofBySpliting<GS extends AbstractGlobalState<M, S, T, ?>, M exten
     nodes.putAll(activation_graph_builder.nodes);
     SplitProof<M, S, T> split_proof = new SplitProof<M, S, T>(nodes, model,
         proof, activation_graph_builder.getP6_graphs());
+    split_proof.setMemoryBudget(memory_budget);
     LinkedHashSet<LinkedHashSet<M>> list_of_list_state_machine = split_proof
         .Split();
 
@@ -70,7 +82,7 @@ public class ProofBySpliting<GS extends AbstractGlobalState<M, S, T, ?>, M exten
     throw new Error();
   }
 
-  public HashSet<GraphSimulatorInterface<GS, M, S, T>> getSimulators() {
+  public LinkedHashSet<GraphSimulatorInterface<GS, M, S, T>> getSimulators() {
     return simulators;
   }
 
@@ -67,7 +67,7 @@ public class SequentialGraphSimulator extends
   public SequentialGraphSimulator clone() {
     SequentialGraphSimulator result =
         new SequentialGraphSimulator((Model) this.model, (Model) this.proof);
-    result.setVerbose(this.verbose);
+    copySettings(result);
     return result;
   }
 
@@ -106,7 +106,8 @@ public class SequentialGraphSimulator extends
       commands_queue.clear();
 
       processSingleEvent(model, global_state,
-          internal_functional_event_queue.remove(), external_proof_event_queue);
+          event_table.get(internal_functional_event_queue.poll()),
+          external_proof_event_queue);
 
       internal_functional_event_queue.addAll(external_proof_event_queue);
       if (proof != null) {
@@ -143,7 +144,8 @@ public class SequentialGraphSimulator extends
     if (proof != null && internal_proof_event_queue.size() != 0) {
       proof_transitions_pull_list.clear();
       processSingleEvent(proof, global_state,
-          internal_proof_event_queue.remove(), internal_proof_event_queue);
+          event_table.get(internal_proof_event_queue.poll()),
+          internal_proof_event_queue);
       /*
        * If we have ended the execution, we let the functional execute an other
        * external event
@@ -162,12 +164,14 @@ public class SequentialGraphSimulator extends
     if (proof != null && external_events.size() == 0) {
       proof_transitions_pull_list.clear();
       processSingleEvent(proof, global_state,
-          external_proof_event_queue.remove(), internal_proof_event_queue);
+          event_table.get(external_proof_event_queue.poll()),
+          internal_proof_event_queue);
     }
 
     if (proof != null && external_proof_event_queue.size() != 0) {
       processSingleEvent(proof, global_state,
-          external_proof_event_queue.remove(), internal_proof_event_queue);
+          event_table.get(external_proof_event_queue.poll()),
+          internal_proof_event_queue);
       return;
     }
 
@@ -199,10 +203,9 @@ public class SequentialGraphSimulator extends
 
     GlobalState copied_starting_state = starting_state.clone();
 
-    LinkedList<SingleEvent> transfert_list = new LinkedList<SingleEvent>();
     SingleEvent curr_event = event;
     if (curr_event != null) {
-      external_proof_event_queue.add(curr_event);
+      external_proof_event_queue.add(event_table.put(curr_event));
     }
 
     do {
@@ -216,7 +219,7 @@ public class SequentialGraphSimulator extends
       external_proof_event_queue.addAll(temporary_commands_queue);
       temporary_commands_queue.clear();
 
-      curr_event = internal_functional_event_queue.poll();
+      curr_event = pollEvent(internal_functional_event_queue);
     } while (curr_event != null);
 
     if (proof != null) {
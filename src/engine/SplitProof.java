@@ -1,25 +1,61 @@
 package engine;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import abstractGraph.AbstractModel;
 import abstractGraph.AbstractState;
 import abstractGraph.AbstractStateMachine;
 import abstractGraph.AbstractTransition;
+import abstractGraph.conditions.BooleanVariable;
+import abstractGraph.conditions.EnumeratedVariable;
 import engine.BuildActivationGraph.MyNode;
 
+/**
+ * Split a proof in independent sub-proofs.
+ *
+ * @details
+ *          Every proof machine is verified with the machines of its backward
+ *          closure in the activation graph (and the machines writing P_6).
+ *          This closure cannot be reduced without losing behaviors, but the
+ *          closures can be grouped: every sub-proof has a fixed cost (a new
+ *          simulator and initial exploration) and the machines shared by
+ *          several closures are explored once per sub-proof. Two sub-proofs
+ *          are merged when the estimated cost of the union is not greater than
+ *          the sum of their costs and when the union fits in the memory budget.
+ *
+ *          The number of states of a group is estimated by the product of the
+ *          number of states of its machines and of the domains of the
+ *          variables they write (the other variables keep their initial
+ *          value). It is an upper bound of the number of reachable states.
+ *          The sub-proofs are returned from the biggest to the smallest, so
+ *          that the longest ones are started first when they are verified in
+ *          parallel.
+ */
 public class SplitProof<M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>> {
 
+  /** The cost of a sub-proof besides its states, in number of states */
+  public static final double SUB_PROOF_COST = 1000;
+  /** Memory of a visited state besides its variables and states, in bytes */
+  private static final int STATE_OVERHEAD = 48;
+
   HashMap<M, MyNode> nodes;
   AbstractModel<M, S, T> model;
   AbstractModel<M, S, T> proof;
   LinkedHashSet<LinkedHashSet<M>> list_of_list_state_machine = new LinkedHashSet<LinkedHashSet<M>>();
   HashSet<M> proof_state_machine_found = new HashSet<M>();
   HashSet<M> P6_graphs = new HashSet<M>();
+  /** The maximal estimated memory of a sub-proof, in bytes */
+  private long memory_budget = Runtime.getRuntime().maxMemory();
 
   public SplitProof(HashMap<M, MyNode> nodes,
       AbstractModel<M, S, T> model,
@@ -54,9 +90,152 @@ public class SplitProof<M extends AbstractStateMachine<S, T>, S extends Abstract
         list_of_list_state_machine.add(list_state_machine);
       }
     }
+    list_of_list_state_machine = partition(list_of_list_state_machine);
     return list_of_list_state_machine;
   }
 
+  /**
+   * Set the maximal estimated memory of a sub-proof, in bytes. The groups are
+   * not merged above it. By default, it is the maximal memory of the JVM.
+   */
+  public void setMemoryBudget(long memory_budget) {
+    this.memory_budget = memory_budget;
+  }
+
+  public long getMemoryBudget() {
+    return memory_budget;
+  }
+
+  /**
+   * Merge the groups as long as it reduces the estimated cost (see
+   * {@link SplitProof}), and sort them by decreasing size.
+   */
+  private LinkedHashSet<LinkedHashSet<M>> partition(
+      Collection<LinkedHashSet<M>> groups) {
+    ArrayList<LinkedHashSet<M>> result = new ArrayList<LinkedHashSet<M>>(
+        groups);
+    ArrayList<Double> sizes = new ArrayList<Double>();
+    for (LinkedHashSet<M> group : result) {
+      sizes.add(estimateNumberStates(group));
+    }
+
+    while (true) {
+      /* The merge saving the most */
+      int best_i = -1, best_j = -1;
+      double best_saving = -1;
+      LinkedHashSet<M> best_union = null;
+      double best_size = 0;
+      for (int i = 0; i < result.size(); i++) {
+        for (int j = i + 1; j < result.size(); j++) {
+          LinkedHashSet<M> union = new LinkedHashSet<M>(result.get(i));
+          union.addAll(result.get(j));
+          double size = estimateNumberStates(union);
+          double saving = sizes.get(i) + sizes.get(j) + SUB_PROOF_COST
+              - size;
+          if (saving >= 0 && saving > best_saving
+              && estimateMemory(union, size) <= memory_budget) {
+            best_i = i;
+            best_j = j;
+            best_saving = saving;
+            best_union = union;
+            best_size = size;
+          }
+        }
+      }
+      if (best_union == null) {
+        break;
+      }
+      result.set(best_i, best_union);
+      sizes.set(best_i, best_size);
+      result.remove(best_j);
+      sizes.remove(best_j);
+    }
+
+    /* Keyed on copies, which are not modified by the sort */
+    final HashMap<Set<M>, Double> group_sizes = new HashMap<Set<M>, Double>();
+    for (int i = 0; i < result.size(); i++) {
+      group_sizes.put(Collections.unmodifiableSet(new LinkedHashSet<M>(result
+          .get(i))), sizes.get(i));
+      if (estimateMemory(result.get(i), sizes.get(i)) > memory_budget) {
+        System.err.println("A sub-proof of " + result.get(i).size()
+            + " state machines may need more than the memory budget ("
+            + String.format("%.3g", sizes.get(i)) + " states)");
+      }
+    }
+    Collections.sort(result, new Comparator<LinkedHashSet<M>>() {
+      @Override
+      public int compare(LinkedHashSet<M> g1, LinkedHashSet<M> g2) {
+        return Double.compare(group_sizes.get(g2), group_sizes.get(g1));
+      }
+    });
+    return new LinkedHashSet<LinkedHashSet<M>>(result);
+  }
+
+  /**
+   * @return An upper bound of the number of reachable states of the product
+   *         of the machines of `group`.
+   */
+  public double estimateNumberStates(Collection<M> group) {
+    double result = 1;
+    for (M state_machine : group) {
+      result *= numberStates(state_machine);
+    }
+    for (EnumeratedVariable variable : writtenVariables(group)) {
+      result *= domainSize(variable);
+    }
+    return result;
+  }
+
+  /**
+   * @return An estimation of the memory used to store `number_states` states
+   *         of the machines of `group`, in bytes.
+   */
+  private double estimateMemory(Collection<M> group, double number_states) {
+    int bits = 0;
+    for (M state_machine : group) {
+      bits += 32 - Integer.numberOfLeadingZeros(numberStates(state_machine));
+    }
+    for (EnumeratedVariable variable : writtenVariables(group)) {
+      bits += 32 - Integer.numberOfLeadingZeros(domainSize(variable));
+    }
+    return number_states * (8 * ((bits + 63) / 64) + STATE_OVERHEAD);
+  }
+
+  private int numberStates(M state_machine) {
+    int number_states = 0;
+    for (@SuppressWarnings("unused")
+    S state : state_machine) {
+      number_states++;
+    }
+    return Math.max(1, number_states);
+  }
+
+  private LinkedHashSet<EnumeratedVariable> writtenVariables(
+      Collection<M> group) {
+    LinkedHashSet<EnumeratedVariable> result =
+        new LinkedHashSet<EnumeratedVariable>();
+    for (int n = 0; n < 2; n++) {
+      AbstractModel<M, S, T> current_model = n == 0 ? model : proof;
+      for (Entry<EnumeratedVariable, Collection<M>> entry : current_model
+          .getWritingStateMachines().entrySet()) {
+        for (M writer : entry.getValue()) {
+          if (group.contains(writer)) {
+            result.add(entry.getKey());
+            break;
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private int domainSize(EnumeratedVariable variable) {
+    if (variable instanceof BooleanVariable) {
+      return 2;
+    }
+    return Math.max(1, variable.getEnumeration().size());
+  }
+
   public LinkedHashSet<M> Split(M state_machine) {
     LinkedHashSet<M> list_state_machine = new LinkedHashSet<M>();
     LinkedList<M> tmp_list_state_machine = new LinkedList<M>();
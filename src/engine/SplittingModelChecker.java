@@ -1,10 +1,21 @@
 package engine;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import abstractGraph.AbstractGlobalState;
 import abstractGraph.AbstractState;
@@ -18,18 +29,158 @@ public class SplittingModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M
   /** Display the execution trace. It implies SPLIT_PROOF = false */
   private static final boolean DISPLAY_TREE = false;
 
-  private ModelChecker<GS, M, S, T> model_checker;
+  /** The number of sub-proofs verified simultaneously */
+  private final int number_threads;
+
+  /** The maximal estimated memory of a sub-proof, in bytes */
+  private long memory_budget = Runtime.getRuntime().maxMemory();
+
+  /** Render the activation graph of every sub-proof with GraphViz */
+  private boolean print_images = true;
+
+  /** The reductions of the model checkers of the sub-proofs */
+  private boolean partial_order_reduction = false;
+  private boolean symmetry_reduction = false;
+  private boolean cone_of_influence_slicing = false;
+
+  /** The results of the previous runs. null if they are not used */
+  private SubProofCache cache = null;
+  private AtomicInteger number_cached_proofs = new AtomicInteger();
+  /** The results of the sub-proofs of the last verification, in order */
+  private ArrayList<SubProofCache.Result> sub_proof_results =
+      new ArrayList<SubProofCache.Result>();
 
   /** The states to explore */
   protected Set<GS> unvisited_states = new HashSet<GS>();
 
+  /**
+   * @param number_threads
+   *          The number of sub-proofs verified simultaneously.
+   */
+  public SplittingModelChecker(int number_threads) {
+    if (number_threads <= 0) {
+      throw new IllegalArgumentException("The number of threads must be "
+          + "positive");
+    }
+    this.number_threads = number_threads;
+  }
+
+  /**
+   * Use as many threads as available processors.
+   */
   public SplittingModelChecker() {
-    super();
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  public int getNumberThreads() {
+    return number_threads;
+  }
+
+  /**
+   * Set the maximal estimated memory of a sub-proof, in bytes (see
+   * {@link SplitProof#setMemoryBudget(long)}). The sub-proofs sharing many
+   * machines are merged up to this limit.
+   */
+  public void setMemoryBudget(long memory_budget) {
+    this.memory_budget = memory_budget;
+  }
+
+  public long getMemoryBudget() {
+    return memory_budget;
+  }
+
+  /**
+   * When enabled, the activation graph and the state machines of every
+   * sub-proof are rendered in the images tmp and tmp_i. The rendering is done
+   * in the background and does not delay the verification.
+   */
+  public void setPrintImages(boolean print_images) {
+    this.print_images = print_images;
+  }
+
+  public boolean isPrintImages() {
+    return print_images;
+  }
+
+  /**
+   * {@see ModelChecker#setPartialOrderReduction(boolean)}
+   */
+  public void setPartialOrderReduction(boolean partial_order_reduction) {
+    this.partial_order_reduction = partial_order_reduction;
+  }
+
+  public boolean isPartialOrderReduction() {
+    return partial_order_reduction;
+  }
+
+  /**
+   * {@see ModelChecker#setSymmetryReduction(boolean)}
+   */
+  public void setSymmetryReduction(boolean symmetry_reduction) {
+    this.symmetry_reduction = symmetry_reduction;
+  }
+
+  public boolean isSymmetryReduction() {
+    return symmetry_reduction;
+  }
+
+  /**
+   * {@see ModelChecker#setConeOfInfluenceSlicing(boolean)}
+   */
+  public void setConeOfInfluenceSlicing(boolean cone_of_influence_slicing) {
+    this.cone_of_influence_slicing = cone_of_influence_slicing;
+  }
+
+  public boolean isConeOfInfluenceSlicing() {
+    return cone_of_influence_slicing;
+  }
+
+  /**
+   * Use the results saved in `cache` by the previous runs: the sub-proofs that
+   * succeeded and are unchanged (see {@link SubProofCache}) are not verified
+   * again. A failed sub-proof is always verified again, to give its unsafe
+   * state. null disables the cache.
+   */
+  public void setCache(SubProofCache cache) {
+    this.cache = cache;
+  }
+
+  public SubProofCache getCache() {
+    return cache;
+  }
+
+  /**
+   * @return The number of sub-proofs of the last verification whose result
+   *         has been taken from the cache.
+   */
+  public int getNumberCachedProofs() {
+    return number_cached_proofs.get();
+  }
+
+  /**
+   * @return The results of the sub-proofs of the last verification, in the
+   *         order of the sub-proofs. The results taken from the cache are the
+   *         cached ones.
+   */
+  public ArrayList<SubProofCache.Result> getSubProofResults() {
+    return sub_proof_results;
+  }
+
+  /**
+   * @return A new model checker for a sub-proof, with the reductions of this
+   *         model checker.
+   */
+  protected ModelChecker<GS, M, S, T> createModelChecker() {
+    ModelChecker<GS, M, S, T> model_checker;
     if (DISPLAY_TREE) {
       model_checker = new ModelCheckerDisplayer<>();
     } else {
       model_checker = new ModelChecker<>();
     }
+    model_checker.setPartialOrderReduction(partial_order_reduction);
+    model_checker.setSymmetryReduction(symmetry_reduction);
+    model_checker.setConeOfInfluenceSlicing(cone_of_influence_slicing);
+    return model_checker;
   }
 
   /**
@@ -69,6 +220,16 @@ public class SplittingModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M
    * 
    * {@see ModelChecker#verify(GraphSimulatorInterface)}
    * 
+   * @details
+   *          The sub-proofs are independent: they are verified simultaneously
+   *          by {@link #getNumberThreads()} threads, each one with its own
+   *          model checker and simulator. The biggest sub-proofs are started
+   *          first. Their results are printed in the order of the sub-proofs
+   *          once they are all finished. What a sub-proof prints on System.out
+   *          and System.err is buffered, and printed with its result.
+   * 
+   * @return The state found by the first failed sub-proof. null if all the
+   *         sub-proofs succeed.
    * @throws IOException
    * @throws IllegalAccessException
    * @throws InstantiationException
@@ -77,58 +238,238 @@ public class SplittingModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M
   public GS verify(GraphSimulatorInterface<GS, M, S, T> simulator)
       throws IOException, InstantiationException, IllegalAccessException {
 
-    BuildActivationGraph<M, S, T> split_engine = new BuildActivationGraph<>(
-        simulator);
-    boolean successproof = true;
-    split_engine.printToImage("tmp");
+    final BuildActivationGraph<M, S, T> split_engine =
+        new BuildActivationGraph<>(simulator);
+    ExecutorService image_executor = null;
+    if (print_images) {
+      /* GraphViz is not run concurrently on the same activation graph */
+      image_executor = Executors.newSingleThreadExecutor();
+      printToImage(image_executor, split_engine, "tmp", null);
+    }
 
     ProofBySpliting<GS, M, S, T> split_proof = new ProofBySpliting<>(simulator
         .getModel(),
-        simulator.getProof());
-    int i = 0;
-    for (GraphSimulatorInterface<GS, M, S, T> sub_simulator : split_proof
-        .getSimulators()) {
-      model_checker.reset();
-      model_checker.addAllInitialStates(unvisited_states);
-      System.out.flush();
-      System.err.flush();
-      System.out.print("Proof with those graphs : \n");
-      System.out.flush();
-      System.err.flush();
-      i++;
-      split_engine.printToImage("tmp_" + i, sub_simulator);
-
-      Iterator<M> machine_iterator = sub_simulator.getProof().iterator();
-      while (machine_iterator.hasNext()) {
-        System.out.flush();
-        System.err.flush();
-        System.out.print(machine_iterator.next().getName() + "\n");
+        simulator.getProof(), memory_budget);
+    ArrayList<GraphSimulatorInterface<GS, M, S, T>> sub_simulators =
+        new ArrayList<>(split_proof.getSimulators());
+
+    number_cached_proofs.set(0);
+    final SubProofCache.Result[] cached_results =
+        new SubProofCache.Result[sub_simulators.size()];
+    final SubProofCache.Result[] verified_results =
+        new SubProofCache.Result[sub_simulators.size()];
+    final ByteArrayOutputStream[] outputs =
+        new ByteArrayOutputStream[sub_simulators.size()];
+    final ByteArrayOutputStream[] error_outputs =
+        new ByteArrayOutputStream[sub_simulators.size()];
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+        Math.min(number_threads, sub_simulators.size())));
+    ArrayList<Future<GS>> results = new ArrayList<>();
+
+    PrintStream original_output = System.out;
+    PrintStream original_error_output = System.err;
+    final ThreadBufferedOutputStream output =
+        new ThreadBufferedOutputStream(original_output);
+    final ThreadBufferedOutputStream error_output =
+        new ThreadBufferedOutputStream(original_error_output);
+    System.setOut(new PrintStream(output, true));
+    System.setErr(new PrintStream(error_output, true));
+    try {
+      int i = 0;
+      for (final GraphSimulatorInterface<GS, M, S, T> sub_simulator : sub_simulators) {
+        final int index = i;
+        i++;
+        if (image_executor != null) {
+          printToImage(image_executor, split_engine, "tmp_" + i,
+              sub_simulator);
+        }
+        results.add(executor.submit(new Callable<GS>() {
+          @Override
+          public GS call() {
+            outputs[index] = output.startBuffer();
+            error_outputs[index] = error_output.startBuffer();
+            try {
+              return verifySubProof(sub_simulator, cached_results,
+                  verified_results, index);
+            } finally {
+              System.out.flush();
+              System.err.flush();
+              output.stopBuffer();
+              error_output.stopBuffer();
+            }
+          }
+        }));
       }
-      machine_iterator = sub_simulator.getModel().iterator();
-      while (machine_iterator.hasNext()) {
-        System.out.flush();
-        System.err.flush();
-        System.out.print(machine_iterator.next().getName() + "\n");
+
+      GS failed_state = null;
+      for (i = 0; i < sub_simulators.size(); i++) {
+        GS final_state;
+        try {
+          final_state = getResult(results.get(i));
+        } finally {
+          outputs[i].writeTo(original_output);
+          error_outputs[i].writeTo(original_error_output);
+        }
+        printSubProof(sub_simulators.get(i));
+        if (cached_results[i] != null) {
+          System.out.print("Proof SUCCESS (cached: " + cached_results[i]
+              + ") \n");
+        } else if (final_state == null) {
+          System.out.print("Proof SUCCESS \n");
+        } else {
+          System.out.print("Proof FAIL \n");
+          if (failed_state == null) {
+            failed_state = final_state;
+          }
+        }
         System.out.flush();
-        System.err.flush();
       }
-      System.out.flush();
-      System.err.flush();
-      GS final_state = model_checker.verify(sub_simulator);
-      System.err.flush();
-      System.out.flush();
-      if (final_state == null) {
-        System.out.print("Proof SUCCESS \n");
-      } else {
-        System.out.print("Proof FAIL \n");
-        successproof = false;
+      if (failed_state != null) {
+        System.out.print("**** One of the proofs failed ****");
+      }
+      sub_proof_results = new ArrayList<SubProofCache.Result>(
+          Arrays.asList(verified_results));
+      return failed_state;
+    } finally {
+      System.setOut(original_output);
+      System.setErr(original_error_output);
+      executor.shutdownNow();
+      if (image_executor != null) {
+        /* The images already submitted are still rendered */
+        image_executor.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Verify one sub-proof with a new model checker, from copies of the initial
+   * states, unless the cache contains its success.
+   * 
+   * @param cached_results
+   *          Receives at `index` the result taken from the cache, if any.
+   * @param verified_results
+   *          Receives at `index` the result of the sub-proof.
+   */
+  @SuppressWarnings("unchecked")
+  private GS verifySubProof(GraphSimulatorInterface<GS, M, S, T> sub_simulator,
+      SubProofCache.Result[] cached_results,
+      SubProofCache.Result[] verified_results, int index) {
+    ModelChecker<GS, M, S, T> model_checker = createModelChecker();
+    String key = null;
+    if (cache != null) {
+      key = SubProofCache.hash(sub_simulator, unvisited_states, model_checker);
+      SubProofCache.Result cached_result = cache.get(key);
+      if (cached_result != null && cached_result.isSuccess()) {
+        cached_results[index] = cached_result;
+        verified_results[index] = cached_result;
+        number_cached_proofs.incrementAndGet();
+        return null;
+      }
+    }
+
+    for (GS state : unvisited_states) {
+      model_checker.addInitialState((GS) state.clone());
+    }
+    GS final_state = model_checker.verify(sub_simulator);
+    verified_results[index] = new SubProofCache.Result(model_checker,
+        final_state == null);
+    if (cache != null) {
+      cache.put(key, verified_results[index]);
+    }
+    return final_state;
+  }
+
+  /**
+   * @return The result of a sub-proof, waiting for it if needed.
+   */
+  private GS getResult(Future<GS> result) {
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new Error("Interrupted while waiting for a sub-proof", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
       }
-      System.out.flush();
-      System.err.flush();
+      throw new Error(cause);
+    }
+  }
+
+  /**
+   * An output stream writing into the buffer of the current thread if it has
+   * one, and into the original stream otherwise.
+   */
+  private static class ThreadBufferedOutputStream extends OutputStream {
+    private final OutputStream original;
+    private final ThreadLocal<ByteArrayOutputStream> buffer =
+        new ThreadLocal<ByteArrayOutputStream>();
+
+    ThreadBufferedOutputStream(OutputStream original) {
+      this.original = original;
+    }
+
+    /**
+     * @return The new buffer of the current thread.
+     */
+    ByteArrayOutputStream startBuffer() {
+      ByteArrayOutputStream result = new ByteArrayOutputStream();
+      buffer.set(result);
+      return result;
     }
-    if (!successproof) {
-      System.out.print("**** One of the proofs failed ****");
+
+    void stopBuffer() {
+      buffer.remove();
+    }
+
+    private OutputStream current() {
+      ByteArrayOutputStream current_buffer = buffer.get();
+      return current_buffer == null ? original : current_buffer;
     }
-    return null;
+
+    @Override
+    public void write(int b) throws IOException {
+      current().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      current().write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      current().flush();
+    }
+  }
+
+  private void printSubProof(GraphSimulatorInterface<GS, M, S, T> sub_simulator) {
+    System.out.print("Proof with those graphs : \n");
+    Iterator<M> machine_iterator = sub_simulator.getProof().iterator();
+    while (machine_iterator.hasNext()) {
+      System.out.print(machine_iterator.next().getName() + "\n");
+    }
+    machine_iterator = sub_simulator.getModel().iterator();
+    while (machine_iterator.hasNext()) {
+      System.out.print(machine_iterator.next().getName() + "\n");
+    }
+  }
+
+  private void printToImage(ExecutorService image_executor,
+      final BuildActivationGraph<M, S, T> split_engine, final String file_name,
+      final GraphSimulatorInterface<GS, M, S, T> sub_simulator) {
+    image_executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          split_engine.printToImage(file_name, sub_simulator);
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    });
   }
 }
@@ -0,0 +1,410 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Random;
+
+import abstractGraph.AbstractGlobalState;
+import abstractGraph.AbstractState;
+import abstractGraph.AbstractStateMachine;
+import abstractGraph.AbstractTransition;
+import abstractGraph.events.ExternalEvent;
+import engine.stateStorage.StateVectorCodec;
+
+/**
+ * Estimate the size of the state space before a verification, and recommend
+ * a model checker for it.
+ *
+ * @details
+ *          The estimation explores the states with the simulator as the
+ *          {@link ModelChecker} does (only the legal, safe and non P7 states
+ *          are explored and counted):
+ *          - a breadth first probe visits the states closest to the initial
+ *          states, up to a given number of states. If it visits all the
+ *          states, the estimation is exact.
+ *          - random walks, restarted from a random initial state when they
+ *          are blocked, sample deeper states. The proportion of the sampled
+ *          states already visited by the probe gives the total number of
+ *          states (Lincoln-Petersen estimator). If no sampled state has been
+ *          visited by the probe, the estimation is only a lower bound: the
+ *          number of distinct states seen.
+ *
+ *          The random walks are biased toward the states with few successors
+ *          and the probe toward the states close to the initial states: the
+ *          estimation is an order of magnitude, not a count.
+ *
+ *          The memory needed by every storage is computed from the size of a
+ *          state: the global state objects of the {@link ModelChecker}, the
+ *          packed vectors of the {@link PackedModelChecker} (see
+ *          {@link StateVectorCodec}), or the 64 bits fingerprints of the
+ *          {@link HashCompactionModelChecker}. The time is extrapolated from
+ *          the speed of the simulator during the estimation.
+ */
+public class StateSpaceEstimator<GS extends AbstractGlobalState<M, S, T, ?>, M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>> {
+
+  /** The model checkers that can be recommended. */
+  public enum Recommendation {
+    /** {@link ModelChecker}: global state objects. */
+    EXACT,
+    /** {@link PackedModelChecker}: exact, with packed state vectors. */
+    PACKED,
+    /** {@link SplittingModelChecker}: independent sub-proofs. */
+    SPLIT,
+    /**
+     * {@link HashCompactionModelChecker}: fingerprints, a few states may be
+     * missed.
+     */
+    HASH_COMPACTION,
+    /** {@link ExternalBFSModelChecker}: the states are stored on disk. */
+    DISK
+  }
+
+  /**
+   * Approximate size of a global state object in a HashSet (object headers,
+   * array of the states, valuation and hash table entry), for a 64 bits JVM
+   * with compressed pointers.
+   */
+  private static final int OBJECT_STATE_OVERHEAD = 128;
+  /** Trace (6 bytes) and free buckets of the packed storages, per state */
+  private static final int PACKED_STATE_OVERHEAD = 8;
+  /** Omission probability above which the hash compaction is not advised */
+  private static final double MAX_OMISSION_PROBABILITY = 1e-3;
+
+  private final int probe_states;
+  private final int number_walks;
+  private final int walk_length;
+  private Random random = new Random(0);
+  private long memory_budget = Runtime.getRuntime().maxMemory();
+
+  /** The initial states */
+  private LinkedHashSet<GS> initial_states = new LinkedHashSet<GS>();
+
+  private long number_probed_states;
+  private boolean exhausted;
+  private boolean lower_bound;
+  private double estimated_number_states;
+  private double branching_factor;
+  private int number_machines;
+  private int number_variables;
+  private int number_proof_machines;
+  private int number_words;
+  private double executions_per_second;
+  private Recommendation recommendation;
+
+  /**
+   * @param probe_states
+   *          The maximal number of states visited by the breadth first probe.
+   * @param number_walks
+   *          The number of random walks.
+   * @param walk_length
+   *          The number of events executed by every random walk.
+   */
+  public StateSpaceEstimator(int probe_states, int number_walks,
+      int walk_length) {
+    if (probe_states <= 0 || number_walks < 0 || walk_length < 0) {
+      throw new IllegalArgumentException("Invalid estimation parameters");
+    }
+    this.probe_states = probe_states;
+    this.number_walks = number_walks;
+    this.walk_length = walk_length;
+  }
+
+  /**
+   * A probe of 10000 states and 100 walks of 1000 events.
+   */
+  public StateSpaceEstimator() {
+    this(10000, 100, 1000);
+  }
+
+  /**
+   * Set the seed of the random walks. The estimation is reproducible for a
+   * given seed.
+   */
+  public void setSeed(long seed) {
+    random = new Random(seed);
+  }
+
+  /**
+   * Set the memory available for the states, in bytes. By default, it is the
+   * maximal memory of the JVM.
+   */
+  public void setMemoryBudget(long memory_budget) {
+    this.memory_budget = memory_budget;
+  }
+
+  public long getMemoryBudget() {
+    return memory_budget;
+  }
+
+  public void addAllInitialStates(Collection<GS> init) {
+    for (GS state : init) {
+      addInitialState(state);
+    }
+  }
+
+  /**
+   * Add an initial state. As for the model checkers, an illegal state is
+   * ignored.
+   */
+  public void addInitialState(GS init) {
+    if (init.isLegal()) {
+      initial_states.add(init);
+    }
+  }
+
+  /**
+   * Estimate the state space reachable from the initial states.
+   *
+   * @return The recommended model checker.
+   */
+  public Recommendation estimate(GraphSimulatorInterface<GS, M, S, T> simulator) {
+    if (initial_states.isEmpty()) {
+      throw new IllegalStateException("No initial state to estimate from");
+    }
+    long start_time = System.nanoTime();
+    long number_executions = 0;
+    long number_events = 0;
+    long number_expanded_states = 0;
+
+    /* Breadth first probe */
+    HashSet<GS> visited = new HashSet<GS>();
+    LinkedList<GS> frontier = new LinkedList<GS>();
+    for (GS state : initial_states) {
+      if (isExplored(state) && visited.add(state)) {
+        frontier.add(state);
+      }
+    }
+    while (!frontier.isEmpty() && visited.size() < probe_states) {
+      GS state = frontier.poll();
+      LinkedHashSet<ExternalEvent> events = simulator.getPossibleEvent(state);
+      number_expanded_states++;
+      number_events += events.size();
+      for (ExternalEvent event : events) {
+        GS next_state = simulator.execute(state, event);
+        number_executions++;
+        if (isExplored(next_state) && visited.add(next_state)) {
+          frontier.add(next_state);
+        }
+      }
+    }
+    number_probed_states = visited.size();
+    exhausted = frontier.isEmpty();
+
+    /* Random walks */
+    ArrayList<GS> starts = new ArrayList<GS>();
+    for (GS state : initial_states) {
+      if (isExplored(state)) {
+        starts.add(state);
+      }
+    }
+    long number_samples = 0;
+    long number_recaptured = 0;
+    HashSet<GS> new_samples = new HashSet<GS>();
+    if (!exhausted) {
+      for (int walk = 0; walk < number_walks; walk++) {
+        GS state = starts.get(random.nextInt(starts.size()));
+        for (int step = 0; step < walk_length; step++) {
+          ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(
+              simulator.getPossibleEvent(state));
+          number_expanded_states++;
+          number_events += events.size();
+          GS next_state = null;
+          if (!events.isEmpty()) {
+            next_state = simulator.execute(state,
+                events.get(random.nextInt(events.size())));
+            number_executions++;
+          }
+          if (next_state == null || !isExplored(next_state)) {
+            /* Blocked: restart the walk */
+            state = starts.get(random.nextInt(starts.size()));
+            continue;
+          }
+          number_samples++;
+          if (visited.contains(next_state)) {
+            number_recaptured++;
+          } else {
+            new_samples.add(next_state);
+          }
+          state = next_state;
+        }
+      }
+    }
+
+    if (exhausted) {
+      estimated_number_states = number_probed_states;
+      lower_bound = false;
+    } else if (number_recaptured == 0) {
+      /* Only the states actually seen */
+      estimated_number_states = number_probed_states + new_samples.size();
+      lower_bound = true;
+    } else {
+      estimated_number_states = Math.max(number_probed_states
+          + new_samples.size(), (double) number_probed_states
+          * number_samples / number_recaptured);
+      lower_bound = false;
+    }
+    branching_factor = number_expanded_states == 0 ? 0 :
+        (double) number_events / number_expanded_states;
+    double elapsed_time = (System.nanoTime() - start_time) / 1000000000.0;
+    executions_per_second = number_executions / Math.max(elapsed_time,
+        1e-9);
+
+    number_machines = 0;
+    for (@SuppressWarnings("unused")
+    M state_machine : simulator.getModel()) {
+      number_machines++;
+    }
+    number_proof_machines = 0;
+    if (simulator.getProof() != null) {
+      for (@SuppressWarnings("unused")
+      M state_machine : simulator.getProof()) {
+        number_proof_machines++;
+      }
+    }
+    number_machines += number_proof_machines;
+    StateVectorCodec<GS, M, S, T> codec = new StateVectorCodec<GS, M, S, T>(
+        simulator, initial_states.iterator().next());
+    number_variables = codec.getVariables().size();
+    number_words = codec.getNumberWords();
+
+    recommendation = recommend();
+    return recommendation;
+  }
+
+  /**
+   * @return true if the model checker explores the successors of `state`.
+   */
+  private boolean isExplored(GS state) {
+    return state.isLegal() && state.isSafe() && state.isNotP7();
+  }
+
+  private Recommendation recommend() {
+    if (getEstimatedMemory(Recommendation.EXACT) <= memory_budget) {
+      return Recommendation.EXACT;
+    }
+    if (getEstimatedMemory(Recommendation.PACKED) <= memory_budget) {
+      return Recommendation.PACKED;
+    }
+    if (number_proof_machines > 1) {
+      return Recommendation.SPLIT;
+    }
+    if (getEstimatedMemory(Recommendation.HASH_COMPACTION) <= memory_budget
+        && getOmissionProbability() <= MAX_OMISSION_PROBABILITY) {
+      return Recommendation.HASH_COMPACTION;
+    }
+    return Recommendation.DISK;
+  }
+
+  /**
+   * @return The recommendation of the last estimation.
+   */
+  public Recommendation getRecommendation() {
+    return recommendation;
+  }
+
+  /**
+   * @return The estimated number of reachable states.
+   */
+  public double getEstimatedNumberStates() {
+    return estimated_number_states;
+  }
+
+  /**
+   * @return true if the probe has visited all the reachable states: the
+   *         estimation is exact.
+   */
+  public boolean isExhausted() {
+    return exhausted;
+  }
+
+  /**
+   * @return true if the estimation is only a lower bound: the random walks
+   *         have not met any state of the probe.
+   */
+  public boolean isLowerBound() {
+    return lower_bound;
+  }
+
+  /**
+   * @return The average number of possible external events of a state.
+   */
+  public double getBranchingFactor() {
+    return branching_factor;
+  }
+
+  /**
+   * @return The number of distinct states visited by the probe.
+   */
+  public long getNumberProbedStates() {
+    return number_probed_states;
+  }
+
+  /**
+   * @return The estimated size of a visited state in the storage of
+   *         `model_checker`, in bytes. 0 for the storage on disk.
+   */
+  public double getBytesPerState(Recommendation model_checker) {
+    switch (model_checker) {
+    case EXACT:
+    case SPLIT:
+      return OBJECT_STATE_OVERHEAD + 4 * number_machines + number_variables;
+    case PACKED:
+      /* The hash set is half full on average */
+      return 2 * 8 * number_words + PACKED_STATE_OVERHEAD;
+    case HASH_COMPACTION:
+      return 2 * 8 + PACKED_STATE_OVERHEAD;
+    case DISK:
+      return 0;
+    default:
+      throw new Error("Unknown model checker " + model_checker);
+    }
+  }
+
+  /**
+   * @return The estimated memory needed by the states with the storage of
+   *         `model_checker`, in bytes.
+   */
+  public double getEstimatedMemory(Recommendation model_checker) {
+    return estimated_number_states * getBytesPerState(model_checker);
+  }
+
+  /**
+   * @return The probability that the hash compaction misses a state.
+   */
+  public double getOmissionProbability() {
+    return estimated_number_states * estimated_number_states
+        / Math.pow(2, 65);
+  }
+
+  /**
+   * @return The estimated time of a sequential exploration, in seconds.
+   */
+  public double getEstimatedTime() {
+    if (executions_per_second == 0) {
+      return 0;
+    }
+    return estimated_number_states * branching_factor
+        / executions_per_second;
+  }
+
+  @Override
+  public String toString() {
+    return "Estimated number of states: "
+        + (exhausted ? "" : lower_bound ? "more than " : "about ")
+        + String.format("%.3g", estimated_number_states)
+        + " (" + number_probed_states + " probed)\n"
+        + "Branching factor: " + String.format("%.2f", branching_factor)
+        + "\n"
+        + "Memory: " + String.format("%.3g", getEstimatedMemory(
+            Recommendation.EXACT)) + " bytes as objects, "
+        + String.format("%.3g", getEstimatedMemory(Recommendation.PACKED))
+        + " bytes packed, " + String.format("%.3g", getEstimatedMemory(
+            Recommendation.HASH_COMPACTION)) + " bytes as fingerprints ("
+        + memory_budget + " available)\n"
+        + "Time: " + String.format("%.3g", getEstimatedTime()) + "s\n"
+        + "Recommended model checker: " + recommendation;
+  }
+}
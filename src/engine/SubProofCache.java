@@ -0,0 +1,373 @@
+package engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedList;
+
+import utils.Pair;
+import abstractGraph.AbstractGlobalState;
+import abstractGraph.AbstractModel;
+import abstractGraph.AbstractState;
+import abstractGraph.AbstractStateMachine;
+import abstractGraph.AbstractTransition;
+import abstractGraph.conditions.BooleanVariable;
+import abstractGraph.conditions.EnumeratedVariable;
+import abstractGraph.conditions.Formula;
+import abstractGraph.conditions.valuation.Valuation;
+import abstractGraph.events.Assignment;
+import abstractGraph.events.ComputerCommandFunction;
+import abstractGraph.events.EnumeratedVariableChange;
+import abstractGraph.events.ExternalEvent;
+import abstractGraph.events.SingleEvent;
+import abstractGraph.events.VariableChange;
+
+/**
+ * The results of the sub-proofs of a {@link SplittingModelChecker}, saved in a
+ * directory so that the unchanged sub-proofs are not verified again by the
+ * next runs.
+ *
+ * @details
+ *          A sub-proof is identified by a SHA-256 hash of its content (see
+ *          {@link #hash(GraphSimulatorInterface, Collection)}): the state
+ *          machines of its models with their states, transitions, events,
+ *          conditions and actions, the variables they use with their domain,
+ *          the initial states restricted to these machines and variables, and
+ *          the configuration of the model checker (its class and its
+ *          reductions), since the statistics depend on it.
+ *          The hash does not depend on the order of the machines nor on the
+ *          identifiers given at loading time, so it is the same from one run
+ *          to another as long as the sub-proof is not modified.
+ *
+ *          Every result is a small binary file named by the hash, written in a
+ *          new temporary file which then replaces the previous one: the
+ *          sub-proofs verified simultaneously, even by several processes
+ *          sharing the directory, can write their results without
+ *          synchronization. An unreadable file is considered as absent.
+ */
+public class SubProofCache {
+
+  /** "SPRC" */
+  private static final int MAGIC = 0x53505243;
+  /**
+   * To increment when the verification changes, so that the previous results
+   * are not used anymore.
+   */
+  private static final int VERSION = 1;
+
+  private final File directory;
+
+  /**
+   * @param directory
+   *          The directory of the results. It is created if it does not exist.
+   */
+  public SubProofCache(File directory) {
+    this.directory = directory;
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * The verdict and the statistics of the verification of a sub-proof.
+   */
+  public static class Result {
+    private final boolean success;
+    private final long number_visited_states;
+    private final int number_illegal_states;
+    private final int number_functional_warnings;
+    private final int number_explored_nodes;
+
+    public Result(boolean success, long number_visited_states,
+        int number_illegal_states, int number_functional_warnings,
+        int number_explored_nodes) {
+      this.success = success;
+      this.number_visited_states = number_visited_states;
+      this.number_illegal_states = number_illegal_states;
+      this.number_functional_warnings = number_functional_warnings;
+      this.number_explored_nodes = number_explored_nodes;
+    }
+
+    /**
+     * The result of the last verification of `model_checker`.
+     */
+    public Result(ModelChecker<?, ?, ?, ?> model_checker, boolean success) {
+      this(success, model_checker.getNumberVisitedStates(), model_checker
+          .getNumberIllegalStates(), model_checker
+          .getNumberFunctionalWarnings(), model_checker
+          .getNumberExploredNodes());
+    }
+
+    public boolean isSuccess() {
+      return success;
+    }
+
+    public long getNumberVisitedStates() {
+      return number_visited_states;
+    }
+
+    public int getNumberIllegalStates() {
+      return number_illegal_states;
+    }
+
+    public int getNumberFunctionalWarnings() {
+      return number_functional_warnings;
+    }
+
+    public int getNumberExploredNodes() {
+      return number_explored_nodes;
+    }
+
+    @Override
+    public String toString() {
+      return (success ? "SUCCESS" : "FAIL") + " (" + number_visited_states
+          + " visited states, " + number_illegal_states + " illegal states, "
+          + number_functional_warnings + " functional warnings, "
+          + number_explored_nodes + " explored nodes)";
+    }
+  }
+
+  /**
+   * @return The result saved for the sub-proof `key`. null if there is none.
+   */
+  public Result get(String key) {
+    File file = new File(directory, key);
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      DataInputStream input = new DataInputStream(new BufferedInputStream(
+          new FileInputStream(file)));
+      try {
+        if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+          return null;
+        }
+        return new Result(input.readBoolean(), input.readLong(),
+            input.readInt(), input.readInt(), input.readInt());
+      } finally {
+        input.close();
+      }
+    } catch (IOException e) {
+      System.err.println("Impossible to read the cached result " + file
+          + ": " + e);
+      return null;
+    }
+  }
+
+  /**
+   * Save the result of the sub-proof `key`, replacing the previous one. The
+   * errors are printed but do not stop the verification.
+   */
+  public void put(String key, Result result) {
+    directory.mkdirs();
+    File file = new File(directory, key);
+    File temporary_file = null;
+    try {
+      temporary_file =
+          Files.createTempFile(directory.toPath(), key, ".tmp").toFile();
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+          new FileOutputStream(temporary_file)));
+      try {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeBoolean(result.success);
+        output.writeLong(result.number_visited_states);
+        output.writeInt(result.number_illegal_states);
+        output.writeInt(result.number_functional_warnings);
+        output.writeInt(result.number_explored_nodes);
+      } finally {
+        output.close();
+      }
+      Files.move(temporary_file.toPath(), file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      System.err.println("Impossible to write the cached result " + file
+          + ": " + e);
+      if (temporary_file != null) {
+        temporary_file.delete();
+      }
+    }
+  }
+
+  /**
+   * @return The hexadecimal SHA-256 hash of the content of the models of
+   *         `simulator`, of `initial_states` restricted to these models and of
+   *         the configuration of `model_checker`.
+   */
+  public static <GS extends AbstractGlobalState<M, S, T, ?>, M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>> String hash(
+      GraphSimulatorInterface<GS, M, S, T> simulator,
+      Collection<GS> initial_states, ModelChecker<GS, M, S, T> model_checker) {
+    StringBuilder content = new StringBuilder();
+    content.append("version ").append(VERSION).append("\n");
+    content.append("checker ").append(model_checker.getClass().getName())
+        .append(" partial_order_reduction ")
+        .append(model_checker.isPartialOrderReduction())
+        .append(" symmetry_reduction ")
+        .append(model_checker.isSymmetryReduction())
+        .append(" cone_of_influence_slicing ")
+        .append(model_checker.isConeOfInfluenceSlicing()).append("\n");
+
+    ArrayList<M> machines = new ArrayList<M>();
+    HashSet<EnumeratedVariable> variables = new HashSet<EnumeratedVariable>();
+    appendModel(content, "model", simulator.getModel(), machines, variables);
+    appendModel(content, "proof", simulator.getProof(), machines, variables);
+
+    ArrayList<EnumeratedVariable> sorted_variables =
+        new ArrayList<EnumeratedVariable>(variables);
+    Collections.sort(sorted_variables, new Comparator<EnumeratedVariable>() {
+      @Override
+      public int compare(EnumeratedVariable v1, EnumeratedVariable v2) {
+        return v1.getVarname().compareTo(v2.getVarname());
+      }
+    });
+    for (EnumeratedVariable variable : sorted_variables) {
+      content.append("variable ").append(variable.getClass().getSimpleName())
+          .append(" ").append(variable.getVarname());
+      if (variable.getEnumeration() != null) {
+        content.append(" ").append(variable.getEnumeration());
+      }
+      content.append("\n");
+    }
+
+    /* The initial states, restricted to the machines and variables */
+    ArrayList<String> states = new ArrayList<String>();
+    for (GS state : initial_states) {
+      StringBuilder state_content = new StringBuilder("initial");
+      for (M machine : machines) {
+        S current = state.getState(machine);
+        state_content.append(" ").append(
+            current == null ? "-" : current.getId());
+      }
+      for (EnumeratedVariable variable : sorted_variables) {
+        state_content.append(" ");
+        if (state.getValuation() instanceof Valuation
+            && variable instanceof BooleanVariable
+            && !state.variableIsInitialized((BooleanVariable) variable)) {
+          state_content.append("-");
+        } else {
+          state_content.append(state.getVariableValue(variable));
+        }
+      }
+      states.add(state_content.toString());
+    }
+    Collections.sort(states);
+    for (String state : states) {
+      content.append(state).append("\n");
+    }
+
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] hash = digest.digest(content.toString().getBytes(
+          StandardCharsets.UTF_8));
+      StringBuilder result = new StringBuilder();
+      for (byte b : hash) {
+        result.append(String.format("%02x", b));
+      }
+      return result.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new Error(e);
+    }
+  }
+
+  /**
+   * Append the description of the machines of `model` (sorted by name) to
+   * `content`, and add them and their variables to `machines` and
+   * `variables`.
+   */
+  private static <M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>> void appendModel(
+      StringBuilder content, String kind, AbstractModel<M, S, T> model,
+      ArrayList<M> machines, HashSet<EnumeratedVariable> variables) {
+    if (model == null) {
+      return;
+    }
+    ArrayList<M> sorted_machines = new ArrayList<M>();
+    for (M machine : model) {
+      sorted_machines.add(machine);
+    }
+    Collections.sort(sorted_machines, new Comparator<M>() {
+      @Override
+      public int compare(M m1, M m2) {
+        return m1.getName().compareTo(m2.getName());
+      }
+    });
+    variables.addAll(model.getExistingVariables());
+
+    for (M machine : sorted_machines) {
+      machines.add(machine);
+      content.append(kind).append(" machine ").append(machine.getName())
+          .append("\n");
+      for (S state : machine) {
+        content.append(" state ").append(state.getId()).append("\n");
+        for (T transition : state) {
+          content.append("  -> ").append(transition.getDestination().getId());
+          /*
+           * The events of a transition are a set, whose order can change from
+           * one loading to another (e.g. the variables of `on *`)
+           */
+          ArrayList<String> events = new ArrayList<String>();
+          for (SingleEvent event : transition.getEvents()) {
+            StringBuilder event_content = new StringBuilder();
+            appendEvent(event_content, event, variables);
+            events.add(event_content.toString());
+          }
+          Collections.sort(events);
+          content.append(" on");
+          for (String event : events) {
+            content.append(event);
+          }
+          Formula condition = transition.getCondition();
+          content.append(" if ").append(condition);
+          if (condition != null) {
+            condition.allVariables(variables);
+          }
+          content.append(" do");
+          for (SingleEvent action : transition.getActions()) {
+            appendEvent(content, action, variables);
+            if (action instanceof ComputerCommandFunction
+                && model.getACTFCI((ComputerCommandFunction) action) != null) {
+              /* The ACT generated by the command */
+              for (Pair<Formula, LinkedList<ExternalEvent>> condition_with_act : model
+                  .getACTFCI((ComputerCommandFunction) action)) {
+                content.append(" [").append(condition_with_act.getFirst())
+                    .append(" => ").append(condition_with_act.getSecond())
+                    .append("]");
+                condition_with_act.getFirst().allVariables(variables);
+              }
+            }
+          }
+          content.append("\n");
+        }
+      }
+    }
+  }
+
+  private static void appendEvent(StringBuilder content, SingleEvent event,
+      HashSet<EnumeratedVariable> variables) {
+    content.append(" ").append(event.getClass().getSimpleName()).append(":")
+        .append(event);
+    if (event instanceof Assignment) {
+      variables.add(((Assignment) event).getVariable());
+    } else if (event instanceof VariableChange) {
+      variables.add(((VariableChange) event).getModifiedVariable());
+    } else if (event instanceof EnumeratedVariableChange) {
+      variables.add(((EnumeratedVariableChange) event).getVariable());
+    }
+  }
+}
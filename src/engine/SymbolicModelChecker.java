@@ -0,0 +1,872 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import abstractGraph.AbstractGlobalState;
+import abstractGraph.AbstractModel;
+import abstractGraph.AbstractState;
+import abstractGraph.AbstractStateMachine;
+import abstractGraph.AbstractTransition;
+import abstractGraph.conditions.EnumeratedVariable;
+import abstractGraph.events.ExternalEvent;
+import abstractGraph.events.SingleEvent;
+import engine.bdd.BDD;
+import engine.stateStorage.StateVectorCodec;
+
+/**
+ * A model checker computing the reachable global states by image iteration
+ * on binary decision diagrams (see {@link BDD}).
+ *
+ * @details
+ *          The global states are encoded with the layout of a
+ *          {@link StateVectorCodec}: the bit `b` of the vector is the BDD
+ *          variable 2b in the current state and 2b+1 in the next state.
+ *
+ *          The transition relation is partitioned by external event. The
+ *          execution of an event `e`, with all its internal events, only
+ *          depends on and only modifies the state machines activated by `e`
+ *          and the variables they use (see {@link EventIndependence}). The
+ *          relation of `e` is built by executing `e` with the simulator on
+ *          all the values of this footprint, and the rest of the state is kept
+ *          unchanged. It is restricted to the states where `e` is a possible
+ *          event (see {@link GraphSimulatorInterface#getPossibleEvent}).
+ *          The events whose footprint is larger than a given number of bits
+ *          are executed explicitly on the states of the frontier.
+ *
+ *          As in the {@link ModelChecker}, the illegal (P6), unsafe (P5) and
+ *          functional warning (P7) states are not explored. The first unsafe
+ *          state and the first illegal state found are computed again with
+ *          the simulator from an initial state, so that their trace can be
+ *          printed and replayed. Since the search is breadth first, they are
+ *          among the closest to the initial states.
+ *
+ *          The restriction of the external events of the simulators (see
+ *          {@link GraphSimulator#setRestrainedExternalEventList}) is not
+ *          taken into account.
+ */
+public class SymbolicModelChecker<GS extends AbstractGlobalState<M, S, T, ?>, M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>>
+    implements ModelCheckerInterface<GS, M, S, T> {
+
+  /** 2^16 executions to build the relation of an event at most */
+  public static final int DEFAULT_MAX_LOCAL_BITS = 16;
+
+  /**
+   * When finding an unsafe or illegal state, prints the initial state, the
+   * state and the trace leading to it
+   */
+  protected final static boolean PRINT_TRACE_UNSAFE = true;
+
+  private int max_local_bits;
+  private LinkedHashSet<GS> initial_states = new LinkedHashSet<GS>();
+
+  private GraphSimulatorInterface<GS, M, S, T> simulator;
+  private StateVectorCodec<GS, M, S, T> codec;
+  private BDD bdd;
+  private int number_bits;
+  /** The position of every bit of the vectors in the BDD variable order */
+  private int[] bit_levels;
+  /** The bit of the vectors at every position */
+  private int[] level_bits;
+  private int current_cube;
+  private int next_cube;
+  /** The renaming of the next state variables into the current ones */
+  private int next_to_current;
+  /** The legal, safe and not P7 states */
+  private int explorable;
+
+  private ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>();
+  /** The states where an event is possible, by event */
+  private ArrayList<Integer> enabled = new ArrayList<Integer>();
+  /** The relation of every event. null if it is executed explicitly */
+  private ArrayList<Integer> relations = new ArrayList<Integer>();
+  /** The states on which the simulator failed to execute an event */
+  private ArrayList<Integer> failures = new ArrayList<Integer>();
+  /** The states explored at every depth */
+  private ArrayList<Integer> layers = new ArrayList<Integer>();
+  private int reached;
+  private int gc_threshold;
+
+  private double number_visited_states = 0;
+  private double number_illegal_states = 0;
+  private double number_unsafe_states = 0;
+  private double number_functional_warnings = 0;
+  private GS unsafe_state = null;
+  private GS illegal_state = null;
+
+  /**
+   * @param max_local_bits
+   *          The events whose footprint is encoded on more bits are executed
+   *          explicitly.
+   */
+  public SymbolicModelChecker(int max_local_bits) {
+    this.max_local_bits = max_local_bits;
+  }
+
+  public SymbolicModelChecker() {
+    this(DEFAULT_MAX_LOCAL_BITS);
+  }
+
+  @Override
+  public void addInitialState(GS init) {
+    if (init.isLegal()) {
+      initial_states.add(init);
+    }
+  }
+
+  @Override
+  public void addAllInitialStates(Collection<GS> init) {
+    initial_states.clear();
+    for (GS state : init) {
+      addInitialState(state);
+    }
+  }
+
+  /**
+   * @return The unsafe state closest to the initial states, with its trace
+   *         (see {@link #getUnsafeState()}). null if no such state exists.
+   */
+  @Override
+  public GS verify(GraphSimulatorInterface<GS, M, S, T> simulator) {
+    this.simulator = simulator;
+    number_visited_states = 0;
+    number_illegal_states = 0;
+    number_unsafe_states = 0;
+    number_functional_warnings = 0;
+    unsafe_state = null;
+    illegal_state = null;
+    layers.clear();
+    if (initial_states.isEmpty()) {
+      return null;
+    }
+
+    initializeEncoding();
+    buildRelations();
+
+    int initial = BDD.FALSE;
+    for (GS state : initial_states) {
+      initial = bdd.or(initial, encode(state, false));
+    }
+    reached = bdd.addRef(initial);
+    int frontier = bdd.addRef(bdd.and(initial, explorable));
+    layers.add(frontier);
+    classifyNewStates(initial, -1);
+    System.err.println("Initial states size : "
+        + (long) countStates(frontier));
+
+    while (frontier != BDD.FALSE) {
+      int image = BDD.FALSE;
+      for (int i = 0; i < events.size(); i++) {
+        image = bdd.or(image, computeImage(frontier, i));
+      }
+      int new_states = bdd.diff(image, reached);
+      int old_reached = reached;
+      reached = bdd.addRef(bdd.or(reached, new_states));
+      bdd.delRef(old_reached);
+
+      classifyNewStates(new_states, layers.size() - 1);
+      frontier = bdd.addRef(bdd.and(new_states, explorable));
+      layers.add(frontier);
+      number_visited_states += countStates(frontier);
+
+      if (bdd.getNumberNodes() > gc_threshold) {
+        bdd.collectGarbage();
+        gc_threshold = Math.max(gc_threshold, 2 * bdd.getNumberNodes());
+      }
+    }
+    number_visited_states += countStates(layers.get(0));
+
+    System.err.println("Total number of distinct visited states: "
+        + (long) number_visited_states);
+    System.err.println("Depth of the search: " + (layers.size() - 1));
+    System.err.println("Total number of illegal nodes found:"
+        + (long) number_illegal_states);
+    System.err.println("Total number of unsafe node: "
+        + (long) number_unsafe_states);
+    System.err.println("Total number of functional warnings (P7) nodes: "
+        + (long) number_functional_warnings);
+    return unsafe_state;
+  }
+
+  /**
+   * Create the BDD variables from the layout of the state vectors.
+   */
+  private void initializeEncoding() {
+    codec = new StateVectorCodec<GS, M, S, T>(simulator, initial_states
+        .iterator().next());
+    number_bits = codec.getNumberBits();
+    bdd = new BDD(2 * number_bits);
+    gc_threshold = 1 << 20;
+
+    computeOrder();
+
+    int[] current_variables = new int[number_bits];
+    int[] next_variables = new int[number_bits];
+    int[] renaming = new int[2 * number_bits];
+    for (int b = 0; b < number_bits; b++) {
+      current_variables[b] = currentVariable(b);
+      next_variables[b] = nextVariable(b);
+      renaming[currentVariable(b)] = currentVariable(b);
+      renaming[nextVariable(b)] = currentVariable(b);
+    }
+    current_cube = bdd.addRef(bdd.makeCube(current_variables));
+    next_cube = bdd.addRef(bdd.makeCube(next_variables));
+    next_to_current = bdd.registerRenaming(renaming);
+
+    int flags = codec.getFlagsSlot();
+    explorable = BDD.TRUE;
+    for (int i = 0; i < 3; i++) {
+      explorable = bdd.and(explorable, slotEquals(flags + i, 1, false));
+    }
+    bdd.addRef(explorable);
+  }
+
+  /**
+   * Order the BDD variables: every state machine is followed by the variables
+   * it writes, since their values are usually correlated. The other
+   * variables and the flags come last.
+   */
+  private void computeOrder() {
+    HashMap<M, LinkedHashSet<EnumeratedVariable>> written_variables =
+        new HashMap<M, LinkedHashSet<EnumeratedVariable>>();
+    for (int n = 0; n < 2; n++) {
+      AbstractModel<M, S, T> current_model = n == 0 ? simulator.getModel()
+          : simulator.getProof();
+      if (current_model == null
+          || current_model.getWritingStateMachines() == null) {
+        continue;
+      }
+      for (Entry<EnumeratedVariable, ? extends Collection<M>> entry : current_model
+          .getWritingStateMachines().entrySet()) {
+        for (M machine : entry.getValue()) {
+          LinkedHashSet<EnumeratedVariable> variables =
+              written_variables.get(machine);
+          if (variables == null) {
+            variables = new LinkedHashSet<EnumeratedVariable>();
+            written_variables.put(machine, variables);
+          }
+          variables.add(entry.getKey());
+        }
+      }
+    }
+
+    LinkedHashSet<Integer> slots = new LinkedHashSet<Integer>();
+    for (M machine : codec.getStateMachines()) {
+      slots.add(codec.getSlot(machine));
+      LinkedHashSet<EnumeratedVariable> variables =
+          written_variables.get(machine);
+      if (variables == null) {
+        continue;
+      }
+      for (EnumeratedVariable variable : variables) {
+        if (codec.hasSlot(variable)) {
+          slots.add(codec.getSlot(variable));
+        }
+      }
+    }
+    for (int slot = 0; slot < codec.getNumberSlots(); slot++) {
+      slots.add(slot);
+    }
+
+    bit_levels = new int[number_bits];
+    level_bits = new int[number_bits];
+    int level = 0;
+    for (int slot : slots) {
+      int offset = codec.getSlotOffset(slot);
+      for (int k = 0; k < codec.getSlotWidth(slot); k++) {
+        bit_levels[offset + k] = level;
+        level_bits[level] = offset + k;
+        level++;
+      }
+    }
+  }
+
+  private int currentVariable(int bit) {
+    return 2 * bit_levels[bit];
+  }
+
+  private int nextVariable(int bit) {
+    return 2 * bit_levels[bit] + 1;
+  }
+
+  /**
+   * Compute the possible external events, their guards and their relations.
+   */
+  private void buildRelations() {
+    AbstractModel<M, S, T> model = simulator.getModel();
+    AbstractModel<M, S, T> proof = simulator.getProof();
+    events.clear();
+    enabled.clear();
+    relations.clear();
+    failures.clear();
+
+    LinkedHashSet<ExternalEvent> possible_events =
+        new LinkedHashSet<ExternalEvent>();
+    addPossibleEvents(model, null, possible_events);
+    if (proof != null) {
+      addPossibleEvents(proof, model, possible_events);
+    }
+
+    EventIndependence<M, S, T> independence = new EventIndependence<M, S, T>(
+        simulator);
+    int number_explicit = 0;
+    for (ExternalEvent event : possible_events) {
+      int guard = bdd.addRef(computeEnabled(event, model, proof));
+      events.add(event);
+      enabled.add(guard);
+      failures.add(BDD.FALSE);
+      Integer relation = computeRelation(event, guard, independence);
+      relations.add(relation);
+      if (relation == null) {
+        number_explicit++;
+      }
+    }
+    System.err.println("Symbolic relations: " + events.size()
+        + " external events, " + number_explicit
+        + " executed explicitly. " + bdd);
+  }
+
+  /**
+   * Add the external events on which a state machine of `current_model` has
+   * a transition, as {@link GraphSimulatorInterface#getPossibleEvent} does.
+   *
+   * @param functional_model
+   *          The functional model if `current_model` is the proof model: only
+   *          its external events are possible. null otherwise.
+   */
+  private void addPossibleEvents(AbstractModel<M, S, T> current_model,
+      AbstractModel<M, S, T> functional_model,
+      LinkedHashSet<ExternalEvent> possible_events) {
+    for (M state_machine : current_model) {
+      for (S state : state_machine) {
+        for (T transition : state) {
+          for (SingleEvent event : transition.getEvents()) {
+            if (isPossibleEvent(event, functional_model)) {
+              possible_events.add((ExternalEvent) event);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private boolean isPossibleEvent(SingleEvent event,
+      AbstractModel<M, S, T> functional_model) {
+    return event instanceof ExternalEvent
+        && !event.getName().startsWith("ACT_")
+        && (functional_model == null || functional_model
+            .containsExternalEvent((ExternalEvent) event));
+  }
+
+  /**
+   * @return The states in which a state machine has a transition on `event`.
+   */
+  private int computeEnabled(ExternalEvent event, AbstractModel<M, S, T> model,
+      AbstractModel<M, S, T> proof) {
+    int result = BDD.FALSE;
+    for (int n = 0; n < 2; n++) {
+      AbstractModel<M, S, T> current_model = n == 0 ? model : proof;
+      if (current_model == null) {
+        continue;
+      }
+      for (M state_machine : current_model) {
+        int slot = codec.getSlot(state_machine);
+        for (S state : state_machine) {
+          for (T transition : state) {
+            if (transition.getEvents().containsEvent(event)
+                && isPossibleEvent(event, n == 0 ? null : model)) {
+              result = bdd.or(result,
+                  slotEquals(slot, codec.getStateCode(slot, state), false));
+              break;
+            }
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Build the relation of an event by executing it on all the values of its
+   * footprint. The values on which the simulator fails are stored in
+   * `failures`.
+   *
+   * @param guard
+   *          The states in which the event is possible.
+   * @return The relation, or null if the event must be executed explicitly.
+   */
+  private Integer computeRelation(ExternalEvent event, int guard,
+      EventIndependence<M, S, T> independence) {
+    Collection<M> machines = independence.getActivatedMachines(event);
+    if (machines.isEmpty()) {
+      return null;
+    }
+    LinkedHashSet<Integer> input_slots = new LinkedHashSet<Integer>();
+    LinkedHashSet<Integer> output_slots = new LinkedHashSet<Integer>();
+    for (M machine : machines) {
+      input_slots.add(codec.getSlot(machine));
+      output_slots.add(codec.getSlot(machine));
+    }
+    for (EnumeratedVariable variable : independence.getReadVariables(event)) {
+      if (!codec.hasSlot(variable)) {
+        /* A variable is not in the state vectors */
+        return null;
+      }
+      input_slots.add(codec.getSlot(variable));
+    }
+    for (EnumeratedVariable variable : independence
+        .getWrittenVariables(event)) {
+      if (!codec.hasSlot(variable)) {
+        return null;
+      }
+      input_slots.add(codec.getSlot(variable));
+      output_slots.add(codec.getSlot(variable));
+    }
+    int flags = codec.getFlagsSlot();
+    for (int i = 0; i < 3; i++) {
+      output_slots.add(flags + i);
+    }
+
+    int local_bits = 0;
+    for (int slot : input_slots) {
+      local_bits += codec.getSlotWidth(slot);
+    }
+    if (local_bits > max_local_bits) {
+      return null;
+    }
+
+    int[] inputs = toArray(input_slots);
+    int[] values = new int[inputs.length];
+    long[] base = codec.encode(initial_states.iterator().next());
+    for (int i = 0; i < 3; i++) {
+      codec.writeSlot(base, flags + i, 1);
+    }
+    for (int i = 0; i < inputs.length; i++) {
+      values[i] = firstValue(inputs[i]);
+    }
+
+    int local_relation = BDD.FALSE;
+    int failure = BDD.FALSE;
+    do {
+      long[] vector = base.clone();
+      for (int i = 0; i < inputs.length; i++) {
+        codec.writeSlot(vector, inputs[i], values[i]);
+      }
+      int input = BDD.TRUE;
+      for (int i = 0; i < inputs.length; i++) {
+        input = bdd.and(input, slotEquals(inputs[i], values[i], false));
+      }
+
+      long[] result;
+      try {
+        result = codec.encode(simulator.execute(codec.decode(vector), event));
+      } catch (Error e) {
+        /* Only the conditions reading an undefined variable may fail */
+        if (!(e.getCause() instanceof NoSuchElementException)) {
+          throw e;
+        }
+        failure = bdd.or(failure, input);
+        continue;
+      }
+      for (int slot = 0; slot < codec.getNumberSlots(); slot++) {
+        if (!output_slots.contains(slot)
+            && codec.readSlot(result, slot) != codec.readSlot(vector, slot)) {
+          /* The execution is not limited to the footprint */
+          return null;
+        }
+      }
+      int output = BDD.TRUE;
+      for (int slot : output_slots) {
+        output = bdd.and(output,
+            slotEquals(slot, (int) codec.readSlot(result, slot), true));
+      }
+      local_relation = bdd.or(local_relation, bdd.and(input, output));
+    } while (nextValues(inputs, values));
+
+    int relation = bdd.and(guard, local_relation);
+    for (int slot = 0; slot < codec.getNumberSlots(); slot++) {
+      if (output_slots.contains(slot)) {
+        continue;
+      }
+      int offset = codec.getSlotOffset(slot);
+      for (int k = 0; k < codec.getSlotWidth(slot); k++) {
+        int b = offset + k;
+        relation = bdd.and(relation,
+            bdd.equiv(bdd.ithVar(currentVariable(b)),
+                bdd.ithVar(nextVariable(b))));
+      }
+    }
+    failures.set(failures.size() - 1, bdd.addRef(failure));
+    return bdd.addRef(relation);
+  }
+
+  private static int[] toArray(Collection<Integer> collection) {
+    int[] result = new int[collection.size()];
+    int i = 0;
+    for (int value : collection) {
+      result[i++] = value;
+    }
+    return result;
+  }
+
+  /**
+   * @return The smallest value of a slot. A state machine always has a
+   *         current state, so 0 is not used for the machines.
+   */
+  private int firstValue(int slot) {
+    return slot < codec.getStateMachines().size() ? 1 : 0;
+  }
+
+  /**
+   * Go to the next combination of the values of the slots.
+   *
+   * @return false if all the combinations have been given.
+   */
+  private boolean nextValues(int[] slots, int[] values) {
+    for (int i = 0; i < slots.length; i++) {
+      values[i]++;
+      if (values[i] < codec.getSlotDomain(slots[i])) {
+        return true;
+      }
+      values[i] = firstValue(slots[i]);
+    }
+    return false;
+  }
+
+  /**
+   * @return The states in which `slot` contains `value`, on the current or
+   *         the next state variables.
+   */
+  private int slotEquals(int slot, int value, boolean next) {
+    int offset = codec.getSlotOffset(slot);
+    int result = BDD.TRUE;
+    for (int k = codec.getSlotWidth(slot) - 1; k >= 0; k--) {
+      int var = next ? nextVariable(offset + k) : currentVariable(offset + k);
+      result = bdd.and(result, ((value >>> k) & 1) == 1 ? bdd.ithVar(var)
+          : bdd.nithVar(var));
+    }
+    return result;
+  }
+
+  /**
+   * @return The state `state` on the current state variables, or on the next
+   *         ones.
+   */
+  private int encode(GS state, boolean next) {
+    return encodeVector(codec.encode(state), next);
+  }
+
+  private int encodeVector(long[] vector, boolean next) {
+    int[] variables = new int[number_bits];
+    boolean[] values = new boolean[number_bits];
+    for (int b = 0; b < number_bits; b++) {
+      variables[b] = next ? nextVariable(b) : currentVariable(b);
+      values[b] = ((vector[b >>> 6] >>> (b & 63)) & 1) == 1;
+    }
+    return bdd.makeMinterm(variables, values);
+  }
+
+  /**
+   * @return The states reached by executing the event `i` from `frontier`.
+   */
+  private int computeImage(int frontier, int i) {
+    int states = bdd.and(frontier, enabled.get(i));
+    if (states == BDD.FALSE) {
+      return BDD.FALSE;
+    }
+    if (bdd.and(states, failures.get(i)) != BDD.FALSE) {
+      GS state = codec.decode(pickState(bdd.and(states, failures.get(i))));
+      throw new Error("The simulator failed to execute " + events.get(i)
+          + " on the reachable state " + simulator.globalStateToString(state));
+    }
+    Integer relation = relations.get(i);
+    if (relation != null) {
+      return bdd.replace(bdd.andExists(states, relation, current_cube),
+          next_to_current);
+    }
+
+    int image = BDD.FALSE;
+    for (long[] vector : enumerateStates(states)) {
+      GS next_state = simulator.execute(codec.decode(vector), events.get(i));
+      image = bdd.or(image, encode(next_state, false));
+    }
+    return image;
+  }
+
+  /**
+   * @return The vectors of all the states of `set`.
+   */
+  private ArrayList<long[]> enumerateStates(int set) {
+    ArrayList<long[]> result = new ArrayList<long[]>();
+    enumerateStates(set, 0, new long[codec.getNumberWords()], result);
+    return result;
+  }
+
+  private void enumerateStates(int set, int level, long[] vector,
+      ArrayList<long[]> result) {
+    if (set == BDD.FALSE) {
+      return;
+    }
+    if (level == number_bits) {
+      result.add(vector.clone());
+      return;
+    }
+    int low = set;
+    int high = set;
+    if (bdd.getVariable(set) == 2 * level) {
+      low = bdd.getLow(set);
+      high = bdd.getHigh(set);
+    }
+    int bit = level_bits[level];
+    vector[bit >>> 6] &= ~(1L << (bit & 63));
+    enumerateStates(low, level + 1, vector, result);
+    vector[bit >>> 6] |= 1L << (bit & 63);
+    enumerateStates(high, level + 1, vector, result);
+    vector[bit >>> 6] &= ~(1L << (bit & 63));
+  }
+
+  /**
+   * @return The vector of one of the states of the non empty `set`.
+   */
+  private long[] pickState(int set) {
+    int[] assignment = bdd.satOne(set);
+    long[] vector = new long[codec.getNumberWords()];
+    for (int b = 0; b < number_bits; b++) {
+      if (assignment[currentVariable(b)] == 1) {
+        vector[b >>> 6] |= 1L << (b & 63);
+      }
+    }
+    return vector;
+  }
+
+  /**
+   * @return The number of states of a set on the current state variables.
+   */
+  private double countStates(int set) {
+    return bdd.satCount(set) / Math.pow(2, number_bits);
+  }
+
+  /**
+   * Count the illegal, unsafe and P7 states among the new states, and compute
+   * the trace of the first unsafe and illegal states.
+   *
+   * @param depth
+   *          The layer from which the new states have been reached. -1 for
+   *          the initial states.
+   */
+  private void classifyNewStates(int new_states, int depth) {
+    int flags = codec.getFlagsSlot();
+    int legal = slotEquals(flags, 1, false);
+    int safe = slotEquals(flags + 1, 1, false);
+    int not_p7 = slotEquals(flags + 2, 1, false);
+
+    int illegal_states = bdd.diff(new_states, legal);
+    int unsafe_states = bdd.diff(bdd.and(new_states, legal), safe);
+    int warning_states = bdd.diff(bdd.and(bdd.and(new_states, legal), safe),
+        not_p7);
+    number_illegal_states += countStates(illegal_states);
+    number_unsafe_states += countStates(unsafe_states);
+    number_functional_warnings += countStates(warning_states);
+
+    if (illegal_state == null && illegal_states != BDD.FALSE) {
+      illegal_state = computeTrace(pickState(illegal_states), depth);
+      printTrace("an illegal state (P6)", illegal_state);
+    }
+    if (unsafe_state == null && unsafe_states != BDD.FALSE) {
+      unsafe_state = computeTrace(pickState(unsafe_states), depth);
+      printTrace("a dangerous state", unsafe_state);
+    }
+  }
+
+  /**
+   * Find a trace from an initial state to `target`, and execute it again with
+   * the simulator.
+   *
+   * @param target
+   *          A state reached from the layer `depth`.
+   * @return The state computed by the simulator, with its
+   *         previous_global_state and last_processed_external_event set along
+   *         the trace.
+   */
+  private GS computeTrace(long[] target, int depth) {
+    LinkedList<ExternalEvent> trace = new LinkedList<ExternalEvent>();
+    long[] current = target;
+    for (int d = depth; d >= 0; d--) {
+      long[] predecessor = null;
+      for (int i = 0; i < events.size() && predecessor == null; i++) {
+        int states = bdd.and(layers.get(d), enabled.get(i));
+        Integer relation = relations.get(i);
+        if (relation != null) {
+          int predecessors = bdd.and(states, bdd.andExists(relation,
+              encodeVector(current, true), next_cube));
+          if (predecessors != BDD.FALSE) {
+            predecessor = pickState(predecessors);
+          }
+        } else {
+          for (long[] vector : enumerateStates(states)) {
+            GS next_state = simulator.execute(codec.decode(vector),
+                events.get(i));
+            if (Arrays.equals(codec.encode(next_state), current)) {
+              predecessor = vector;
+              break;
+            }
+          }
+        }
+        if (predecessor != null) {
+          trace.addFirst(events.get(i));
+        }
+      }
+      if (predecessor == null) {
+        throw new Error("No predecessor found at the depth " + d);
+      }
+      current = predecessor;
+    }
+
+    GS state = null;
+    for (GS initial_state : initial_states) {
+      if (Arrays.equals(codec.encode(initial_state), current)) {
+        state = initial_state;
+        break;
+      }
+    }
+    if (state == null) {
+      throw new Error("The trace does not start from an initial state");
+    }
+    for (ExternalEvent e : trace) {
+      GS next_state = simulator.execute(state, e);
+      next_state.last_processed_external_event = e;
+      next_state.previous_global_state = state;
+      state = next_state;
+    }
+    if (!Arrays.equals(codec.encode(state), target)) {
+      throw new Error("The trace found does not lead to the expected state");
+    }
+    return state;
+  }
+
+  private void printTrace(String description, GS state) {
+    if (!PRINT_TRACE_UNSAFE) {
+      return;
+    }
+    System.out.println("The symbolic model checker detected " + description
+        + " !");
+    System.out.println("***********************************");
+    System.out.println("A FULL trace of external event is: ");
+    System.out.println("***********************************");
+    System.out.println(printFullTrace(state));
+  }
+
+  @SuppressWarnings("unchecked")
+  public String printFullTrace(GS state) {
+    StringBuilder string_builder = new StringBuilder();
+    GS current = state;
+    string_builder.insert(0, "\nTo the final state:\n\n"
+        + simulator.globalStateToString(current) + "\n");
+    do {
+      if (current.last_processed_external_event != null) {
+        string_builder.insert(0, current.last_processed_external_event + "\n");
+      } else {
+        string_builder.insert(0, "\nFrom the initial state:\n"
+            + simulator.globalStateToString(current) + "\n");
+      }
+      current = (GS) current.previous_global_state;
+    } while (current != null);
+    return string_builder.toString();
+  }
+
+  /**
+   * @return The first unsafe (P5) state found by the last verification, with
+   *         its trace. null if there is none.
+   */
+  public GS getUnsafeState() {
+    return unsafe_state;
+  }
+
+  /**
+   * @return The first illegal (P6) state found by the last verification, with
+   *         its trace. null if there is none.
+   */
+  public GS getIllegalState() {
+    return illegal_state;
+  }
+
+  /**
+   * @return The number of distinct legal, safe and not P7 states reached by
+   *         the last verification.
+   */
+  public long getNumberVisitedStates() {
+    return (long) number_visited_states;
+  }
+
+  /**
+   * @return The number of distinct illegal states reached by the last
+   *         verification. The {@link ModelChecker} counts the transitions to
+   *         the illegal states instead.
+   */
+  public long getNumberIllegalStates() {
+    return (long) number_illegal_states;
+  }
+
+  public long getNumberUnsafeStates() {
+    return (long) number_unsafe_states;
+  }
+
+  public long getNumberFunctionalWarnings() {
+    return (long) number_functional_warnings;
+  }
+
+  /**
+   * @return The number of iterations of the last verification.
+   */
+  public int getDepth() {
+    return Math.max(0, layers.size() - 1);
+  }
+
+  /**
+   * @return The number of external events executed explicitly by the last
+   *         verification.
+   */
+  public int getNumberExplicitEvents() {
+    int result = 0;
+    for (Integer relation : relations) {
+      if (relation == null) {
+        result++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return true if the given state has been reached by the last
+   *         verification.
+   */
+  public boolean isReached(GS state) {
+    return bdd.and(reached, encode(state, false)) != BDD.FALSE;
+  }
+
+  /**
+   * Prepare the model checker for a new verification.
+   */
+  public void reset() {
+    initial_states.clear();
+    layers.clear();
+    bdd = null;
+    codec = null;
+    unsafe_state = null;
+    illegal_state = null;
+    number_visited_states = 0;
+    number_illegal_states = 0;
+    number_unsafe_states = 0;
+    number_functional_warnings = 0;
+  }
+
+  public StateVectorCodec<GS, M, S, T> getCodec() {
+    return codec;
+  }
+}
@@ -0,0 +1,98 @@
+package engine;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+import abstractGraph.AbstractStateMachine;
+
+/**
+ * The list of the transitions pull of a simulator: the new state of every
+ * state machine that has executed a transition, in the order of the first
+ * transition of each machine.
+ *
+ * @details
+ *          The states are stored in arrays indexed by
+ *          {@link AbstractStateMachine#getUniqueIdentifier()}, which are
+ *          reused: once the arrays are large enough, neither
+ *          {@link #put(AbstractStateMachine, Object)} nor {@link #clear()}
+ *          allocate anything.
+ *          This class is NOT thread safe.
+ */
+public class TransitionsPullList<M extends AbstractStateMachine<?, ?>, S> {
+
+  private Object[] machines = new Object[16];
+  private Object[] states = new Object[16];
+  /** The identifiers of the machines of the list, in the order of insertion */
+  private int[] order = new int[16];
+  private int size = 0;
+
+  /**
+   * Set the new state of `machine`. It keeps its position if it is already in
+   * the list, as in a LinkedHashMap.
+   */
+  public void put(M machine, S state) {
+    int identifier = machine.getUniqueIdentifier();
+    if (identifier >= states.length) {
+      int length = states.length;
+      while (length <= identifier) {
+        length *= 2;
+      }
+      machines = Arrays.copyOf(machines, length);
+      states = Arrays.copyOf(states, length);
+    }
+    if (states[identifier] == null) {
+      if (size == order.length) {
+        order = Arrays.copyOf(order, order.length * 2);
+      }
+      order[size++] = identifier;
+    }
+    machines[identifier] = machine;
+    states[identifier] = state;
+  }
+
+  /**
+   * @return The new state of `machine`, null if it has not executed a
+   *         transition.
+   */
+  @SuppressWarnings("unchecked")
+  public S get(M machine) {
+    int identifier = machine.getUniqueIdentifier();
+    if (identifier >= states.length) {
+      return null;
+    }
+    return (S) states[identifier];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      machines[order[i]] = null;
+      states[order[i]] = null;
+    }
+    size = 0;
+  }
+
+  /**
+   * @return A copy of the list, in the order of insertion.
+   */
+  @SuppressWarnings("unchecked")
+  public LinkedHashMap<M, S> toLinkedHashMap() {
+    LinkedHashMap<M, S> result = new LinkedHashMap<M, S>();
+    for (int i = 0; i < size; i++) {
+      result.put((M) machines[order[i]], (S) states[order[i]]);
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return toLinkedHashMap().toString();
+  }
+}
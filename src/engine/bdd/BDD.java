@@ -0,0 +1,630 @@
+package engine.bdd;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+
+/**
+ * A minimal reduced ordered binary decision diagram package.
+ *
+ * @details
+ *          The nodes are identified by integers: 0 is the constant false and 1
+ *          the constant true. The variables are ordered by their index. All
+ *          the nodes are kept in a unique table, so two equivalent functions
+ *          have the same identifier and the equality of two BDDs is the
+ *          equality of their identifiers.
+ *
+ *          The results of the operations are memorized in a lossy cache.
+ *          The nodes are never freed during an operation. The unreferenced
+ *          nodes are only freed by {@link #collectGarbage()}: the BDDs that
+ *          are still used must have been protected with {@link #addRef(int)}
+ *          before.
+ *
+ *          This class is NOT thread safe.
+ */
+public class BDD {
+
+  public static final int FALSE = 0;
+  public static final int TRUE = 1;
+
+  /* The level of the terminal nodes, after all the variables */
+  private static final int TERMINAL = Integer.MAX_VALUE;
+  private static final int FREE = -1;
+
+  private static final int OP_AND = 0;
+  private static final int OP_OR = 1;
+  private static final int OP_DIFF = 2;
+  private static final int OP_NOT = 3;
+  private static final int OP_EXISTS = 4;
+  private static final int OP_AND_EXISTS = 5;
+  private static final int OP_REPLACE = 6;
+
+  private final int number_variables;
+
+  /* The nodes */
+  private int[] variable;
+  private int[] low;
+  private int[] high;
+  private int[] references;
+  /* The unique table: chained buckets */
+  private int[] buckets;
+  private int[] next;
+  private int free_nodes = FREE;
+  private int number_allocated = 2;
+  private int number_free = 0;
+
+  /* The cache: operation, 3 operands and the result per entry */
+  private int[] cache;
+  private int cache_mask;
+
+  /* The renamings registered by #registerRenaming */
+  private int[][] renamings = new int[0][];
+
+  /**
+   * @param number_variables
+   *          The number of boolean variables.
+   * @param initial_nodes
+   *          The initial size of the node table. It grows when needed.
+   */
+  public BDD(int number_variables, int initial_nodes) {
+    this.number_variables = number_variables;
+    int capacity = Math.max(16, Integer.highestOneBit(initial_nodes - 1) << 1);
+    variable = new int[capacity];
+    low = new int[capacity];
+    high = new int[capacity];
+    references = new int[capacity];
+    next = new int[capacity];
+    buckets = new int[capacity];
+    Arrays.fill(buckets, FREE);
+    variable[FALSE] = TERMINAL;
+    variable[TRUE] = TERMINAL;
+
+    cache = new int[5 * capacity];
+    cache_mask = capacity - 1;
+    clearCache();
+  }
+
+  public BDD(int number_variables) {
+    this(number_variables, 1 << 16);
+  }
+
+  public int getNumberVariables() {
+    return number_variables;
+  }
+
+  /**
+   * @return The number of nodes currently used, including the unreferenced
+   *         ones not collected yet.
+   */
+  public int getNumberNodes() {
+    return number_allocated - number_free;
+  }
+
+  /**
+   * @return The variable tested by the node `f`.
+   */
+  public int getVariable(int f) {
+    return variable[f];
+  }
+
+  public int getLow(int f) {
+    return low[f];
+  }
+
+  public int getHigh(int f) {
+    return high[f];
+  }
+
+  /**
+   * @return The node testing `var`, with the children `l` (false) and `h`
+   *         (true).
+   */
+  private int mk(int var, int l, int h) {
+    if (l == h) {
+      return l;
+    }
+    int bucket = hash(var, l, h) & (buckets.length - 1);
+    for (int node = buckets[bucket]; node != FREE; node = next[node]) {
+      if (variable[node] == var && low[node] == l && high[node] == h) {
+        return node;
+      }
+    }
+
+    int node;
+    if (free_nodes != FREE) {
+      node = free_nodes;
+      free_nodes = next[node];
+      number_free--;
+    } else {
+      if (number_allocated == variable.length) {
+        grow();
+        bucket = hash(var, l, h) & (buckets.length - 1);
+      }
+      node = number_allocated++;
+    }
+    variable[node] = var;
+    low[node] = l;
+    high[node] = h;
+    references[node] = 0;
+    next[node] = buckets[bucket];
+    buckets[bucket] = node;
+    return node;
+  }
+
+  private static int hash(int a, int b, int c) {
+    int h = a * 0x9E3779B1 + b;
+    h = h * 0x85EBCA6B + c;
+    return h ^ (h >>> 15);
+  }
+
+  private void grow() {
+    int capacity = variable.length * 2;
+    variable = Arrays.copyOf(variable, capacity);
+    low = Arrays.copyOf(low, capacity);
+    high = Arrays.copyOf(high, capacity);
+    references = Arrays.copyOf(references, capacity);
+    next = Arrays.copyOf(next, capacity);
+    rehash(capacity);
+    /* The cache grows with the nodes */
+    cache = new int[5 * capacity];
+    cache_mask = capacity - 1;
+    clearCache();
+  }
+
+  private void rehash(int number_buckets) {
+    buckets = new int[number_buckets];
+    Arrays.fill(buckets, FREE);
+    for (int node = 2; node < number_allocated; node++) {
+      if (variable[node] == FREE) {
+        continue;
+      }
+      int bucket = hash(variable[node], low[node], high[node])
+          & (number_buckets - 1);
+      next[node] = buckets[bucket];
+      buckets[bucket] = node;
+    }
+  }
+
+  private void clearCache() {
+    Arrays.fill(cache, FREE);
+  }
+
+  private int cacheIndex(int op, int a, int b, int c) {
+    return (hash(op * 31 + a, b, c) & cache_mask) * 5;
+  }
+
+  private int cacheLookup(int op, int a, int b, int c) {
+    int i = cacheIndex(op, a, b, c);
+    if (cache[i] == op && cache[i + 1] == a && cache[i + 2] == b
+        && cache[i + 3] == c) {
+      return cache[i + 4];
+    }
+    return FREE;
+  }
+
+  private int cacheStore(int op, int a, int b, int c, int result) {
+    int i = cacheIndex(op, a, b, c);
+    cache[i] = op;
+    cache[i + 1] = a;
+    cache[i + 2] = b;
+    cache[i + 3] = c;
+    cache[i + 4] = result;
+    return result;
+  }
+
+  /**
+   * @return The BDD of the variable `var`.
+   */
+  public int ithVar(int var) {
+    return mk(var, FALSE, TRUE);
+  }
+
+  /**
+   * @return The BDD of the negation of the variable `var`.
+   */
+  public int nithVar(int var) {
+    return mk(var, TRUE, FALSE);
+  }
+
+  public int and(int f, int g) {
+    return apply(OP_AND, f, g);
+  }
+
+  public int or(int f, int g) {
+    return apply(OP_OR, f, g);
+  }
+
+  /**
+   * @return f AND NOT g
+   */
+  public int diff(int f, int g) {
+    return apply(OP_DIFF, f, g);
+  }
+
+  /**
+   * @return f <=> g
+   */
+  public int equiv(int f, int g) {
+    return or(and(f, g), and(not(f), not(g)));
+  }
+
+  private int apply(int op, int f, int g) {
+    switch (op) {
+    case OP_AND:
+      if (f == FALSE || g == FALSE) {
+        return FALSE;
+      }
+      if (f == TRUE || f == g) {
+        return g;
+      }
+      if (g == TRUE) {
+        return f;
+      }
+      if (f > g) {
+        int t = f;
+        f = g;
+        g = t;
+      }
+      break;
+    case OP_OR:
+      if (f == TRUE || g == TRUE) {
+        return TRUE;
+      }
+      if (f == FALSE || f == g) {
+        return g;
+      }
+      if (g == FALSE) {
+        return f;
+      }
+      if (f > g) {
+        int t = f;
+        f = g;
+        g = t;
+      }
+      break;
+    case OP_DIFF:
+      if (f == FALSE || g == TRUE || f == g) {
+        return FALSE;
+      }
+      if (g == FALSE) {
+        return f;
+      }
+      if (f == TRUE) {
+        return not(g);
+      }
+      break;
+    default:
+      throw new Error("Unknown operation " + op);
+    }
+
+    int result = cacheLookup(op, f, g, 0);
+    if (result != FREE) {
+      return result;
+    }
+    int var = Math.min(variable[f], variable[g]);
+    int f0 = variable[f] == var ? low[f] : f;
+    int f1 = variable[f] == var ? high[f] : f;
+    int g0 = variable[g] == var ? low[g] : g;
+    int g1 = variable[g] == var ? high[g] : g;
+    result = mk(var, apply(op, f0, g0), apply(op, f1, g1));
+    return cacheStore(op, f, g, 0, result);
+  }
+
+  public int not(int f) {
+    if (f == FALSE) {
+      return TRUE;
+    }
+    if (f == TRUE) {
+      return FALSE;
+    }
+    int result = cacheLookup(OP_NOT, f, 0, 0);
+    if (result != FREE) {
+      return result;
+    }
+    result = mk(variable[f], not(low[f]), not(high[f]));
+    return cacheStore(OP_NOT, f, 0, 0, result);
+  }
+
+  /**
+   * @return The conjunction of the given variables, used as the set of
+   *         variables of a quantification.
+   */
+  public int makeCube(int[] variables) {
+    int[] sorted = variables.clone();
+    Arrays.sort(sorted);
+    int result = TRUE;
+    for (int i = sorted.length - 1; i >= 0; i--) {
+      result = mk(sorted[i], FALSE, result);
+    }
+    return result;
+  }
+
+  /**
+   * @return The existential quantification of `f` over the variables of
+   *         `cube` (see {@link #makeCube(int[])}).
+   */
+  public int exists(int f, int cube) {
+    if (f == FALSE || f == TRUE || cube == TRUE) {
+      return f;
+    }
+    while (cube != TRUE && variable[cube] < variable[f]) {
+      cube = high[cube];
+    }
+    if (cube == TRUE) {
+      return f;
+    }
+    int result = cacheLookup(OP_EXISTS, f, cube, 0);
+    if (result != FREE) {
+      return result;
+    }
+    if (variable[cube] == variable[f]) {
+      int l = exists(low[f], high[cube]);
+      result = l == TRUE ? TRUE : or(l, exists(high[f], high[cube]));
+    } else {
+      result = mk(variable[f], exists(low[f], cube), exists(high[f], cube));
+    }
+    return cacheStore(OP_EXISTS, f, cube, 0, result);
+  }
+
+  /**
+   * @return The existential quantification of `f AND g` over the variables
+   *         of `cube`, without building `f AND g`.
+   */
+  public int andExists(int f, int g, int cube) {
+    if (f == FALSE || g == FALSE) {
+      return FALSE;
+    }
+    if (f == TRUE) {
+      return exists(g, cube);
+    }
+    if (g == TRUE || f == g) {
+      return exists(f, cube);
+    }
+    if (f > g) {
+      int t = f;
+      f = g;
+      g = t;
+    }
+    int var = Math.min(variable[f], variable[g]);
+    while (cube != TRUE && variable[cube] < var) {
+      cube = high[cube];
+    }
+    if (cube == TRUE) {
+      return and(f, g);
+    }
+    int result = cacheLookup(OP_AND_EXISTS, f, g, cube);
+    if (result != FREE) {
+      return result;
+    }
+    int f0 = variable[f] == var ? low[f] : f;
+    int f1 = variable[f] == var ? high[f] : f;
+    int g0 = variable[g] == var ? low[g] : g;
+    int g1 = variable[g] == var ? high[g] : g;
+    if (variable[cube] == var) {
+      int l = andExists(f0, g0, high[cube]);
+      result = l == TRUE ? TRUE : or(l, andExists(f1, g1, high[cube]));
+    } else {
+      result = mk(var, andExists(f0, g0, cube), andExists(f1, g1, cube));
+    }
+    return cacheStore(OP_AND_EXISTS, f, g, cube, result);
+  }
+
+  /**
+   * Register a renaming of the variables for {@link #replace(int, int)}.
+   *
+   * @param renaming
+   *          The new index of every variable. It must keep the order of the
+   *          variables of the BDDs it will be applied to.
+   * @return The identifier of the renaming.
+   */
+  public int registerRenaming(int[] renaming) {
+    if (renaming.length != number_variables) {
+      throw new IllegalArgumentException("The renaming must give the new "
+          + "index of the " + number_variables + " variables");
+    }
+    renamings = Arrays.copyOf(renamings, renamings.length + 1);
+    renamings[renamings.length - 1] = renaming.clone();
+    return renamings.length - 1;
+  }
+
+  /**
+   * @return `f` in which every variable `v` is replaced by the variable
+   *         given for `v` by the renaming `renaming_id`.
+   */
+  public int replace(int f, int renaming_id) {
+    if (f == FALSE || f == TRUE) {
+      return f;
+    }
+    int result = cacheLookup(OP_REPLACE, f, renaming_id, 0);
+    if (result != FREE) {
+      return result;
+    }
+    int l = replace(low[f], renaming_id);
+    int h = replace(high[f], renaming_id);
+    int var = renamings[renaming_id][variable[f]];
+    if (var >= variable[l] || var >= variable[h]) {
+      throw new IllegalArgumentException("The renaming " + renaming_id
+          + " does not keep the order of the variables");
+    }
+    result = mk(var, l, h);
+    return cacheStore(OP_REPLACE, f, renaming_id, 0, result);
+  }
+
+  /**
+   * @return The number of assignments of the `number_variables` variables
+   *         satisfying `f`.
+   */
+  public double satCount(int f) {
+    return satCount(f, new HashMap<Integer, Double>())
+        * Math.pow(2, level(f));
+  }
+
+  private int level(int f) {
+    return variable[f] == TERMINAL ? number_variables : variable[f];
+  }
+
+  private double satCount(int f, HashMap<Integer, Double> counts) {
+    if (f == FALSE) {
+      return 0;
+    }
+    if (f == TRUE) {
+      return 1;
+    }
+    Double count = counts.get(f);
+    if (count != null) {
+      return count;
+    }
+    double result =
+        satCount(low[f], counts) * Math.pow(2, level(low[f]) - level(f) - 1)
+            + satCount(high[f], counts)
+            * Math.pow(2, level(high[f]) - level(f) - 1);
+    counts.put(f, result);
+    return result;
+  }
+
+  /**
+   * @return The number of nodes of `f`, terminals excluded.
+   */
+  public int nodeCount(int f) {
+    HashSet<Integer> nodes = new HashSet<Integer>();
+    LinkedList<Integer> to_visit = new LinkedList<Integer>();
+    to_visit.add(f);
+    while (!to_visit.isEmpty()) {
+      int node = to_visit.poll();
+      if (node > TRUE && nodes.add(node)) {
+        to_visit.add(low[node]);
+        to_visit.add(high[node]);
+      }
+    }
+    return nodes.size();
+  }
+
+  /**
+   * @return An assignment satisfying `f`: 0 or 1 for the tested variables,
+   *         -1 for the others. null if `f` is false.
+   */
+  public int[] satOne(int f) {
+    if (f == FALSE) {
+      return null;
+    }
+    int[] assignment = new int[number_variables];
+    Arrays.fill(assignment, -1);
+    while (f != TRUE) {
+      if (low[f] != FALSE) {
+        assignment[variable[f]] = 0;
+        f = low[f];
+      } else {
+        assignment[variable[f]] = 1;
+        f = high[f];
+      }
+    }
+    return assignment;
+  }
+
+  /**
+   * @return The BDD satisfied only by the given values of `variables`.
+   */
+  public int makeMinterm(int[] variables, boolean[] values) {
+    int result = TRUE;
+    Integer[] order = new Integer[variables.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    final int[] vars = variables;
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer i1, Integer i2) {
+        return Integer.compare(vars[i1], vars[i2]);
+      }
+    });
+    for (int i = order.length - 1; i >= 0; i--) {
+      int var = variables[order[i]];
+      result = values[order[i]] ? mk(var, FALSE, result) : mk(var, result,
+          FALSE);
+    }
+    return result;
+  }
+
+  /**
+   * Protect `f` from the garbage collection.
+   *
+   * @return f
+   */
+  public int addRef(int f) {
+    if (f > TRUE) {
+      references[f]++;
+    }
+    return f;
+  }
+
+  /**
+   * Remove a protection added by {@link #addRef(int)}.
+   */
+  public void delRef(int f) {
+    if (f > TRUE) {
+      if (references[f] == 0) {
+        throw new IllegalStateException("The node " + f
+            + " is not referenced");
+      }
+      references[f]--;
+    }
+  }
+
+  /**
+   * Free the nodes that are not reachable from a referenced node. The
+   * identifiers of the remaining nodes do not change.
+   *
+   * @return The number of freed nodes.
+   */
+  public int collectGarbage() {
+    boolean[] marked = new boolean[number_allocated];
+    marked[FALSE] = true;
+    marked[TRUE] = true;
+    int[] stack = new int[number_allocated];
+    for (int node = 2; node < number_allocated; node++) {
+      if (references[node] > 0 && variable[node] != FREE && !marked[node]) {
+        int size = 0;
+        stack[size++] = node;
+        marked[node] = true;
+        while (size > 0) {
+          int n = stack[--size];
+          if (!marked[low[n]]) {
+            marked[low[n]] = true;
+            stack[size++] = low[n];
+          }
+          if (!marked[high[n]]) {
+            marked[high[n]] = true;
+            stack[size++] = high[n];
+          }
+        }
+      }
+    }
+
+    int freed = 0;
+    free_nodes = FREE;
+    number_free = 0;
+    for (int node = number_allocated - 1; node >= 2; node--) {
+      if (!marked[node]) {
+        if (variable[node] != FREE) {
+          freed++;
+        }
+        variable[node] = FREE;
+        next[node] = free_nodes;
+        free_nodes = node;
+        number_free++;
+      }
+    }
+    rehash(buckets.length);
+    /* Unique table lookups must not see the free nodes */
+    clearCache();
+    return freed;
+  }
+
+  @Override
+  public String toString() {
+    return "BDD of " + number_variables + " variables, " + getNumberNodes()
+        + " nodes";
+  }
+}
@@ -0,0 +1,179 @@
+package engine.stateStorage;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * A bitstate (supertrace) approximation of a set of packed state vectors.
+ *
+ * @details
+ *          A vector is represented by `number_hashes` bits of a fixed size bit
+ *          array. The positions of the bits are computed by double hashing:
+ *          h1 + i * h2 for i in [0, number_hashes[, where h1 and h2 are the
+ *          two independent hashes of {@link StateHashing}.
+ *
+ *          A vector is considered as already in the set if all its bits are
+ *          set. Then, a new vector whose bits have all been set by other
+ *          vectors is wrongly considered as visited, and its successors may
+ *          not be explored. The memory used does not depend on the number of
+ *          vectors, but the exploration is not exhaustive anymore.
+ *
+ *          When a new vector is added while a proportion `f` of the bits is
+ *          set, another vector would have been lost with the probability
+ *          f^number_hashes. The sum of these probabilities estimates the
+ *          number of vectors lost (see {@link #getExpectedOmissions()}).
+ */
+public class BitStateSet implements PackedStateSetInterface {
+
+  /**
+   * The largest bit array: 2^30 longs (8 GB). A Java array has less than 2^31
+   * elements, and the number of bits is a power of 2.
+   */
+  private static final long MAX_NUMBER_BITS = 1L << 36;
+
+  private final int number_words;
+  private final int number_hashes;
+  private final long[] bits;
+  /** Number of bits. Always a power of 2. */
+  private final long number_bits;
+  private long number_set_bits = 0;
+  private long size = 0;
+  private double expected_omissions = 0;
+
+  /**
+   * @param number_words
+   *          The number of longs of the vectors.
+   * @param number_bits
+   *          The size of the bit array. It is rounded up to a power of 2.
+   * @param number_hashes
+   *          The number of bits set per vector (k).
+   */
+  public BitStateSet(int number_words, long number_bits, int number_hashes) {
+    if (number_hashes <= 0) {
+      throw new IllegalArgumentException("At least one hash function is "
+          + "needed");
+    }
+    if (number_bits > MAX_NUMBER_BITS) {
+      throw new IllegalArgumentException("The bit array cannot have more "
+          + "than " + MAX_NUMBER_BITS + " bits");
+    }
+    this.number_words = number_words;
+    this.number_hashes = number_hashes;
+    this.number_bits = Math.max(64, Long.highestOneBit(number_bits - 1) << 1);
+    bits = new long[(int) (this.number_bits >>> 6)];
+  }
+
+  private boolean isSet(long bit) {
+    return (bits[(int) (bit >>> 6)] & (1L << bit)) != 0;
+  }
+
+  @Override
+  public boolean add(long[] vector) {
+    long mask = number_bits - 1;
+    long h1 = StateHashing.hash(vector, 0, number_words);
+    /* An odd step visits different bits */
+    long h2 = StateHashing.secondHash(vector, 0, number_words) | 1;
+    double fill_ratio = number_set_bits / (double) number_bits;
+
+    boolean is_new = false;
+    for (int i = 0; i < number_hashes; i++) {
+      long bit = (h1 + i * h2) & mask;
+      if (!isSet(bit)) {
+        bits[(int) (bit >>> 6)] |= 1L << bit;
+        number_set_bits++;
+        is_new = true;
+      }
+    }
+
+    if (is_new) {
+      size++;
+      double p = Math.pow(fill_ratio, number_hashes);
+      expected_omissions += p / (1 - p);
+    }
+    return is_new;
+  }
+
+  @Override
+  public boolean contains(long[] vector) {
+    long mask = number_bits - 1;
+    long h1 = StateHashing.hash(vector, 0, number_words);
+    long h2 = StateHashing.secondHash(vector, 0, number_words) | 1;
+    for (int i = 0; i < number_hashes; i++) {
+      if (!isSet((h1 + i * h2) & mask)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return The number of vectors that set at least one new bit.
+   */
+  @Override
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Only some bits of the vectors are stored, so they cannot be iterated.
+   */
+  @Override
+  public Iterator<long[]> iterator() {
+    throw new UnsupportedOperationException("The vectors of a bitstate set "
+        + "cannot be iterated");
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(bits, 0L);
+    number_set_bits = 0;
+    size = 0;
+    expected_omissions = 0;
+  }
+
+  public long getNumberBits() {
+    return number_bits;
+  }
+
+  public int getNumberHashes() {
+    return number_hashes;
+  }
+
+  /**
+   * @return The proportion of the bits that are set.
+   */
+  public double getFillRatio() {
+    return number_set_bits / (double) number_bits;
+  }
+
+  /**
+   * @return An estimation of the number of distinct vectors that have been
+   *         wrongly considered as already in the set.
+   */
+  public double getExpectedOmissions() {
+    return expected_omissions;
+  }
+
+  /**
+   * @return An estimation of the proportion of the distinct vectors that have
+   *         been stored (1 means no loss).
+   */
+  public double getEstimatedCoverage() {
+    if (size == 0) {
+      return 1;
+    }
+    return size / (size + expected_omissions);
+  }
+
+  @Override
+  public String getStatistics() {
+    return size + " vectors in " + number_bits + " bits with "
+        + number_hashes + " hashes (fill "
+        + String.format("%.4f", getFillRatio()) + ", "
+        + String.format("%.1f", number_bits / (double) Math.max(1, size))
+        + " bits per vector, " + (8L * bits.length) / (1024 * 1024)
+        + " MB, about " + String.format("%.1f", expected_omissions)
+        + " vectors lost, estimated coverage "
+        + String.format("%.6f", getEstimatedCoverage()) + ")";
+  }
+}
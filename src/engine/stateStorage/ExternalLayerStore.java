@@ -0,0 +1,610 @@
+package engine.stateStorage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * The layers of a breadth first search stored in files, with a delayed
+ * duplicate detection (external memory model checking).
+ *
+ * @details
+ *          The vectors found while exploring a layer are candidates for the
+ *          next layer. They are gathered in a memory buffer of `batch_size`
+ *          vectors. When the buffer is full, it is sorted, its duplicates are
+ *          removed and it is written to a run file.
+ *
+ *          When the current layer has been completely read,
+ *          {@link #finishLayer()} merges the runs with the sorted file of the
+ *          visited vectors: the candidates not already visited form the new
+ *          layer, and they are merged into a new visited file. At most
+ *          {@link #MAX_FAN_IN} files are read at once: when there are more
+ *          runs, they are first merged by groups into larger runs.
+ *
+ *          A candidate can carry `number_payload_words` longs after its
+ *          vector (e.g. the identifier of its parent). They are not compared:
+ *          among equal candidates, the payload of only one of them is kept in
+ *          the new layer. The visited file contains only the vectors.
+ *
+ *          All the disk accesses are sequential, and the memory used only
+ *          depends on `batch_size`. Every file is deleted as soon as it has
+ *          been read, and the remaining ones are deleted by {@link #close()}.
+ */
+public class ExternalLayerStore {
+
+  private static final int IO_BUFFER_SIZE = 1 << 16;
+  /** The maximum number of files merged at once */
+  public static final int MAX_FAN_IN = 64;
+
+  /** The number of longs of the vectors, i.e. of the compared words */
+  private final int number_words;
+  /** The number of longs of the candidates: the vector and its payload */
+  private final int record_words;
+  private final int batch_size;
+  private final File directory;
+  private int number_files = 0;
+
+  /** The candidates of the next layer not yet written to a run. */
+  private long[] buffer;
+  private int number_buffered = 0;
+  private long[] pivot;
+  private long[] tmp;
+
+  /** The sorted runs of candidates of the next layer, with their payload */
+  private LinkedList<File> runs = new LinkedList<File>();
+  private LinkedList<Long> run_sizes = new LinkedList<Long>();
+  private long number_candidates = 0;
+
+  /** The sorted visited vectors */
+  private File visited_file = null;
+  private long number_visited = 0;
+
+  /** The layer being read */
+  private File layer_file = null;
+  private DataInputStream layer_input = null;
+  private long layer_remaining = 0;
+  private int number_layers = 0;
+
+  private long number_bytes_written = 0;
+  private long number_runs = 0;
+
+  /**
+   * @param number_words
+   *          The number of longs of the vectors.
+   * @param scratch_directory
+   *          The directory in which the files are created.
+   * @param batch_size
+   *          The number of vectors kept in memory before being sorted and
+   *          written to a run.
+   */
+  public ExternalLayerStore(int number_words, File scratch_directory,
+      int batch_size) {
+    this(number_words, 0, scratch_directory, batch_size);
+  }
+
+  /**
+   * @param number_words
+   *          The number of longs of the vectors.
+   * @param number_payload_words
+   *          The number of longs carried by the candidates after their vector.
+   * @param scratch_directory
+   *          The directory in which the files are created.
+   * @param batch_size
+   *          The number of vectors kept in memory before being sorted and
+   *          written to a run.
+   */
+  public ExternalLayerStore(int number_words, int number_payload_words,
+      File scratch_directory, int batch_size) {
+    if (batch_size <= 0) {
+      throw new IllegalArgumentException("The batch size must be positive");
+    }
+    this.number_words = number_words;
+    this.record_words = number_words + number_payload_words;
+    this.batch_size = batch_size;
+    buffer = new long[batch_size * record_words];
+    pivot = new long[record_words];
+    tmp = new long[record_words];
+    try {
+      directory = Files.createTempDirectory(scratch_directory.toPath(), "bfs")
+          .toFile();
+    } catch (IOException e) {
+      throw new Error("Impossible to create the BFS directory in "
+          + scratch_directory, e);
+    }
+  }
+
+  /**
+   * Add a candidate for the next layer: its vector followed by its payload.
+   * The array is not kept.
+   */
+  public void addCandidate(long[] record) {
+    if (number_buffered == batch_size) {
+      writeRun();
+    }
+    System.arraycopy(record, 0, buffer, number_buffered * record_words,
+        record_words);
+    number_buffered++;
+    number_candidates++;
+  }
+
+  /**
+   * Read the next vector of the current layer and its payload into `record`.
+   *
+   * @return false if the current layer has been completely read.
+   */
+  public boolean poll(long[] record) {
+    if (layer_remaining == 0) {
+      return false;
+    }
+    try {
+      for (int i = 0; i < record_words; i++) {
+        record[i] = layer_input.readLong();
+      }
+    } catch (IOException e) {
+      throw new Error("Impossible to read the BFS layer " + layer_file, e);
+    }
+    layer_remaining--;
+    if (layer_remaining == 0) {
+      closeLayer();
+    }
+    return true;
+  }
+
+  /**
+   * Build the next layer from the candidates: remove the duplicates and the
+   * already visited vectors. The current layer must have been read
+   * completely.
+   *
+   * @return The number of vectors in the new layer.
+   */
+  public long finishLayer() {
+    if (layer_remaining != 0) {
+      throw new IllegalStateException("The current layer has not been "
+          + "completely read");
+    }
+    if (number_buffered != 0) {
+      writeRun();
+    }
+
+    try {
+      while (runs.size() > MAX_FAN_IN) {
+        mergeIntermediateRuns();
+      }
+      return mergeRuns();
+    } catch (IOException e) {
+      throw new Error("Impossible to merge the BFS runs in " + directory, e);
+    }
+  }
+
+  /**
+   * @return A queue of readers over the `count` first runs, ordered by their
+   *         current vector. The runs are removed from `runs`.
+   */
+  private PriorityQueue<RunReader> openRuns(int count) throws IOException {
+    PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(
+        Math.max(1, count), new Comparator<RunReader>() {
+          @Override
+          public int compare(RunReader r1, RunReader r2) {
+            return ExternalLayerStore.compare(r1.current, 0, r2.current, 0,
+                number_words);
+          }
+        });
+    for (int i = 0; i < count; i++) {
+      RunReader run = new RunReader(runs.poll(), run_sizes.poll(),
+          record_words);
+      if (run.next()) {
+        queue.add(run);
+      } else {
+        run.close();
+      }
+    }
+    return queue;
+  }
+
+  /**
+   * Merge the {@link #MAX_FAN_IN} first runs into a new run without
+   * duplicates, added at the end of the runs.
+   */
+  private void mergeIntermediateRuns() throws IOException {
+    PriorityQueue<RunReader> queue = openRuns(MAX_FAN_IN);
+    File merged_run = newFile("run");
+    DataOutputStream output = openOutput(merged_run);
+    long[] last = new long[number_words];
+    boolean has_last = false;
+    long size = 0;
+
+    while (!queue.isEmpty()) {
+      RunReader run = queue.poll();
+      if (!has_last || compare(run.current, 0, last, 0, number_words) != 0) {
+        System.arraycopy(run.current, 0, last, 0, number_words);
+        has_last = true;
+        write(output, run.current, record_words);
+        size++;
+      }
+      if (run.next()) {
+        queue.add(run);
+      } else {
+        run.close();
+      }
+    }
+    output.close();
+    runs.add(merged_run);
+    run_sizes.add(size);
+  }
+
+  /**
+   * Merge all the runs with the visited file into the new layer and the new
+   * visited file.
+   */
+  private long mergeRuns() throws IOException {
+    PriorityQueue<RunReader> queue = openRuns(runs.size());
+
+    RunReader visited = null;
+    if (visited_file != null) {
+      visited = new RunReader(visited_file, number_visited, number_words);
+      visited.next();
+    }
+    File new_layer_file = newFile("layer");
+    File new_visited_file = newFile("visited");
+    DataOutputStream layer_output = openOutput(new_layer_file);
+    DataOutputStream visited_output = openOutput(new_visited_file);
+
+    long[] last = new long[number_words];
+    boolean has_last = false;
+    long new_layer_size = 0;
+    long new_number_visited = 0;
+
+    while (!queue.isEmpty()) {
+      RunReader run = queue.poll();
+      long[] candidate = run.current;
+
+      if (!has_last || compare(candidate, 0, last, 0, number_words) != 0) {
+        System.arraycopy(candidate, 0, last, 0, number_words);
+        has_last = true;
+
+        while (visited != null && visited.has_current
+            && compare(visited.current, 0, candidate, 0, number_words) < 0) {
+          write(visited_output, visited.current, number_words);
+          new_number_visited++;
+          visited.next();
+        }
+        if (visited == null || !visited.has_current
+            || compare(visited.current, 0, candidate, 0, number_words) != 0) {
+          write(layer_output, candidate, record_words);
+          write(visited_output, candidate, number_words);
+          new_layer_size++;
+          new_number_visited++;
+        }
+      }
+
+      if (run.next()) {
+        queue.add(run);
+      } else {
+        run.close();
+      }
+    }
+    while (visited != null && visited.has_current) {
+      write(visited_output, visited.current, number_words);
+      new_number_visited++;
+      visited.next();
+    }
+
+    layer_output.close();
+    visited_output.close();
+    if (visited != null) {
+      visited.close();
+      visited_file.delete();
+    }
+
+    visited_file = new_visited_file;
+    number_visited = new_number_visited;
+    number_candidates = 0;
+    number_layers++;
+
+    layer_file = new_layer_file;
+    layer_remaining = new_layer_size;
+    if (layer_remaining == 0) {
+      layer_file.delete();
+      layer_file = null;
+    } else {
+      layer_input = openInput(layer_file);
+    }
+    return new_layer_size;
+  }
+
+  /**
+   * Sort the buffer, and write it without duplicates in a new run.
+   */
+  private void writeRun() {
+    sort(0, number_buffered);
+    File run = newFile("run");
+    long size = 0;
+    try {
+      DataOutputStream output = openOutput(run);
+      for (int i = 0; i < number_buffered; i++) {
+        if (i == 0 || compare(buffer, i * record_words, buffer, (i - 1)
+            * record_words, number_words) != 0) {
+          for (int j = 0; j < record_words; j++) {
+            output.writeLong(buffer[i * record_words + j]);
+          }
+          size++;
+        }
+      }
+      output.close();
+    } catch (IOException e) {
+      throw new Error("Impossible to write the BFS run " + run, e);
+    }
+    number_bytes_written += 8 * size * record_words;
+    number_runs++;
+    runs.add(run);
+    run_sizes.add(size);
+    number_buffered = 0;
+  }
+
+  /**
+   * Sort the vectors of the buffer from the index `from` included to `to`
+   * excluded (quicksort).
+   */
+  private void sort(int from, int to) {
+    while (to - from > 16) {
+      System.arraycopy(buffer, ((from + to) >>> 1) * record_words, pivot, 0,
+          record_words);
+      int i = from;
+      int j = to - 1;
+      while (i <= j) {
+        while (compare(buffer, i * record_words, pivot, 0, number_words) < 0) {
+          i++;
+        }
+        while (compare(buffer, j * record_words, pivot, 0, number_words) > 0) {
+          j--;
+        }
+        if (i <= j) {
+          swap(i, j);
+          i++;
+          j--;
+        }
+      }
+      /* We recurse on the smallest part to bound the stack */
+      if (j + 1 - from < to - i) {
+        sort(from, j + 1);
+        from = i;
+      } else {
+        sort(i, to);
+        to = j + 1;
+      }
+    }
+
+    /* Insertion sort for the small parts */
+    for (int i = from + 1; i < to; i++) {
+      System.arraycopy(buffer, i * record_words, tmp, 0, record_words);
+      int j = i - 1;
+      while (j >= from
+          && compare(buffer, j * record_words, tmp, 0, number_words) > 0) {
+        System.arraycopy(buffer, j * record_words, buffer, (j + 1)
+            * record_words, record_words);
+        j--;
+      }
+      System.arraycopy(tmp, 0, buffer, (j + 1) * record_words, record_words);
+    }
+  }
+
+  private void swap(int i, int j) {
+    System.arraycopy(buffer, i * record_words, tmp, 0, record_words);
+    System.arraycopy(buffer, j * record_words, buffer, i * record_words,
+        record_words);
+    System.arraycopy(tmp, 0, buffer, j * record_words, record_words);
+  }
+
+  /**
+   * Lexicographic order on the vectors.
+   */
+  private static int compare(long[] a, int a_offset, long[] b, int b_offset,
+      int number_words) {
+    for (int i = 0; i < number_words; i++) {
+      int result = Long.compare(a[a_offset + i], b[b_offset + i]);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Write the `length` first longs of `record`.
+   */
+  private void write(DataOutputStream output, long[] record, int length)
+      throws IOException {
+    for (int i = 0; i < length; i++) {
+      output.writeLong(record[i]);
+    }
+    number_bytes_written += 8 * length;
+  }
+
+  private File newFile(String prefix) {
+    return new File(directory, prefix + "-" + number_files++ + ".bin");
+  }
+
+  private static DataOutputStream openOutput(File file) throws IOException {
+    return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+        file), IO_BUFFER_SIZE));
+  }
+
+  private static DataInputStream openInput(File file) throws IOException {
+    return new DataInputStream(new BufferedInputStream(new FileInputStream(
+        file), IO_BUFFER_SIZE));
+  }
+
+  private void closeLayer() {
+    if (layer_input != null) {
+      try {
+        layer_input.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      layer_input = null;
+    }
+    if (layer_file != null) {
+      layer_file.delete();
+      layer_file = null;
+    }
+    layer_remaining = 0;
+  }
+
+  /**
+   * A sequential reader of a sorted file of vectors or of candidates.
+   */
+  private class RunReader {
+    final File file;
+    final DataInputStream input;
+    long remaining;
+    final long[] current;
+    boolean has_current = false;
+
+    /**
+     * @param length
+     *          The number of longs of the records of the file.
+     */
+    RunReader(File file, long size, int length) throws IOException {
+      this.file = file;
+      this.input = openInput(file);
+      this.remaining = size;
+      this.current = new long[length];
+    }
+
+    /**
+     * Read the next record into `current`.
+     *
+     * @return false if the end of the file is reached.
+     */
+    boolean next() throws IOException {
+      if (remaining == 0) {
+        has_current = false;
+        return false;
+      }
+      for (int i = 0; i < current.length; i++) {
+        current[i] = input.readLong();
+      }
+      remaining--;
+      has_current = true;
+      return true;
+    }
+
+    void close() throws IOException {
+      input.close();
+      if (file != visited_file) {
+        file.delete();
+      }
+    }
+  }
+
+  /**
+   * @return An iterator over the vectors of the finished layers, in the
+   *         lexicographic order. The array returned by next() is reused. The
+   *         store must not be modified during the iteration.
+   */
+  public Iterator<long[]> visitedIterator() {
+    final RunReader reader;
+    try {
+      reader = visited_file == null ? null : new RunReader(visited_file,
+          number_visited, number_words);
+      if (reader != null && !reader.next()) {
+        reader.close();
+      }
+    } catch (IOException e) {
+      throw new Error("Impossible to read the visited file " + visited_file,
+          e);
+    }
+    return new Iterator<long[]>() {
+      private final long[] vector = new long[number_words];
+
+      @Override
+      public boolean hasNext() {
+        return reader != null && reader.has_current;
+      }
+
+      @Override
+      public long[] next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        System.arraycopy(reader.current, 0, vector, 0, number_words);
+        try {
+          if (!reader.next()) {
+            reader.close();
+          }
+        } catch (IOException e) {
+          throw new Error("Impossible to read the visited file "
+              + reader.file, e);
+        }
+        return vector;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * @return The number of vectors of the current layer not yet read.
+   */
+  public long getLayerRemaining() {
+    return layer_remaining;
+  }
+
+  /**
+   * @return The number of candidates (with duplicates) for the next layer.
+   */
+  public long getNumberCandidates() {
+    return number_candidates;
+  }
+
+  /**
+   * @return The number of distinct vectors in the finished layers.
+   */
+  public long getNumberVisited() {
+    return number_visited;
+  }
+
+  public int getNumberLayers() {
+    return number_layers;
+  }
+
+  /**
+   * Delete all the files.
+   */
+  public void close() {
+    closeLayer();
+    for (File run : runs) {
+      run.delete();
+    }
+    runs.clear();
+    run_sizes.clear();
+    if (visited_file != null) {
+      visited_file.delete();
+      visited_file = null;
+    }
+    number_buffered = 0;
+    number_candidates = 0;
+    directory.delete();
+  }
+
+  public String getStatistics() {
+    return number_visited + " vectors of " + number_words + " longs in "
+        + number_layers + " layers (" + number_runs + " sorted runs of at most "
+        + batch_size + " vectors, " + number_bytes_written / (1024 * 1024)
+        + " MB written in " + directory + ")";
+  }
+}
@@ -0,0 +1,105 @@
+package engine.stateStorage;
+
+import java.util.Iterator;
+
+/**
+ * A hash compaction approximation of a set of packed state vectors: only a
+ * fingerprint of every vector is stored.
+ *
+ * @details
+ *          The fingerprint is the 64 bits hash of the vector, plus the 32 high
+ *          bits of the second hash (see {@link StateHashing}) for 96 bits
+ *          fingerprints. The fingerprints are stored in a
+ *          {@link PackedStateHashSet} of 1 or 2 words, so a state costs 8 or
+ *          16 bytes (plus the free buckets) whatever the size of its vector.
+ *
+ *          Two vectors with the same fingerprint are considered as equal, so
+ *          the second one is not explored. With n vectors and b bits
+ *          fingerprints, the probability of such an omission is about
+ *          n^2 / 2^(b+1) (see {@link #getOmissionProbability()}).
+ */
+public class FingerprintStateSet implements PackedStateSetInterface {
+
+  private final int number_words;
+  private final int fingerprint_bits;
+  private final PackedStateHashSet fingerprints;
+  private final long[] fingerprint;
+
+  /**
+   * @param number_words
+   *          The number of longs of the vectors.
+   * @param fingerprint_bits
+   *          64 or 96.
+   */
+  public FingerprintStateSet(int number_words, int fingerprint_bits) {
+    if (fingerprint_bits != 64 && fingerprint_bits != 96) {
+      throw new IllegalArgumentException("The fingerprints have 64 or 96 "
+          + "bits, not " + fingerprint_bits);
+    }
+    this.number_words = number_words;
+    this.fingerprint_bits = fingerprint_bits;
+    fingerprint = new long[fingerprint_bits == 64 ? 1 : 2];
+    fingerprints = new PackedStateHashSet(fingerprint.length);
+  }
+
+  private long[] fingerprint(long[] vector) {
+    fingerprint[0] = StateHashing.hash(vector, 0, number_words);
+    if (fingerprint.length == 2) {
+      fingerprint[1] =
+          StateHashing.secondHash(vector, 0, number_words) >>> 32;
+    }
+    return fingerprint;
+  }
+
+  @Override
+  public boolean add(long[] vector) {
+    return fingerprints.add(fingerprint(vector));
+  }
+
+  @Override
+  public boolean contains(long[] vector) {
+    return fingerprints.contains(fingerprint(vector));
+  }
+
+  @Override
+  public long size() {
+    return fingerprints.size();
+  }
+
+  /**
+   * Only the fingerprints of the vectors are stored, so they cannot be iterated.
+   */
+  @Override
+  public Iterator<long[]> iterator() {
+    throw new UnsupportedOperationException("The vectors of a hash compaction set "
+        + "cannot be iterated");
+  }
+
+  @Override
+  public void clear() {
+    fingerprints.clear();
+  }
+
+  public int getFingerprintBits() {
+    return fingerprint_bits;
+  }
+
+  /**
+   * @return The probability that at least one vector has been wrongly
+   *         considered as already in the set, i.e. 1 - exp(-n^2 / 2^(b+1)).
+   */
+  public double getOmissionProbability() {
+    double n = size();
+    return -Math.expm1(-n * n / Math.pow(2, fingerprint_bits + 1));
+  }
+
+  @Override
+  public String getStatistics() {
+    return size() + " fingerprints of " + fingerprint_bits + " bits ("
+        + String.format("%.1f", fingerprints.getMemoryUsage()
+            / (double) Math.max(1, size())) + " bytes per state, "
+        + fingerprints.getMemoryUsage() / (1024 * 1024)
+        + " MB, omission probability "
+        + String.format("%.3g", getOmissionProbability()) + ")";
+  }
+}
@@ -0,0 +1,361 @@
+package engine.stateStorage;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An open addressing hash set of packed state vectors in which many threads
+ * can insert and search concurrently without lock.
+ *
+ * @details
+ *          Every bucket has a header word, updated by compare-and-swap, and
+ *          `number_words` longs in a flat array storing the vector. The header
+ *          contains the high bits of the hash of the vector and the status of
+ *          the bucket:
+ *          - EMPTY: the bucket is free.
+ *          - WRITING: a thread has reserved the bucket and is copying its
+ *          vector. The other threads with the same hash wait for it.
+ *          - DONE: the vector is readable.
+ *          - MOVED: the bucket has been migrated to a larger table.
+ *
+ *          A thread reserves the first free bucket of the probing sequence by a
+ *          CAS from EMPTY to WRITING, so a vector is inserted only once.
+ *
+ *          When the table is more than 3/4 full, a table twice as large is
+ *          allocated. All the threads accessing the old table then migrate it
+ *          together by chunks of {@link #MIGRATION_CHUNK} buckets: the free
+ *          buckets are marked MOVED, and the vectors are copied in the new
+ *          table. A thread finding a MOVED bucket helps the migration and
+ *          retries in the new table.
+ *
+ *          A vector with 1 word can be a fingerprint of the state instead of
+ *          its full vector.
+ */
+public class LockFreeStateHashSet implements PackedStateSetInterface {
+
+  private static final int DEFAULT_CAPACITY = 1 << 12;
+  /** Number of buckets migrated by a thread at once */
+  private static final int MIGRATION_CHUNK = 1 << 10;
+
+  /* The status of a bucket is in the 2 low bits of its header */
+  private static final long STATUS_MASK = 3;
+  private static final long EMPTY = 0;
+  private static final long WRITING = 1;
+  private static final long DONE = 2;
+  private static final long MOVED = 3;
+
+  /* The results of find() */
+  private static final int ABSENT = 0;
+  private static final int PRESENT = 1;
+  private static final int INSERTED = 2;
+  /* The table is being resized or is full: retry in the next table */
+  private static final int RETRY = 3;
+
+  private final class Table {
+    /** Number of buckets. Always a power of 2. */
+    final int capacity;
+    final AtomicLongArray headers;
+    /** The vectors, `number_words` longs per bucket. */
+    final long[] vectors;
+    /** The table replacing this one. Null until a resize starts. */
+    final AtomicReference<Table> next = new AtomicReference<Table>();
+    /** Set by the only thread allowed to allocate `next` */
+    final AtomicBoolean resize_started = new AtomicBoolean();
+    /** The error raised while allocating `next`, if any */
+    volatile Error resize_error = null;
+    /** The next chunk to migrate */
+    final AtomicInteger next_chunk = new AtomicInteger();
+    final AtomicInteger migrated_chunks = new AtomicInteger();
+
+    Table(int capacity) {
+      if ((long) capacity * number_words > Integer.MAX_VALUE - 8) {
+        throw new OutOfMemoryError("The lock free state hash set cannot "
+            + "store more than " + capacity / 2 + " vectors of "
+            + number_words + " longs");
+      }
+      this.capacity = capacity;
+      headers = new AtomicLongArray(capacity);
+      vectors = new long[capacity * number_words];
+    }
+
+    int getNumberChunks() {
+      return (capacity + MIGRATION_CHUNK - 1) / MIGRATION_CHUNK;
+    }
+  }
+
+  private final int number_words;
+  private final int initial_capacity;
+  private final AtomicReference<Table> table = new AtomicReference<Table>();
+  private final AtomicLong size = new AtomicLong();
+
+  /* Statistics */
+  private final AtomicInteger number_resizes = new AtomicInteger();
+  private final AtomicLong number_cas_failures = new AtomicLong();
+
+  public LockFreeStateHashSet(int number_words) {
+    this(number_words, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param number_words
+   *          The number of longs of the vectors.
+   * @param initial_capacity
+   *          The initial number of buckets. Giving a good estimation of the
+   *          number of states avoids the resizes.
+   */
+  public LockFreeStateHashSet(int number_words, int initial_capacity) {
+    if (number_words <= 0) {
+      throw new IllegalArgumentException("The vectors must have at least "
+          + "one word");
+    }
+    this.number_words = number_words;
+    this.initial_capacity =
+        Math.max(16, Integer.highestOneBit(initial_capacity - 1) << 1);
+    table.set(new Table(this.initial_capacity));
+  }
+
+  /**
+   * Search the vector in the table, and reserve a bucket for it if `insert`
+   * is true and it is not found.
+   *
+   * @return ABSENT, PRESENT, INSERTED or RETRY.
+   */
+  private int find(Table t, long[] vector, long hash, boolean insert) {
+    int mask = t.capacity - 1;
+    int bucket = (int) hash & mask;
+    long tag = hash & ~STATUS_MASK;
+
+    for (int probes = 0; probes < t.capacity; probes++) {
+      long header = t.headers.get(bucket);
+
+      if (header == EMPTY) {
+        if (!insert) {
+          return ABSENT;
+        }
+        if (t.headers.compareAndSet(bucket, EMPTY, tag | WRITING)) {
+          System.arraycopy(vector, 0, t.vectors, bucket * number_words,
+              number_words);
+          /* The volatile write publishes the vector */
+          t.headers.set(bucket, tag | DONE);
+          return INSERTED;
+        }
+        number_cas_failures.incrementAndGet();
+        header = t.headers.get(bucket);
+      }
+
+      if (header == MOVED) {
+        return RETRY;
+      }
+
+      if ((header & ~STATUS_MASK) == tag) {
+        while ((header & STATUS_MASK) == WRITING) {
+          Thread.yield();
+          header = t.headers.get(bucket);
+        }
+        if (equalsBucket(t, bucket, vector)) {
+          return PRESENT;
+        }
+      }
+      bucket = (bucket + 1) & mask;
+    }
+    /* The table is full */
+    return RETRY;
+  }
+
+  private boolean equalsBucket(Table t, int bucket, long[] vector) {
+    int start = bucket * number_words;
+    for (int i = 0; i < number_words; i++) {
+      if (t.vectors[start + i] != vector[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean add(long[] vector) {
+    long hash = StateHashing.hash(vector, 0, number_words);
+    while (true) {
+      Table current = table.get();
+      switch (find(current, vector, hash, true)) {
+      case INSERTED:
+        if (size.incrementAndGet() * 4 > (long) current.capacity * 3) {
+          resize(current);
+        }
+        return true;
+      case PRESENT:
+        return false;
+      default:
+        resize(current);
+      }
+    }
+  }
+
+  @Override
+  public boolean contains(long[] vector) {
+    long hash = StateHashing.hash(vector, 0, number_words);
+    while (true) {
+      Table current = table.get();
+      int result = find(current, vector, hash, false);
+      if (result != RETRY) {
+        return result == PRESENT;
+      }
+      resize(current);
+    }
+  }
+
+  /**
+   * Start the resize of `t` if it has not been started, help migrating it and
+   * wait until the new table replaces it.
+   */
+  private void resize(Table t) {
+    Table next = t.next.get();
+    if (next == null) {
+      /* Only the winner allocates, the other threads wait for its table */
+      if (t.resize_started.compareAndSet(false, true)) {
+        try {
+          t.next.set(new Table(t.capacity * 2));
+        } catch (Error e) {
+          t.resize_error = e;
+          throw e;
+        }
+        number_resizes.incrementAndGet();
+      }
+      while ((next = t.next.get()) == null) {
+        if (t.resize_error != null) {
+          throw new Error("The resize of the lock free state hash set "
+              + "failed", t.resize_error);
+        }
+        Thread.yield();
+      }
+    }
+
+    int number_chunks = t.getNumberChunks();
+    int chunk;
+    while ((chunk = t.next_chunk.getAndIncrement()) < number_chunks) {
+      migrate(t, next, chunk);
+      if (t.migrated_chunks.incrementAndGet() == number_chunks) {
+        table.compareAndSet(t, next);
+      }
+    }
+
+    /* The other threads are finishing their chunks */
+    while (table.get() == t) {
+      Thread.yield();
+    }
+  }
+
+  private void migrate(Table t, Table next, int chunk) {
+    long[] vector = new long[number_words];
+    int end = Math.min(t.capacity, (chunk + 1) * MIGRATION_CHUNK);
+    int bucket = chunk * MIGRATION_CHUNK;
+    while (bucket < end) {
+      long header = t.headers.get(bucket);
+      if (header == EMPTY) {
+        if (t.headers.compareAndSet(bucket, EMPTY, MOVED)) {
+          bucket++;
+        }
+      } else if ((header & STATUS_MASK) == WRITING) {
+        /* The vector will be readable soon */
+        Thread.yield();
+      } else {
+        System.arraycopy(t.vectors, bucket * number_words, vector, 0,
+            number_words);
+        /*
+         * The next table is not resized before being installed, and it is
+         * twice larger: there is always some room.
+         */
+        int result = find(next, vector,
+            StateHashing.hash(vector, 0, number_words), true);
+        assert result == INSERTED;
+        bucket++;
+      }
+    }
+  }
+
+  @Override
+  public long size() {
+    return size.get();
+  }
+
+  /**
+   * Iterate over the vectors of the current table. It must not be called
+   * concurrently with {@link #add(long[])}.
+   */
+  @Override
+  public Iterator<long[]> iterator() {
+    final Table t = table.get();
+    return new Iterator<long[]>() {
+      private final long[] vector = new long[number_words];
+      private int bucket = nextDone(0);
+
+      private int nextDone(int from) {
+        while (from < t.capacity
+            && (t.headers.get(from) & STATUS_MASK) != DONE) {
+          from++;
+        }
+        return from;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return bucket < t.capacity;
+      }
+
+      @Override
+      public long[] next() {
+        if (bucket >= t.capacity) {
+          throw new NoSuchElementException();
+        }
+        System.arraycopy(t.vectors, bucket * number_words, vector, 0,
+            number_words);
+        bucket = nextDone(bucket + 1);
+        return vector;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * Remove all the vectors of the set. It must not be called concurrently
+   * with the other methods.
+   */
+  @Override
+  public void clear() {
+    table.set(new Table(initial_capacity));
+    size.set(0);
+  }
+
+  /**
+   * @return The number of buckets of the current table.
+   */
+  public int getCapacity() {
+    return table.get().capacity;
+  }
+
+  /**
+   * @return The number of bytes used by the set.
+   */
+  public long getMemoryUsage() {
+    return 8L * getCapacity() * (number_words + 1);
+  }
+
+  @Override
+  public String getStatistics() {
+    int capacity = getCapacity();
+    return size() + " vectors of " + number_words + " longs in " + capacity
+        + " lock free buckets (load "
+        + String.format("%.2f", size() / (double) capacity) + ", "
+        + number_resizes.get() + " resizes, " + number_cas_failures.get()
+        + " failed CAS, " + getMemoryUsage() / (1024 * 1024) + " MB)";
+  }
+}
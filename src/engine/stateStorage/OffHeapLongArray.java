@@ -0,0 +1,181 @@
+package engine.stateStorage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A fixed size array of longs stored outside of the Java heap.
+ *
+ * @details
+ *          The array is split into segments of at most 2^27 longs (1 GB), so
+ *          that its length is not limited by the 2 GB limit of the buffers.
+ *          A segment is either a direct ByteBuffer, or a MappedByteBuffer
+ *          over a scratch file when a directory is given. In the second case,
+ *          the array can be larger than the physical memory: the operating
+ *          system writes the cold pages to the disk.
+ *
+ *          The content is initially 0. {@link #close()} releases the buffers
+ *          immediately, instead of waiting for the garbage collector, and
+ *          deletes the scratch file.
+ */
+public class OffHeapLongArray {
+
+  private static final int SEGMENT_SHIFT = 27;
+  private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+  private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+  private final long length;
+  private ByteBuffer[] buffers;
+  private LongBuffer[] segments;
+  private File file = null;
+  private RandomAccessFile random_access_file = null;
+  /** A failure of {@link #release(ByteBuffer)} has already been printed */
+  private static boolean release_failure_reported = false;
+
+  /**
+   * @param length
+   *          The number of longs.
+   * @param scratch_directory
+   *          The directory in which the scratch file is created. If null,
+   *          the array is allocated in direct memory.
+   * @throws IOException
+   *           If the scratch file cannot be created.
+   */
+  public OffHeapLongArray(long length, File scratch_directory)
+      throws IOException {
+    this.length = length;
+    int number_segments = (int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+    buffers = new ByteBuffer[Math.max(1, number_segments)];
+    segments = new LongBuffer[buffers.length];
+
+    if (scratch_directory != null) {
+      file = File.createTempFile("states", ".bin", scratch_directory);
+      random_access_file = new RandomAccessFile(file, "rw");
+      random_access_file.setLength(length * 8);
+    }
+
+    for (int i = 0; i < segments.length; i++) {
+      long segment_length = Math.min(SEGMENT_SIZE, length - i * SEGMENT_SIZE);
+      segment_length = Math.max(segment_length, 1);
+      ByteBuffer buffer;
+      if (random_access_file == null) {
+        buffer = ByteBuffer.allocateDirect((int) (segment_length * 8));
+      } else {
+        buffer = random_access_file.getChannel().map(
+            FileChannel.MapMode.READ_WRITE, i * SEGMENT_SIZE * 8,
+            segment_length * 8);
+      }
+      buffers[i] = buffer;
+      segments[i] = buffer.order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+  }
+
+  public long get(long index) {
+    return segments[(int) (index >>> SEGMENT_SHIFT)]
+        .get((int) (index & SEGMENT_MASK));
+  }
+
+  public void set(long index, long value) {
+    segments[(int) (index >>> SEGMENT_SHIFT)].put((int) (index & SEGMENT_MASK),
+        value);
+  }
+
+  public long length() {
+    return length;
+  }
+
+  /**
+   * Set all the longs to 0.
+   */
+  public void clear() {
+    for (LongBuffer segment : segments) {
+      for (int i = 0; i < segment.capacity(); i++) {
+        segment.put(i, 0L);
+      }
+    }
+  }
+
+  /**
+   * @return true if the array is backed by a file.
+   */
+  public boolean isMapped() {
+    return file != null;
+  }
+
+  /**
+   * Release the array and delete its scratch file. The array must not be used
+   * anymore.
+   */
+  public void close() {
+    if (segments == null) {
+      return;
+    }
+    /* A later access fails on the null array instead of the freed memory */
+    segments = null;
+    boolean released = true;
+    for (ByteBuffer buffer : buffers) {
+      released &= release(buffer);
+    }
+    buffers = null;
+    if (random_access_file != null) {
+      try {
+        random_access_file.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      /*
+       * If the mapping could not be released, it is only released when the
+       * buffers are garbage collected, and the deletion can fail on some
+       * systems. The file is then deleted at exit.
+       */
+      if (!file.delete() || !released) {
+        file.deleteOnExit();
+      }
+      random_access_file = null;
+    }
+  }
+
+  /**
+   * Unmap or free a direct buffer without waiting for the garbage collector.
+   * The first failure is printed, the next ones are silent.
+   *
+   * @return false if the JVM does not allow it.
+   */
+  private static boolean release(ByteBuffer buffer) {
+    try {
+      if (System.getProperty("java.specification.version").startsWith("1.")) {
+        /* Java 8: the buffer has a public cleaner in an internal class */
+        Method cleaner_method = buffer.getClass().getMethod("cleaner");
+        cleaner_method.setAccessible(true);
+        Object cleaner = cleaner_method.invoke(buffer);
+        if (cleaner != null) {
+          cleaner.getClass().getMethod("clean").invoke(cleaner);
+        }
+      } else {
+        /* Java 9 and later */
+        Class<?> unsafe_class = Class.forName("sun.misc.Unsafe");
+        Method invoke_cleaner =
+            unsafe_class.getMethod("invokeCleaner", ByteBuffer.class);
+        Field unsafe_field = unsafe_class.getDeclaredField("theUnsafe");
+        unsafe_field.setAccessible(true);
+        invoke_cleaner.invoke(unsafe_field.get(null), buffer);
+      }
+      return true;
+    } catch (ReflectiveOperationException | SecurityException e) {
+      if (!release_failure_reported) {
+        release_failure_reported = true;
+        System.err.println("The off-heap buffers cannot be released before "
+            + "they are garbage collected, their scratch files are deleted at "
+            + "exit: " + e);
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package engine.stateStorage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedList;
+
+/**
+ * A first in, first out queue of packed state vectors stored outside of the
+ * Java heap.
+ *
+ * @details
+ *          The vectors are written in a list of fixed size segments (see
+ *          {@link OffHeapLongArray}). A segment is released as soon as all its
+ *          vectors have been read, so the memory used is proportional to the
+ *          number of vectors in the queue.
+ */
+public class OffHeapStateFifo implements PackedStateQueueInterface {
+
+  private static final int SEGMENT_LONGS = 1 << 20;
+
+  private final int number_words;
+  private final File scratch_directory;
+  /** Number of vectors per segment. */
+  private final int segment_capacity;
+  private LinkedList<OffHeapLongArray> segments =
+      new LinkedList<OffHeapLongArray>();
+  /** Index of the next vector to read in the first segment. */
+  private int head = 0;
+  /** Index of the next vector to write in the last segment. */
+  private int tail = 0;
+  private long size = 0;
+
+  /**
+   * @param number_words
+   *          The number of longs of the vectors.
+   * @param scratch_directory
+   *          The directory where to create the scratch files. If null, direct
+   *          memory is used.
+   */
+  public OffHeapStateFifo(int number_words, File scratch_directory) {
+    this.number_words = number_words;
+    this.scratch_directory = scratch_directory;
+    segment_capacity = Math.max(1, SEGMENT_LONGS / number_words);
+  }
+
+  @Override
+  public void add(long[] vector) {
+    if (segments.isEmpty() || tail == segment_capacity) {
+      try {
+        segments.addLast(new OffHeapLongArray(
+            (long) segment_capacity * number_words, scratch_directory));
+      } catch (IOException e) {
+        throw new Error("Impossible to allocate a new segment of the "
+            + "off-heap queue in " + scratch_directory, e);
+      }
+      tail = 0;
+    }
+    OffHeapLongArray segment = segments.getLast();
+    long start = (long) tail * number_words;
+    for (int i = 0; i < number_words; i++) {
+      segment.set(start + i, vector[i]);
+    }
+    tail++;
+    size++;
+  }
+
+  @Override
+  public boolean poll(long[] vector) {
+    if (size == 0) {
+      return false;
+    }
+    OffHeapLongArray segment = segments.getFirst();
+    long start = (long) head * number_words;
+    for (int i = 0; i < number_words; i++) {
+      vector[i] = segment.get(start + i);
+    }
+    head++;
+    size--;
+
+    if (size == 0) {
+      /* We keep one segment to avoid reallocating it */
+      while (segments.size() > 1) {
+        segments.removeLast().close();
+      }
+      head = 0;
+      tail = 0;
+    } else if (head == segment_capacity) {
+      segments.removeFirst().close();
+      head = 0;
+    }
+    return true;
+  }
+
+  @Override
+  public long size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public void clear() {
+    close();
+    head = 0;
+    tail = 0;
+    size = 0;
+  }
+
+  /**
+   * Release all the segments and delete their scratch files.
+   */
+  public void close() {
+    for (OffHeapLongArray segment : segments) {
+      segment.close();
+    }
+    segments.clear();
+  }
+}
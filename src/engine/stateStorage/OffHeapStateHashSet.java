@@ -0,0 +1,219 @@
+package engine.stateStorage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An open addressing hash set of packed state vectors stored outside of the
+ * Java heap (see {@link OffHeapLongArray}).
+ *
+ * @details
+ *          It is organized as {@link PackedStateHashSet}: the vectors are
+ *          stored one after the other, a bitset records the occupied buckets,
+ *          collisions are resolved by linear probing and the table doubles its
+ *          size when it is more than 3/4 full.
+ *
+ *          When a scratch directory is given, the table is memory-mapped on a
+ *          scratch file and its size is only limited by the disk. Otherwise,
+ *          it is allocated in direct memory (see -XX:MaxDirectMemorySize).
+ *          In both cases, the stored states are not scanned by the garbage
+ *          collector.
+ */
+public class OffHeapStateHashSet implements PackedStateSetInterface {
+
+  private static final long DEFAULT_CAPACITY = 1 << 16;
+
+  private final int number_words;
+  private final File scratch_directory;
+  private OffHeapLongArray table;
+  private OffHeapLongArray occupied;
+  /** Number of buckets. Always a power of 2. */
+  private long capacity;
+  private long size = 0;
+
+  /**
+   * @param number_words
+   *          The number of longs of the vectors.
+   * @param scratch_directory
+   *          The directory where to create the scratch files. If null, direct
+   *          memory is used.
+   */
+  public OffHeapStateHashSet(int number_words, File scratch_directory) {
+    this(number_words, DEFAULT_CAPACITY, scratch_directory);
+  }
+
+  public OffHeapStateHashSet(int number_words, long initial_capacity,
+      File scratch_directory) {
+    if (number_words <= 0) {
+      throw new IllegalArgumentException("The vectors must have at least "
+          + "one word");
+    }
+    this.number_words = number_words;
+    this.scratch_directory = scratch_directory;
+    allocate(Math.max(64, Long.highestOneBit(initial_capacity - 1) << 1));
+  }
+
+  private void allocate(long new_capacity) {
+    try {
+      capacity = new_capacity;
+      table = new OffHeapLongArray(capacity * number_words, scratch_directory);
+      occupied = new OffHeapLongArray((capacity + 63) / 64, scratch_directory);
+    } catch (IOException e) {
+      throw new Error("Impossible to allocate the off-heap state set of "
+          + new_capacity + " buckets in " + scratch_directory, e);
+    }
+  }
+
+  private static boolean isOccupied(OffHeapLongArray occupied, long bucket) {
+    return (occupied.get(bucket >>> 6) & (1L << bucket)) != 0;
+  }
+
+  /**
+   * @return The bucket containing the vector, or -(bucket + 1) where bucket
+   *         is the first free bucket if the vector is not in the set.
+   */
+  private long find(long[] vector) {
+    long mask = capacity - 1;
+    long bucket = StateHashing.hash(vector, 0, number_words) & mask;
+    while (isOccupied(occupied, bucket)) {
+      if (equalsBucket(bucket, vector)) {
+        return bucket;
+      }
+      bucket = (bucket + 1) & mask;
+    }
+    return -(bucket + 1);
+  }
+
+  private boolean equalsBucket(long bucket, long[] vector) {
+    long start = bucket * number_words;
+    for (int i = 0; i < number_words; i++) {
+      if (table.get(start + i) != vector[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void store(long bucket, long[] vector) {
+    long start = bucket * number_words;
+    for (int i = 0; i < number_words; i++) {
+      table.set(start + i, vector[i]);
+    }
+    occupied.set(bucket >>> 6, occupied.get(bucket >>> 6) | (1L << bucket));
+  }
+
+  @Override
+  public boolean add(long[] vector) {
+    long bucket = find(vector);
+    if (bucket >= 0) {
+      return false;
+    }
+    if ((size + 1) * 4 > capacity * 3) {
+      grow();
+      bucket = find(vector);
+    }
+    store(-bucket - 1, vector);
+    size++;
+    return true;
+  }
+
+  private void grow() {
+    OffHeapLongArray old_table = table;
+    OffHeapLongArray old_occupied = occupied;
+    long old_capacity = capacity;
+    allocate(capacity * 2);
+
+    long[] vector = new long[number_words];
+    for (long bucket = 0; bucket < old_capacity; bucket++) {
+      if (isOccupied(old_occupied, bucket)) {
+        for (int i = 0; i < number_words; i++) {
+          vector[i] = old_table.get(bucket * number_words + i);
+        }
+        store(-find(vector) - 1, vector);
+      }
+    }
+    old_table.close();
+    old_occupied.close();
+  }
+
+  @Override
+  public boolean contains(long[] vector) {
+    return find(vector) >= 0;
+  }
+
+  @Override
+  public long size() {
+    return size;
+  }
+
+  @Override
+  public Iterator<long[]> iterator() {
+    return new Iterator<long[]>() {
+      private final long[] vector = new long[number_words];
+      private long bucket = nextOccupied(0);
+
+      private long nextOccupied(long from) {
+        while (from < capacity && !isOccupied(occupied, from)) {
+          from++;
+        }
+        return from;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return bucket < capacity;
+      }
+
+      @Override
+      public long[] next() {
+        if (bucket >= capacity) {
+          throw new NoSuchElementException();
+        }
+        for (int i = 0; i < number_words; i++) {
+          vector[i] = table.get(bucket * number_words + i);
+        }
+        bucket = nextOccupied(bucket + 1);
+        return vector;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  public void clear() {
+    occupied.clear();
+    size = 0;
+  }
+
+  /**
+   * Release the memory and delete the scratch files. The set must not be used
+   * anymore.
+   */
+  public void close() {
+    table.close();
+    occupied.close();
+  }
+
+  /**
+   * @return The number of bytes used by the set.
+   */
+  public long getMemoryUsage() {
+    return 8 * (table.length() + occupied.length());
+  }
+
+  @Override
+  public String getStatistics() {
+    return size + " vectors of " + number_words + " longs in " + capacity
+        + " off-heap buckets (load "
+        + String.format("%.2f", size / (double) capacity) + ", "
+        + getMemoryUsage() / (1024 * 1024) + " MB "
+        + (table.isMapped() ? "mapped in " + scratch_directory : "direct")
+        + ")";
+  }
+}
@@ -0,0 +1,110 @@
+package engine.stateStorage;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+
+import abstractGraph.AbstractGlobalState;
+import abstractGraph.AbstractState;
+import abstractGraph.AbstractStateMachine;
+import abstractGraph.AbstractTransition;
+
+/**
+ * A set of global states stored as packed vectors in a
+ * {@link PackedStateSetInterface}.
+ *
+ * @details
+ *          It lets the model checkers working on sets of global states use a
+ *          packed storage, and it is the view of the visited states of the
+ *          packed model checkers. The iterator decodes the vectors, so it
+ *          returns new global states equal to the stored ones. It is only
+ *          supported if the packed set keeps the vectors (see
+ *          {@link PackedStateSetInterface#iterator()}).
+ *
+ *          Every thread encodes the states in its own buffer, so the set is
+ *          thread safe if the underlying packed set is thread safe (see
+ *          {@link LockFreeStateHashSet}).
+ */
+public class PackedGlobalStateSet<GS extends AbstractGlobalState<M, S, T, ?>, M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>>
+    extends AbstractSet<GS> {
+
+  private final StateVectorCodec<GS, M, S, T> codec;
+  private final PackedStateSetInterface packed_states;
+  private final ThreadLocal<long[]> buffers = new ThreadLocal<long[]>() {
+    @Override
+    protected long[] initialValue() {
+      return new long[codec.getNumberWords()];
+    }
+  };
+
+  /**
+   * @param codec
+   *          The codec translating the states into vectors.
+   * @param packed_states
+   *          An empty set of vectors of codec.getNumberWords() longs.
+   */
+  public PackedGlobalStateSet(StateVectorCodec<GS, M, S, T> codec,
+      PackedStateSetInterface packed_states) {
+    this.codec = codec;
+    this.packed_states = packed_states;
+  }
+
+  @Override
+  public boolean add(GS state) {
+    long[] vector = buffers.get();
+    codec.encode(state, vector, 0);
+    return packed_states.add(vector);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public boolean contains(Object o) {
+    if (!(o instanceof AbstractGlobalState)) {
+      return false;
+    }
+    long[] vector = buffers.get();
+    codec.encode((GS) o, vector, 0);
+    return packed_states.contains(vector);
+  }
+
+  @Override
+  public int size() {
+    return (int) Math.min(Integer.MAX_VALUE, packed_states.size());
+  }
+
+  @Override
+  public void clear() {
+    packed_states.clear();
+  }
+
+  /**
+   * The set must not be modified during the iteration.
+   */
+  @Override
+  public Iterator<GS> iterator() {
+    final Iterator<long[]> vectors = packed_states.iterator();
+    return new Iterator<GS>() {
+      @Override
+      public boolean hasNext() {
+        return vectors.hasNext();
+      }
+
+      @Override
+      public GS next() {
+        return codec.decode(vectors.next());
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  public PackedStateSetInterface getPackedStates() {
+    return packed_states;
+  }
+
+  public StateVectorCodec<GS, M, S, T> getCodec() {
+    return codec;
+  }
+}
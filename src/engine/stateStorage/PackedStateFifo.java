@@ -0,0 +1,111 @@
+package engine.stateStorage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * An in-memory first in, first out queue of packed state vectors, stored in a
+ * circular array of longs that doubles its size when full.
+ */
+public class PackedStateFifo implements PackedStateQueueInterface {
+
+  private static final int DEFAULT_CAPACITY = 1 << 10;
+
+  private final int number_words;
+  private long[] buffer;
+  /** Capacity in vectors. */
+  private int capacity;
+  /** Index (in vectors) of the first vector. */
+  private int head = 0;
+  private int size = 0;
+
+  public PackedStateFifo(int number_words) {
+    this.number_words = number_words;
+    capacity = DEFAULT_CAPACITY;
+    buffer = new long[capacity * number_words];
+  }
+
+  @Override
+  public void add(long[] vector) {
+    if (size == capacity) {
+      grow();
+    }
+    int tail = (head + size) % capacity;
+    System.arraycopy(vector, 0, buffer, tail * number_words, number_words);
+    size++;
+  }
+
+  private void grow() {
+    if ((long) capacity * 2 * number_words > Integer.MAX_VALUE - 8) {
+      throw new OutOfMemoryError("The packed state queue cannot store more "
+          + "than " + capacity + " vectors of " + number_words + " longs.");
+    }
+    long[] new_buffer = new long[capacity * 2 * number_words];
+    int first_part = Math.min(size, capacity - head);
+    System.arraycopy(buffer, head * number_words, new_buffer, 0,
+        first_part * number_words);
+    System.arraycopy(buffer, 0, new_buffer, first_part * number_words,
+        (size - first_part) * number_words);
+    buffer = new_buffer;
+    capacity *= 2;
+    head = 0;
+  }
+
+  @Override
+  public boolean poll(long[] vector) {
+    if (size == 0) {
+      return false;
+    }
+    System.arraycopy(buffer, head * number_words, vector, 0, number_words);
+    head = (head + 1) % capacity;
+    size--;
+    return true;
+  }
+
+  @Override
+  public long size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public void clear() {
+    head = 0;
+    size = 0;
+  }
+
+  /**
+   * Write the number of vectors followed by the vectors, from the first to the
+   * last. The queue is not modified.
+   */
+  public void write(DataOutput output) throws IOException {
+    output.writeInt(size);
+    for (int n = 0; n < size; n++) {
+      int start = ((head + n) % capacity) * number_words;
+      for (int i = 0; i < number_words; i++) {
+        output.writeLong(buffer[start + i]);
+      }
+    }
+  }
+
+  /**
+   * Replace the content of the queue by vectors written by
+   * {@link #write(DataOutput)}.
+   */
+  public void read(DataInput input) throws IOException {
+    clear();
+    int number_vectors = input.readInt();
+    long[] vector = new long[number_words];
+    for (int n = 0; n < number_vectors; n++) {
+      for (int i = 0; i < number_words; i++) {
+        vector[i] = input.readLong();
+      }
+      add(vector);
+    }
+  }
+}
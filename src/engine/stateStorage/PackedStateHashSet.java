@@ -0,0 +1,237 @@
+package engine.stateStorage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An open addressing hash set of packed state vectors stored in a single flat
+ * array of longs.
+ *
+ * @details
+ *          The vectors are stored one after the other in `table`. A bitset
+ *          records the occupied buckets, so that the null vector can be
+ *          stored. Collisions are resolved by linear probing and the table
+ *          doubles its size when it is more than 3/4 full.
+ *
+ *          The memory used is about (number_words * 8 + 1/8) bytes per bucket,
+ *          with no object per vector.
+ */
+public class PackedStateHashSet implements PackedStateSetInterface {
+
+  private static final int DEFAULT_CAPACITY = 1 << 12;
+
+  private final int number_words;
+  /** The vectors, `number_words` longs per bucket. */
+  private long[] table;
+  /** The occupied buckets. */
+  private long[] occupied;
+  /** Number of buckets. Always a power of 2. */
+  private int capacity;
+  private int size = 0;
+
+  public PackedStateHashSet(int number_words) {
+    this(number_words, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param number_words
+   *          The number of longs of the vectors.
+   * @param initial_capacity
+   *          The initial number of buckets.
+   */
+  public PackedStateHashSet(int number_words, int initial_capacity) {
+    if (number_words <= 0) {
+      throw new IllegalArgumentException("The vectors must have at least "
+          + "one word");
+    }
+    this.number_words = number_words;
+    allocate(Math.max(16, Integer.highestOneBit(initial_capacity - 1) << 1));
+  }
+
+  private void allocate(int new_capacity) {
+    if ((long) new_capacity * number_words > Integer.MAX_VALUE - 8) {
+      throw new OutOfMemoryError("The packed state hash set cannot store "
+          + "more than " + capacity + " vectors of " + number_words
+          + " longs. Use an off-heap store instead.");
+    }
+    capacity = new_capacity;
+    table = new long[capacity * number_words];
+    occupied = new long[(capacity + 63) / 64];
+  }
+
+  private boolean isOccupied(int bucket) {
+    return (occupied[bucket >>> 6] & (1L << bucket)) != 0;
+  }
+
+  /**
+   * @return The bucket containing the vector, or -(bucket + 1) where bucket
+   *         is the first free bucket if the vector is not in the set.
+   */
+  private int find(long[] vector, int offset) {
+    int mask = capacity - 1;
+    int bucket = (int) StateHashing.hash(vector, offset, number_words) & mask;
+    while (isOccupied(bucket)) {
+      if (equalsBucket(bucket, vector, offset)) {
+        return bucket;
+      }
+      bucket = (bucket + 1) & mask;
+    }
+    return -(bucket + 1);
+  }
+
+  private boolean equalsBucket(int bucket, long[] vector, int offset) {
+    int start = bucket * number_words;
+    for (int i = 0; i < number_words; i++) {
+      if (table[start + i] != vector[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void store(int bucket, long[] vector, int offset) {
+    System.arraycopy(vector, offset, table, bucket * number_words,
+        number_words);
+    occupied[bucket >>> 6] |= 1L << bucket;
+  }
+
+  @Override
+  public boolean add(long[] vector) {
+    return add(vector, 0);
+  }
+
+  /**
+   * Add the vector stored in `vector` at the word `offset`.
+   *
+   * @return true if the vector was not already in the set.
+   */
+  public boolean add(long[] vector, int offset) {
+    int bucket = find(vector, offset);
+    if (bucket >= 0) {
+      return false;
+    }
+    if ((size + 1) * 4L > capacity * 3L) {
+      grow();
+      bucket = find(vector, offset);
+    }
+    store(-bucket - 1, vector, offset);
+    size++;
+    return true;
+  }
+
+  private void grow() {
+    long[] old_table = table;
+    long[] old_occupied = occupied;
+    int old_capacity = capacity;
+    allocate(capacity * 2);
+    for (int bucket = 0; bucket < old_capacity; bucket++) {
+      if ((old_occupied[bucket >>> 6] & (1L << bucket)) != 0) {
+        int new_bucket = find(old_table, bucket * number_words);
+        store(-new_bucket - 1, old_table, bucket * number_words);
+      }
+    }
+  }
+
+  @Override
+  public boolean contains(long[] vector) {
+    return find(vector, 0) >= 0;
+  }
+
+  @Override
+  public long size() {
+    return size;
+  }
+
+  @Override
+  public Iterator<long[]> iterator() {
+    return new Iterator<long[]>() {
+      private final long[] vector = new long[number_words];
+      private int bucket = nextOccupied(0);
+
+      private int nextOccupied(int from) {
+        while (from < capacity && !isOccupied(from)) {
+          from++;
+        }
+        return from;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return bucket < capacity;
+      }
+
+      @Override
+      public long[] next() {
+        if (bucket >= capacity) {
+          throw new NoSuchElementException();
+        }
+        System.arraycopy(table, bucket * number_words, vector, 0,
+            number_words);
+        bucket = nextOccupied(bucket + 1);
+        return vector;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(occupied, 0L);
+    size = 0;
+  }
+
+  /**
+   * Write the number of vectors followed by the vectors.
+   */
+  public void write(DataOutput output) throws IOException {
+    output.writeInt(size);
+    for (int bucket = 0; bucket < capacity; bucket++) {
+      if (isOccupied(bucket)) {
+        int start = bucket * number_words;
+        for (int i = 0; i < number_words; i++) {
+          output.writeLong(table[start + i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Replace the content of the set by vectors written by
+   * {@link #write(DataOutput)}.
+   */
+  public void read(DataInput input) throws IOException {
+    int number_vectors = input.readInt();
+    allocate(Math.max(16,
+        Integer.highestOneBit((int) (number_vectors * 4L / 3)) << 1));
+    size = 0;
+    long[] vector = new long[number_words];
+    for (int n = 0; n < number_vectors; n++) {
+      for (int i = 0; i < number_words; i++) {
+        vector[i] = input.readLong();
+      }
+      add(vector, 0);
+    }
+  }
+
+  /**
+   * @return The number of bytes used by the arrays of the set.
+   */
+  public long getMemoryUsage() {
+    return 8L * (table.length + occupied.length);
+  }
+
+  @Override
+  public String getStatistics() {
+    return size + " vectors of " + number_words + " longs in " + capacity
+        + " buckets (load " + String.format("%.2f", size / (double) capacity)
+        + ", " + getMemoryUsage() / (1024 * 1024) + " MB)";
+  }
+}
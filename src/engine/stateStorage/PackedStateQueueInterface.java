@@ -0,0 +1,37 @@
+package engine.stateStorage;
+
+/**
+ * A first in, first out queue of packed state vectors (see
+ * {@link StateVectorCodec}).
+ * All the vectors of a queue have the same number of words.
+ */
+public interface PackedStateQueueInterface {
+
+  /**
+   * Add a copy of `vector` at the end of the queue.
+   * 
+   * @param vector
+   */
+  public void add(long[] vector);
+
+  /**
+   * Remove the first vector of the queue and copy it into `vector`.
+   * 
+   * @param vector
+   *          The array receiving the vector.
+   * @return false if the queue was empty.
+   */
+  public boolean poll(long[] vector);
+
+  /**
+   * @return The number of vectors in the queue.
+   */
+  public long size();
+
+  public boolean isEmpty();
+
+  /**
+   * Remove all the vectors of the queue.
+   */
+  public void clear();
+}
@@ -0,0 +1,50 @@
+package engine.stateStorage;
+
+import java.util.Iterator;
+
+/**
+ * A set of packed state vectors (see {@link StateVectorCodec}).
+ * All the vectors of a set have the same number of words.
+ */
+public interface PackedStateSetInterface {
+
+  /**
+   * Add `vector` in the set. The array is not kept by the set.
+   * 
+   * @param vector
+   * @return true if the vector was not already in the set.
+   */
+  public boolean add(long[] vector);
+
+  /**
+   * @param vector
+   * @return true if the vector is in the set.
+   */
+  public boolean contains(long[] vector);
+
+  /**
+   * @return The number of vectors in the set.
+   */
+  public long size();
+
+  /**
+   * @return An iterator over the vectors of the set. The array returned by
+   *         next() is reused by the iterator. The set must not be modified
+   *         during the iteration.
+   * @throws UnsupportedOperationException
+   *           if the set only keeps hashes of the vectors (see
+   *           {@link BitStateSet} and {@link FingerprintStateSet}).
+   */
+  public Iterator<long[]> iterator();
+
+  /**
+   * Remove all the vectors of the set.
+   */
+  public void clear();
+
+  /**
+   * @return A human readable description of the occupancy and of the memory
+   *         used by the set.
+   */
+  public String getStatistics();
+}
@@ -0,0 +1,64 @@
+package engine.stateStorage;
+
+/**
+ * Hash functions over packed state vectors.
+ *
+ * @details
+ *          The functions mix all the bits of the vector so that the low bits
+ *          of the result can directly be used as an index in an open
+ *          addressing table, and the high bits as a fingerprint.
+ */
+public class StateHashing {
+
+  private static final long SEED = 0x9E3779B97F4A7C15L;
+  private static final long SECOND_SEED = 0xC2B2AE3D27D4EB4FL;
+
+  /**
+   * The finalizer of MurmurHash3. Every bit of the input affects every bit of
+   * the output.
+   */
+  public static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xFF51AFD7ED558CCDL;
+    value ^= value >>> 33;
+    value *= 0xC4CEB9FE1A85EC53L;
+    value ^= value >>> 33;
+    return value;
+  }
+
+  /**
+   * @param vector
+   *          The array containing the vector.
+   * @param offset
+   *          The index of the first word of the vector.
+   * @param number_words
+   *          The length of the vector.
+   * @return A 64 bits hash of the vector.
+   */
+  public static long hash(long[] vector, int offset, int number_words) {
+    return hash(vector, offset, number_words, SEED);
+  }
+
+  /**
+   * @return A second 64 bits hash of the vector, independent from
+   *         {@link #hash(long[], int, int)}.
+   */
+  public static long secondHash(long[] vector, int offset, int number_words) {
+    return hash(vector, offset, number_words, SECOND_SEED);
+  }
+
+  public static long hash(long[] vector) {
+    return hash(vector, 0, vector.length);
+  }
+
+  private static long hash(long[] vector, int offset, int number_words,
+      long seed) {
+    long result = seed ^ (number_words * 0x9E3779B97F4A7C15L);
+    for (int i = offset; i < offset + number_words; i++) {
+      result ^= mix(vector[i] + seed);
+      result = Long.rotateLeft(result, 27) * 0x9E3779B97F4A7C15L
+          + 0x52DCE729L;
+    }
+    return mix(result);
+  }
+}
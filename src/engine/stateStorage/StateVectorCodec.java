@@ -0,0 +1,524 @@
+package engine.stateStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map.Entry;
+
+import abstractGraph.AbstractGlobalState;
+import abstractGraph.AbstractModel;
+import abstractGraph.AbstractState;
+import abstractGraph.AbstractStateMachine;
+import abstractGraph.AbstractTransition;
+import abstractGraph.conditions.BooleanVariable;
+import abstractGraph.conditions.EnumeratedVariable;
+import abstractGraph.conditions.valuation.AbstractValuation;
+import abstractGraph.conditions.valuation.Valuation;
+import engine.GraphSimulatorInterface;
+
+/**
+ * Translation between the global states of a simulator and fixed width packed
+ * vectors of longs.
+ *
+ * @details
+ *          The layout is derived from the functional and proof models of the
+ *          simulator. The vector is made of one slot per state machine, one
+ *          slot per variable and one bit per flag (legal, safe, not P7).
+ *          A slot whose value can take `n` different values uses exactly
+ *          ceil(log2(n)) bits. Slots may overlap two longs.
+ *
+ *          - A state machine slot contains 0 if the machine has no current
+ *          state, and i+1 if the current state is the i-th state of the
+ *          machine.
+ *          - For a {@link Valuation}, a boolean variable can be undefined.
+ *          Its slot contains 0 (undefined), 1 (false) or 2 (true).
+ *          - For other valuations, a boolean variable slot contains its byte
+ *          value (0 or 1), and an enumerated variable slot contains its byte
+ *          value + 128 (enumerations start at -128).
+ *
+ *          The machine slots are ordered by unique identifier. The
+ *          identifiers only need to be distinct: the models sliced by a
+ *          {@link engine.ConeOfInfluence} keep the identifiers of the
+ *          original models.
+ *
+ *          Decoding a vector clones a prototype global state, so that the
+ *          result has the same class as the global states of the simulator.
+ *          The machines and the variables that are not in the models keep
+ *          their value in the prototype.
+ *
+ *          The codec is not modified after its construction and has no
+ *          internal buffer: the callers give the vectors to encode into and
+ *          to decode. It can be shared by several threads as long as each
+ *          thread uses its own vectors (see {@link PackedGlobalStateSet}).
+ */
+public class StateVectorCodec<GS extends AbstractGlobalState<M, S, T, ?>, M extends AbstractStateMachine<S, T>, S extends AbstractState<T>, T extends AbstractTransition<S>> {
+
+  /** Number of bits used by the legal, safe and not P7 flags. */
+  private static final int NUMBER_FLAGS = 3;
+
+  /** The global state cloned when decoding. */
+  private GS prototype;
+
+  /** True if the valuation is a {@link Valuation} (undefined booleans). */
+  private boolean has_undefined_booleans;
+
+  /** The state machines, in the order of their slots. */
+  private ArrayList<M> machines = new ArrayList<M>();
+  /** For every machine slot, the states by their code - 1. */
+  private ArrayList<ArrayList<S>> states = new ArrayList<ArrayList<S>>();
+  /** For every machine slot, the code + 1 of the states. */
+  private ArrayList<IdentityHashMap<S, Integer>> state_codes =
+      new ArrayList<IdentityHashMap<S, Integer>>();
+
+  /** The variables, in the order of their slots. */
+  private ArrayList<EnumeratedVariable> variables =
+      new ArrayList<EnumeratedVariable>();
+  /** The index in `variables` of all the variables. */
+  private HashMap<EnumeratedVariable, Integer> variable_indexes =
+      new HashMap<EnumeratedVariable, Integer>();
+  /** The byte value encoded by 0 for every variable. */
+  private int[] variable_base;
+
+  /** For every slot, its first bit, its width in bits and its domain. */
+  private int[] slot_offset;
+  private int[] slot_width;
+  private int[] slot_domain;
+  private int number_bits;
+  private int number_words;
+
+  /**
+   * @param simulator
+   *          The simulator whose global states will be encoded.
+   * @param prototype
+   *          A global state of the simulator. It is cloned to create the
+   *          decoded global states.
+   */
+  public StateVectorCodec(GraphSimulatorInterface<GS, M, S, T> simulator,
+      GS prototype) {
+    this(simulator.getModel(), simulator.getProof(), prototype);
+  }
+
+  /**
+   * @param model
+   *          The functional model.
+   * @param proof
+   *          The proof model (can be null).
+   * @param prototype
+   *          A global state of the models. It is cloned to create the decoded
+   *          global states.
+   */
+  @SuppressWarnings("unchecked")
+  public StateVectorCodec(AbstractModel<M, S, T> model,
+      AbstractModel<M, S, T> proof, GS prototype) {
+    if (prototype == null) {
+      throw new IllegalArgumentException(
+          "A prototype global state is required to build the codec");
+    }
+    this.prototype = (GS) prototype.clone();
+    AbstractValuation valuation = prototype.getValuation();
+    has_undefined_booleans = valuation instanceof Valuation;
+
+    /* The state machines, ordered by their unique identifier */
+    ArrayList<M> all_machines = new ArrayList<M>();
+    for (M machine : model) {
+      all_machines.add(machine);
+    }
+    if (proof != null) {
+      for (M machine : proof) {
+        all_machines.add(machine);
+      }
+    }
+    /*
+     * The identifiers are not always 0..n-1: the models sliced by a
+     * ConeOfInfluence keep the identifiers of the original models.
+     */
+    M[] ordered = all_machines.toArray(
+        (M[]) new AbstractStateMachine[all_machines.size()]);
+    Arrays.sort(ordered, new Comparator<M>() {
+      @Override
+      public int compare(M machine1, M machine2) {
+        return Integer.compare(machine1.getUniqueIdentifier(),
+            machine2.getUniqueIdentifier());
+      }
+    });
+    for (int i = 1; i < ordered.length; i++) {
+      if (ordered[i].getUniqueIdentifier() == ordered[i - 1]
+          .getUniqueIdentifier()) {
+        throw new Error("The state machines " + ordered[i - 1].getName()
+            + " and " + ordered[i].getName() + " have the same identifier "
+            + ordered[i].getUniqueIdentifier());
+      }
+    }
+    for (M machine : ordered) {
+      ArrayList<S> machine_states = new ArrayList<S>();
+      IdentityHashMap<S, Integer> codes = new IdentityHashMap<S, Integer>();
+      for (S state : machine) {
+        machine_states.add(state);
+        codes.put(state, machine_states.size());
+      }
+      machines.add(machine);
+      states.add(machine_states);
+      state_codes.add(codes);
+    }
+
+    /* The variables of both models, plus the ones set in the prototype */
+    LinkedHashSet<EnumeratedVariable> all_variables =
+        new LinkedHashSet<EnumeratedVariable>();
+    all_variables.addAll(model.getExistingVariables());
+    if (proof != null) {
+      all_variables.addAll(proof.getExistingVariables());
+    }
+    if (has_undefined_booleans) {
+      for (Entry<BooleanVariable, Boolean> entry : ((Valuation) valuation)
+          .getSetVariables()) {
+        all_variables.add(entry.getKey());
+      }
+    }
+    variables.addAll(all_variables);
+
+    /* Computation of the layout */
+    int number_slots = machines.size() + variables.size() + NUMBER_FLAGS;
+    slot_offset = new int[number_slots];
+    slot_width = new int[number_slots];
+    slot_domain = new int[number_slots];
+    variable_base = new int[variables.size()];
+    int slot = 0;
+    for (ArrayList<S> machine_states : states) {
+      addSlot(slot++, machine_states.size() + 1);
+    }
+    for (int i = 0; i < variables.size(); i++) {
+      EnumeratedVariable variable = variables.get(i);
+      variable_indexes.put(variable, i);
+      if (has_undefined_booleans) {
+        if (!(variable instanceof BooleanVariable)) {
+          throw new Error("The variable " + variable
+              + " must be a boolean variable to be in a Valuation");
+        }
+        addSlot(slot++, 3);
+      } else if (variable instanceof BooleanVariable) {
+        variable_base[i] = 0;
+        addSlot(slot++, 2);
+      } else {
+        variable_base[i] = -128;
+        addSlot(slot++, variable.getEnumeration().size());
+      }
+    }
+    for (int i = 0; i < NUMBER_FLAGS; i++) {
+      addSlot(slot++, 2);
+    }
+    number_words = Math.max(1, (number_bits + 63) / 64);
+  }
+
+  private void addSlot(int slot, int domain_size) {
+    int width = 0;
+    while ((1L << width) < domain_size) {
+      width++;
+    }
+    slot_offset[slot] = number_bits;
+    slot_width[slot] = width;
+    slot_domain[slot] = domain_size;
+    number_bits += width;
+  }
+
+  /**
+   * @return The number of longs of an encoded vector.
+   */
+  public int getNumberWords() {
+    return number_words;
+  }
+
+  /**
+   * @return The number of significant bits of an encoded vector.
+   */
+  public int getNumberBits() {
+    return number_bits;
+  }
+
+  /**
+   * @return The variables encoded, in the order of their slots.
+   */
+  public ArrayList<EnumeratedVariable> getVariables() {
+    return variables;
+  }
+
+  /**
+   * @return The state machines encoded, in the order of their slots.
+   */
+  public ArrayList<M> getStateMachines() {
+    return machines;
+  }
+
+  /**
+   * @return The number of slots: the state machines, then the variables,
+   *         then the legal, safe and not P7 flags.
+   */
+  public int getNumberSlots() {
+    return slot_offset.length;
+  }
+
+  /**
+   * @return The slot of a state machine.
+   */
+  public int getSlot(M machine) {
+    int slot = machines.indexOf(machine);
+    if (slot == -1) {
+      throw new IllegalArgumentException("The state machine "
+          + machine.getName() + " is not known by the state vector codec");
+    }
+    return slot;
+  }
+
+  /**
+   * @return The slot of a variable.
+   */
+  public int getSlot(EnumeratedVariable variable) {
+    Integer index = variable_indexes.get(variable);
+    if (index == null) {
+      throw new IllegalArgumentException("The variable " + variable
+          + " is not known by the state vector codec");
+    }
+    return machines.size() + index;
+  }
+
+  /**
+   * @return true if `variable` has a slot in the vectors.
+   */
+  public boolean hasSlot(EnumeratedVariable variable) {
+    return variable_indexes.containsKey(variable);
+  }
+
+  /**
+   * @return The slot of the legal flag. The safe and not P7 flags follow it.
+   */
+  public int getFlagsSlot() {
+    return machines.size() + variables.size();
+  }
+
+  /**
+   * @return The first bit of the slot in the vector.
+   */
+  public int getSlotOffset(int slot) {
+    return slot_offset[slot];
+  }
+
+  public int getSlotWidth(int slot) {
+    return slot_width[slot];
+  }
+
+  /**
+   * @return The number of values that the slot can contain: they are 0 to
+   *         the domain - 1.
+   */
+  public int getSlotDomain(int slot) {
+    return slot_domain[slot];
+  }
+
+  /**
+   * @return The value of the slot of `state` in the state machine slot
+   *         `slot`.
+   */
+  public int getStateCode(int slot, S state) {
+    Integer code = state_codes.get(slot).get(state);
+    if (code == null) {
+      throw new IllegalArgumentException("The state " + state.getId()
+          + " does not belong to " + machines.get(slot).getName());
+    }
+    return code;
+  }
+
+  /**
+   * @return The value of a slot of a vector starting at the word 0.
+   */
+  public long readSlot(long[] vector, int slot) {
+    return read(vector, 0, slot);
+  }
+
+  /**
+   * Replace the value of a slot of a vector starting at the word 0.
+   */
+  public void writeSlot(long[] vector, int slot, long value) {
+    int width = slot_width[slot];
+    if (width == 0) {
+      return;
+    }
+    long mask = (1L << width) - 1;
+    int bit = slot_offset[slot];
+    int shift = bit & 63;
+    vector[bit >>> 6] &= ~(mask << shift);
+    if (shift + width > 64) {
+      vector[(bit >>> 6) + 1] &= ~(mask >>> (64 - shift));
+    }
+    write(vector, 0, slot, value & mask);
+  }
+
+  public long[] encode(GS state) {
+    long[] result = new long[number_words];
+    encode(state, result, 0);
+    return result;
+  }
+
+  /**
+   * Write the vector of `state` into `vector`, starting at the word `offset`.
+   */
+  public void encode(GS state, long[] vector, int offset) {
+    Arrays.fill(vector, offset, offset + number_words, 0L);
+    int slot = 0;
+
+    for (int i = 0; i < machines.size(); i++) {
+      S current = state.getState(machines.get(i));
+      int code = 0;
+      if (current != null) {
+        Integer state_code = state_codes.get(i).get(current);
+        if (state_code == null) {
+          throw new Error("The state " + current.getId()
+              + " does not belong to " + machines.get(i).getName());
+        }
+        code = state_code;
+      }
+      write(vector, offset, slot++, code);
+    }
+
+    AbstractValuation valuation = state.getValuation();
+    if (has_undefined_booleans) {
+      /* Only the defined variables are stored in a Valuation */
+      for (Entry<BooleanVariable, Boolean> entry : ((Valuation) valuation)
+          .getSetVariables()) {
+        Integer index = variable_indexes.get(entry.getKey());
+        if (index == null) {
+          throw new Error("The variable " + entry.getKey()
+              + " is not known by the state vector codec");
+        }
+        write(vector, offset, slot + index, entry.getValue() ? 2 : 1);
+      }
+    } else {
+      for (int i = 0; i < variables.size(); i++) {
+        int code = valuation.getValue(variables.get(i)) - variable_base[i];
+        if (code < 0 || code >= (1 << slot_width[slot + i])) {
+          throw new Error("The value " + (code + variable_base[i])
+              + " is out of the domain of " + variables.get(i));
+        }
+        write(vector, offset, slot + i, code);
+      }
+    }
+    slot += variables.size();
+
+    write(vector, offset, slot++, state.isLegal() ? 1 : 0);
+    write(vector, offset, slot++, state.isSafe() ? 1 : 0);
+    write(vector, offset, slot++, state.isNotP7() ? 1 : 0);
+  }
+
+  public GS decode(long[] vector) {
+    return decode(vector, 0);
+  }
+
+  /**
+   * @return A new global state equal to the one that has been encoded into
+   *         `vector` at the word `offset`.
+   */
+  @SuppressWarnings("unchecked")
+  public GS decode(long[] vector, int offset) {
+    GS result = (GS) prototype.clone();
+    int slot = 0;
+
+    for (int i = 0; i < machines.size(); i++) {
+      int code = (int) read(vector, offset, slot++);
+      S current = null;
+      if (code != 0) {
+        current = states.get(i).get(code - 1);
+      }
+      result.setState(machines.get(i), current);
+    }
+
+    AbstractValuation valuation = result.getValuation();
+    if (has_undefined_booleans) {
+      Valuation boolean_valuation = (Valuation) valuation;
+      boolean_valuation.clear();
+      for (int i = 0; i < variables.size(); i++) {
+        long code = read(vector, offset, slot + i);
+        if (code != 0) {
+          boolean_valuation.setValue((BooleanVariable) variables.get(i),
+              code == 2);
+        }
+      }
+    } else {
+      for (int i = 0; i < variables.size(); i++) {
+        long code = read(vector, offset, slot + i);
+        valuation.setValue(variables.get(i),
+            (byte) (code + variable_base[i]));
+      }
+    }
+    slot += variables.size();
+
+    result.setIsLegal(read(vector, offset, slot++) == 1);
+    result.setIsSafe(read(vector, offset, slot++) == 1);
+    result.setNotP7(read(vector, offset, slot++) == 1);
+    return result;
+  }
+
+  private void write(long[] vector, int offset, int slot, long value) {
+    int width = slot_width[slot];
+    if (width == 0) {
+      return;
+    }
+    int bit = slot_offset[slot];
+    int word = offset + (bit >>> 6);
+    int shift = bit & 63;
+    vector[word] |= value << shift;
+    if (shift + width > 64) {
+      vector[word + 1] |= value >>> (64 - shift);
+    }
+  }
+
+  private long read(long[] vector, int offset, int slot) {
+    int width = slot_width[slot];
+    if (width == 0) {
+      return 0;
+    }
+    int bit = slot_offset[slot];
+    int word = offset + (bit >>> 6);
+    int shift = bit & 63;
+    long value = vector[word] >>> shift;
+    if (shift + width > 64) {
+      value |= vector[word + 1] << (64 - shift);
+    }
+    return value & ((1L << width) - 1);
+  }
+
+  /**
+   * @return A 64 bits hash of the layout and of the models it is built from:
+   *         the names of the state machines and of their states, in the order
+   *         of their codes, and the names and domains of the variables. Two
+   *         codecs with the same fingerprint encode the same global states
+   *         into the same vectors.
+   */
+  public long getModelFingerprint() {
+    long fingerprint = StateHashing.mix(number_bits);
+    for (int i = 0; i < machines.size(); i++) {
+      fingerprint = combine(fingerprint, machines.get(i).getName().hashCode());
+      for (S state : states.get(i)) {
+        fingerprint = combine(fingerprint, state.getId().hashCode());
+      }
+    }
+    for (EnumeratedVariable variable : variables) {
+      fingerprint = combine(fingerprint, variable.getVarname().hashCode());
+    }
+    for (int domain : slot_domain) {
+      fingerprint = combine(fingerprint, domain);
+    }
+    return fingerprint;
+  }
+
+  private static long combine(long fingerprint, int value) {
+    return StateHashing.mix(fingerprint * 0x9E3779B97F4A7C15L + value);
+  }
+
+  @Override
+  public String toString() {
+    return machines.size() + " state machines and " + variables.size()
+        + " variables packed in " + number_bits + " bits (" + number_words
+        + " longs)";
+  }
+}
@@ -0,0 +1,192 @@
+package engine.stateStorage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+
+import abstractGraph.events.ExternalEvent;
+
+/**
+ * The exploration tree of a model checker, stored in primitive arrays.
+ *
+ * @details
+ *          Every discovered state receives an identifier, in the order of
+ *          discovery. For every identifier, the store records the identifier
+ *          of the state from which it has been discovered (-1 for an initial
+ *          state) and the external event executed on it.
+ *
+ *          The events are interned: an event costs a short per state. A state
+ *          costs 6 bytes, instead of keeping the global state of its parent
+ *          alive. The trace of a state is the sequence of the events from its
+ *          initial state, and the global states can be computed again by
+ *          replaying it in the simulator.
+ */
+public class TraceStore {
+
+  private static final int DEFAULT_CAPACITY = 1 << 10;
+
+  private int[] parent_indexes = new int[DEFAULT_CAPACITY];
+  private short[] event_ids = new short[DEFAULT_CAPACITY];
+  private int size = 0;
+
+  private ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>();
+  private HashMap<ExternalEvent, Short> event_indexes =
+      new HashMap<ExternalEvent, Short>();
+
+  /**
+   * Record a new state.
+   *
+   * @param parent_index
+   *          The identifier of the state from which it has been discovered, or
+   *          -1 for an initial state.
+   * @param event
+   *          The event executed on the parent. Null for an initial state.
+   * @return The identifier of the new state.
+   */
+  public int add(int parent_index, ExternalEvent event) {
+    return add(parent_index, event == null ? -1 : getEventId(event));
+  }
+
+  /**
+   * Record a new state whose event has been interned by
+   * {@link #getEventId(ExternalEvent)}.
+   *
+   * @param event_id
+   *          The identifier of the event executed on the parent. -1 for an
+   *          initial state.
+   * @return The identifier of the new state.
+   */
+  public int add(int parent_index, short event_id) {
+    if (size == parent_indexes.length) {
+      if (size == Integer.MAX_VALUE - 8) {
+        throw new OutOfMemoryError("The trace store cannot record more than "
+            + size + " states");
+      }
+      int new_capacity = (int) Math.min(Integer.MAX_VALUE - 8, 2L * size);
+      parent_indexes = Arrays.copyOf(parent_indexes, new_capacity);
+      event_ids = Arrays.copyOf(event_ids, new_capacity);
+    }
+    parent_indexes[size] = parent_index;
+    event_ids[size] = event_id;
+    return size++;
+  }
+
+  /**
+   * @return The identifier of `event` in the store. The events are interned:
+   *         equal events have the same identifier.
+   */
+  public short getEventId(ExternalEvent event) {
+    Short id = event_indexes.get(event);
+    if (id == null) {
+      if (events.size() > Short.MAX_VALUE) {
+        throw new Error("The trace store cannot record more than "
+            + Short.MAX_VALUE + " different external events");
+      }
+      id = (short) events.size();
+      events.add(event);
+      event_indexes.put(event, id);
+    }
+    return id;
+  }
+
+  /**
+   * @return The identifier of the parent of the state `index`, -1 for an
+   *         initial state.
+   */
+  public int getParent(int index) {
+    return parent_indexes[index];
+  }
+
+  /**
+   * @return The event executed to discover the state `index`. Null for an
+   *         initial state.
+   */
+  public ExternalEvent getEvent(int index) {
+    short id = event_ids[index];
+    return id < 0 ? null : events.get(id);
+  }
+
+  /**
+   * @return The identifier of the initial state from which the state `index`
+   *         has been discovered.
+   */
+  public int getRoot(int index) {
+    while (parent_indexes[index] >= 0) {
+      index = parent_indexes[index];
+    }
+    return index;
+  }
+
+  /**
+   * @return The events leading from the initial state of the state `index` to
+   *         it.
+   */
+  public LinkedList<ExternalEvent> getTrace(int index) {
+    LinkedList<ExternalEvent> result = new LinkedList<ExternalEvent>();
+    while (parent_indexes[index] >= 0) {
+      result.addFirst(getEvent(index));
+      index = parent_indexes[index];
+    }
+    return result;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void clear() {
+    parent_indexes = new int[DEFAULT_CAPACITY];
+    event_ids = new short[DEFAULT_CAPACITY];
+    size = 0;
+    events.clear();
+    event_indexes.clear();
+  }
+
+  /**
+   * Write the names of the events followed by the parent and the event of
+   * every state.
+   */
+  public void write(DataOutput output) throws IOException {
+    output.writeInt(events.size());
+    for (ExternalEvent event : events) {
+      output.writeUTF(event.getName());
+    }
+    output.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      output.writeInt(parent_indexes[i]);
+      output.writeShort(event_ids[i]);
+    }
+  }
+
+  /**
+   * Replace the content of the store by a tree written by
+   * {@link #write(DataOutput)}.
+   */
+  public void read(DataInput input) throws IOException {
+    events.clear();
+    event_indexes.clear();
+    int number_events = input.readInt();
+    for (int i = 0; i < number_events; i++) {
+      getEventId(new ExternalEvent(input.readUTF()));
+    }
+    size = input.readInt();
+    int capacity = Math.max(DEFAULT_CAPACITY, size);
+    parent_indexes = new int[capacity];
+    event_ids = new short[capacity];
+    for (int i = 0; i < size; i++) {
+      parent_indexes[i] = input.readInt();
+      event_ids[i] = input.readShort();
+    }
+  }
+
+  /**
+   * @return The number of bytes used by the arrays.
+   */
+  public long getMemoryUsage() {
+    return 6L * parent_indexes.length;
+  }
+}
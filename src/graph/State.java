@@ -4,7 +4,6 @@ import java.util.Iterator;
 import java.util.LinkedList;
 
 import abstractGraph.AbstractState;
-import abstractGraph.events.SingleEvent;
 
 public class State extends AbstractState<Transition> {
   LinkedList<Transition> transitions;
@@ -17,6 +16,7 @@ public class State extends AbstractState<Transition> {
   @Override
   public void addTransition(Transition t) {
     transitions.add(t);
+    invalidateTransitionIndex();
   }
 
   @Override
@@ -24,18 +24,6 @@ public class State extends AbstractState<Transition> {
     return transitions.iterator();
   }
 
-  @Override
-  public Iterator<Transition> iteratorTransitions(SingleEvent event) {
-    LinkedList<Transition> transition_event = new LinkedList<>();
-    for (Transition transition : transitions) {
-
-      if (transition.getEvents().containsEvent(event)) {
-        transition_event.add(transition);
-      }
-    }
-    return transition_event.iterator();
-  }
-
   @Override
   public boolean equals(Object obj) {
     State s2 = (State) obj;
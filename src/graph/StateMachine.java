@@ -110,10 +110,8 @@ public class StateMachine extends AbstractStateMachine<State, Transition> {
     LinkedList<Transition> transition = new LinkedList<Transition>();
 
     for (State state : states.values()) {
-
-      Iterator<Transition> transition_iterator = state.iteratorTransitions(E);
-      while (transition_iterator.hasNext()) {
-        transition.add(transition_iterator.next());
+      for (Transition state_transition : state.getTransitions(E)) {
+        transition.add(state_transition);
       }
     }
     return transition;
@@ -23,7 +23,7 @@ public class Transition extends AbstractTransition<State> {
     if (condition == null) {
       return true;
     }
-    return condition.eval(global_state.getValuation());
+    return getCompiledCondition().eval(global_state.getValuation());
   }
 
   @Override
@@ -5,11 +5,15 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.HashSet;
+import java.util.Iterator;
+
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import abstractGraph.conditions.AndFormula;
+import abstractGraph.conditions.CompiledFormula;
 import abstractGraph.conditions.Formula;
 import abstractGraph.conditions.FormulaFactory;
 import abstractGraph.conditions.NotFormula;
@@ -19,6 +23,13 @@ import abstractGraph.conditions.cnf.CNFFormula;
 import abstractGraph.conditions.parser.BooleanExpressionFactory;
 import abstractGraph.conditions.valuation.AbstractValuation;
 import abstractGraph.conditions.valuation.Valuation;
+import abstractGraph.events.Actions;
+import abstractGraph.events.Events;
+import abstractGraph.events.ExternalEvent;
+import abstractGraph.events.SingleEvent;
+import graph.GlobalState;
+import graph.State;
+import graph.StateMachine;
 
 /**
  * Testing of the main functions of the abstractGraph.conditions package:
@@ -313,6 +324,84 @@ public class AbstractGraph_Conditions_PackageTesting {
 
   }
 
+  /**
+   * A {@link CompiledFormula} must give the same result as its formula for
+   * every valuation.
+   */
+  @Test
+  public void compiledFormulaTesting() {
+    FormulaFactory f = new BooleanExpressionFactory(false);
+    String[] inputs = { "A", "!A", "A & B", "A | B & C", "!(A | !B) | C & !A",
+        "(A | B) & (!C | A) & !(B & C)" };
+    for (String input : inputs) {
+      Formula formula = f.parse(build(input));
+      CompiledFormula compiled = CompiledFormula.compile(formula);
+      for (int i = 0; i < 8; i++) {
+        Valuation valuation = new Valuation();
+        valuation.setValue(f.getVariable("A"), (i & 1) != 0);
+        valuation.setValue(f.getVariable("B"), (i & 2) != 0);
+        valuation.setValue(f.getVariable("C"), (i & 4) != 0);
+        assertEquals(input, formula.eval(valuation), compiled.eval(valuation));
+      }
+    }
+    assertTrue(CompiledFormula.compile(null).eval(new Valuation()));
+  }
+
+  /**
+   * The incremental hash of a {@link Valuation} must only depend on its
+   * content, and not on the order of the modifications.
+   */
+  @Test
+  public void valuationHashTesting() {
+    FormulaFactory f = new BooleanExpressionFactory(false);
+    f.parse(build("A & B & C"));
+    BooleanVariable A = f.getVariable("A");
+    BooleanVariable B = f.getVariable("B");
+    BooleanVariable C = f.getVariable("C");
+
+    Valuation v1 = new Valuation();
+    v1.setValue(A, true);
+    v1.setValue(B, false);
+    v1.setValue(C, true);
+    v1.remove(C);
+    v1.setValue(B, true);
+
+    Valuation v2 = new Valuation();
+    v2.setValue(B, true);
+    v2.setValue(A, true);
+
+    assertTrue(v1.equals(v2));
+    assertEquals(v1.hashCode(), v2.hashCode());
+    assertEquals(v1.hashCode(), v1.clone().hashCode());
+
+    v2.clear();
+    assertEquals(new Valuation().hashCode(), v2.hashCode());
+  }
+
+  @Test
+  public void globalStateHashTesting() {
+    StateMachine machine = new StateMachine("M", 0);
+    State s0 = machine.addState("0");
+    State s1 = machine.addState("1");
+
+    GlobalState g1 = new GlobalState(1);
+    g1.setState(machine, s0);
+    int hash = g1.hashCode();
+
+    /* The hash of a state must not depend on its transitions */
+    Events events = new Events();
+    events.addEvent(new ExternalEvent("E"));
+    machine.addTransition(s0, s1, events, Formula.TRUE, new Actions());
+    GlobalState g2 = new GlobalState(1);
+    g2.setState(machine, s0);
+    assertEquals(hash, g2.hashCode());
+    assertEquals(g1, g2);
+
+    g2.setState(machine, s1);
+    g2.setState(machine, s0);
+    assertEquals(hash, g2.hashCode());
+  }
+
   /**
    * We test the evaluation for a given FormulaFactory
    */
@@ -473,6 +562,43 @@ public class AbstractGraph_Conditions_PackageTesting {
     assertFalse(formula.eval(valuation));
   }
 
+  /**
+   * Testing of the comparison of the events by their interned id, and of the
+   * read-only iteration of {@link Events}.
+   */
+  @Test
+  public void eventsMembershipTesting() {
+    ExternalEvent a = new ExternalEvent("A");
+    ExternalEvent other_a = new ExternalEvent("A");
+    ExternalEvent b = new ExternalEvent("B");
+
+    /* The events are identified by the id of their name */
+    assertEquals(a.getId(), other_a.getId());
+    assertFalse(a.getId() == b.getId());
+    assertEquals(a, other_a);
+    assertEquals(a.hashCode(), other_a.hashCode());
+    assertFalse(a.equals(b));
+    assertFalse(a.equals("A"));
+    assertFalse(a.equals(null));
+
+    HashSet<SingleEvent> set = new HashSet<SingleEvent>();
+    set.add(a);
+    assertTrue(set.contains(other_a));
+    assertFalse(set.contains(b));
+
+    Events events = new Events();
+    events.addEvent(a);
+    assertTrue(events.containsEvent(other_a));
+    assertFalse(events.containsEvent(b));
+    assertFalse(events.containsEvent(null));
+
+    /* The events cannot be removed behind the ids */
+    Iterator<SingleEvent> iterator = events.iterator();
+    iterator.next();
+    thrown.expect(UnsupportedOperationException.class);
+    iterator.remove();
+  }
+
   /**
    * Testing of {@link Formula#equals(Object)}.
    */
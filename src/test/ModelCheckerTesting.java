@@ -2,15 +2,56 @@ package test;
 
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
+import abstractGraph.conditions.BooleanVariable;
+import abstractGraph.conditions.EnumeratedVariable;
+import abstractGraph.events.ExternalEvent;
 import abstractGraph.verifiers.SingleWritingChecker;
 import abstractGraph.verifiers.Verifier;
+import domainSpecificLanguage.DSLGlobalState.DSLGlobalState;
+import domainSpecificLanguage.engine.DSLCompiledGraphSimulator;
+import domainSpecificLanguage.engine.DSLSequentialGraphSimulator;
+import domainSpecificLanguage.engine.DSLSimulatorGenerator;
+import domainSpecificLanguage.graph.DSLState;
+import domainSpecificLanguage.graph.DSLStateMachine;
+import domainSpecificLanguage.graph.DSLTransition;
+import domainSpecificLanguage.parser.FSM_builder;
 import engine.BuildActivationGraph;
+import engine.GraphSimulatorInterface;
+import engine.BitStateModelChecker;
+import engine.BoundedModelChecker;
+import engine.CheckpointModelChecker;
+import engine.ExternalBFSModelChecker;
+import engine.HashCompactionModelChecker;
+import engine.MachineSymmetry;
 import engine.ModelChecker;
+import engine.OffHeapModelChecker;
+import engine.PackedModelChecker;
+import engine.ParallelModelChecker;
+import engine.ParallelPackedModelChecker;
+import engine.ProofBySpliting;
 import engine.SequentialGraphSimulator;
+import engine.SplitProof;
+import engine.SplittingModelChecker;
+import engine.SubProofCache;
+import engine.StateSpaceEstimator;
+import engine.SymbolicModelChecker;
+import engine.stateStorage.BitStateSet;
+import engine.stateStorage.LockFreeStateHashSet;
+import engine.stateStorage.StateVectorCodec;
 import graph.GlobalState;
 import graph.GraphFactoryAEFD;
 import graph.Model;
@@ -71,6 +112,946 @@ public class ModelCheckerTesting {
     generalTest(files, results);
   }
 
+  @Test
+  public void packedModelCheckerTesting() throws IOException {
+    String[] files = {
+        "Three_ctl.yaml",
+        "Eight_ctl.yaml",
+        "graph_with_dependency.yaml"
+    };
+
+    for (String file : files) {
+      ModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+          new ModelChecker<>();
+      PackedModelChecker<GlobalState, StateMachine, State, Transition> packed_model_checker =
+          new PackedModelChecker<>();
+      SequentialGraphSimulator simulator = generateSimulator(file, null);
+      simulator.generateAllInitialStates(model_checker, null);
+      simulator.generateAllInitialStates(packed_model_checker, null);
+      model_checker.verify(simulator);
+      packed_model_checker.verify(simulator);
+
+      assertTrue("Error on " + file + " (" +
+          packed_model_checker.getNumberVisitedStates() + " found.  "
+          + model_checker.getVisited_states().size() + " expected).\n",
+          packed_model_checker.getNumberVisitedStates() == model_checker
+              .getVisited_states().size());
+
+      /* Every visited state has an entry in the exploration tree */
+      assertTrue(packed_model_checker.getTraces().size() == packed_model_checker
+          .getNumberVisitedStates());
+
+      /* Encoding then decoding a state must give back the same state */
+      StateVectorCodec<GlobalState, StateMachine, State, Transition> codec =
+          packed_model_checker.getCodec();
+      for (GlobalState state : model_checker.getVisited_states()) {
+        assertTrue(codec.decode(codec.encode(state)).equals(state));
+      }
+
+      /* The view of the visited states decodes the same states */
+      assertTrue(new HashSet<GlobalState>(
+          packed_model_checker.getVisited_states()).equals(model_checker
+          .getVisited_states()));
+    }
+  }
+
+  @Test
+  public void offHeapModelCheckerTesting() throws IOException {
+    String[] files = {
+        "Three_ctl.yaml",
+        "Eight_ctl.yaml",
+        "graph_with_dependency.yaml"
+    };
+    int[] results = {
+        8,
+        256,
+        3
+    };
+
+    /* In direct memory, then memory-mapped in a temporary directory */
+    File mapped_directory = Files.createTempDirectory("offheap").toFile();
+    File[] scratch_directories = { null, mapped_directory };
+    for (File scratch_directory : scratch_directories) {
+      for (int i = 0; i < files.length; i++) {
+        OffHeapModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+            new OffHeapModelChecker<>(scratch_directory);
+        SequentialGraphSimulator simulator = generateSimulator(files[i], null);
+        simulator.generateAllInitialStates(model_checker, null);
+        model_checker.verify(simulator);
+        long number_visited_states = model_checker.getNumberVisitedStates();
+        model_checker.close();
+
+        /* The scratch files are deleted by close() */
+        if (scratch_directory != null) {
+          assertTrue(scratch_directory.list().length == 0);
+        }
+        assertTrue("Error on " + files[i] + " (" + number_visited_states
+            + " found.  " + results[i] + " expected).\n",
+            number_visited_states == results[i]);
+      }
+    }
+    mapped_directory.delete();
+  }
+
+  @Test
+  public void parallelModelCheckerTesting() throws IOException {
+    String[] files = {
+        "Three_ctl.yaml",
+        "Eight_ctl.yaml",
+        "graph_with_dependency.yaml"
+    };
+
+    for (String file : files) {
+      ModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+          new ModelChecker<>();
+      ParallelModelChecker<GlobalState, StateMachine, State, Transition> parallel_model_checker =
+          new ParallelModelChecker<>(4);
+      SequentialGraphSimulator simulator = generateSimulator(file, null);
+      simulator.generateAllInitialStates(model_checker, null);
+      simulator.generateAllInitialStates(parallel_model_checker, null);
+      model_checker.verify(simulator);
+      parallel_model_checker.verify(simulator);
+
+      assertTrue("Error on " + file + " (" +
+          parallel_model_checker.getNumberVisitedStates() + " found.  "
+          + model_checker.getNumberVisitedStates() + " expected).\n",
+          parallel_model_checker.getNumberVisitedStates() == model_checker
+              .getNumberVisitedStates());
+      assertTrue(parallel_model_checker.getNumberIllegalStates() == model_checker
+          .getNumberIllegalStates());
+      assertTrue(parallel_model_checker.getNumberUnsafeStates() == model_checker
+          .getNumberUnsafeStates());
+      assertTrue(parallel_model_checker.getNumberFunctionalWarnings() == model_checker
+          .getNumberFunctionalWarnings());
+    }
+  }
+
+  @Test
+  public void parallelRestrainedEventsTesting() throws IOException {
+    SequentialGraphSimulator simulator =
+        generateSimulator("Eight_ctl.yaml", null);
+    LinkedList<ExternalEvent> restrained_events =
+        new LinkedList<ExternalEvent>();
+    restrained_events.add(new ExternalEvent("CTL_Zone_voie_A_Actif"));
+    restrained_events.add(new ExternalEvent("CTL_Zone_voie_A_Inactif"));
+    restrained_events.add(new ExternalEvent("CTL_Zone_voie_B_Actif"));
+    simulator.setRestrainedExternalEventList(restrained_events);
+
+    /* The clones of the threads must not explore the other events */
+    ModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+        new ModelChecker<>();
+    ParallelModelChecker<GlobalState, StateMachine, State, Transition> parallel_model_checker =
+        new ParallelModelChecker<>(4);
+    HashMap<String, Boolean> all_ctl_true = new HashMap<String, Boolean>();
+    for (String ctl : simulator.getModel().regroupCTL().keySet()) {
+      all_ctl_true.put(ctl, true);
+    }
+    GlobalState initial_state = simulator.init(all_ctl_true, null);
+    model_checker.addInitialState(initial_state);
+    parallel_model_checker.addInitialState(initial_state);
+    model_checker.verify(simulator);
+    parallel_model_checker.verify(simulator);
+
+    assertTrue("Restrained events: "
+        + parallel_model_checker.getNumberVisitedStates() + " found.  "
+        + model_checker.getNumberVisitedStates() + " expected.\n",
+        parallel_model_checker.getNumberVisitedStates() == model_checker
+            .getNumberVisitedStates());
+    assertTrue(model_checker.getNumberVisitedStates() < 256);
+  }
+
+  @Test
+  public void parallelPackedModelCheckerTesting() throws IOException {
+    String[] files = {
+        "Three_ctl.yaml",
+        "Eight_ctl.yaml",
+        "graph_with_dependency.yaml"
+    };
+    int[] results = {
+        8,
+        256,
+        3
+    };
+
+    for (int i = 0; i < files.length; i++) {
+      ParallelPackedModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+          new ParallelPackedModelChecker<>(4);
+      SequentialGraphSimulator simulator = generateSimulator(files[i], null);
+      simulator.generateAllInitialStates(model_checker, null);
+      model_checker.verify(simulator);
+
+      assertTrue("Error on " + files[i] + " ("
+          + model_checker.getNumberVisitedStates() + " found.  "
+          + results[i] + " expected).\n",
+          model_checker.getNumberVisitedStates() == results[i]);
+    }
+  }
+
+  @Test
+  public void packedVisitedStatesTesting() throws IOException {
+    String[] files = {
+        "Three_ctl.yaml",
+        "Eight_ctl.yaml",
+        "graph_with_dependency.yaml"
+    };
+
+    for (String file : files) {
+      ModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+          new ModelChecker<>();
+      ModelChecker<GlobalState, StateMachine, State, Transition> packed_model_checker =
+          new ModelChecker<>();
+      packed_model_checker.setPackedVisitedStates(true);
+      SequentialGraphSimulator simulator = generateSimulator(file, null);
+      simulator.generateAllInitialStates(model_checker, null);
+      simulator.generateAllInitialStates(packed_model_checker, null);
+      model_checker.verify(simulator);
+      packed_model_checker.verify(simulator);
+
+      assertTrue("Error on " + file + " ("
+          + packed_model_checker.getNumberVisitedStates() + " found.  "
+          + model_checker.getNumberVisitedStates() + " expected).\n",
+          packed_model_checker.getNumberVisitedStates() == model_checker
+              .getNumberVisitedStates());
+      assertTrue(new HashSet<GlobalState>(
+          packed_model_checker.getVisited_states()).equals(model_checker
+          .getVisited_states()));
+    }
+  }
+
+  @Test
+  public void lockFreeStateHashSetTesting() throws InterruptedException {
+    /* A small table, to resize it many times while the threads insert */
+    final LockFreeStateHashSet set = new LockFreeStateHashSet(2, 16);
+    final int number_vectors = 1 << 16;
+    final AtomicInteger number_inserted = new AtomicInteger();
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          long[] vector = new long[2];
+          for (int j = 0; j < number_vectors; j++) {
+            vector[0] = j;
+            vector[1] = j * 31L;
+            if (set.add(vector)) {
+              number_inserted.incrementAndGet();
+            }
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    /* Every vector is inserted once, by a single thread */
+    assertTrue(number_inserted.get() == number_vectors);
+    assertTrue(set.size() == number_vectors);
+    int number_iterated = 0;
+    for (Iterator<long[]> it = set.iterator(); it.hasNext();) {
+      long[] vector = it.next();
+      assertTrue(vector[1] == vector[0] * 31L);
+      number_iterated++;
+    }
+    assertTrue(number_iterated == number_vectors);
+  }
+
+  @Test
+  public void bitStateModelCheckerTesting() throws IOException {
+    String[] files = {
+        "Three_ctl.yaml",
+        "Eight_ctl.yaml",
+        "graph_with_dependency.yaml"
+    };
+    int[] results = {
+        8,
+        256,
+        3
+    };
+
+    for (int i = 0; i < files.length; i++) {
+      /* With a large bit array, no state is lost */
+      BitStateModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+          new BitStateModelChecker<>(1 << 24, 3);
+      SequentialGraphSimulator simulator = generateSimulator(files[i], null);
+      simulator.generateAllInitialStates(model_checker, null);
+      model_checker.verify(simulator);
+
+      assertTrue("Error on " + files[i] + " ("
+          + model_checker.getNumberVisitedStates() + " found.  "
+          + results[i] + " expected).\n",
+          model_checker.getNumberVisitedStates() == results[i]);
+      assertTrue(model_checker.getEstimatedCoverage() > 0.999);
+    }
+  }
+
+  /* 2^37 bits would need 2^31 longs, more than the largest Java array */
+  @Test(expected = IllegalArgumentException.class)
+  public void bitStateSetTooLargeTesting() {
+    new BitStateSet(1, 1L << 37, 3);
+  }
+
+  @Test
+  public void hashCompactionModelCheckerTesting() throws IOException {
+    String[] files = {
+        "Three_ctl.yaml",
+        "Eight_ctl.yaml",
+        "graph_with_dependency.yaml"
+    };
+    int[] results = {
+        8,
+        256,
+        3
+    };
+
+    for (int fingerprint_bits : new int[] { 64, 96 }) {
+      for (int i = 0; i < files.length; i++) {
+        HashCompactionModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+            new HashCompactionModelChecker<>(fingerprint_bits);
+        SequentialGraphSimulator simulator = generateSimulator(files[i], null);
+        simulator.generateAllInitialStates(model_checker, null);
+        model_checker.verify(simulator);
+
+        assertTrue("Error on " + files[i] + " ("
+            + model_checker.getNumberVisitedStates() + " found.  "
+            + results[i] + " expected).\n",
+            model_checker.getNumberVisitedStates() == results[i]);
+        assertTrue(model_checker.getOmissionProbability() < 1e-9);
+      }
+    }
+  }
+
+  @Test
+  public void externalBFSModelCheckerTesting() throws IOException {
+    String[] files = {
+        "Three_ctl.yaml",
+        "Eight_ctl.yaml",
+        "graph_with_dependency.yaml"
+    };
+    int[] results = {
+        8,
+        256,
+        3
+    };
+
+    for (int i = 0; i < files.length; i++) {
+      /* Small batches to merge several sorted runs per layer */
+      ExternalBFSModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+          new ExternalBFSModelChecker<>(new File(
+              System.getProperty("java.io.tmpdir")), 16);
+      SequentialGraphSimulator simulator = generateSimulator(files[i], null);
+      simulator.generateAllInitialStates(model_checker, null);
+      model_checker.verify(simulator);
+
+      assertTrue("Error on " + files[i] + " ("
+          + model_checker.getNumberVisitedStates() + " found.  "
+          + results[i] + " expected).\n",
+          model_checker.getNumberVisitedStates() == results[i]);
+
+      /* The view of the visited states reads them from the visited file */
+      assertTrue(new HashSet<GlobalState>(model_checker.getVisited_states())
+          .size() == results[i]);
+      model_checker.close();
+    }
+  }
+
+  @Test
+  public void externalBFSShortestTraceTesting() throws IOException {
+    /* P_5 is reached by CTL_1 CTL_2 CTL_3 and by CTL_4 CTL_5 */
+    SequentialGraphSimulator simulator =
+        loadTextSimulator("ModelCheckerTesting/Graph_shortest_P5.txt");
+    File scratch_directory = Files.createTempDirectory("bfs").toFile();
+    ExternalBFSModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+        new ExternalBFSModelChecker<>(scratch_directory, 2);
+    model_checker.addInitialState(initialState(simulator));
+    GlobalState result = model_checker.verify(simulator);
+
+    /* All the files are deleted by close() */
+    model_checker.close();
+    assertTrue(scratch_directory.list().length == 0);
+    scratch_directory.delete();
+
+    assertTrue(result != null && !result.isSafe());
+    /* The trace is replayed from the initial state */
+    String trace = model_checker.printFullTrace(result);
+    assertTrue(trace, trace.contains("CTL_4") && !trace.contains("CTL_1"));
+    int trace_length = 0;
+    for (GlobalState state = result; state.last_processed_external_event != null; state =
+        (GlobalState) state.previous_global_state) {
+      trace_length++;
+    }
+    assertTrue(trace_length == 2);
+  }
+
+  @Test
+  public void checkpointModelCheckerTesting() throws IOException {
+    String[] files = {
+        "Three_ctl.yaml",
+        "Eight_ctl.yaml",
+        "graph_with_dependency.yaml"
+    };
+    int[] results = {
+        8,
+        256,
+        3
+    };
+
+    for (int i = 0; i < files.length; i++) {
+      File checkpoint = File.createTempFile("checkpoint", ".bin");
+      checkpoint.deleteOnExit();
+
+      /* A checkpoint before every explored state */
+      CheckpointModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+          new CheckpointModelChecker<>(checkpoint, 0);
+      SequentialGraphSimulator simulator = generateSimulator(files[i], null);
+      simulator.generateAllInitialStates(model_checker, null);
+      model_checker.verify(simulator);
+      assertTrue(model_checker.getNumberCheckpoints() > 0);
+
+      /* Continue from the last checkpoint with a new model checker */
+      CheckpointModelChecker<GlobalState, StateMachine, State, Transition> resumed =
+          new CheckpointModelChecker<>(checkpoint);
+      simulator = generateSimulator(files[i], null);
+      simulator.generateAllInitialStates(resumed, null);
+      resumed.resume(simulator);
+
+      assertTrue("Error on " + files[i] + " ("
+          + resumed.getNumberVisitedStates() + " found.  "
+          + results[i] + " expected).\n",
+          resumed.getNumberVisitedStates() == results[i]);
+      assertTrue(resumed.getNumberExploredNodes() == model_checker
+          .getNumberExploredNodes());
+      assertTrue(resumed.getNumberIllegalStates() == model_checker
+          .getNumberIllegalStates());
+      checkpoint.delete();
+    }
+  }
+
+  /* The same layout as Graph_P5.txt, but not the same states */
+  @Test(expected = IllegalArgumentException.class)
+  public void checkpointOtherModelTesting() throws IOException {
+    File checkpoint = File.createTempFile("checkpoint", ".bin");
+    try {
+      CheckpointModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+          new CheckpointModelChecker<>(checkpoint, 0);
+      SequentialGraphSimulator simulator =
+          loadTextSimulator("SequentialGraphSimulatorTesting/Graph_P5.txt");
+      model_checker.addInitialState(initialState(simulator));
+      model_checker.verify(simulator);
+      assertTrue(model_checker.getNumberCheckpoints() > 0);
+
+      CheckpointModelChecker<GlobalState, StateMachine, State, Transition> resumed =
+          new CheckpointModelChecker<>(checkpoint);
+      simulator =
+          loadTextSimulator("ModelCheckerTesting/Graph_P5_other_states.txt");
+      resumed.addInitialState(initialState(simulator));
+      resumed.resume(simulator);
+    } finally {
+      checkpoint.delete();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void checkpointOtherInitialStatesTesting() throws IOException {
+    File checkpoint = File.createTempFile("checkpoint", ".bin");
+    try {
+      CheckpointModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+          new CheckpointModelChecker<>(checkpoint, 0);
+      SequentialGraphSimulator simulator =
+          generateSimulator("Three_ctl.yaml", null);
+      simulator.generateAllInitialStates(model_checker, null);
+      model_checker.verify(simulator);
+      assertTrue(model_checker.getNumberCheckpoints() > 0);
+
+      /* Only one of the initial states of the checkpoint */
+      simulator = generateSimulator("Three_ctl.yaml", null);
+      ModelChecker<GlobalState, StateMachine, State, Transition> all_initial_states =
+          new ModelChecker<>();
+      simulator.generateAllInitialStates(all_initial_states, null);
+      CheckpointModelChecker<GlobalState, StateMachine, State, Transition> resumed =
+          new CheckpointModelChecker<>(checkpoint);
+      resumed.addInitialState(all_initial_states.getUnvisited_states()
+          .iterator().next());
+      resumed.resume(simulator);
+    } finally {
+      checkpoint.delete();
+    }
+  }
+
+  /*
+   * The 256 initial states of Eight_ctl are in 9 orbits: the checkpoint is
+   * written for their representatives, which are explored
+   */
+  @Test
+  public void checkpointSymmetryReductionTesting() throws IOException {
+    File checkpoint = File.createTempFile("checkpoint", ".bin");
+    try {
+      CheckpointModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+          new CheckpointModelChecker<>(checkpoint, 0);
+      model_checker.setSymmetryReduction(true);
+      SequentialGraphSimulator simulator =
+          generateSimulator("Eight_ctl.yaml", null);
+      simulator.generateAllInitialStates(model_checker, null);
+      assertTrue(model_checker.verify(simulator) == null);
+      assertTrue(model_checker.getNumberCheckpoints() > 0);
+
+      CheckpointModelChecker<GlobalState, StateMachine, State, Transition> resumed =
+          new CheckpointModelChecker<>(checkpoint);
+      resumed.setSymmetryReduction(true);
+      simulator = generateSimulator("Eight_ctl.yaml", null);
+      simulator.generateAllInitialStates(resumed, null);
+      assertTrue(resumed.resume(simulator) == null);
+
+      assertTrue(resumed.getNumberVisitedStates() == 9);
+      assertTrue(resumed.getNumberExploredNodes() == model_checker
+          .getNumberExploredNodes());
+      assertTrue(resumed.getNumberIllegalStates() == model_checker
+          .getNumberIllegalStates());
+    } finally {
+      checkpoint.delete();
+    }
+  }
+
+  /*
+   * The external events of the CTL machines are independent: the reduction
+   * explores fewer transitions, and reaches the same states with the same
+   * verdict. The two machines of graph_with_dependency are not independent.
+   */
+  @Test
+  public void partialOrderReductionTesting() throws IOException {
+    String[] files = {
+        "Three_ctl.yaml",
+        "Eight_ctl.yaml",
+        "graph_with_dependency.yaml"
+    };
+    boolean[] reduced = {
+        true,
+        true,
+        false
+    };
+
+    for (int i = 0; i < files.length; i++) {
+      ModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+          new ModelChecker<>();
+      ModelChecker<GlobalState, StateMachine, State, Transition> reduced_model_checker =
+          new ModelChecker<>();
+      reduced_model_checker.setPartialOrderReduction(true);
+      SequentialGraphSimulator simulator = generateSimulator(files[i], null);
+      simulator.generateAllInitialStates(model_checker, null);
+      reduced_model_checker.addAllInitialStates(model_checker
+          .getUnvisited_states());
+      GlobalState result = model_checker.verify(simulator);
+      GlobalState reduced_result = reduced_model_checker.verify(simulator);
+
+      assertTrue("Verdict on " + files[i],
+          (result == null) == (reduced_result == null));
+      assertTrue(reduced_model_checker.getNumberVisitedStates() == model_checker
+          .getNumberVisitedStates());
+      long explored = model_checker.getNumberExploredNodes();
+      long reduced_explored = reduced_model_checker.getNumberExploredNodes();
+      assertTrue("Error on " + files[i] + " (" + reduced_explored
+          + " explored transitions with the reduction, " + explored
+          + " without).\n",
+          reduced[i] ? reduced_explored < explored
+              : reduced_explored == explored);
+    }
+  }
+
+  /*
+   * From a single initial state, the reduction must explore fewer transitions
+   * and find the same verdict
+   */
+  @Test
+  public void partialOrderReductionSingleInitialStateTesting()
+      throws IOException {
+    SequentialGraphSimulator simulator =
+        generateSimulator("Eight_ctl.yaml", null);
+    HashMap<String, Boolean> all_ctl_true = new HashMap<String, Boolean>();
+    for (String ctl : simulator.getModel().regroupCTL().keySet()) {
+      all_ctl_true.put(ctl, true);
+    }
+    GlobalState initial_state = simulator.init(all_ctl_true, null);
+
+    ModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+        new ModelChecker<>();
+    model_checker.addInitialState(initial_state);
+    assertTrue(model_checker.verify(simulator) == null);
+
+    ModelChecker<GlobalState, StateMachine, State, Transition> reduced_model_checker =
+        new ModelChecker<>();
+    reduced_model_checker.setPartialOrderReduction(true);
+    reduced_model_checker.addInitialState(initial_state);
+    assertTrue(reduced_model_checker.verify(simulator) == null);
+    assertTrue("Explored transitions: "
+        + reduced_model_checker.getNumberExploredNodes() + " with the "
+        + "reduction, " + model_checker.getNumberExploredNodes() + " without",
+        reduced_model_checker.getNumberExploredNodes() < model_checker
+            .getNumberExploredNodes());
+    assertTrue(reduced_model_checker.getNumberVisitedStates() == model_checker
+        .getNumberVisitedStates());
+
+    /* Graph_P5.txt has a counterexample, Graph_P6.txt has none */
+
+    String[] files = {
+        "SequentialGraphSimulatorTesting/Graph_P5.txt",
+        "SequentialGraphSimulatorTesting/Graph_P6.txt"
+    };
+    for (String file : files) {
+      simulator = loadTextSimulator(file);
+      model_checker = new ModelChecker<>();
+      model_checker.addInitialState(initialState(simulator));
+      GlobalState result = model_checker.verify(simulator);
+
+      simulator = loadTextSimulator(file);
+      reduced_model_checker = new ModelChecker<>();
+      reduced_model_checker.setPartialOrderReduction(true);
+      reduced_model_checker.addInitialState(initialState(simulator));
+      GlobalState reduced_result = reduced_model_checker.verify(simulator);
+      assertTrue("Verdict on " + file,
+          (result == null) == (reduced_result == null));
+      assertTrue(file, (result != null) == file.endsWith("P5.txt"));
+    }
+  }
+
+  /*
+   * The 3 and 8 CTL machines are interchangeable: a state is determined by the
+   * number of active CTLs. graph_with_dependency has no symmetry.
+   */
+  @Test
+  public void symmetryReductionTesting() throws IOException {
+    String[] files = {
+        "Three_ctl.yaml",
+        "Eight_ctl.yaml",
+        "graph_with_dependency.yaml"
+    };
+    int[] results = {
+        8,
+        256,
+        3
+    };
+    int[] reduced_results = {
+        4,
+        9,
+        3
+    };
+
+    for (int i = 0; i < files.length; i++) {
+      ModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+          new ModelChecker<>();
+      ModelChecker<GlobalState, StateMachine, State, Transition> reduced_model_checker =
+          new ModelChecker<>();
+      reduced_model_checker.setSymmetryReduction(true);
+      SequentialGraphSimulator simulator = generateSimulator(files[i], null);
+      simulator.generateAllInitialStates(model_checker, null);
+      reduced_model_checker.addAllInitialStates(model_checker
+          .getUnvisited_states());
+      GlobalState result = model_checker.verify(simulator);
+      GlobalState reduced_result = reduced_model_checker.verify(simulator);
+
+      assertTrue("Verdict on " + files[i],
+          (result == null) == (reduced_result == null));
+      assertTrue(model_checker.getNumberVisitedStates() == results[i]);
+      assertTrue("Error on " + files[i] + " ("
+          + reduced_model_checker.getNumberVisitedStates() + " found.  "
+          + reduced_results[i] + " expected).\n",
+          reduced_model_checker.getNumberVisitedStates() == reduced_results[i]);
+    }
+  }
+
+  /*
+   * The machines of Eight_ctl only depend on their own input. The second
+   * machine of graph_with_dependency reads the output of the first one, so
+   * they are not interchangeable.
+   */
+  @Test
+  public void machineSymmetryGroupsTesting() throws IOException {
+    MachineSymmetry<GlobalState, StateMachine, State, Transition> symmetry =
+        new MachineSymmetry<>(generateSimulator("Eight_ctl.yaml", null));
+    assertTrue(symmetry.getGroups().size() == 1);
+    assertTrue(symmetry.getGroups().get(0).size() == 8);
+
+    symmetry = new MachineSymmetry<>(generateSimulator(
+        "graph_with_dependency.yaml", null));
+    assertTrue(symmetry.getGroups().isEmpty());
+  }
+
+  @Test
+  public void coneOfInfluenceTesting() throws IOException {
+    String[] files = {
+        "Three_ctl.yaml",
+        "Eight_ctl.yaml",
+        "graph_with_dependency.yaml"
+    };
+
+    for (String file : files) {
+      ModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+          new ModelChecker<>();
+      ModelChecker<GlobalState, StateMachine, State, Transition> sliced_model_checker =
+          new ModelChecker<>();
+      sliced_model_checker.setConeOfInfluenceSlicing(true);
+      SequentialGraphSimulator simulator = generateSimulator(file, null);
+      simulator.generateAllInitialStates(model_checker, null);
+      sliced_model_checker.addAllInitialStates(model_checker
+          .getUnvisited_states());
+      GlobalState result = model_checker.verify(simulator);
+      GlobalState sliced_result = sliced_model_checker.verify(simulator);
+
+      assertTrue((result == null) == (sliced_result == null));
+      assertTrue((model_checker.getNumberFunctionalWarnings() > 0) == (sliced_model_checker
+          .getNumberFunctionalWarnings() > 0));
+      assertTrue("Error on " + file + " ("
+          + sliced_model_checker.getNumberVisitedStates() + " found.  At most "
+          + model_checker.getNumberVisitedStates() + " expected).\n",
+          sliced_model_checker.getNumberVisitedStates() <= model_checker
+              .getNumberVisitedStates());
+    }
+  }
+
+  /*
+   * Page 0 cannot influence the P_5 of Page 1: the sliced models do not have
+   * the state machine 0, so their identifiers are not 0..n-1.
+   */
+  @Test
+  public void coneOfInfluencePackedModelCheckersTesting() throws IOException {
+    ArrayList<ModelChecker<GlobalState, StateMachine, State, Transition>> model_checkers =
+        new ArrayList<>();
+    model_checkers.add(new PackedModelChecker<GlobalState, StateMachine, State, Transition>());
+    model_checkers.add(new BitStateModelChecker<GlobalState, StateMachine, State, Transition>());
+    model_checkers.add(new HashCompactionModelChecker<GlobalState, StateMachine, State, Transition>());
+    model_checkers.add(new ExternalBFSModelChecker<GlobalState, StateMachine, State, Transition>());
+    File checkpoint = File.createTempFile("checkpoint", ".bin");
+    checkpoint.deleteOnExit();
+    model_checkers.add(new CheckpointModelChecker<GlobalState, StateMachine, State, Transition>(
+        checkpoint, 0));
+
+    for (ModelChecker<GlobalState, StateMachine, State, Transition> model_checker : model_checkers) {
+      SequentialGraphSimulator simulator =
+          loadTextSimulator("ModelCheckerTesting/Graph_cone_P5.txt");
+      model_checker.setConeOfInfluenceSlicing(true);
+      model_checker.addInitialState(initialState(simulator));
+      GlobalState result = model_checker.verify(simulator);
+
+      assertTrue(model_checker.getClass().getSimpleName(),
+          result != null && !result.isSafe());
+      /* Page 0 is not explored */
+      assertTrue(model_checker.getNumberVisitedStates() == 2);
+    }
+    checkpoint.delete();
+
+    ModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+        new ModelChecker<>();
+    SequentialGraphSimulator simulator =
+        loadTextSimulator("ModelCheckerTesting/Graph_cone_P5.txt");
+    model_checker.addInitialState(initialState(simulator));
+    assertTrue(model_checker.verify(simulator) != null);
+    assertTrue(model_checker.getNumberVisitedStates() == 4);
+  }
+
+  @Test
+  public void stateSpaceEstimatorTesting() throws IOException {
+    String[] files = {
+        "Three_ctl.yaml",
+        "Eight_ctl.yaml",
+        "graph_with_dependency.yaml"
+    };
+
+    for (String file : files) {
+      ModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+          new ModelChecker<>();
+      StateSpaceEstimator<GlobalState, StateMachine, State, Transition> estimator =
+          new StateSpaceEstimator<>();
+      SequentialGraphSimulator simulator = generateSimulator(file, null);
+      simulator.generateAllInitialStates(model_checker, null);
+      estimator.addAllInitialStates(model_checker.getUnvisited_states());
+      estimator.estimate(simulator);
+      model_checker.verify(simulator);
+
+      /* The probe is large enough to visit all the states */
+      assertTrue(estimator.isExhausted());
+      assertTrue("Error on " + file + " ("
+          + estimator.getEstimatedNumberStates() + " estimated, "
+          + model_checker.getNumberVisitedStates() + " visited).\n",
+          estimator.getEstimatedNumberStates() == model_checker
+              .getNumberVisitedStates());
+      assertTrue(estimator.getRecommendation() == StateSpaceEstimator.Recommendation.EXACT);
+    }
+  }
+
+  @Test
+  public void stateSpaceEstimatorSmallProbeTesting() throws IOException {
+    SequentialGraphSimulator simulator =
+        generateSimulator("Eight_ctl.yaml", null);
+    HashMap<String, Boolean> all_ctl_true = new HashMap<String, Boolean>();
+    for (String ctl : simulator.getModel().regroupCTL().keySet()) {
+      all_ctl_true.put(ctl, true);
+    }
+    GlobalState initial_state = simulator.init(all_ctl_true, null);
+
+    ModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+        new ModelChecker<>();
+    model_checker.addInitialState(initial_state);
+    model_checker.verify(simulator);
+    long number_states = model_checker.getNumberVisitedStates();
+
+    /*
+     * The probe and the walks see a fraction of the states: the estimation is
+     * an order of magnitude, here within a factor 4
+     */
+    for (long seed = 0; seed < 10; seed++) {
+      StateSpaceEstimator<GlobalState, StateMachine, State, Transition> estimator =
+          new StateSpaceEstimator<>(50, 5, 20);
+      estimator.setSeed(seed);
+      estimator.addInitialState(initial_state);
+      estimator.estimate(simulator);
+
+      assertTrue(estimator.getNumberProbedStates() < number_states);
+      assertTrue(!estimator.isExhausted() && !estimator.isLowerBound());
+      assertTrue("Seed " + seed + ": "
+          + estimator.getEstimatedNumberStates() + " estimated, "
+          + number_states + " visited.\n",
+          estimator.getEstimatedNumberStates() >= number_states / 4.0
+              && estimator.getEstimatedNumberStates() <= number_states * 4.0);
+    }
+  }
+
+  @Test
+  public void symbolicModelCheckerTesting() throws IOException {
+    String[] files = {
+        "Three_ctl.yaml",
+        "Eight_ctl.yaml",
+        "graph_with_dependency.yaml"
+    };
+
+    for (String file : files) {
+      ModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+          new ModelChecker<>();
+      SymbolicModelChecker<GlobalState, StateMachine, State, Transition> symbolic_model_checker =
+          new SymbolicModelChecker<>();
+      SequentialGraphSimulator simulator = generateSimulator(file, null);
+      simulator.generateAllInitialStates(model_checker, null);
+      symbolic_model_checker.addAllInitialStates(model_checker
+          .getUnvisited_states());
+      model_checker.verify(simulator);
+      GlobalState result = symbolic_model_checker.verify(simulator);
+
+      assertTrue(result == null);
+      assertTrue("Error on " + file + " (" +
+          symbolic_model_checker.getNumberVisitedStates() + " found.  "
+          + model_checker.getVisited_states().size() + " expected).\n",
+          symbolic_model_checker.getNumberVisitedStates() == model_checker
+              .getVisited_states().size());
+      for (GlobalState state : model_checker.getVisited_states()) {
+        assertTrue(symbolic_model_checker.isReached(state));
+      }
+    }
+  }
+
+  @Test
+  public void boundedModelCheckerTesting() throws IOException {
+    String[] files = {
+        "Three_ctl.yaml",
+        "Eight_ctl.yaml",
+        "graph_with_dependency.yaml"
+    };
+
+    for (String file : files) {
+      ModelChecker<GlobalState, StateMachine, State, Transition> model_checker =
+          new ModelChecker<>();
+      BoundedModelChecker<GlobalState, StateMachine, State, Transition> bounded_model_checker =
+          new BoundedModelChecker<>(4);
+      SequentialGraphSimulator simulator = generateSimulator(file, null);
+      simulator.generateAllInitialStates(model_checker, null);
+      bounded_model_checker.addAllInitialStates(model_checker
+          .getUnvisited_states());
+      GlobalState result = bounded_model_checker.verify(simulator);
+
+      assertTrue(result == null);
+      assertTrue(bounded_model_checker.getNumberIgnoredEvents() == 0);
+      assertTrue(bounded_model_checker.getDepth() == 4);
+
+      /* The k-induction also looks for the functional warnings */
+      bounded_model_checker.setInduction(true);
+      result = bounded_model_checker.verify(simulator);
+      assertTrue(bounded_model_checker.isComplete() == file
+          .endsWith("_ctl.yaml"));
+      if (bounded_model_checker.isComplete()) {
+        /* The CTL models are 1-inductive */
+        assertTrue(file, result == null && bounded_model_checker.isProven());
+        assertTrue(bounded_model_checker.getDepth() == 0);
+        model_checker.verify(simulator);
+        assertTrue(model_checker.getNumberFunctionalWarnings() == 0);
+      } else {
+        /* The induction is not sound with a failed execution */
+        assertTrue(file, result == null && !bounded_model_checker.isProven());
+        assertTrue(bounded_model_checker.getDepth() == 4);
+      }
+    }
+  }
+
+  @Test
+  public void boundedModelCheckerCounterexampleTesting() throws IOException {
+    /* CTL_1 leads to an unsafe state (P_5) */
+    SequentialGraphSimulator simulator =
+        loadTextSimulator("SequentialGraphSimulatorTesting/Graph_P5.txt");
+    BoundedModelChecker<GlobalState, StateMachine, State, Transition> bounded_model_checker =
+        new BoundedModelChecker<>(4);
+    bounded_model_checker.addInitialState(initialState(simulator));
+    GlobalState result = bounded_model_checker.verify(simulator);
+    assertTrue(bounded_model_checker.isComplete());
+    assertTrue(result != null && result.isLegal() && !result.isSafe());
+    assertTrue(bounded_model_checker.getTrace().size() == 1);
+    assertTrue(bounded_model_checker.getTrace().getFirst().getName()
+        .equals("CTL_1"));
+
+    /* CTL_1 leads to an illegal state (P_6) */
+    simulator =
+        loadTextSimulator("SequentialGraphSimulatorTesting/Graph_P6.txt");
+    bounded_model_checker = new BoundedModelChecker<>(4);
+    bounded_model_checker.addInitialState(initialState(simulator));
+    result = bounded_model_checker.verify(simulator);
+    assertTrue(result != null && !result.isLegal());
+    assertTrue(bounded_model_checker.getTrace().size() == 1);
+
+    /* Without any encoded event, the verification is flagged incomplete */
+    simulator =
+        loadTextSimulator("SequentialGraphSimulatorTesting/Graph_P5.txt");
+    bounded_model_checker = new BoundedModelChecker<>(4, 0);
+    bounded_model_checker.addInitialState(initialState(simulator));
+    assertTrue(bounded_model_checker.verify(simulator) == null);
+    assertTrue(bounded_model_checker.getNumberIgnoredEvents() == 1);
+    assertTrue(!bounded_model_checker.isComplete());
+  }
+
+  /**
+   * @param file
+   *          A model in the text format, from src/test/resources.
+   */
+  public SequentialGraphSimulator loadTextSimulator(String file)
+      throws IOException {
+    Model model = new GraphFactoryAEFD(null).buildModel("src/test/resources/"
+        + file, file);
+    SequentialGraphSimulator simulator = new SequentialGraphSimulator(model);
+    simulator.setVerbose(false);
+    return simulator;
+  }
+
+  /**
+   * @return The global state where all the state machines are in "0" and all
+   *         the variables are true.
+   */
+  public GlobalState initialState(SequentialGraphSimulator simulator) {
+    GlobalState global_state = simulator.emptyGlobalState();
+    for (StateMachine machine : simulator.getModel()) {
+      global_state.setState(machine, machine.getState("0"));
+    }
+    for (EnumeratedVariable variable : simulator.getModel()
+        .getExistingVariables()) {
+      global_state.setVariableValue((BooleanVariable) variable, true);
+    }
+    return global_state;
+  }
+
   public SequentialGraphSimulator generateSimulator(String model_file,
       String proof_file)
       throws IOException {
@@ -98,6 +1079,210 @@ public class ModelCheckerTesting {
     return simulator;
   }
 
+  private static final File DECOUPE_FILE = new File(
+      "src/test/resources/ModelCheckerTesting/Example_decoupe.txt");
+
+  private DSLSequentialGraphSimulator<DSLGlobalState> loadDSLSimulator(
+      File file) throws IOException {
+    FSM_builder builder = new FSM_builder();
+    builder.parseFile(file.getPath());
+    DSLSequentialGraphSimulator<DSLGlobalState> simulator =
+        new DSLSequentialGraphSimulator<>(builder.getModel(),
+            builder.getProof());
+    simulator.setVerbose(false);
+    return simulator;
+  }
+
+  @Test
+  public void compiledSimulatorTesting() throws IOException {
+    DSLSequentialGraphSimulator<DSLGlobalState> simulator =
+        loadDSLSimulator(new File(
+            "src/test/resources/ModelCheckerTesting/PN_a_SAL.txt"));
+    DSLCompiledGraphSimulator compiled_simulator = new DSLSimulatorGenerator(
+        simulator.getModel(), simulator.getProof()).newSimulator();
+
+    ModelChecker<DSLGlobalState, DSLStateMachine, DSLState, DSLTransition> model_checker =
+        new ModelChecker<>();
+    model_checker.addInitialState(simulator.getInitialGlobalState());
+    model_checker.verify(simulator);
+    ModelChecker<DSLGlobalState, DSLStateMachine, DSLState, DSLTransition> compiled_model_checker =
+        new ModelChecker<>();
+    compiled_model_checker.addInitialState(compiled_simulator
+        .getInitialGlobalState());
+    compiled_model_checker.verify(compiled_simulator);
+
+    assertTrue(model_checker.getNumberVisitedStates() == 160);
+    assertTrue(model_checker.getNumberIllegalStates() == 292);
+    assertTrue(compiled_model_checker.getNumberVisitedStates() == 160);
+    assertTrue(compiled_model_checker.getNumberIllegalStates() == 292);
+    assertTrue(model_checker.getVisited_states().equals(
+        compiled_model_checker.getVisited_states()));
+
+    /* Every execution gives the same global state, with the same hash */
+    for (DSLGlobalState state : model_checker.getVisited_states()) {
+      assertTrue(simulator.getPossibleEvent(state).equals(
+          compiled_simulator.getPossibleEvent(state)));
+      for (ExternalEvent event : simulator.getPossibleEvent(state)) {
+        DSLGlobalState next_state = simulator.execute(state, event);
+        DSLGlobalState compiled_next_state =
+            compiled_simulator.execute(state, event);
+        assertTrue(next_state.equals(compiled_next_state));
+        assertTrue(next_state.hashCode() == compiled_next_state.hashCode());
+        assertTrue(next_state.isLegal() == compiled_next_state.isLegal()
+            && next_state.isSafe() == compiled_next_state.isSafe()
+            && next_state.isNotP7() == compiled_next_state.isNotP7());
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void compiledSimulatorUnknownErrorTesting() throws IOException {
+    DSLSequentialGraphSimulator<DSLGlobalState> simulator =
+        loadDSLSimulator(new File(
+            "src/test/resources/ModelCheckerTesting/Unknown_error.txt"));
+    /* P_8 is rejected before the compilation */
+    new DSLSimulatorGenerator(simulator.getModel(), simulator.getProof());
+  }
+
+  @Test
+  public void parallelSplittingModelCheckerTesting() throws IOException,
+      InstantiationException, IllegalAccessException {
+    PrintStream output = System.out;
+    PrintStream error_output = System.err;
+    ArrayList<String> printed = new ArrayList<>();
+    for (int number_threads : new int[] { 1, 4 }) {
+      DSLSequentialGraphSimulator<DSLGlobalState> simulator =
+          loadDSLSimulator(DECOUPE_FILE);
+      SplittingModelChecker<DSLGlobalState, DSLStateMachine, DSLState, DSLTransition> model_checker =
+          new SplittingModelChecker<>(number_threads);
+      model_checker.setPrintImages(false);
+      /* No sub-proofs are merged */
+      model_checker.setMemoryBudget(1);
+      model_checker.addInitialState(simulator.getInitialGlobalState());
+
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      PrintStream buffer_output = new PrintStream(buffer, true);
+      System.setOut(buffer_output);
+      System.setErr(buffer_output);
+      try {
+        model_checker.verify(simulator);
+        assertTrue(System.out == buffer_output && System.err == buffer_output);
+      } finally {
+        System.setOut(output);
+        System.setErr(error_output);
+      }
+      printed.add(buffer.toString());
+    }
+
+    /*
+     * What every sub-proof prints comes just before its result, the same way
+     * in parallel and in sequence
+     */
+    String result = printed.get(0);
+    assertTrue(result.split("Proof with those graphs").length > 2);
+    assertTrue(result.indexOf("Initial states size") < result
+        .indexOf("Proof with those graphs"));
+    assertTrue(result.lastIndexOf("Initial states size") > result
+        .indexOf("Proof SUCCESS"));
+    assertTrue(result.equals(printed.get(1)));
+  }
+
+  @Test
+  public void proofBySplitingTesting() throws IOException,
+      InstantiationException, IllegalAccessException {
+    DSLSequentialGraphSimulator<DSLGlobalState> simulator =
+        loadDSLSimulator(DECOUPE_FILE);
+    /* Only used for the estimations, which do not need the graph */
+    SplitProof<DSLStateMachine, DSLState, DSLTransition> split_proof =
+        new SplitProof<DSLStateMachine, DSLState, DSLTransition>(null,
+            simulator.getModel(), simulator.getProof(), null);
+
+    /* Without memory, one sub-proof per proof, from the biggest */
+    ArrayList<GraphSimulatorInterface<DSLGlobalState, DSLStateMachine, DSLState, DSLTransition>> sub_simulators =
+        new ArrayList<>(new ProofBySpliting<DSLGlobalState, DSLStateMachine, DSLState, DSLTransition>(
+            simulator.getModel(), simulator.getProof(), 1).getSimulators());
+    assertTrue(sub_simulators.size() == 3);
+    double previous_size = Double.MAX_VALUE;
+    for (GraphSimulatorInterface<DSLGlobalState, DSLStateMachine, DSLState, DSLTransition> sub_simulator : sub_simulators) {
+      ArrayList<DSLStateMachine> machines = new ArrayList<>();
+      for (DSLStateMachine machine : sub_simulator.getModel()) {
+        machines.add(machine);
+      }
+      for (DSLStateMachine machine : sub_simulator.getProof()) {
+        machines.add(machine);
+      }
+      double size = split_proof.estimateNumberStates(machines);
+      assertTrue(size <= previous_size);
+      previous_size = size;
+    }
+
+    /* The small sub-proofs are merged */
+    assertTrue(new ProofBySpliting<DSLGlobalState, DSLStateMachine, DSLState, DSLTransition>(
+        simulator.getModel(), simulator.getProof()).getSimulators().size() == 1);
+  }
+
+  /**
+   * @return The number of sub-proofs of `file` taken from `cache`.
+   */
+  private int cachedSubProofs(File file, SubProofCache cache,
+      boolean partial_order_reduction) throws IOException,
+      InstantiationException, IllegalAccessException {
+    DSLSequentialGraphSimulator<DSLGlobalState> simulator =
+        loadDSLSimulator(file);
+    SplittingModelChecker<DSLGlobalState, DSLStateMachine, DSLState, DSLTransition> model_checker =
+        new SplittingModelChecker<>(2);
+    model_checker.setPrintImages(false);
+    model_checker.setMemoryBudget(1);
+    model_checker.setPartialOrderReduction(partial_order_reduction);
+    model_checker.setCache(cache);
+    model_checker.addInitialState(simulator.getInitialGlobalState());
+    assertTrue(model_checker.verify(simulator) == null);
+    assertTrue(model_checker.getSubProofResults().size() == 3);
+    return model_checker.getNumberCachedProofs();
+  }
+
+  @Test
+  public void subProofCacheTesting() throws IOException,
+      InstantiationException, IllegalAccessException {
+    File directory = Files.createTempDirectory("sub_proof_cache").toFile();
+    try {
+      SubProofCache cache = new SubProofCache(directory);
+
+      /* Miss, then hit */
+      assertTrue(cachedSubProofs(DECOUPE_FILE, cache, false) == 0);
+      assertTrue(directory.listFiles().length == 3);
+      assertTrue(cachedSubProofs(DECOUPE_FILE, cache, false) == 3);
+
+      /* Another configuration of the model checker misses */
+      assertTrue(cachedSubProofs(DECOUPE_FILE, cache, true) == 0);
+      assertTrue(cachedSubProofs(DECOUPE_FILE, cache, true) == 3);
+      assertTrue(directory.listFiles().length == 6);
+
+      /* Only the modified sub-proof is verified again */
+      File modified_file = new File(directory, "modified.txt");
+      String model = new String(Files.readAllBytes(DECOUPE_FILE.toPath()),
+          "UTF-8");
+      Files.write(modified_file.toPath(), model.replace(
+          "when not (v1 and v2) and v1_and_v2 do P_5",
+          "when not (v1 and v2) and v1_and_v2 and v3 do P_5")
+          .getBytes("UTF-8"));
+      assertTrue(cachedSubProofs(modified_file, cache, false) == 2);
+      modified_file.delete();
+
+      /* The unreadable results are verified again, and replaced */
+      for (File file : directory.listFiles()) {
+        Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+      }
+      assertTrue(cachedSubProofs(DECOUPE_FILE, cache, false) == 0);
+      assertTrue(cachedSubProofs(DECOUPE_FILE, cache, false) == 3);
+    } finally {
+      for (File file : directory.listFiles()) {
+        file.delete();
+      }
+      directory.delete();
+    }
+  }
+
   @Test
   public void splitProofTesting() throws IOException {
     String functional_model = GeneratorFromTemplate
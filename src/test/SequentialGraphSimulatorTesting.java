@@ -2,6 +2,7 @@ package test;
 
 import static org.junit.Assert.assertTrue;
 import engine.SequentialGraphSimulator;
+import engine.TransitionsPullList;
 import graph.GlobalState;
 import graph.GraphFactoryAEFD;
 import graph.Model;
@@ -10,8 +11,12 @@ import graph.StateMachine;
 import graph.Transition;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.NoSuchElementException;
 
 import org.junit.Test;
 
@@ -19,7 +24,10 @@ import utils.Pair;
 import abstractGraph.AbstractGlobalState;
 import abstractGraph.conditions.BooleanVariable;
 import abstractGraph.conditions.EnumeratedVariable;
+import abstractGraph.events.EventQueue;
+import abstractGraph.events.EventTable;
 import abstractGraph.events.ExternalEvent;
+import abstractGraph.events.SingleEvent;
 
 public class SequentialGraphSimulatorTesting {
 
@@ -256,6 +264,198 @@ public class SequentialGraphSimulatorTesting {
     return result;
   }
 
+  /**
+   * @return The transitions of `state` on `event`, searched without the index
+   *         of the state.
+   */
+  private LinkedList<Transition> scanTransitions(State state,
+      SingleEvent event) {
+    LinkedList<Transition> result = new LinkedList<>();
+    for (Transition transition : state) {
+      if (transition.getEvents().containsEvent(event)) {
+        result.add(transition);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Test that the transitions found by the index of the states on every event
+   * of the models are the ones found by scanning the transitions, also after
+   * an event has been added to a transition.
+   */
+  @Test
+  public void transitionIndexTesting() throws IOException {
+    String[] files = {
+        "Graph_testing_different_external_event.txt",
+        "Graph_with_propagation.txt",
+        "Graph_with_condition.txt",
+        "Graph_with_FCI.txt",
+        "Graph_P5.txt"
+    };
+    for (String file : files) {
+      Model model = loadFile(file);
+      model.build();
+      HashSet<SingleEvent> events = new HashSet<>();
+      for (StateMachine machine : model) {
+        for (State state : machine) {
+          for (Transition transition : state) {
+            events.addAll(transition.getEvents().getCollection());
+            for (SingleEvent action : transition.getActions()) {
+              events.add(action);
+            }
+          }
+        }
+      }
+      events.add(new ExternalEvent("NOT_IN_THE_MODEL"));
+
+      for (StateMachine machine : model) {
+        for (State state : machine) {
+          for (SingleEvent event : events) {
+            assertTrue(file + ": " + state.getId() + " on " + event,
+                Arrays.asList(state.getTransitions(event)).equals(
+                    scanTransitions(state, event)));
+          }
+          assertTrue(state.getTransitions(null).length == 0);
+        }
+      }
+
+      /* An event added to an indexed transition */
+      SingleEvent new_event = new ExternalEvent("ADDED_AFTER_BUILD");
+      StateMachine machine = model.iterator().next();
+      State state = machine.getState("0");
+      Transition transition = state.iterator().next();
+      assertTrue(state.getTransitions(new_event).length == 0);
+      transition.getEvents().addEvent(new_event);
+      assertTrue(Arrays.asList(state.getTransitions(new_event)).equals(
+          scanTransitions(state, new_event)));
+      assertTrue(state.getTransitions(new_event)[0] == transition);
+    }
+  }
+
+  /**
+   * Test the queue of event ids of the simulators: the ids wrap around the end
+   * of the array, stay in order when it grows, and the queue is reusable after
+   * clear(). The table of the events gives back the queued events.
+   */
+  @Test
+  public void eventQueueTesting() {
+    EventQueue queue = new EventQueue();
+    LinkedList<Integer> expected = new LinkedList<>();
+
+    /* The head moves around the array without growing it */
+    int next = 0;
+    for (int round = 0; round < 20; round++) {
+      for (int i = 0; i < 3; i++) {
+        queue.add(next);
+        expected.add(next);
+        next++;
+      }
+      for (int i = 0; i < 2; i++) {
+        assertTrue(queue.poll() == expected.poll());
+      }
+      assertTrue(queue.size() == expected.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertTrue(queue.get(i) == expected.get(i));
+      }
+    }
+
+    /* Growth while the ids wrap around */
+    for (int i = 0; i < 50; i++) {
+      queue.add(next);
+      expected.add(next);
+      next++;
+    }
+    EventQueue copy = new EventQueue();
+    copy.addAll(queue);
+    assertTrue(copy.size() == expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertTrue(queue.get(i) == expected.get(i));
+      assertTrue(copy.get(i) == expected.get(i));
+    }
+
+    /* Reuse after clear */
+    queue.clear();
+    assertTrue(queue.isEmpty());
+    for (int i = 0; i < 5; i++) {
+      queue.add(i);
+    }
+    for (int i = 0; i < 5; i++) {
+      assertTrue(queue.poll() == i);
+    }
+    assertTrue(queue.isEmpty());
+
+    try {
+      queue.poll();
+      assertTrue(false);
+    } catch (NoSuchElementException e) {
+      /* Expected on an empty queue */
+    }
+
+    /* The events are given back from their ids, in the order of the queue */
+    EventTable table = new EventTable();
+    LinkedList<SingleEvent> events = new LinkedList<>();
+    for (int i = 0; i < 40; i++) {
+      SingleEvent event = new ExternalEvent(class_name + "_event_" + i);
+      queue.add(table.put(event));
+      events.add(event);
+    }
+    queue.add(table.put(events.getLast()));
+    events.addLast(events.getLast());
+    queue.poll();
+    events.removeFirst();
+    assertTrue(table.toList(queue).equals(events));
+    assertTrue(table.get(queue.poll()) == events.getFirst());
+  }
+
+  /**
+   * Test the list of the transitions pull: the insertion order is kept when a
+   * machine is put again, the arrays grow for large identifiers, and the list
+   * is reusable after clear().
+   */
+  @Test
+  public void transitionsPullListTesting() {
+    TransitionsPullList<StateMachine, State> list = new TransitionsPullList<>();
+    StateMachine[] machines = new StateMachine[40];
+    LinkedHashMap<StateMachine, State> expected = new LinkedHashMap<>();
+    for (int i = 0; i < machines.length; i++) {
+      /* Sparse identifiers, beyond the initial size of the arrays */
+      machines[i] = new StateMachine("M" + i, (i * 7) % machines.length * 3);
+      machines[i].addState("0");
+      machines[i].addState("1");
+    }
+
+    for (int round = 0; round < 3; round++) {
+      for (int i = machines.length - 1; i >= 0; i -= 2) {
+        list.put(machines[i], machines[i].getState("0"));
+        expected.put(machines[i], machines[i].getState("0"));
+      }
+      /* A machine put again keeps its position */
+      list.put(machines[machines.length - 1],
+          machines[machines.length - 1].getState("1"));
+      expected.put(machines[machines.length - 1],
+          machines[machines.length - 1].getState("1"));
+
+      assertTrue(list.size() == expected.size());
+      assertTrue(list.toLinkedHashMap().equals(expected));
+      assertTrue(new LinkedList<>(list.toLinkedHashMap().keySet())
+          .equals(new LinkedList<>(expected.keySet())));
+      for (StateMachine machine : machines) {
+        assertTrue(list.get(machine) == expected.get(machine));
+      }
+
+      list.clear();
+      expected.clear();
+      assertTrue(list.isEmpty());
+      for (StateMachine machine : machines) {
+        assertTrue(list.get(machine) == null);
+      }
+    }
+
+    /* An identifier never seen */
+    assertTrue(list.get(new StateMachine("Unknown", 1000)) == null);
+  }
+
   /**
    * Create a simulator from a file
    */
@@ -0,0 +1,36 @@
+package utils;
+
+/**
+ * Keys for the Zobrist hashing of the global states.
+ *
+ * @details
+ *          The hash of a state made of several components is the XOR of the
+ *          keys of the (component, value) pairs. When a component changes, the
+ *          hash is updated in O(1) by XORing out the key of the old value and
+ *          XORing in the key of the new one.
+ *
+ *          The keys are computed by mixing the component and the value instead
+ *          of being drawn in a table, so that the components and the values
+ *          do not need to be known in advance.
+ */
+public class Zobrist {
+
+  /**
+   * @param component
+   *          An identifier of the component (state machine or variable).
+   * @param value
+   *          An identifier of the value of the component.
+   * @return A pseudo random key for the pair.
+   */
+  public static int key(int component, int value) {
+    long key = (((long) component << 32) ^ (value & 0xFFFFFFFFL))
+        + 0x9E3779B97F4A7C15L;
+    /* The finalizer of MurmurHash3 */
+    key ^= key >>> 33;
+    key *= 0xFF51AFD7ED558CCDL;
+    key ^= key >>> 33;
+    key *= 0xC4CEB9FE1A85EC53L;
+    key ^= key >>> 33;
+    return (int) key;
+  }
+}